@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.alerts.AlertEngine;
+import org.defis.efis.alerts.AlertRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing one airspeed sample to the alert engine, with the overspeed rule among a growing number of rules on
+ * other channels. The time per sample should not grow with the rules loaded.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlertEngineBenchmark
+{
+
+    static final String AIR_SPEED = "/velocities/airspeed-kt";
+
+    @Param({"10", "1000", "100000"})
+    public int rules;
+
+    private AlertEngine engine;
+    private int airSpeed;
+    private double speed;
+
+    @Setup
+    public void setUp() {
+        engine = engine(rules);
+        airSpeed = engine.channel(AIR_SPEED);
+    }
+
+    /**
+     * Sweeps the airspeed through the overspeed threshold, so the alert comes on and goes off.
+     */
+    @Benchmark
+    public boolean publish() {
+        speed = speed > 200 ? 120 : speed + 0.7;
+        engine.publish(airSpeed, speed);
+        return engine.isShown(0);
+    }
+
+    /**
+     * An engine with a latching overspeed rule and count - 1 rules on channels of their own, with hysteresis and
+     * when conditions.
+     */
+    static AlertEngine engine(int count) {
+        Properties properties = new Properties();
+        properties.setProperty("alert.a.condition", AIR_SPEED + " > 163");
+        properties.setProperty("alert.a.hysteresis", "3");
+        properties.setProperty("alert.a.latching", "true");
+        for (int i = 1; i < count; i++) {
+            String key = "alert.r" + i + ".";
+            properties.setProperty(key + "condition", "|/bench/" + i + " - /bench/reference| > 100");
+            properties.setProperty(key + "hysteresis", "5");
+            properties.setProperty(key + "when", "/bench/" + (i + 1) + " > 0");
+        }
+        return new AlertEngine(AlertRule.parseAll(properties));
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import org.defis.efis.AttitudeIndicatorInstrument;
+import org.defis.efis.FGFSIntegrator;
+import org.defis.efis.Registry;
+import org.defis.efis.SpeedTapeInstrument;
+import org.defis.efis.alerts.AlertEngine;
+import org.defis.efis.ems.EngineMonitor;
+import org.defis.efis.gauges.HeadingTape;
+import org.defis.efis.ingest.TelemetryDecoder;
+import org.defis.efis.map.MapTileCache;
+import org.defis.efis.map.MovingMap;
+import org.defis.efis.nav.NavType;
+import org.defis.efis.taws.TerrainAwareness;
+import org.defis.efis.wire.BatchDecoder;
+import org.defis.efis.wire.BatchEncoder;
+import org.flightgear.fgfsclient.FGFSConnection;
+
+/**
+ * Checks the steady-state allocation of each hot path against the budgets in {@code allocation-budgets.properties} and
+ * exits with status 1 when any path allocates more than its budget (or has no budget at all).
+ *
+ * Budgets only ever go down. When a change removes garbage from a path, lower its budget in the same commit so the
+ * gain cannot silently regress.
+ *
+ * The instruments are shown on a stage and driven on the FX thread, one operation per pulse, so they draw the way they
+ * do on screen: the tapes blit their cached strips, the readouts their drum strips and text comes from the glyph
+ * atlas. The other paths run back to back on a worker thread. Run headless with Monocle on the classpath (see the
+ * headless profile in pom.xml), optionally naming the prefix of the paths to check:
+ *
+ * <pre>
+ * java -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw -Djavafx.animation.fullspeed=true \
+ *     -cp target/benchmarks.jar org.defis.efis.benchmarks.AllocationBudgets
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class AllocationBudgets extends Application
+{
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 20_000;
+    /**
+     * Pulses per round for the instruments, fewer than the iterations since each one renders a frame.
+     */
+    private static final int FRAMES = 2_000;
+
+    private final Map<String, AllocationMeter.Operation> paths = new LinkedHashMap<>();
+    /**
+     * The instrument each path drives, for the paths measured on the FX thread.
+     */
+    private final Map<String, Node> instruments = new HashMap<>();
+    private final Group root = new Group();
+    private double sweep;
+    private long noise;
+    private TerrainAwarenessBenchmark.Databases databases;
+    private NavDatabaseBenchmark.World world;
+    private Path mapTiles;
+    private MapTileCache mapTileCache;
+
+    private double nextValue(double min, double max) {
+        return nextValue(min, max, 0.37);
+    }
+
+    /**
+     * Sweeps from min to max in steps, which must be large enough to show on the instrument driven or it will not
+     * redraw at all.
+     */
+    private double nextValue(double min, double max, double step) {
+        sweep = sweep + step > max - min ? 0 : sweep + step;
+        return min + sweep;
+    }
+
+    /**
+     * Jitters around a value by less than the given amplitude, like a sensor at rest.
+     */
+    private double jitter(double value, double amplitude) {
+        noise++;
+        return value + amplitude * ((noise * 7919 % 17) / 8.0 - 1) * 0.9;
+    }
+
+    private void register(String name, AllocationMeter.Operation operation) {
+        paths.put(name, operation);
+    }
+
+    private void register(String name, Node instrument, AllocationMeter.Operation operation) {
+        paths.put(name, operation);
+        instruments.put(name, instrument);
+    }
+
+    /**
+     * Creates the instruments, which must happen on the FX thread.
+     */
+    private Void registerInstruments() {
+        TapeGaugeBenchmark.BenchTape tape = new TapeGaugeBenchmark.BenchTape();
+        register("tape.tickLabel", tape, () -> tape.tickLabel(nextValue(-1000, 12000)));
+        register("tape.drawTicks", tape, tape::ticksOnly);
+        register("tape.update", tape, () -> tape.valueProperty().set(nextValue(-1000, 12000, 3.7)));
+        register("tape.noise", tape, () -> tape.valueProperty().set(jitter(4520, 0.5)));
+
+        HeadingTape headingTape = new HeadingTape(300, 50);
+        register("headingTape.update", headingTape, () -> headingTape.valueProperty().set(nextValue(-360, 720)));
+
+        SpeedTapeInstrument st = new SpeedTapeInstrument();
+        register("speedTape.update", st, () -> st.setAirSpeed(nextValue(0, 160)));
+        register("speedTape.noise", st, () -> st.setAirSpeed(jitter(112.5, 0.02)));
+
+        AttitudeIndicatorInstrument ai = new AttitudeIndicatorInstrument();
+        register("attitude.update", ai, () -> ai.pitchAngleProperty().set(nextValue(-30, 30)));
+        register("attitude.noise", ai, () -> ai.bankAngleProperty().set(jitter(0, 0.05)));
+
+        EngineMonitor ems = new EngineMonitor(360, 300, EngineMonitor.pistonEngine(6));
+        double[] engineFrame = new double[ems.getGaugeCount()];
+        register("ems.frame", ems, () -> {
+            EngineMonitorBenchmark.nextFrame(ems, engineFrame, (int) nextValue(0, 1000, 1));
+            ems.applyFrame(engineFrame);
+        });
+        return null;
+    }
+
+    private void registerPaths(FakeFlightGear fgfs, FGFSConnection conn) throws Exception {
+        AllocationMeter.onFxThread(this::registerInstruments);
+
+        Registry registry = new Registry();
+        DoubleProperty source = new SimpleDoubleProperty();
+        registry.publish("/pitot[0]/airspeed-kts", source);
+        DoubleProperty consumer = new SimpleDoubleProperty();
+        consumer.bind(registry.subscribe("/pitot[0]/airspeed-kts"));
+        consumer.addListener(l -> consumer.get());
+        register("registry.publish", () -> source.set(nextValue(0, 160)));
+
+        ByteBuffer traffic = TelemetryDecoderBenchmark.traffic(TelemetryDecoderBenchmark.TICKS, 50);
+        double[] ingested = new double[1 << 16];
+        TelemetryDecoder decoder = new TelemetryDecoder((channel, value) -> ingested[channel] = value);
+        register("ingest.decode", () -> {
+            traffic.rewind();
+            decoder.decode(traffic);
+        });
+
+        double[][] flight = WireFormatBenchmark.flight(WireFormatBenchmark.TICKS);
+        double[] sample = new double[WireFormatBenchmark.CHANNELS];
+        BatchEncoder encoder = new BatchEncoder(WireFormatBenchmark.schema(), WireFormatBenchmark.CHANNELS);
+        ByteBuffer batches = ByteBuffer.allocateDirect(
+                WireFormatBenchmark.TICKS * BatchEncoder.maxBatchBytes(WireFormatBenchmark.CHANNELS));
+        register("wire.encode", () -> {
+            batches.clear();
+            WireFormatBenchmark.encode(encoder, flight, batches);
+        });
+        BatchDecoder batchDecoder = new BatchDecoder(WireFormatBenchmark.schema(), WireFormatBenchmark.CHANNELS);
+        BatchDecoder.Sink batchSink = new BatchDecoder.Sink()
+        {
+            @Override
+            public void time(long micros) {
+            }
+
+            @Override
+            public void value(int channel, double value) {
+                sample[channel] = value;
+            }
+        };
+        register("wire.decode", () -> {
+            batches.rewind();
+            batchDecoder.decode(batches, batchSink);
+        });
+
+        AlertEngine alerts = AlertEngineBenchmark.engine(1000);
+        int airSpeed = alerts.channel(AlertEngineBenchmark.AIR_SPEED);
+        register("alerts.publish", () -> alerts.publish(airSpeed, nextValue(120, 200, 0.7)));
+
+        databases = new TerrainAwarenessBenchmark.Databases(10_000);
+        TerrainAwareness taws = new TerrainAwareness(databases.terrain, databases.obstacles);
+        register("taws.assess", () -> taws.assess(TerrainAwarenessBenchmark.Databases.LAT,
+                TerrainAwarenessBenchmark.Databases.LON, 2500, nextValue(0, 360, 7.3), 120, -500));
+
+        world = new NavDatabaseBenchmark.World();
+        int[] results = new int[10];
+        double[] distances = new double[10];
+        register("nav.nearest", () -> world.database.nearest(nextValue(-50, 60), nextValue(-170, 170, 7.3),
+                NavType.AIRPORT.mask(), 0, results, distances));
+        register("nav.findPrefix", () -> world.database.findPrefix(
+                NavDatabaseBenchmark.World.PREFIXES[(int) nextValue(0, 6, 1)], results));
+
+        // No tiles on disk, so the steady state is the map panning and turning over the same tiles
+        mapTiles = Files.createTempDirectory("defis-map");
+        mapTileCache = new MapTileCache(mapTiles, 1 << 20, 1);
+        MovingMap map = AllocationMeter.onFxThread(() -> {
+            MovingMap created = new MovingMap(250, 250, mapTileCache);
+            created.latitudeProperty().set(47.45);
+            created.longitudeProperty().set(-122.3);
+            return created;
+        });
+        register("map.pan", map, () -> map.longitudeProperty().set(nextValue(-122.31, -122.29, 0.001)));
+        register("map.turn", map, () -> map.trackProperty().set(nextValue(0, 360)));
+
+        fgfs.reply("/velocities/airspeed-kt", "112.48372")
+                .reply("/orientation/roll-deg", "-12.0371529")
+                .reply("/orientation/pitch-deg", "3.1415926")
+                .reply("/orientation/heading-magnetic-deg", "274.5583")
+                .reply("/autopilot/settings/heading-bug-deg", "270")
+                .reply("/instrumentation/nav[0]/radials/selected-deg", "265")
+                .reply("/instrumentation/nav[0]/heading-needle-deflection-norm", "-0.3127")
+                .reply("/position/latitude-deg", "47.4502")
+                .reply("/position/longitude-deg", "-122.3088")
+                .reply("/position/altitude-ft", "6512.4")
+                .reply("/orientation/heading-deg", "229.31")
+                .reply("/velocities/groundspeed-kt", "118.0362")
+                .reply("/velocities/vertical-speed-fps", "-8.3317")
+                .reply("/autopilot/settings/target-altitude-ft", "6500")
+                .reply("/position/altitude-agl-ft", "3148.7");
+        register("fgfs.getDouble", () -> conn.getDouble("/velocities/airspeed-kt"));
+
+        FGFSIntegrator integrator = new FGFSIntegrator();
+        register("fgfs.poll", () -> integrator.poll(conn));
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = AllocationBudgets.class.getResourceAsStream("/allocation-budgets.properties")) {
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    @Override
+    public void start(Stage stage) {
+        stage.setScene(new Scene(root, 800, 480, Color.BLACK));
+        stage.show();
+
+        List<String> prefix = getParameters().getUnnamed();
+        Thread checker = new Thread(() -> {
+            int status;
+            try {
+                status = check(prefix.isEmpty() ? "" : prefix.get(0)) ? 0 : 1;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                status = 1;
+            }
+            Platform.exit();
+            System.exit(status);
+        }, "allocation-budgets");
+        checker.setDaemon(true);
+        checker.start();
+    }
+
+    /**
+     * Measures every path whose name starts with the prefix, off the FX thread.
+     *
+     * @return whether all of them are within budget
+     */
+    private boolean check(String prefix) throws Exception {
+        Properties budgets = loadBudgets();
+        boolean failed = false;
+
+        try (FakeFlightGear fgfs = new FakeFlightGear()) {
+            FGFSConnection conn = new FGFSConnection(fgfs.getHost(), fgfs.getPort());
+            registerPaths(fgfs, conn);
+
+            System.out.printf("%-20s %10s %10s%n", "path", "B/op", "budget");
+            for (Map.Entry<String, AllocationMeter.Operation> path : paths.entrySet()) {
+                if (!path.getKey().startsWith(prefix)) {
+                    continue;
+                }
+
+                long bytes;
+                Node instrument = instruments.get(path.getKey());
+                if (instrument != null) {
+                    AllocationMeter.onFxThread(() -> root.getChildren().setAll(instrument));
+                    bytes = AllocationMeter.bytesPerFrame(path.getValue(), WARMUP, FRAMES);
+                } else {
+                    bytes = AllocationMeter.bytesPerOp(path.getValue(), WARMUP, ITERATIONS);
+                }
+                String budget = budgets.getProperty(path.getKey());
+                boolean over = budget == null || bytes > Long.parseLong(budget.trim());
+                failed |= over;
+
+                System.out.printf("%-20s %10d %10s%s%n", path.getKey(), bytes,
+                        budget == null ? "none" : budget.trim(), over ? "  OVER BUDGET" : "");
+            }
+
+            conn.close();
+            databases.close();
+            world.close();
+            mapTileCache.shutdown();
+            Files.delete(mapTiles);
+        }
+        return !failed;
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Measures the bytes allocated by the current thread per invocation of an operation, using the HotSpot per-thread
+ * allocation counter. Work done on other threads (the FX render thread, a fake server) is not counted.
+ *
+ * The meter allocates a few bytes itself when reading the counter, which is amortized over the iterations and
+ * truncated away, so a genuinely allocation-free operation reads as 0.
+ *
+ * Instruments draw on the FX thread, once per pulse, and between pulses the scene graph takes their canvas commands
+ * for rendering. {@link #bytesPerFrame} measures a draw path that way, so the canvases and caches behave as they do
+ * on screen; a canvas drawn over and over without a pulse keeps growing its command buffer instead.
+ *
+ * A path is measured in several rounds and its lowest round counts. A round can be charged for allocation that is not
+ * the path's own, such as a deoptimization and recompilation on the metered thread when an earlier path in the same
+ * run left the shared code in a different state; the lowest round is the path's steady state.
+ *
+ * @author Matthew Tyler
+ */
+public class AllocationMeter
+{
+
+    private static final com.sun.management.ThreadMXBean THREADS
+            = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    static {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("This JVM does not report per-thread allocation");
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * Operations per pulse while warming up a path measured per frame, so the JIT sees enough of them quickly.
+     */
+    private static final int WARMUP_PER_FRAME = 10;
+
+    private AllocationMeter() {
+    }
+
+    public static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs the operation warmup times so it is compiled and escape analysis has kicked in, then measures it in rounds
+     * of the given number of iterations.
+     *
+     * @param operation
+     * @param warmup
+     * @param iterations per round
+     * @return whole bytes allocated per operation in the lowest round
+     * @throws Exception whatever the operation throws
+     */
+    public static long bytesPerOp(Operation operation, int warmup, int iterations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run();
+        }
+
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < iterations; i++) {
+                operation.run();
+            }
+            long after = allocatedBytes();
+            lowest = Math.min(lowest, (after - before) / iterations);
+        }
+        return lowest;
+    }
+
+    /**
+     * Measures the operation on the FX thread, once per pulse like an instrument redraw, metering only the operation
+     * and not the pulse around it. Warms up with several operations per pulse, then measures in rounds of the given
+     * number of frames. Must not be called on the FX thread, which has to be running.
+     *
+     * @param operation
+     * @param warmup operations before measuring
+     * @param frames per round
+     * @return whole bytes allocated per operation in the lowest round
+     * @throws Exception whatever the operation throws
+     */
+    public static long bytesPerFrame(Operation operation, int warmup, int frames) throws Exception {
+        long overhead = onFxThread(AllocationMeter::readOverhead);
+        new Frames(operation, warmup / WARMUP_PER_FRAME, WARMUP_PER_FRAME, overhead).run();
+
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            lowest = Math.min(lowest, new Frames(operation, frames, 1, overhead).run() / frames);
+        }
+        return lowest;
+    }
+
+    /**
+     * Bytes allocated by reading the allocation counter, taken off each frame's reading.
+     */
+    private static long readOverhead() {
+        long lowest = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = allocatedBytes();
+            lowest = Math.min(lowest, allocatedBytes() - before);
+        }
+        return lowest;
+    }
+
+    /**
+     * Runs a task on the FX thread and waits for its result.
+     *
+     * @param <T>
+     * @param task
+     * @return what the task returned
+     * @throws Exception whatever the task throws
+     */
+    public static <T> T onFxThread(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    public interface Operation
+    {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs an operation for a number of pulses and totals what it allocated.
+     */
+    private static class Frames extends AnimationTimer
+    {
+
+        private final Operation operation;
+        private final int frames;
+        private final int perFrame;
+        private final long overhead;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+        private int frame;
+        private long bytes;
+
+        Frames(Operation operation, int frames, int perFrame, long overhead) {
+            this.operation = operation;
+            this.frames = frames;
+            this.perFrame = perFrame;
+            this.overhead = overhead;
+        }
+
+        long run() throws Exception {
+            Platform.runLater(this::start);
+            try {
+                return done.get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+        }
+
+        @Override
+        public void handle(long now) {
+            try {
+                long before = allocatedBytes();
+                for (int i = 0; i < perFrame; i++) {
+                    operation.run();
+                }
+                bytes += allocatedBytes() - before - overhead;
+            } catch (Exception ex) {
+                stop();
+                done.completeExceptionally(ex);
+                return;
+            }
+
+            if (++frame == frames) {
+                stop();
+                done.complete(bytes);
+            }
+        }
+    }
+}
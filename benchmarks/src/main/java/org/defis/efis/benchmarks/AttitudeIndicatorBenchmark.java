@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.AttitudeIndicatorInstrument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Attitude indicator update on the calling thread: moving the horizon and bank arc nodes, plus redrawing the pitch
+ * ladder whenever the pitch crosses a 2.5 degree step. Compositing happens on the render thread and shows up in
+ * RenderHarness instead. Pitch and bank are swept separately since each property change triggers its own update.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AttitudeIndicatorBenchmark
+{
+
+    private AttitudeIndicatorInstrument ai;
+    private double pitch;
+    private double bank;
+
+    @Setup
+    public void setUp() {
+        ai = new AttitudeIndicatorInstrument();
+    }
+
+    @Benchmark
+    public double pitchLadder() {
+        pitch = pitch > 30 ? -30 : pitch + 0.37;
+        ai.pitchAngleProperty().set(pitch);
+        return ai.getPitchAngle();
+    }
+
+    @Benchmark
+    public double bankAndPitch() {
+        bank = bank > 60 ? -60 : bank + 0.53;
+        pitch = pitch > 30 ? -30 : pitch + 0.37;
+        ai.bankAngleProperty().set(bank);
+        ai.pitchAngleProperty().set(pitch);
+        return ai.getBankAngle();
+    }
+}
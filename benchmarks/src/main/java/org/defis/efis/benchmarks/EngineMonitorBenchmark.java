@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.ems.EngineMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One engine frame on the engine monitor, every gauge moving: applied as a frame, which redraws once, and set gauge
+ * by gauge, which redraws once per gauge as separate instruments would when the render scheduler is not coalescing.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineMonitorBenchmark
+{
+
+    @Param({"4", "6"})
+    public int cylinders;
+
+    private EngineMonitor monitor;
+    private double[] frame;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        monitor = new EngineMonitor(360, 300, EngineMonitor.pistonEngine(cylinders));
+        frame = new double[monitor.getGaugeCount()];
+    }
+
+    @Benchmark
+    public void applyFrame() {
+        nextFrame(monitor, frame, step++);
+        monitor.applyFrame(frame);
+    }
+
+    @Benchmark
+    public void setEachValue() {
+        nextFrame(monitor, frame, step++);
+        for (int g = 0; g < frame.length; g++) {
+            monitor.setValue(g, frame[g]);
+        }
+    }
+
+    /**
+     * Fills a frame that moves every gauge by a few pixels from the last one, sweeping each across its range.
+     */
+    static void nextFrame(EngineMonitor monitor, double[] frame, int step) {
+        for (int g = 0; g < frame.length; g++) {
+            double min = monitor.getGauge(g).getMin();
+            double range = monitor.getGauge(g).getMax() - min;
+            frame[g] = min + range * ((step * 7 + g * 13) % 100) / 100.0;
+        }
+    }
+}
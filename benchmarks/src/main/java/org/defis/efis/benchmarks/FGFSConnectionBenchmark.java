@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.FGFSIntegrator;
+import org.flightgear.fgfsclient.FGFSConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request/response cost of the telnet client against a loopback server, so the numbers are dominated by our own
+ * formatting, reading and parsing rather than by FlightGear.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FGFSConnectionBenchmark
+{
+
+    private FakeFlightGear fgfs;
+    private FGFSConnection conn;
+    private FGFSIntegrator integrator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fgfs = new FakeFlightGear()
+                .reply("/velocities/airspeed-kt", "112.48372")
+                .reply("/orientation/roll-deg", "-12.0371529")
+                .reply("/orientation/pitch-deg", "3.1415926");
+        conn = new FGFSConnection(fgfs.getHost(), fgfs.getPort());
+        integrator = new FGFSIntegrator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        conn.close();
+        fgfs.close();
+    }
+
+    @Benchmark
+    public String getRaw() throws IOException {
+        return conn.get("/velocities/airspeed-kt");
+    }
+
+    @Benchmark
+    public double getDouble() throws IOException {
+        return conn.getDouble("/orientation/roll-deg");
+    }
+
+    /**
+     * The background half of a telemetry update as scheduled by MainApp: three round trips and parsing. Applying the
+     * values happens later on the FX thread.
+     */
+    @Benchmark
+    public void integratorPoll() throws IOException {
+        integrator.poll(conn);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process stand-in for the FlightGear telnet server in "data" mode. Every "get" is answered with the canned value
+ * for the property (or an empty line), which is all {@link org.flightgear.fgfsclient.FGFSConnection} needs.
+ *
+ * @author Matthew Tyler
+ */
+public class FakeFlightGear implements Closeable
+{
+
+    private final ServerSocket server;
+    private final Map<String, byte[]> replies = new HashMap<>();
+    private final Thread thread;
+
+    public FakeFlightGear() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        thread = new Thread(this::serve, "fake-fgfs");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    public FakeFlightGear reply(String property, String value) {
+        synchronized (replies) {
+            replies.put(property, (value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        return this;
+    }
+
+    private void serve() {
+        byte[] empty = "\r\n".getBytes(StandardCharsets.US_ASCII);
+        try (Socket client = server.accept()) {
+            client.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = client.getOutputStream();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("get ")) {
+                    byte[] reply;
+                    synchronized (replies) {
+                        reply = replies.getOrDefault(line.substring(4), empty);
+                    }
+                    out.write(reply);
+                    out.flush();
+                } else if (line.equals("quit")) {
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            // Connection torn down by the benchmark
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import org.defis.efis.ingest.TelemetryProtocol;
+
+/**
+ * Stand-in for an MCU telemetry node: an AHRS at 100 Hz, air data at 20 Hz, a GPS at 5 Hz and a four cylinder
+ * engine at 10 Hz, all gently moving, in the frames of {@link TelemetryProtocol} with the channel ids of the default
+ * channel map.
+ *
+ * Run it into a named pipe or one end of a pseudo terminal pair, and give the other end to the EFIS:
+ *
+ * <pre>
+ * mkfifo /tmp/mcu
+ * java -cp ... org.defis.efis.benchmarks.FakeTelemetryNode /tmp/mcu &amp;
+ * java -jar defis.jar --ingest=/tmp/mcu
+ *
+ * socat pty,raw,echo=0,link=/tmp/mcu-node pty,raw,echo=0,link=/tmp/mcu-efis &amp;
+ * java -cp ... org.defis.efis.benchmarks.FakeTelemetryNode /tmp/mcu-node
+ * </pre>
+ *
+ * Arguments: the file to write to, or - for standard output; the tick rate in Hz (100); and optionally how many
+ * ticks apart to corrupt one byte, to watch the decoder resynchronize.
+ *
+ * @author Matthew Tyler
+ */
+public class FakeTelemetryNode
+{
+
+    static final int AIR_DATA_TICKS = 5;
+    static final int GPS_TICKS = 20;
+    static final int ENGINE_TICKS = 10;
+    static final int CYLINDERS = 4;
+
+    /**
+     * Room for the frames of the busiest tick.
+     */
+    static final int TICK_BYTES = 24 * TelemetryProtocol.MAX_FRAME;
+
+    /**
+     * Writes the frames due at a tick, 10 ms apart.
+     *
+     * @param out
+     * @param tick
+     */
+    static void tick(ByteBuffer out, long tick) {
+        double t = tick / 100.0;
+        TelemetryProtocol.put(out, 1, TelemetryProtocol.INT16, 2500 * Math.sin(t / 3));
+        TelemetryProtocol.put(out, 2, TelemetryProtocol.INT16, 300 + 500 * Math.sin(t / 5));
+        TelemetryProtocol.put(out, 3, TelemetryProtocol.INT16, (t * 300) % 36000);
+
+        if (tick % AIR_DATA_TICKS == 0) {
+            TelemetryProtocol.put(out, 4, TelemetryProtocol.FLOAT32, 110 + 25 * Math.sin(t / 13));
+            TelemetryProtocol.put(out, 5, TelemetryProtocol.FLOAT32, 4500 + 1200 * Math.sin(t / 23));
+            TelemetryProtocol.put(out, 6, TelemetryProtocol.INT16, 100 * 1200 / 23.0 * Math.cos(t / 23));
+        }
+
+        // Circling a few miles north of Seattle
+        if (tick % GPS_TICKS == 0) {
+            double angle = t / 60;
+            TelemetryProtocol.put(out, 7, TelemetryProtocol.FLOAT64, 47.6 + 0.05 * Math.sin(angle));
+            TelemetryProtocol.put(out, 8, TelemetryProtocol.FLOAT64, -122.3 + 0.075 * Math.cos(angle));
+            TelemetryProtocol.put(out, 9, TelemetryProtocol.FLOAT32, (360 - Math.toDegrees(angle) % 360) % 360);
+            TelemetryProtocol.put(out, 10, TelemetryProtocol.FLOAT32, 115);
+        }
+
+        if (tick % ENGINE_TICKS == 0) {
+            TelemetryProtocol.put(out, 16, TelemetryProtocol.INT16, 2400 + 100 * Math.sin(t / 7));
+            TelemetryProtocol.put(out, 17, TelemetryProtocol.INT16, 10 * (62 + 3 * Math.sin(t / 11)));
+            TelemetryProtocol.put(out, 18, TelemetryProtocol.INT16, 10 * (195 + 5 * Math.sin(t / 17)));
+            TelemetryProtocol.put(out, 19, TelemetryProtocol.FLOAT32, 8.5 + 0.8 * Math.sin(t / 7));
+            for (int c = 0; c < CYLINDERS; c++) {
+                TelemetryProtocol.put(out, 20 + c, TelemetryProtocol.INT16, 10 * (360 + 15 * Math.sin(t / 19 + c)));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: FakeTelemetryNode <file|-> [hz] [corrupt every n ticks]");
+            System.exit(2);
+        }
+        double hz = args.length > 1 ? Double.parseDouble(args[1]) : 100;
+        long corruptEvery = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        long periodNanos = (long) (1e9 / hz);
+
+        ByteBuffer out = ByteBuffer.allocate(TICK_BYTES);
+        try (WritableByteChannel channel = args[0].equals("-")
+                ? Channels.newChannel(System.out)
+                : new FileOutputStream(args[0]).getChannel()) {
+            long next = System.nanoTime();
+            for (long tick = 0;; tick++) {
+                out.clear();
+                tick(out, tick);
+                if (corruptEvery > 0 && tick % corruptEvery == corruptEvery - 1) {
+                    int at = (int) (tick * 31 % out.position());
+                    out.put(at, (byte) ~out.get(at));
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+
+                next += periodNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity recorder of per-frame durations in nanoseconds.
+ *
+ * @author Matthew Tyler
+ */
+public class FrameStats
+{
+
+    private final long[] samples;
+    private int count;
+
+    public FrameStats(int capacity) {
+        samples = new long[capacity];
+    }
+
+    public void record(long nanos) {
+        if (count < samples.length) {
+            samples[count++] = nanos;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double meanMs() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / (double) count / 1e6;
+    }
+
+    /**
+     * @param p percentile between 0 and 100
+     * @return the nearest-rank percentile in milliseconds
+     */
+    public double percentileMs(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, rank))] / 1e6;
+    }
+
+    public double maxMs() {
+        return percentileMs(100);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+
+/**
+ * Stores and compares instrument snapshots as PNG files named {@code <instrument>-<frame>.png}.
+ *
+ * A pixel matches when every channel is within {@link #CHANNEL_TOLERANCE} of the golden value, which absorbs
+ * anti-aliasing noise between pipelines. A snapshot matches when no more than {@link #MAX_MISMATCH_RATIO} of its
+ * pixels differ.
+ *
+ * @author Matthew Tyler
+ */
+public class GoldenImages
+{
+
+    public static final int CHANNEL_TOLERANCE = 8;
+    public static final double MAX_MISMATCH_RATIO = 0.001;
+
+    private final File directory;
+    private final boolean update;
+
+    public GoldenImages(File directory, boolean update) {
+        this.directory = directory;
+        this.update = update;
+    }
+
+    /**
+     * Records the snapshot in update mode, otherwise compares it with the stored one.
+     *
+     * @param instrument
+     * @param frame
+     * @param snapshot
+     * @return null on success (or when there is no golden image yet), else a description of the difference
+     * @throws IOException
+     */
+    public String check(String instrument, int frame, WritableImage snapshot) throws IOException {
+        File file = new File(directory, instrument + "-" + frame + ".png");
+
+        if (update) {
+            directory.mkdirs();
+            ImageIO.write(SwingFXUtils.fromFXImage(snapshot, null), "png", file);
+            return null;
+        }
+
+        if (!file.exists()) {
+            System.out.println("  no golden image " + file + ", skipped");
+            return null;
+        }
+
+        Image golden = SwingFXUtils.toFXImage(ImageIO.read(file), null);
+        return compare(golden, snapshot);
+    }
+
+    static String compare(Image golden, Image actual) {
+        int width = (int) golden.getWidth();
+        int height = (int) golden.getHeight();
+        if (width != (int) actual.getWidth() || height != (int) actual.getHeight()) {
+            return String.format("size %dx%d, expected %dx%d",
+                    (int) actual.getWidth(), (int) actual.getHeight(), width, height);
+        }
+
+        PixelReader expected = golden.getPixelReader();
+        PixelReader got = actual.getPixelReader();
+        int mismatches = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!matches(expected.getArgb(x, y), got.getArgb(x, y))) {
+                    mismatches++;
+                }
+            }
+        }
+
+        double ratio = mismatches / (double) (width * height);
+        return ratio > MAX_MISMATCH_RATIO
+                ? String.format("%d pixels (%.2f%%) differ", mismatches, ratio * 100)
+                : null;
+    }
+
+    private static boolean matches(int a, int b) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            if (Math.abs(((a >>> shift) & 0xff) - ((b >>> shift) & 0xff)) > CHANNEL_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import javafx.scene.canvas.GraphicsContext;
+import org.defis.efis.gauges.HeadingTape;
+
+/**
+ * Renders the heading readout either side of north and checks the digits it shows: the head, the rolling digits in
+ * the window and the readout they make together. Exits with status 1 when any heading reads wrong.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.defis.efis.benchmarks.HeadingReadoutCheck
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class HeadingReadoutCheck
+{
+
+    /**
+     * Heading, the readout and the rolling digits from the lowest face to the highest.
+     */
+    private static final String[][] CASES = {
+        {"359.4", "359", "57 58 59 00 01"},
+        {"359.6", "000", "57 58 59 00 01"},
+        {"0.4", "000", "58 59 00 01 02"},
+    };
+
+    public static void main(String[] args) {
+        RecordingTape tape = new RecordingTape();
+        boolean failed = false;
+
+        System.out.printf("%-10s %-8s %s%n", "heading", "readout", "rolling digits");
+        for (String[] expected : CASES) {
+            tape.render(Double.parseDouble(expected[0]));
+            String readout = tape.readout();
+            String faces = tape.faces();
+            boolean wrong = !readout.equals(expected[1]) || !faces.equals(expected[2]);
+            failed |= wrong;
+
+            System.out.printf("%-10s %-8s %s%s%n", expected[0], readout, faces,
+                    wrong ? "  WRONG, expected " + expected[1] + " over " + expected[2] : "");
+        }
+
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Off the FX thread the readout is drawn as text, so the labels can be taken from the drawing calls.
+     */
+    static class RecordingTape extends HeadingTape
+    {
+
+        private final List<Label> labels = new ArrayList<>();
+
+        RecordingTape() {
+            super(400, 50);
+        }
+
+        void render(double heading) {
+            valueProperty().set(heading);
+            labels.clear();
+            update();
+        }
+
+        /**
+         * The head, drawn first, followed by the rolling digits nearest the middle of the window.
+         */
+        String readout() {
+            if (labels.size() < 2) {
+                return labels.isEmpty() ? "" : labels.get(0).text + "??";
+            }
+            Label middle = labels.get(1);
+            for (Label label : labels.subList(1, labels.size())) {
+                if (Math.abs(label.y) < Math.abs(middle.y)) {
+                    middle = label;
+                }
+            }
+            return labels.get(0).text + middle.text;
+        }
+
+        /**
+         * The rolling digits, lowest face first, which is the one drawn furthest down.
+         */
+        String faces() {
+            List<Label> rolling = new ArrayList<>(labels.subList(Math.min(1, labels.size()), labels.size()));
+            rolling.sort(Comparator.comparingDouble((Label label) -> label.y).reversed());
+            StringBuilder faces = new StringBuilder();
+            for (Label label : rolling) {
+                faces.append(faces.length() > 0 ? " " : "").append(label.text);
+            }
+            return faces.toString();
+        }
+
+        @Override
+        protected void strokeAndFillText(GraphicsContext gc, double x, double y, String label) {
+            // The constructor of the tape draws before the list is set
+            if (labels != null) {
+                labels.add(new Label(y, label));
+            }
+            super.strokeAndFillText(gc, x, y, label);
+        }
+    }
+
+    private static class Label
+    {
+
+        private final double y;
+        private final String text;
+
+        Label(double y, String text) {
+            this.y = y;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import javafx.animation.PauseTransition;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import org.defis.efis.AttitudeIndicatorInstrument;
+import org.defis.efis.Registry;
+import org.defis.efis.SpeedTapeInstrument;
+import org.defis.efis.gauges.AltitudeTape;
+import org.defis.efis.gauges.HorizontalSituationIndicator;
+import org.defis.efis.ingest.TelemetryIngest;
+
+/**
+ * Feeds one tick of {@link FakeTelemetryNode} frames through a {@link TelemetryIngest} with the default channel map,
+ * and checks that the instruments bound to its registry channels, the way the EFIS binds them with --ingest, show
+ * the values. Exits with status 1 when any instrument did not change.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.defis.efis.benchmarks.IngestBindingCheck
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class IngestBindingCheck extends Application
+{
+
+    /**
+     * A tick with every channel in it.
+     */
+    private static final long TICK = 100;
+
+    private final Registry registry = new Registry();
+    private final List<Check> checks = new ArrayList<>();
+    private TelemetryIngest ingest;
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        Properties channelMap = new Properties();
+        try (InputStream in = TelemetryIngest.class.getResourceAsStream("/ingest/channels.properties")) {
+            channelMap.load(in);
+        }
+        ByteBuffer frames = ByteBuffer.allocate(FakeTelemetryNode.TICK_BYTES);
+        FakeTelemetryNode.tick(frames, TICK);
+        byte[] bytes = Arrays.copyOf(frames.array(), frames.position());
+
+        ingest = new TelemetryIngest(() -> Channels.newChannel(new ByteArrayInputStream(bytes)), channelMap);
+        ingest.publish(registry);
+
+        SpeedTapeInstrument st = new SpeedTapeInstrument();
+        AttitudeIndicatorInstrument ai = new AttitudeIndicatorInstrument();
+        AltitudeTape alt = new AltitudeTape(60, 250);
+        HorizontalSituationIndicator hsi = new HorizontalSituationIndicator(150, 150);
+
+        bind("airspeed", st.airSpeedProperty(), ingest.subscribe("/velocities/airspeed-kt"));
+        bind("bank", ai.bankAngleProperty(), ingest.subscribe("/orientation/roll-deg"));
+        bind("pitch", ai.pitchAngleProperty(), ingest.subscribe("/orientation/pitch-deg").negate());
+        bind("altitude", alt.valueProperty(), ingest.subscribe("/position/altitude-ft"));
+        bind("heading", hsi.headingProperty(), ingest.subscribe("/orientation/heading-magnetic-deg"));
+        ingest.start();
+
+        // One read is one handoff, long before this
+        PauseTransition wait = new PauseTransition(Duration.millis(500));
+        wait.setOnFinished(e -> finish());
+        wait.play();
+    }
+
+    private void bind(String name, DoubleProperty target, ObservableValue<? extends Number> channel) {
+        Check check = new Check(name, target, target.get());
+        target.bind(channel);
+        checks.add(check);
+    }
+
+    private void finish() {
+        boolean failed = false;
+        System.out.printf("%-10s %10s %10s%n", "channel", "before", "after");
+        for (Check check : checks) {
+            double after = check.target.get();
+            boolean wrong = after == check.before || Double.isNaN(after);
+            failed |= wrong;
+            System.out.printf("%-10s %10.2f %10.2f%s%n", check.name, check.before, after,
+                    wrong ? "  UNCHANGED" : "");
+        }
+        System.out.printf("frames %d, unmapped %d, CRC errors %d%n", ingest.getFrames(), ingest.getUnmappedFrames(),
+                ingest.getCrcErrors());
+
+        try {
+            ingest.close();
+        } catch (Exception ex) {
+            // Exiting anyway
+        }
+        Platform.exit();
+        System.exit(failed ? 1 : 0);
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    private static class Check
+    {
+
+        private final String name;
+        private final ReadOnlyDoubleProperty target;
+        private final double before;
+
+        Check(String name, ReadOnlyDoubleProperty target, double before) {
+            this.name = name;
+            this.target = target;
+            this.before = before;
+        }
+    }
+}
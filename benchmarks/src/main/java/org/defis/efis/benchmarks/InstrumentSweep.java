@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.function.Supplier;
+import javafx.scene.Node;
+
+/**
+ * A scripted run of one instrument: how to build it, how to drive its inputs for a given frame number, and the frame
+ * budget it has to meet. The driver must be a pure function of the frame number so golden snapshots taken at the same
+ * frame are comparable between runs.
+ *
+ * @param <T> the instrument type
+ * @author Matthew Tyler
+ */
+public class InstrumentSweep<T extends Node>
+{
+
+    private final String name;
+    private final double defaultBudgetMs;
+    private final Supplier<T> factory;
+    private final Driver<T> driver;
+
+    public InstrumentSweep(String name, double defaultBudgetMs, Supplier<T> factory, Driver<T> driver) {
+        this.name = name;
+        this.defaultBudgetMs = defaultBudgetMs;
+        this.factory = factory;
+        this.driver = driver;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getDefaultBudgetMs() {
+        return defaultBudgetMs;
+    }
+
+    public T create() {
+        return factory.get();
+    }
+
+    public void drive(T instrument, int frame) {
+        driver.drive(instrument, frame);
+    }
+
+    /**
+     * Triangle wave between min and max with the given period in frames.
+     *
+     * @param frame
+     * @param period
+     * @param min
+     * @param max
+     * @return
+     */
+    public static double triangle(int frame, int period, double min, double max) {
+        double phase = (frame % period) / (double) period;
+        double t = phase < 0.5 ? phase * 2 : 2 - phase * 2;
+        return min + (max - min) * t;
+    }
+
+    public interface Driver<T>
+    {
+
+        void drive(T instrument, int frame);
+    }
+}
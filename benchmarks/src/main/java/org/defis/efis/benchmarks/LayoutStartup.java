@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import org.defis.efis.layout.PFDScreenLayout;
+
+/**
+ * Measures bringing up the PFD screen layout in a cold JVM, the way it happens at startup: loading it with
+ * FXMLLoader, or constructing the layout compiled from the same FXML. Prints how long it took to build the layout
+ * and to show it. Only the first build of a JVM counts, so run each way in its own JVM:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.defis.efis.benchmarks.LayoutStartup --layout=fxml
+ * java -cp target/benchmarks.jar org.defis.efis.benchmarks.LayoutStartup --layout=compiled
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class LayoutStartup extends Application
+{
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        String layout = getParameters().getNamed().getOrDefault("layout", "compiled");
+
+        long start = System.nanoTime();
+        Parent root;
+        if (layout.equals("fxml")) {
+            root = FXMLLoader.load(getClass().getResource("/fxml/PFDScreen.fxml"));
+        } else {
+            PFDScreenLayout compiled = new PFDScreenLayout();
+            compiled.addDeferred();
+            root = compiled.root;
+        }
+        long built = System.nanoTime();
+
+        stage.setScene(new Scene(root));
+        stage.show();
+        long shown = System.nanoTime();
+
+        System.out.printf("%s: built in %.1f ms, shown in %.1f ms%n", layout, (built - start) / 1e6,
+                (shown - start) / 1e6);
+        Platform.exit();
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
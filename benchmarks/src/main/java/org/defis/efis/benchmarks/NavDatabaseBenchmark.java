@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.nav.NavDatabase;
+import org.defis.efis.nav.NavDatabaseCompiler;
+import org.defis.efis.nav.NavType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries of the navigation database on a made-up world about the size of a real one: opening it, the nearest
+ * airports from a position that moves around, and ident lookups.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NavDatabaseBenchmark
+{
+
+    private World world;
+    private final int[] results = new int[10];
+    private final double[] distances = new double[10];
+    private int step;
+
+    @Setup
+    public void setUp() throws IOException {
+        world = new World();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        world.close();
+    }
+
+    @Benchmark
+    public int nearestAirports() {
+        step++;
+        return world.database.nearest(-50 + step % 110, -170 + step * 7 % 340, NavType.AIRPORT.mask(), 0, results,
+                distances);
+    }
+
+    @Benchmark
+    public int findPrefix() {
+        step++;
+        return world.database.findPrefix(World.PREFIXES[step % World.PREFIXES.length], results);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        try (NavDatabase database = new NavDatabase(world.file)) {
+            return database.getEntries();
+        }
+    }
+
+    /**
+     * A navigation database in a temporary file, with 40000 airports, 5000 navaids and 20000 waypoints scattered
+     * between 60 south and 70 north.
+     */
+    static class World implements AutoCloseable
+    {
+
+        static final String[] PREFIXES = {"K", "KS", "KSE", "A3", "N00", "VQ", "ZZZZ"};
+
+        final Path file;
+        final NavDatabase database;
+
+        World() throws IOException {
+            Random random = new Random(42);
+            NavDatabaseCompiler compiler = new NavDatabaseCompiler();
+            for (int i = 0; i < 40_000; i++) {
+                String ident = "K" + Integer.toString(i, 36).toUpperCase(Locale.ROOT);
+                compiler.addAirport(ident, "Airport " + i, latitude(random), longitude(random), random.nextInt(5000));
+                compiler.addRunway(ident, "09/27", 2000 + random.nextInt(8000), 75, 90, random.nextBoolean());
+            }
+            for (int i = 0; i < 5_000; i++) {
+                compiler.addNavaid("V" + Integer.toString(i, 36).toUpperCase(Locale.ROOT), "Navaid " + i, NavType.VOR,
+                        latitude(random), longitude(random), 108_000 + random.nextInt(10_000));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                compiler.addWaypoint("N" + Integer.toString(i, 36).toUpperCase(Locale.ROOT), latitude(random),
+                        longitude(random));
+            }
+
+            file = Files.createTempFile("defis", ".dnav");
+            compiler.write(file);
+            database = new NavDatabase(file);
+        }
+
+        private static double latitude(Random random) {
+            return -60 + random.nextDouble() * 130;
+        }
+
+        private static double longitude(Random random) {
+            return -180 + random.nextDouble() * 360;
+        }
+
+        @Override
+        public void close() throws IOException {
+            database.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
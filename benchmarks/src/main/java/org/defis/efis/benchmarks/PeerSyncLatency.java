@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.stage.Stage;
+import org.defis.efis.Registry;
+import org.defis.efis.sync.PeerSync;
+
+/**
+ * Runs several display units in one process, synchronized over the multicast group on the loopback interface, and
+ * measures how long a change on unit 1 takes to reach the others: from setting the channels on unit 1's FX thread to
+ * the merged channel changing on the FX thread, where an instrument bound to it would see it. Unit 1 changes every
+ * shared channel at the telemetry rate. Exits with status 1 when the 99th percentile is over one frame at 60 Hz or a
+ * unit lost datagrams.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.defis.efis.benchmarks.PeerSyncLatency --units=3 --hz=100
+ * </pre>
+ *
+ * Named parameters: {@code --units=N} (3), {@code --channels=N} shared by unit 1 (30), {@code --hz=N} (100),
+ * {@code --seconds=N} (10) and {@code --port=N}.
+ *
+ * @author Matthew Tyler
+ */
+public class PeerSyncLatency extends Application
+{
+
+    private static final double FRAME_MS = 1000.0 / 60;
+
+    private final List<PeerSync> units = new ArrayList<>();
+    private final ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sync-driver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DoubleProperty[] sources;
+    private long[] sentAt;
+    private FrameStats[] latency;
+    private int tick;
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        Map<String, String> named = getParameters().getNamed();
+        int count = Integer.valueOf(named.getOrDefault("units", "3"));
+        int channels = Integer.valueOf(named.getOrDefault("channels", "30"));
+        int hz = Integer.valueOf(named.getOrDefault("hz", "100"));
+        int seconds = Integer.valueOf(named.getOrDefault("seconds", "10"));
+        int port = Integer.valueOf(named.getOrDefault("port", Integer.toString(PeerSync.DEFAULT_PORT)));
+        int ticks = hz * seconds;
+
+        List<String> shared = new ArrayList<>();
+        for (int c = 0; c < channels; c++) {
+            shared.add("/bench/channel[" + c + "]");
+        }
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName(PeerSync.DEFAULT_GROUP), port);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+
+        sentAt = new long[ticks + 1];
+        latency = new FrameStats[count + 1];
+        for (int u = 1; u <= count; u++) {
+            Registry registry = new Registry();
+            if (u == 1) {
+                sources = new DoubleProperty[channels];
+                for (int c = 0; c < channels; c++) {
+                    sources[c] = new SimpleDoubleProperty();
+                    registry.publish(shared.get(c), sources[c]);
+                }
+            } else {
+                FrameStats stats = new FrameStats(ticks);
+                latency[u] = stats;
+                // The last channel of a change, each channel carrying the tick that set it
+                ReadOnlyDoubleProperty merged = registry.subscribe(PeerSync.prefix(1) + shared.get(channels - 1));
+                merged.addListener(l -> {
+                    int received = (int) merged.get();
+                    if (received > 0 && received <= ticks && stats.getCount() < ticks) {
+                        stats.record(System.nanoTime() - sentAt[received]);
+                    }
+                });
+            }
+            PeerSync unit = new PeerSync(u, registry, u == 1 ? shared : new ArrayList<>(), group, loopback);
+            unit.start();
+            units.add(unit);
+        }
+
+        // Give every unit a keyframe from unit 1 first, so the first deltas are understood
+        driver.schedule(() -> driver.scheduleAtFixedRate(() -> Platform.runLater(this::change),
+                0, 1_000_000 / hz, TimeUnit.MICROSECONDS), 1500, TimeUnit.MILLISECONDS);
+        driver.schedule(() -> Platform.runLater(this::finish), 2500 + seconds * 1000L, TimeUnit.MILLISECONDS);
+    }
+
+    private void change() {
+        if (tick + 1 >= sentAt.length) {
+            return;
+        }
+        tick++;
+        sentAt[tick] = System.nanoTime();
+        for (DoubleProperty source : sources) {
+            source.set(tick);
+        }
+    }
+
+    private void finish() {
+        boolean failed = false;
+        System.out.printf("%-6s %8s %8s %8s %8s %8s %8s%n", "unit", "changes", "mean", "p99", "max", "received",
+                "lost");
+        for (int u = 2; u < latency.length; u++) {
+            FrameStats stats = latency[u];
+            long lost = units.get(0).getLost(u) + units.get(u - 1).getLost(1);
+            System.out.printf("%-6d %8d %8.3f %8.3f %8.3f %8d %8d%n", u, stats.getCount(), stats.meanMs(),
+                    stats.percentileMs(99), stats.maxMs(), units.get(u - 1).getReceived(1), lost);
+            if (stats.getCount() == 0 || stats.percentileMs(99) > FRAME_MS || lost > 0) {
+                failed = true;
+            }
+        }
+        for (PeerSync unit : units) {
+            try {
+                unit.close();
+            } catch (IOException ex) {
+                // Exiting anyway
+            }
+        }
+        Platform.exit();
+        System.exit(failed ? 1 : 0);
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
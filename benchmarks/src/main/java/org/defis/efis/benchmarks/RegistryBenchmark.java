@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import org.defis.efis.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publish/subscribe fan-out through the Registry intermediary. Each subscriber reads the value back from its listener
+ * the same way the gauges do, so the whole invalidate-revalidate chain is measured.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegistryBenchmark
+{
+
+    private static final String PATH = "/pitot[0]/airspeed-kts";
+
+    @Param({"1", "8", "64"})
+    public int subscribers;
+
+    private Registry registry;
+    private DoubleProperty source;
+    private double sink;
+    private double value;
+
+    @Setup
+    public void setUp() {
+        registry = new Registry();
+        source = new SimpleDoubleProperty();
+        registry.publish(PATH, source);
+
+        for (int i = 0; i < subscribers; i++) {
+            DoubleProperty consumer = new SimpleDoubleProperty();
+            consumer.bind(registry.subscribe(PATH));
+            consumer.addListener(l -> sink += consumer.get());
+        }
+    }
+
+    @Benchmark
+    public double publishFanOut() {
+        value += 0.25;
+        source.set(value);
+        return sink;
+    }
+
+    @Benchmark
+    public Object subscribeExisting() {
+        return registry.subscribe(PATH);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import org.defis.efis.AttitudeIndicatorInstrument;
+import org.defis.efis.SpeedTapeInstrument;
+import org.defis.efis.gauges.AltitudeTape;
+import org.defis.efis.gauges.HeadingIndicatorGauge;
+import org.defis.efis.gauges.HeadingTape;
+import org.defis.efis.gauges.HorizontalSituationIndicator;
+
+import static org.defis.efis.benchmarks.InstrumentSweep.triangle;
+
+/**
+ * Drives each instrument through a scripted value sweep on a real stage and measures, per frame, the time spent
+ * drawing (setting the inputs, which repaints synchronously) and the time between pulses (draw plus scene graph
+ * sync and rasterization). Exits with status 1 when an instrument's 95th percentile pulse time exceeds its budget or
+ * a snapshot differs from its golden image.
+ *
+ * Run headless with Monocle on the classpath (see the headless profile in pom.xml):
+ *
+ * <pre>
+ * java -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw -Djavafx.animation.fullspeed=true \
+ *     -cp target/benchmarks.jar org.defis.efis.benchmarks.RenderHarness --budget.attitude=12
+ * </pre>
+ *
+ * Without {@code javafx.animation.fullspeed} pulses are throttled to the display rate and the pulse time only shows
+ * whether the frame fit in it.
+ *
+ * The -offscreen sweeps run the same instruments rasterized on worker threads, where the FX thread only sets the
+ * inputs and uploads finished frames, to compare against the canvas path.
+ *
+ * Named parameters: {@code --frames=N} measured frames per instrument (600), {@code --warmup=N} (120),
+ * {@code --only=name}, {@code --budget.<name>=ms}, {@code --golden=compare|update|off} (compare) and
+ * {@code --goldenDir=path} (src/main/resources/golden).
+ *
+ * @author Matthew Tyler
+ */
+public class RenderHarness extends Application
+{
+
+    /**
+     * Frames, counted after warmup, at which snapshots are compared with the golden images.
+     */
+    private static final int[] SNAPSHOT_FRAMES = {0, 75, 150, 300};
+
+    private static final List<InstrumentSweep<?>> SWEEPS = Arrays.asList(
+            new InstrumentSweep<>("speed-tape", 4, SpeedTapeInstrument::new,
+                    (st, frame) -> st.setAirSpeed(triangle(frame, 600, 0, 160))),
+            new InstrumentSweep<>("altitude-tape", 4, () -> new AltitudeTape(60, 250),
+                    (alt, frame) -> alt.valueProperty().set(triangle(frame, 900, -1200, 12000))),
+            new InstrumentSweep<>("altitude-tape-direct", 4, () -> {
+                AltitudeTape alt = new AltitudeTape(60, 250);
+                alt.setStripCached(false);
+                return alt;
+            }, (alt, frame) -> alt.valueProperty().set(triangle(frame, 900, -1200, 12000))),
+            new InstrumentSweep<>("attitude", 8, AttitudeIndicatorInstrument::new,
+                    (ai, frame) -> {
+                        ai.bankAngleProperty().set(triangle(frame, 450, -60, 60));
+                        ai.pitchAngleProperty().set(triangle(frame, 240, -30, 30));
+                    }),
+            new InstrumentSweep<>("heading-tape", 4, () -> new HeadingTape(300, 50),
+                    (ht, frame) -> ht.valueProperty().set(triangle(frame, 600, -360, 720))),
+            new InstrumentSweep<>("heading", 4, () -> new HeadingIndicatorGauge(150, 150),
+                    (hi, frame) -> hi.headingProperty().set(triangle(frame, 720, 0, 360))),
+            new InstrumentSweep<>("hsi", 4, () -> new HorizontalSituationIndicator(150, 150),
+                    (hsi, frame) -> {
+                        hsi.headingProperty().set(triangle(frame, 720, 0, 360));
+                        hsi.deviationProperty().set(triangle(frame, 300, -1, 1));
+                    }),
+            new InstrumentSweep<>("speed-tape-offscreen", 4, () -> {
+                SpeedTapeInstrument st = new SpeedTapeInstrument();
+                st.setOffscreen(true);
+                return st;
+            }, (st, frame) -> st.setAirSpeed(triangle(frame, 600, 0, 160))),
+            new InstrumentSweep<>("altitude-tape-offscreen", 4, () -> {
+                AltitudeTape alt = new AltitudeTape(60, 250);
+                alt.setOffscreen(true);
+                return alt;
+            }, (alt, frame) -> alt.valueProperty().set(triangle(frame, 900, -1200, 12000))),
+            new InstrumentSweep<>("attitude-offscreen", 8, () -> {
+                AttitudeIndicatorInstrument ai = new AttitudeIndicatorInstrument();
+                ai.setOffscreen(true);
+                return ai;
+            }, (ai, frame) -> {
+                ai.bankAngleProperty().set(triangle(frame, 450, -60, 60));
+                ai.pitchAngleProperty().set(triangle(frame, 240, -30, 30));
+            })
+    );
+
+    private final Group root = new Group();
+    private final List<String> failures = new ArrayList<>();
+
+    private int frames;
+    private int warmup;
+    private GoldenImages golden;
+    private Map<String, String> named;
+
+    @Override
+    public void start(Stage stage) throws Exception {
+        named = getParameters().getNamed();
+        frames = Integer.valueOf(named.getOrDefault("frames", "600"));
+        warmup = Integer.valueOf(named.getOrDefault("warmup", "120"));
+
+        String goldenMode = named.getOrDefault("golden", "compare");
+        if (!goldenMode.equals("off")) {
+            golden = new GoldenImages(new File(named.getOrDefault("goldenDir", "src/main/resources/golden")),
+                    goldenMode.equals("update"));
+        }
+
+        stage.setScene(new Scene(root, 800, 480, Color.BLACK));
+        stage.show();
+
+        List<InstrumentSweep<?>> selected = new ArrayList<>();
+        for (InstrumentSweep<?> sweep : SWEEPS) {
+            if (!named.containsKey("only") || named.get("only").equals(sweep.getName())) {
+                selected.add(sweep);
+            }
+        }
+
+        System.out.printf("%-14s %8s %8s %8s %8s %8s %8s%n",
+                "instrument", "draw", "draw95", "pulse", "pulse95", "pulseMax", "budget");
+        runNext(selected.iterator());
+    }
+
+    private void runNext(Iterator<InstrumentSweep<?>> sweeps) {
+        if (!sweeps.hasNext()) {
+            finish();
+            return;
+        }
+        run(sweeps.next(), () -> runNext(sweeps));
+    }
+
+    private <T extends Node> void run(InstrumentSweep<T> sweep, Runnable next) {
+        T instrument = sweep.create();
+        root.getChildren().setAll(instrument);
+
+        double budgetMs = Double.valueOf(named.getOrDefault("budget." + sweep.getName(),
+                Double.toString(sweep.getDefaultBudgetMs())));
+        FrameStats draw = new FrameStats(frames);
+        FrameStats pulse = new FrameStats(frames);
+
+        new AnimationTimer()
+        {
+            private int frame = -warmup;
+            private long lastPulse;
+            private boolean skipPulse = true;
+
+            @Override
+            public void handle(long now) {
+                if (frame >= 0 && !skipPulse) {
+                    pulse.record(now - lastPulse);
+                }
+                lastPulse = now;
+                skipPulse = false;
+
+                if (frame == frames) {
+                    stop();
+                    report(sweep.getName(), draw, pulse, budgetMs);
+                    next.run();
+                    return;
+                }
+
+                long start = System.nanoTime();
+                sweep.drive(instrument, frame + warmup);
+                if (frame >= 0) {
+                    draw.record(System.nanoTime() - start);
+                }
+
+                if (frame >= 0 && golden != null && Arrays.binarySearch(SNAPSHOT_FRAMES, frame) >= 0) {
+                    snapshot(sweep.getName(), instrument, frame);
+                    // The snapshot renders outside the pulse, don't charge it to the next frame
+                    skipPulse = true;
+                }
+                frame++;
+            }
+        }.start();
+    }
+
+    private void snapshot(String name, Node instrument, int frame) {
+        WritableImage image = instrument.snapshot(null, null);
+        try {
+            String difference = golden.check(name, frame, image);
+            if (difference != null) {
+                failures.add(name + " frame " + frame + " differs from golden image: " + difference);
+            }
+        } catch (IOException ex) {
+            failures.add(name + " frame " + frame + " snapshot failed: " + ex.getMessage());
+        }
+    }
+
+    private void report(String name, FrameStats draw, FrameStats pulse, double budgetMs) {
+        System.out.printf("%-14s %8.3f %8.3f %8.3f %8.3f %8.3f %8.3f%n", name,
+                draw.meanMs(), draw.percentileMs(95),
+                pulse.meanMs(), pulse.percentileMs(95), pulse.maxMs(), budgetMs);
+
+        if (pulse.percentileMs(95) > budgetMs) {
+            failures.add(String.format("%s p95 frame time %.3f ms exceeds budget %.3f ms",
+                    name, pulse.percentileMs(95), budgetMs));
+        }
+    }
+
+    private void finish() {
+        for (String failure : failures) {
+            System.out.println("FAIL: " + failure);
+        }
+        Platform.exit();
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
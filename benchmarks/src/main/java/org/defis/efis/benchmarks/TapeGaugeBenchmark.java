@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javafx.scene.canvas.GraphicsContext;
+import org.defis.efis.gauges.AltitudeTape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-frame cost of the tape gauges: tick math, label generation and a full value update. The canvas only records
+ * commands here, rasterization happens on the FX render thread and is not part of these numbers. JMH runs off the FX
+ * thread, so the ticks are drawn directly rather than blitted from the cached strip; {@link AllocationBudgets}
+ * measures the strip path.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TapeGaugeBenchmark
+{
+
+    private BenchTape tape;
+    private double value;
+    private double noise;
+
+    @Setup
+    public void setUp() {
+        tape = new BenchTape();
+        tape.valueProperty().set(4520);
+    }
+
+    private double nextValue() {
+        value = value > 12000 ? -1000 : value + 3.7;
+        return value;
+    }
+
+    /**
+     * Setting the value repaints the whole gauge, so the ticks alone are measured at a fixed cruise altitude.
+     */
+    @Benchmark
+    public Object drawTicks() {
+        return tape.ticksOnly();
+    }
+
+    @Benchmark
+    public String generateTickLabel() {
+        double value = nextValue();
+        return tape.tickLabel(value - value % 100);
+    }
+
+    @Benchmark
+    public double fullUpdate() {
+        tape.valueProperty().set(nextValue());
+        return tape.getValue();
+    }
+
+    /**
+     * Cruise with sub-pixel sensor noise, which should cost the listener and nothing else.
+     */
+    @Benchmark
+    public double sensorNoise() {
+        noise = noise > 0.4 ? -0.4 : noise + 0.13;
+        tape.valueProperty().set(4520 + noise);
+        return tape.getValue();
+    }
+
+    /**
+     * Exposes the protected drawing steps of the altitude tape.
+     */
+    static class BenchTape extends AltitudeTape
+    {
+
+        BenchTape() {
+            super(60, 250);
+        }
+
+        /**
+         * Draws the ticks the way the gauge does, blitting the cached strip on the FX thread. JMH calls it off the
+         * FX thread, where the ticks are drawn directly.
+         */
+        Object ticksOnly() {
+            GraphicsContext gc = getGraphicsContext();
+            clear(gc);
+            drawTape(gc, getValue());
+            gc.setTransform(1, 0, 0, 1, 0, 0);
+            return gc;
+        }
+
+        String tickLabel(double val) {
+            return generateTickLabel(val);
+        }
+    }
+}
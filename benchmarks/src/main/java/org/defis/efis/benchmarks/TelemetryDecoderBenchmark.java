@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.ingest.TelemetryDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding one second of {@link FakeTelemetryNode} traffic, 460 frames, out of a direct buffer into an array of
+ * values, clean and with a corrupted byte every fifty ticks for the decoder to resynchronize past.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TelemetryDecoderBenchmark
+{
+
+    static final int TICKS = 100;
+
+    @Param({"0", "50"})
+    public int corruptEvery;
+
+    private final double[] values = new double[1 << 16];
+    private final TelemetryDecoder decoder = new TelemetryDecoder((channel, value) -> values[channel] = value);
+    private ByteBuffer second;
+
+    @Setup
+    public void setUp() {
+        second = traffic(TICKS, corruptEvery);
+    }
+
+    @Benchmark
+    public int decode() {
+        second.rewind();
+        return decoder.decode(second);
+    }
+
+    /**
+     * The node's frames for a number of ticks in a direct buffer ready to read, with one byte corrupted every
+     * corruptEvery ticks when that is not 0.
+     */
+    static ByteBuffer traffic(int ticks, int corruptEvery) {
+        ByteBuffer out = ByteBuffer.allocateDirect(ticks * FakeTelemetryNode.TICK_BYTES);
+        for (int tick = 0; tick < ticks; tick++) {
+            int start = out.position();
+            FakeTelemetryNode.tick(out, tick);
+            if (corruptEvery > 0 && tick % corruptEvery == corruptEvery - 1) {
+                int at = start + tick * 31 % (out.position() - start);
+                out.put(at, (byte) ~out.get(at));
+            }
+        }
+        out.flip();
+        return out;
+    }
+}
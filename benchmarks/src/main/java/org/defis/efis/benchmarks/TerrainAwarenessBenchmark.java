@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.taws.ObstacleDatabase;
+import org.defis.efis.taws.ObstacleDatabaseWriter;
+import org.defis.efis.taws.TerrainAwareness;
+import org.defis.efis.terrain.TerrainDatabase;
+import org.defis.efis.terrain.TerrainDatabaseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One look-ahead assessment of the terrain awareness engine, over made-up hilly terrain with obstacles scattered
+ * across the same tile, and one obstacle query on its own.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TerrainAwarenessBenchmark
+{
+
+    @Param({"1000", "10000", "100000"})
+    public int obstacles;
+
+    private Databases databases;
+    private TerrainAwareness taws;
+    private double track;
+
+    @Setup
+    public void setUp() throws IOException {
+        databases = new Databases(obstacles);
+        taws = new TerrainAwareness(databases.terrain, databases.obstacles);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        databases.close();
+    }
+
+    @Benchmark
+    public int assess() {
+        track = track > 359 ? 0 : track + 7.3;
+        return taws.assess(Databases.LAT, Databases.LON, 2500, track, 120, -500);
+    }
+
+    @Benchmark
+    public double highestTop() {
+        track = track > 359 ? 0 : track + 7.3;
+        return databases.obstacles.highestTop(Databases.LAT + track / 1000, Databases.LON, 300);
+    }
+
+    /**
+     * A terrain tile and an obstacle database in temporary files, around {@link #LAT}, {@link #LON}.
+     */
+    static class Databases implements AutoCloseable
+    {
+
+        static final double LAT = 47.5;
+        static final double LON = -121.5;
+        private static final int SAMPLES = 241;
+
+        final TerrainDatabase terrain;
+        final ObstacleDatabase obstacles;
+        private final Path terrainFile;
+        private final Path obstacleFile;
+
+        Databases(int obstacleCount) throws IOException {
+            short[] elevations = new short[SAMPLES * SAMPLES];
+            for (int row = 0; row < SAMPLES; row++) {
+                for (int col = 0; col < SAMPLES; col++) {
+                    elevations[row * SAMPLES + col] = (short) (600 + 400 * Math.sin(row / 9.0) * Math.cos(col / 13.0));
+                }
+            }
+            TerrainDatabaseWriter terrainWriter = new TerrainDatabaseWriter(SAMPLES);
+            terrainWriter.addTile((int) Math.floor(LAT), (int) Math.floor(LON), elevations);
+            terrainFile = Files.createTempFile("defis", ".dter");
+            terrainWriter.write(terrainFile);
+
+            Random random = new Random(42);
+            ObstacleDatabaseWriter obstacleWriter = new ObstacleDatabaseWriter(60);
+            for (int i = 0; i < obstacleCount; i++) {
+                obstacleWriter.add(Math.floor(LAT) + random.nextDouble(), Math.floor(LON) + random.nextDouble(),
+                        1000 + random.nextInt(300));
+            }
+            obstacleFile = Files.createTempFile("defis", ".dobs");
+            obstacleWriter.write(obstacleFile);
+
+            terrain = new TerrainDatabase(terrainFile);
+            obstacles = new ObstacleDatabase(obstacleFile);
+        }
+
+        @Override
+        public void close() throws IOException {
+            terrain.close();
+            obstacles.close();
+            Files.deleteIfExists(terrainFile);
+            Files.deleteIfExists(obstacleFile);
+        }
+    }
+}
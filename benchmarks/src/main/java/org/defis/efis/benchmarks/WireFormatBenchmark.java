@@ -0,0 +1,204 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.defis.efis.wire.BatchDecoder;
+import org.defis.efis.wire.BatchEncoder;
+import org.defis.efis.wire.WireSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A recorded flight of the fifteen FlightGear channels at 50 Hz, with sensor noise, read back as the text the telnet
+ * server sends and as {@link org.defis.efis.wire.WireFormat} batches. Times are per sample of all fifteen channels.
+ * Run {@link #main} for the bytes each takes.
+ *
+ * @author Matthew Tyler
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark
+{
+
+    static final int TICKS = 1000;
+    static final int CHANNELS = 15;
+    static final int KEYFRAME_TICKS = 50;
+
+    /**
+     * Microseconds between samples.
+     */
+    private static final long PERIOD = 20_000;
+
+    private final double[][] flight = flight(TICKS);
+    private final double[] values = new double[CHANNELS];
+    private final BatchEncoder encoder = new BatchEncoder(schema(), CHANNELS);
+    private final BatchDecoder decoder = new BatchDecoder(schema(), CHANNELS);
+    private final BatchDecoder.Sink sink = new BatchDecoder.Sink()
+    {
+        @Override
+        public void time(long micros) {
+        }
+
+        @Override
+        public void value(int channel, double value) {
+            values[channel] = value;
+        }
+    };
+    private final ByteBuffer out = ByteBuffer.allocateDirect(TICKS * BatchEncoder.maxBatchBytes(CHANNELS));
+    private ByteBuffer binary;
+    private ByteBuffer text;
+
+    @Setup
+    public void setUp() {
+        binary = encode(encoder, flight, ByteBuffer.allocateDirect(TICKS * BatchEncoder.maxBatchBytes(CHANNELS)));
+        text = text(flight);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public ByteBuffer encode() {
+        out.clear();
+        return encode(encoder, flight, out);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double[] decode() {
+        binary.rewind();
+        decoder.decode(binary, sink);
+        return values;
+    }
+
+    /**
+     * What polling FlightGear does with each reply: make a string of the line and parse it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double[] parseText() {
+        byte[] line = new byte[32];
+        int channel = 0;
+        int length = 0;
+        for (int i = 0; i < text.limit(); i++) {
+            byte b = text.get(i);
+            if (b == '\r') {
+                continue;
+            }
+            if (b != '\n') {
+                line[length++] = b;
+                continue;
+            }
+            values[channel] = Double.parseDouble(new String(line, 0, length, StandardCharsets.US_ASCII));
+            channel = channel + 1 == CHANNELS ? 0 : channel + 1;
+            length = 0;
+        }
+        return values;
+    }
+
+    /**
+     * Quanta well inside what the instruments show: hundredths of a degree and knot, tenths of a foot. Latitude
+     * and longitude go exact.
+     */
+    static WireSchema schema() {
+        WireSchema schema = new WireSchema();
+        double[] quanta = {0.01, 0.01, 0.01, 0.01, 0.01, 0.01, 0.001, 0, 0, 0.1, 0.01, 0.01, 0.01, 1, 0.1};
+        for (int c = 0; c < CHANNELS; c++) {
+            schema.quantize(c, quanta[c]);
+        }
+        return schema;
+    }
+
+    /**
+     * The channels of FGFSIntegrator, in its order, for a climbing turn.
+     */
+    static double[][] flight(int ticks) {
+        Random noise = new Random(1);
+        double[][] flight = new double[ticks][CHANNELS];
+        for (int tick = 0; tick < ticks; tick++) {
+            double t = tick * PERIOD / 1e6;
+            double[] v = flight[tick];
+            double heading = (90 + 3 * t) % 360;
+            v[0] = 112 + 4 * Math.sin(t / 7) + noise.nextGaussian() * 0.05;
+            v[1] = 18 + noise.nextGaussian() * 0.05;
+            v[2] = 4 + noise.nextGaussian() * 0.05;
+            v[3] = heading + noise.nextGaussian() * 0.05;
+            v[4] = 270;
+            v[5] = 265;
+            v[6] = Math.max(-1, Math.min(1, (heading - 265) / 10));
+            v[7] = 47.4502 + 0.0004 * Math.sin(Math.toRadians(heading)) * t / 60;
+            v[8] = -122.3088 + 0.0006 * Math.cos(Math.toRadians(heading)) * t / 60;
+            v[9] = 4500 + 8.3 * t + noise.nextGaussian() * 0.3;
+            v[10] = (heading + 16.5) % 360;
+            v[11] = 118 + 4 * Math.sin(t / 7);
+            v[12] = 8.3 + noise.nextGaussian() * 0.2;
+            v[13] = 6500;
+            v[14] = 3100 + 8.3 * t + noise.nextGaussian() * 0.3;
+        }
+        return flight;
+    }
+
+    /**
+     * Encodes a flight into the buffer, a keyframe every second, and flips it for reading.
+     */
+    static ByteBuffer encode(BatchEncoder encoder, double[][] flight, ByteBuffer out) {
+        for (int tick = 0; tick < flight.length; tick++) {
+            encoder.begin(out, tick * PERIOD, tick % KEYFRAME_TICKS == 0);
+            for (int c = 0; c < CHANNELS; c++) {
+                encoder.put(c, flight[tick][c]);
+            }
+            encoder.end();
+        }
+        out.flip();
+        return out;
+    }
+
+    static ByteBuffer text(double[][] flight) {
+        StringBuilder text = new StringBuilder();
+        for (double[] sample : flight) {
+            for (double value : sample) {
+                text.append(value).append("\r\n");
+            }
+        }
+        return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static void main(String[] args) {
+        double[][] flight = flight(TICKS);
+        ByteBuffer out = ByteBuffer.allocate(TICKS * BatchEncoder.maxBatchBytes(CHANNELS));
+        int binary = encode(new BatchEncoder(schema(), CHANNELS), flight, out).limit();
+        ByteBuffer exactOut = ByteBuffer.allocate(TICKS * BatchEncoder.maxBatchBytes(CHANNELS));
+        int exact = encode(new BatchEncoder(new WireSchema(), CHANNELS), flight, exactOut).limit();
+        int text = text(flight).limit();
+        System.out.printf("bytes per sample of %d channels: text %.1f, exact %.1f, quantized %.1f%n", CHANNELS,
+                (double) text / TICKS, (double) exact / TICKS, (double) binary / TICKS);
+    }
+}
@@ -15,18 +15,39 @@
  */
 package org.defis.efis;
 
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.atomic.LongAdder;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.CacheHint;
 import javafx.scene.Group;
 import javafx.scene.Parent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.CycleMethod;
 import javafx.scene.paint.LinearGradient;
 import javafx.scene.paint.Stop;
 import javafx.scene.shape.Rectangle;
+import org.defis.efis.gauges.Java2D;
+import org.defis.efis.gauges.LabelCache;
+import org.defis.efis.gauges.OffscreenSurface;
+import org.defis.efis.gauges.RedrawTracker;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.jfr.InstrumentRedrawEvent;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
+import org.defis.efis.terrain.SyntheticVision;
+import org.defis.efis.terrain.TerrainCache;
 
 import static javafx.geometry.VPos.CENTER;
 import static javafx.scene.text.TextAlignment.LEFT;
@@ -39,6 +60,11 @@ import static javafx.scene.text.TextAlignment.RIGHT;
  *
  * Items drawn relative to the screen: Bank indicator bug, miniature plane.
  *
+ * Each group is its own node. Sky and ground are gradient filled rectangles, the bank arc and the static symbology
+ * are drawn once, and the pitch ladder is only redrawn when the pitch moves into another 2.5 degree step. Pitch and
+ * bank changes otherwise just update the transforms of the horizon group and the bank arc, which the scene graph
+ * composites.
+ *
  * A bank that is to the left is in negative degrees from zero. A bank that is to the right is in positive from zero.
  *
  * @author Matthew Tyler
@@ -46,6 +72,42 @@ import static javafx.scene.text.TextAlignment.RIGHT;
 public class AttitudeIndicatorInstrument extends Parent
 {
 
+    /**
+     * Sky, ground and pitch ladder, moved by pitch and bank.
+     */
+    private static final int HORIZON_LAYER = 1;
+
+    /**
+     * Bank arc and ticks, moved by bank only.
+     */
+    private static final int BANK_LAYER = 2;
+
+    /**
+     * Radius of the bank arc, in pixels.
+     */
+    private static final double BANK_ARC_RADIUS = 150;
+
+    /**
+     * Half the size of the bank arc canvas, enough for the arc with its ticks and level bug.
+     */
+    private static final double BANK_ARC_EXTENT = BANK_ARC_RADIUS + 20;
+
+    /**
+     * The pitch ladder shows LADDER_RANGE degrees either side of the current pitch.
+     */
+    private static final double LADDER_RANGE = 30;
+    private static final double LADDER_HALF_WIDTH = 50;
+    private static final double LADDER_MARGIN = 10;
+
+    /**
+     * Degrees of synthetic vision above and below the horizon. Further down the ground gradient shows.
+     */
+    private static final double TERRAIN_ABOVE = 20;
+    private static final double TERRAIN_BELOW = 70;
+
+    /**
+     * Static symbology: bank pointer and miniature airplane.
+     */
     private final Canvas canvas;
     private double maxX;
     private double maxY;
@@ -53,6 +115,19 @@ public class AttitudeIndicatorInstrument extends Parent
     private final double cenY;
     private final double maxHorizonRun;
     private double pitchDegToPixel = 5;
+    private double lastDrawnPitch;
+    private double lastDrawnBank;
+    private final RateMeter redraws = Metrics.get().rendering().instrument("AttitudeIndicatorInstrument");
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed("AttitudeIndicatorInstrument");
+
+    /**
+     * Pitch and bank usually change together, the scheduler then updates once for both.
+     */
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final int horizonPitchWatch;
+    private final int horizonBankWatch;
+    private final int bankWatch;
 
     /**
      * Positive angles are right banks and negative angles are left banks.
@@ -61,8 +136,40 @@ public class AttitudeIndicatorInstrument extends Parent
 
     private final DoubleProperty pitchAngle = new SimpleDoubleProperty(0);
 
-    private Group horizonGroup = new Group();
-    private StackPane horizonPane = new StackPane();
+    /**
+     * Sky, ground and pitch ladder, turned and shifted by the attitude through its own translate and rotate, which
+     * unlike {@link javafx.scene.transform.Transform}s allocate nothing when they change. The planes reach as far
+     * each way from the horizon, so the group's bounds are centered on it and it turns about the horizon.
+     */
+    private final Group horizonGroup = new Group();
+
+    /**
+     * Clips the horizon to the instrument so that the oversized planes do not count towards its bounds.
+     */
+    private final Group horizonView = new Group(horizonGroup);
+
+    /**
+     * Only redrawn when the pitch moves into another 2.5 degree step, otherwise it moves with the horizon.
+     */
+    private final Canvas pitchLadder;
+    private double ladderDrawnAt = Double.NaN;
+    private final LabelCache pitchLabels = new LabelCache(10, val -> Integer.toString((int) val));
+
+    /**
+     * Turned about its center, which is the center of the arc.
+     */
+    private final Canvas bankArc;
+
+    /**
+     * Terrain between the sky and ground and the pitch ladder, when there is a terrain database.
+     */
+    private SyntheticVision syntheticVision;
+
+    /**
+     * Set when the instrument is rasterized on a worker thread into the surface instead of composited from its layers.
+     */
+    private boolean offscreen;
+    private OffscreenSurface surface;
 
     private Stop[] groundStops = new Stop[]{new Stop(0, Color.CHOCOLATE), new Stop(.15, Color.CHOCOLATE.darker().darker())};
     private Stop[] skyStops = new Stop[]{new Stop(0, Color.DODGERBLUE), new Stop(.15, Color.DODGERBLUE.darker().darker())};
@@ -87,52 +194,55 @@ public class AttitudeIndicatorInstrument extends Parent
         cenY = maxY / 2 - 65;
 
         maxHorizonRun = Math.sqrt(maxX * maxX + maxY * maxY);
-        bankAngle.addListener(l -> update2());
-        pitchAngle.addListener(l -> update2());
 
-        getChildren().add(canvas);
+        // One pixel of travel: at the pitch scale, at the far corners of the canvas and on the bank arc
+        horizonPitchWatch = redrawTracker.watch(HORIZON_LAYER, 1 / pitchDegToPixel);
+        horizonBankWatch = redrawTracker.watch(HORIZON_LAYER, Math.toDegrees(2 / maxHorizonRun));
+        bankWatch = redrawTracker.watch(BANK_LAYER, Math.toDegrees(1 / BANK_ARC_RADIUS));
+        bankAngle.addListener(l -> attitudeChanged());
+        pitchAngle.addListener(l -> attitudeChanged());
+
+        double ladderHeight = 2 * (LADDER_RANGE * pitchDegToPixel + LADDER_MARGIN);
+        pitchLadder = new Canvas(2 * LADDER_HALF_WIDTH, ladderHeight);
+        bankArc = new Canvas(2 * BANK_ARC_EXTENT, 2 * BANK_ARC_EXTENT);
+        configureHorizonGroup();
+        configureBankArc();
+        drawStaticSymbology();
+
+        getChildren().addAll(horizonView, bankArc, canvas);
 
         update2();
     }
 
     private void configureHorizonGroup() {
-
-        horizonPane.setPrefSize(800, 480);
-        horizonPane.setMaxSize(800, 480);
-
-        Rectangle groundPlane = new Rectangle(1200, 1200);
+        Rectangle groundPlane = new Rectangle(-maxHorizonRun, 0, maxHorizonRun * 2, maxHorizonRun * 2);
         groundPlane.setFill(groundGradient);
-        groundPlane.setTranslateY(240);
-        groundPlane.setTranslateX(-200);
 
-        Rectangle skyPlane = new Rectangle(1200, 1200);
+        Rectangle skyPlane = new Rectangle(-maxHorizonRun, -maxHorizonRun * 2, maxHorizonRun * 2, maxHorizonRun * 2);
         skyPlane.setFill(skyGradient);
-        //skyPlane.setTranslateY(-1440);
-        //skyPlane.setTranslateX(-200);
 
-        horizonPane.getChildren().addAll(groundPlane, skyPlane);
-    }
+        pitchLadder.setLayoutX(-LADDER_HALF_WIDTH);
 
-    private void update2() {
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
-
-        gc.save();
-        double bankRads = getBankAngle() / 180 * Math.PI + Math.PI / 2;
-        gc.translate(cenX + getPitchAngle() * pitchDegToPixel * Math.cos(bankRads),
-                cenY - getPitchAngle() * pitchDegToPixel * Math.sin(bankRads));
-        gc.rotate(-getBankAngle());
-        drawGroundPlan(gc);
-        drawSkyPlane(gc);
-        drawPitchTicks(gc); // Needs to be the last draw op because uses clipping or refactor and make own op
-        gc.restore();
+        horizonGroup.getChildren().addAll(groundPlane, skyPlane, pitchLadder);
+        horizonView.setClip(new Rectangle(maxX, maxY));
+    }
 
+    private void configureBankArc() {
+        GraphicsContext gc = bankArc.getGraphicsContext2D();
         gc.save();
-        gc.translate(cenX, cenY);
-        gc.rotate(-getBankAngle());
+        gc.translate(BANK_ARC_EXTENT, BANK_ARC_EXTENT);
         drawBankArc(gc);
         gc.restore();
 
+        bankArc.setLayoutX(cenX - BANK_ARC_EXTENT);
+        bankArc.setLayoutY(cenY - BANK_ARC_EXTENT);
+        bankArc.setCache(true);
+        bankArc.setCacheHint(CacheHint.ROTATE);
+    }
+
+    private void drawStaticSymbology() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+
         gc.save();
         drawBankPointer(gc);
         gc.restore();
@@ -142,14 +252,77 @@ public class AttitudeIndicatorInstrument extends Parent
         gc.restore();
     }
 
-    private void drawGroundPlan(GraphicsContext gc) {
-        gc.setFill(groundGradient);
-        gc.fillRect(-maxHorizonRun, 0, maxHorizonRun * 2, maxHorizonRun * 2);
+    private void attitudeChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
     }
 
-    private void drawSkyPlane(GraphicsContext gc) {
-        gc.setFill(skyGradient);
-        gc.fillRect(-maxHorizonRun, -maxHorizonRun * 2, maxHorizonRun * 2, maxHorizonRun * 2);
+    /**
+     * Redraws only if the attitude moved something by at least a pixel since the last redraw.
+     */
+    private void render() {
+        trackAttitude();
+        if (redrawTracker.isDirty()) {
+            update2();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private void trackAttitude() {
+        redrawTracker.update(horizonPitchWatch, getPitchAngle());
+        redrawTracker.update(horizonBankWatch, getBankAngle());
+        redrawTracker.update(bankWatch, getBankAngle());
+    }
+
+    private void update2() {
+        InstrumentRedrawEvent event = InstrumentRedrawEvent.start();
+
+        trackAttitude();
+        int dirty = redrawTracker.getDirty();
+
+        if (offscreen) {
+            surface.setInput(0, getPitchAngle());
+            surface.setInput(1, getBankAngle());
+            surface.request();
+            // A frame always holds every layer
+            dirty = RedrawTracker.ALL_LAYERS;
+        } else {
+            updateLayers(dirty);
+        }
+
+        if (event != null && event.shouldCommit()) {
+            event.instrument = "AttitudeIndicatorInstrument";
+            event.valueDelta = Math.max(Math.abs(getPitchAngle() - lastDrawnPitch),
+                    Math.abs(getBankAngle() - lastDrawnBank));
+            event.commit();
+        }
+        lastDrawnPitch = getPitchAngle();
+        lastDrawnBank = getBankAngle();
+        redrawTracker.drawn(dirty);
+        redraws.mark();
+    }
+
+    private void updateLayers(int dirty) {
+        if ((dirty & HORIZON_LAYER) != 0) {
+            // Rotated by the bank about the horizon, which is the pitch offset along the bank's vertical from the
+            // center
+            double bank = Math.toRadians(-getBankAngle());
+            double pitchOffset = -getPitchAngle() * pitchDegToPixel;
+            horizonGroup.setRotate(-getBankAngle());
+            horizonGroup.setTranslateX(cenX - pitchOffset * Math.sin(bank));
+            horizonGroup.setTranslateY(cenY + pitchOffset * Math.cos(bank));
+
+            double pitchNormalized = -(getPitchAngle() - (getPitchAngle() % 2.5));
+            if (pitchNormalized != ladderDrawnAt) {
+                drawPitchLadder(pitchNormalized);
+            }
+        }
+
+        if ((dirty & BANK_LAYER) != 0) {
+            bankArc.setRotate(-getBankAngle());
+        }
     }
 
     private void drawBankArc(GraphicsContext gc) {
@@ -157,7 +330,7 @@ public class AttitudeIndicatorInstrument extends Parent
         gc.setLineWidth(2);
 
         gc.beginPath();
-        gc.arc(0, 0, 150, 150, 30, 120);
+        gc.arc(0, 0, BANK_ARC_RADIUS, BANK_ARC_RADIUS, 30, 120);
 
         // Bank angle ticks
         for (double[] ticks : BANK_TICKS) {
@@ -213,17 +386,33 @@ public class AttitudeIndicatorInstrument extends Parent
         gc.stroke();
     }
 
-    private void drawPitchTicks(GraphicsContext gc) {
+    /**
+     * Redraws the ladder around a pitch and lines it up with the horizon: its top edge is LADDER_MARGIN above the
+     * tick LADDER_RANGE degrees above that pitch.
+     *
+     * @param pitchNormalized
+     */
+    private void drawPitchLadder(double pitchNormalized) {
+        double top = (pitchNormalized + LADDER_RANGE) * pitchDegToPixel + LADDER_MARGIN;
+
+        GraphicsContext gc = pitchLadder.getGraphicsContext2D();
+        gc.clearRect(0, 0, pitchLadder.getWidth(), pitchLadder.getHeight());
+        // Reset rather than saved and restored, which would copy the graphics state every step
+        gc.translate(LADDER_HALF_WIDTH, top);
+        drawPitchTicks(gc, pitchNormalized);
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+
+        pitchLadder.setLayoutY(-top);
+        ladderDrawnAt = pitchNormalized;
+    }
+
+    private void drawPitchTicks(GraphicsContext gc, double pitchNormalized) {
 
         gc.setFill(Color.WHITE);
         gc.setStroke(Color.WHITE);
 
-//        gc.beginPath();
-        double pitchNormalized = -(getPitchAngle() - (getPitchAngle() % 2.5));
-//        gc.rect(-20, 25 * pitchDegToPixel, 20, -25 * pitchDegToPixel);
-//        gc.clip();
         gc.beginPath();
-        for (double pitch = pitchNormalized - 30; pitch < pitchNormalized + 30; pitch += 2.5) {
+        for (double pitch = pitchNormalized - LADDER_RANGE; pitch < pitchNormalized + LADDER_RANGE; pitch += 2.5) {
 //            if (pitch == 0) {
 //                continue;
 //            }
@@ -239,14 +428,15 @@ public class AttitudeIndicatorInstrument extends Parent
 
                 gc.setTextAlign(RIGHT);
                 gc.setTextBaseline(CENTER);
+                String label = pitchLabels.get(Math.abs(pitch));
                 gc.strokeText(
-                        Integer.toString((int) Math.abs(pitch)), -halfWidth - 3,
+                        label, -halfWidth - 3,
                         -pitch * pitchDegToPixel + 3 * Math.signum(pitch));
 
                 gc.setTextAlign(LEFT);
                 gc.setTextBaseline(CENTER);
                 gc.strokeText(
-                        Integer.toString((int) Math.abs(pitch)), halfWidth + 3,
+                        label, halfWidth + 3,
                         -pitch * pitchDegToPixel + 3 * Math.signum(pitch));
             }
         }
@@ -348,6 +538,61 @@ public class AttitudeIndicatorInstrument extends Parent
         gc.restore();
     }
 
+    public boolean isOffscreen() {
+        return offscreen;
+    }
+
+    /**
+     * Returns the synthetic vision view, for binding its position and heading, or null if there is none.
+     *
+     * @return
+     */
+    public SyntheticVision getSyntheticVision() {
+        return syntheticVision;
+    }
+
+    /**
+     * Shows synthetic vision of the terrain in the cache behind the pitch ladder, or plain sky and ground for null. The
+     * view moves with the horizon group, so pitch and bank changes do not redraw it. Only shown when not offscreen.
+     *
+     * @param terrain
+     */
+    public void setTerrain(TerrainCache terrain) {
+        if (syntheticVision != null) {
+            horizonGroup.getChildren().remove(syntheticVision);
+            syntheticVision = null;
+        }
+        if (terrain != null) {
+            syntheticVision = new SyntheticVision(terrain, 2 * maxHorizonRun, TERRAIN_ABOVE, TERRAIN_BELOW,
+                    pitchDegToPixel);
+            horizonGroup.getChildren().add(horizonGroup.getChildren().indexOf(pitchLadder), syntheticVision);
+        }
+    }
+
+    /**
+     * Switches between compositing the layers on the FX thread and rasterizing offscreen on a worker thread, and
+     * redraws the instrument.
+     *
+     * @param offscreen
+     */
+    public void setOffscreen(boolean offscreen) {
+        if (offscreen == this.offscreen) {
+            return;
+        }
+        this.offscreen = offscreen;
+
+        if (offscreen) {
+            if (surface == null) {
+                surface = new OffscreenSurface(maxX, maxY, 2, new Rasterizer());
+            }
+            getChildren().setAll(surface);
+        } else {
+            getChildren().setAll(horizonView, bankArc, canvas);
+        }
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        update2();
+    }
+
     public DoubleProperty bankAngleProperty() {
         return bankAngle;
     }
@@ -454,4 +699,148 @@ public class AttitudeIndicatorInstrument extends Parent
         gc.stroke();
     }
 
+    /**
+     * Draws the whole instrument with Java2D for the offscreen surface: the horizon with the same gradients and ladder
+     * window as the horizon group, the bank arc and the static symbology. Takes the pitch and the bank as inputs.
+     */
+    private class Rasterizer implements OffscreenSurface.Rasterizer
+    {
+
+        private final Font ladderFont = Java2D.font(javafx.scene.text.Font.getDefault().getSize());
+        // Its own, as the cache of the instrument is only used on the FX thread
+        private final LabelCache pitchLabels = new LabelCache(10, val -> Integer.toString((int) val));
+        private final LinearGradientPaint groundPaint;
+        private final LinearGradientPaint skyPaint;
+        private final Stroke thin = new BasicStroke(1);
+        private final Stroke bankStroke = new BasicStroke(2);
+        private final Stroke airplaneStroke = new BasicStroke(3);
+
+        private final Path2D.Double path = new Path2D.Double();
+        private final Rectangle2D.Double rect = new Rectangle2D.Double();
+        private final Ellipse2D.Double oval = new Ellipse2D.Double();
+        private final Arc2D.Double arc = new Arc2D.Double(-BANK_ARC_RADIUS, -BANK_ARC_RADIUS,
+                2 * BANK_ARC_RADIUS, 2 * BANK_ARC_RADIUS, 30, 120, Arc2D.OPEN);
+        private final AffineTransform identity = new AffineTransform();
+
+        private Rasterizer() {
+            // The gradients of the planes are proportional to their size, 2 * maxHorizonRun
+            float[] fractions = {(float) groundStops[0].getOffset(), (float) groundStops[1].getOffset()};
+            groundPaint = new LinearGradientPaint(0, 0, 0, (float) (2 * maxHorizonRun), fractions,
+                    new java.awt.Color[]{Java2D.color(groundStops[0].getColor()), Java2D.color(groundStops[1].getColor())});
+            skyPaint = new LinearGradientPaint(0, 0, 0, (float) (-2 * maxHorizonRun), fractions,
+                    new java.awt.Color[]{Java2D.color(skyStops[0].getColor()), Java2D.color(skyStops[1].getColor())});
+        }
+
+        @Override
+        public void rasterize(Graphics2D g, double[] inputs) {
+            double pitch = inputs[0];
+            double bank = inputs[1];
+
+            g.translate(cenX, cenY);
+            g.rotate(Math.toRadians(-bank));
+            g.translate(0, -pitch * pitchDegToPixel);
+            rasterizeHorizon(g, pitch);
+            g.setTransform(identity);
+            g.setClip(null);
+
+            g.translate(cenX, cenY);
+            g.rotate(Math.toRadians(-bank));
+            rasterizeBankArc(g);
+            g.setTransform(identity);
+
+            rasterizeStaticSymbology(g);
+        }
+
+        private void rasterizeHorizon(Graphics2D g, double pitch) {
+            g.setPaint(groundPaint);
+            rect.setRect(-maxHorizonRun, 0, maxHorizonRun * 2, maxHorizonRun * 2);
+            g.fill(rect);
+
+            g.setPaint(skyPaint);
+            rect.setRect(-maxHorizonRun, -maxHorizonRun * 2, maxHorizonRun * 2, maxHorizonRun * 2);
+            g.fill(rect);
+
+            // The same window of the ladder as the ladder canvas shows
+            double pitchNormalized = -(pitch - (pitch % 2.5));
+            double top = (pitchNormalized + LADDER_RANGE) * pitchDegToPixel + LADDER_MARGIN;
+            rect.setRect(-LADDER_HALF_WIDTH, -top, 2 * LADDER_HALF_WIDTH,
+                    2 * (LADDER_RANGE * pitchDegToPixel + LADDER_MARGIN));
+            g.clip(rect);
+
+            g.setColor(java.awt.Color.WHITE);
+            g.setStroke(thin);
+            g.setFont(ladderFont);
+            path.reset();
+            for (double tick = pitchNormalized - LADDER_RANGE; tick < pitchNormalized + LADDER_RANGE; tick += 2.5) {
+                double halfWidth = (tick % 10 == 0 ? 20 : (tick % 5 == 0 ? 10 : 5));
+                double y = -tick * pitchDegToPixel;
+                path.moveTo(-halfWidth, y);
+                path.lineTo(halfWidth, y);
+
+                if (tick % 10 == 0) {
+                    path.lineTo(halfWidth, y + 5 * Math.signum(tick));
+                    path.moveTo(-halfWidth, y);
+                    path.lineTo(-halfWidth, y + 5 * Math.signum(tick));
+
+                    String label = pitchLabels.get(Math.abs(tick));
+                    Java2D.drawText(g, label, -halfWidth - 3, y + 3 * Math.signum(tick), RIGHT, CENTER, false, true);
+                    Java2D.drawText(g, label, halfWidth + 3, y + 3 * Math.signum(tick), LEFT, CENTER, false, true);
+                }
+            }
+            g.draw(path);
+        }
+
+        private void rasterizeBankArc(Graphics2D g) {
+            g.setColor(java.awt.Color.WHITE);
+            g.setStroke(bankStroke);
+
+            path.reset();
+            path.append(arc, false);
+            for (double[] ticks : BANK_TICKS) {
+                double tickRads = ticks[0] / 180 * Math.PI + Math.PI / 2;
+                if (ticks[1] < 0) {
+                    oval.setFrame(-2 + (150 - ticks[1]) * Math.cos(tickRads), -2 - (150 - ticks[1]) * Math.sin(tickRads),
+                            ticks[2], ticks[2]);
+                    g.fill(oval);
+                } else {
+                    path.moveTo(150 * Math.cos(tickRads), -150 * Math.sin(tickRads));
+                    path.lineTo((150 + ticks[1]) * Math.cos(tickRads), -(150 + ticks[1]) * Math.sin(tickRads));
+                }
+            }
+            g.draw(path);
+
+            // Level bank bug
+            path.reset();
+            path.moveTo(0, -152);
+            path.lineTo(-10, -162);
+            path.lineTo(10, -162);
+            path.closePath();
+            g.fill(path);
+        }
+
+        private void rasterizeStaticSymbology(Graphics2D g) {
+            // Bank pointer
+            path.reset();
+            path.moveTo(cenX, cenY - 148);
+            path.lineTo(cenX + 10, cenY - 138);
+            path.lineTo(cenX - 10, cenY - 138);
+            path.closePath();
+            g.setColor(java.awt.Color.WHITE);
+            g.fill(path);
+
+            // Miniature airplane
+            g.translate(cenX - 3, cenY - 3);
+            g.setColor(java.awt.Color.BLACK);
+            oval.setFrame(0, 0, 6, 6);
+            g.fill(oval);
+
+            path.reset();
+            path.moveTo(-35, 2);
+            path.lineTo(-85, 2);
+            path.moveTo(35, 2);
+            path.lineTo(85, 2);
+            g.setStroke(airplaneStroke);
+            g.draw(path);
+        }
+    }
 }
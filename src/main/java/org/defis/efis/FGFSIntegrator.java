@@ -16,45 +16,295 @@
 package org.defis.efis;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import jdk.jfr.EventType;
+import org.defis.efis.alerts.AlertEngine;
+import org.defis.efis.jfr.FxHandoffEvent;
+import org.defis.efis.jfr.RegistryPublishEvent;
+import org.defis.efis.jfr.TelemetryPollEvent;
+import org.defis.efis.metrics.ChannelMetrics;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.SourceMetrics;
 import org.flightgear.fgfsclient.FGFSConnection;
 
 /**
  * Integrates FGFS with xEFIS.
  *
+ * Telemetry is polled on the calling (background) thread and handed to the FX thread, where the properties are set.
+ * Only one handoff is queued at a time; when the FX thread falls behind, later polls overwrite the pending sample
+ * instead of piling up behind it.
+ *
  * @author Matthew Tyler
  */
 public class FGFSIntegrator
 {
 
-    private DoubleProperty airSpeed = new SimpleDoubleProperty();
-    private DoubleProperty bankAngle = new SimpleDoubleProperty();
-    private DoubleProperty pitchAngle = new SimpleDoubleProperty();
+    private static final String SOURCE = "fgfs";
+    private static final String[] PATHS = {
+        "/velocities/airspeed-kt", "/orientation/roll-deg", "/orientation/pitch-deg",
+        "/orientation/heading-magnetic-deg", "/autopilot/settings/heading-bug-deg",
+        "/instrumentation/nav[0]/radials/selected-deg", "/instrumentation/nav[0]/heading-needle-deflection-norm",
+        "/position/latitude-deg", "/position/longitude-deg", "/position/altitude-ft", "/orientation/heading-deg",
+        "/velocities/groundspeed-kt", "/velocities/vertical-speed-fps", "/autopilot/settings/target-altitude-ft",
+        "/position/altitude-agl-ft"
+    };
+    private static final int AIR_SPEED = 0, BANK_ANGLE = 1, PITCH_ANGLE = 2, HEADING = 3, HEADING_BUG = 4,
+            NAV_COURSE = 5, NAV_DEVIATION = 6, LATITUDE = 7, LONGITUDE = 8, ALTITUDE = 9, TRUE_HEADING = 10,
+            GROUND_SPEED = 11, VERTICAL_SPEED = 12, SELECTED_ALTITUDE = 13, ALTITUDE_AGL = 14;
+    private static final FGFSConnection.Query[] QUERIES = new FGFSConnection.Query[PATHS.length];
+
+    static {
+        for (int i = 0; i < PATHS.length; i++) {
+            QUERIES[i] = FGFSConnection.query(PATHS[i]);
+        }
+    }
+
+    private static final EventType HANDOFF_EVENT = EventType.getEventType(FxHandoffEvent.class);
+
+    /**
+     * One property per path, in the same order.
+     */
+    private final DoubleProperty[] channels = new DoubleProperty[PATHS.length];
+
+    private final double[] polled = new double[PATHS.length];
+    private final double[] pending = new double[PATHS.length];
+    private final double[] applied = new double[PATHS.length];
+    private final AtomicBoolean handoffPending = new AtomicBoolean();
+    private final Runnable applyPending = this::applyPending;
+    private FxHandoffEvent handoffEvent;
+
+    private AlertEngine alertEngine;
+
+    /**
+     * Engine channel of each path, or -1 when no rule reads it.
+     */
+    private int[] alertChannels;
+
+    private final SourceMetrics sourceMetrics = Metrics.get().source(SOURCE);
+    private final ChannelMetrics[] channelMetrics = new ChannelMetrics[PATHS.length];
+
+    public FGFSIntegrator() {
+        for (int i = 0; i < PATHS.length; i++) {
+            channels[i] = new SimpleDoubleProperty();
+            channelMetrics[i] = Metrics.get().channel(PATHS[i]);
+        }
+    }
 
     public DoubleProperty airSpeedProperty() {
-        return airSpeed;
+        return channels[AIR_SPEED];
     }
 
     public DoubleProperty bankAnglProperty() {
-        return bankAngle;
+        return channels[BANK_ANGLE];
     }
 
     public DoubleProperty pitchAngProperty() {
-        return pitchAngle;
+        return channels[PITCH_ANGLE];
+    }
+
+    public DoubleProperty headingProperty() {
+        return channels[HEADING];
+    }
+
+    public DoubleProperty headingBugProperty() {
+        return channels[HEADING_BUG];
+    }
+
+    /**
+     * Course selected on the first nav receiver, in degrees.
+     *
+     * @return
+     */
+    public DoubleProperty navCourseProperty() {
+        return channels[NAV_COURSE];
+    }
+
+    /**
+     * Course deviation of the first nav receiver, from -1 to 1 full scale.
+     *
+     * @return
+     */
+    public DoubleProperty navDeviationProperty() {
+        return channels[NAV_DEVIATION];
+    }
+
+    public DoubleProperty latitudeProperty() {
+        return channels[LATITUDE];
+    }
+
+    public DoubleProperty longitudeProperty() {
+        return channels[LONGITUDE];
+    }
+
+    /**
+     * Altitude above sea level, in feet.
+     *
+     * @return
+     */
+    public DoubleProperty altitudeProperty() {
+        return channels[ALTITUDE];
+    }
+
+    public DoubleProperty trueHeadingProperty() {
+        return channels[TRUE_HEADING];
+    }
+
+    public DoubleProperty groundSpeedProperty() {
+        return channels[GROUND_SPEED];
+    }
+
+    /**
+     * Vertical speed, in feet per second.
+     *
+     * @return
+     */
+    public DoubleProperty verticalSpeedProperty() {
+        return channels[VERTICAL_SPEED];
+    }
+
+    /**
+     * Altitude selected on the autopilot, in feet.
+     *
+     * @return
+     */
+    public DoubleProperty selectedAltitudeProperty() {
+        return channels[SELECTED_ALTITUDE];
+    }
+
+    /**
+     * Altitude above the ground, in feet.
+     *
+     * @return
+     */
+    public DoubleProperty altitudeAglProperty() {
+        return channels[ALTITUDE_AGL];
+    }
+
+    /**
+     * Publishes every polled channel to the registry under its FlightGear path.
+     *
+     * @param registry
+     */
+    public void publish(Registry registry) {
+        for (int i = 0; i < PATHS.length; i++) {
+            registry.publish(PATHS[i], channels[i]);
+        }
+    }
+
+    /**
+     * Sends every polled sample to the alert engine on the polling thread, before it is handed to the FX thread. Set
+     * before polling starts.
+     *
+     * @param engine
+     */
+    public void setAlertEngine(AlertEngine engine) {
+        alertChannels = new int[PATHS.length];
+        for (int i = 0; i < PATHS.length; i++) {
+            alertChannels[i] = engine.channel(PATHS[i]);
+        }
+        alertEngine = engine;
     }
 
     public void update(FGFSConnection conn) {
 
         try {
-            airSpeed.set(conn.getDouble("/velocities/airspeed-kt"));
-            bankAngle.set(conn.getDouble("/orientation/roll-deg"));
-            pitchAngle.set(conn.getDouble("/orientation/pitch-deg"));
+            poll(conn);
         } catch (IOException ex) {
             Logger.getLogger(FGFSIntegrator.class.getName()).log(Level.SEVERE, null, ex);
             ex.printStackTrace();
+            return;
+        }
+
+        if (alertEngine != null) {
+            for (int i = 0; i < PATHS.length; i++) {
+                if (alertChannels[i] >= 0) {
+                    alertEngine.publish(alertChannels[i], polled[i]);
+                }
+            }
+        }
+
+        synchronized (pending) {
+            System.arraycopy(polled, 0, pending, 0, polled.length);
+        }
+
+        if (handoffPending.compareAndSet(false, true)) {
+            if (HANDOFF_EVENT.isEnabled()) {
+                handoffEvent = new FxHandoffEvent();
+                handoffEvent.begin();
+            }
+            Platform.runLater(applyPending);
+        }
+    }
+
+    /**
+     * Reads every channel from FlightGear without touching the properties.
+     *
+     * @param conn
+     * @throws IOException
+     */
+    public void poll(FGFSConnection conn) throws IOException {
+        TelemetryPollEvent event = new TelemetryPollEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        long bytes = conn.getBytesRead();
+        try {
+            for (int i = 0; i < PATHS.length; i++) {
+                polled[i] = conn.getDouble(QUERIES[i]);
+            }
+            bytes = conn.getBytesRead() - bytes;
+        } catch (IOException | RuntimeException ex) {
+            sourceMetrics.pollFailed();
+            throw ex;
+        }
+
+        long end = System.nanoTime();
+        sourceMetrics.pollSucceeded(end - start);
+        for (ChannelMetrics channel : channelMetrics) {
+            channel.updated(end);
+        }
+
+        if (event.shouldCommit()) {
+            event.source = SOURCE;
+            event.channels = PATHS.length;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private void applyPending() {
+        FxHandoffEvent handoff = handoffEvent;
+        handoffEvent = null;
+        if (handoff != null) {
+            handoff.source = SOURCE;
+            handoff.commit();
+        }
+
+        synchronized (pending) {
+            handoffPending.set(false);
+            System.arraycopy(pending, 0, applied, 0, applied.length);
+        }
+
+        RegistryPublishEvent event = new RegistryPublishEvent();
+        event.begin();
+
+        int changed = 0;
+        for (int i = 0; i < channels.length; i++) {
+            if (applied[i] != channels[i].get()) {
+                changed++;
+            }
+            channels[i].set(applied[i]);
+        }
+
+        if (event.shouldCommit()) {
+            event.channels = PATHS.length;
+            event.changed = changed;
+            event.commit();
         }
     }
 }
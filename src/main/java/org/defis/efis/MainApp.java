@@ -15,19 +15,54 @@
  */
 package org.defis.efis;
 
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.Property;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.value.ObservableValue;
 import javafx.beans.value.WritableValue;
 import javafx.concurrent.ScheduledService;
 import javafx.concurrent.Task;
 import javafx.scene.Scene;
-import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import org.defis.efis.alerts.AlertAnnunciator;
+import org.defis.efis.alerts.AlertEngine;
+import org.defis.efis.alerts.AlertRule;
+import org.defis.efis.ems.EngineMonitor;
+import org.defis.efis.ingest.TelemetryIngest;
+import org.defis.efis.sync.PeerSync;
 import org.defis.efis.gauges.AltitudeTape;
-import org.defis.efis.gauges.HeadingIndicatorGauge;
+import org.defis.efis.gauges.FrameRateGovernor;
+import org.defis.efis.gauges.HeadingTape;
+import org.defis.efis.gauges.HorizontalSituationIndicator;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.layout.PFDScreenLayout;
+import org.defis.efis.map.MapOrientation;
+import org.defis.efis.map.MapTileCache;
+import org.defis.efis.map.MovingMap;
+import org.defis.efis.metrics.FrameMonitor;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.MetricsHttpServer;
+import org.defis.efis.nav.NavDatabase;
+import org.defis.efis.nav.NearestAirportsPanel;
+import org.defis.efis.taws.ObstacleDatabase;
+import org.defis.efis.taws.TerrainAwareness;
+import org.defis.efis.terrain.SyntheticVision;
+import org.defis.efis.terrain.TerrainCache;
+import org.defis.efis.terrain.TerrainDatabase;
 import org.flightgear.fgfsclient.FGFSConnection;
 
 import static javafx.application.Application.launch;
@@ -41,12 +76,37 @@ public class MainApp extends Application
 {
 
     private static final int DEFAULT_FGFS_PORT = 9000;
+    private static final String DEFAULT_METRICS_HOST = "127.0.0.1";
+    private static final int DEFAULT_TERRAIN_MB = 8;
+    private static final int DEFAULT_MAP_MB = 32;
+    private static final int DEFAULT_MAP_ZOOM = 10;
+    private static final int MAP_THREADS = 2;
+    private static final double INSTRUMENT_WIDTH = 800;
+    private static final double INSTRUMENT_HEIGHT = 480;
 
     private FGFSConnection fgfsConn;
+    private FGFSIntegrator fgfsInt;
     private ScheduledService<Void> telemetryUpdateService;
+    private MetricsHttpServer metricsServer;
+    private FrameMonitor frameMonitor;
+    private TerrainDatabase terrainDatabase;
+    private TerrainCache terrainCache;
+    private ObstacleDatabase obstacleDatabase;
+    private TerrainAwareness terrainAwareness;
+    private NavDatabase navDatabase;
+    private NearestAirportsPanel nearestAirports;
+    private MapTileCache mapTileCache;
+    private AlertEngine alertEngine;
+    private TelemetryIngest telemetryIngest;
+    private PeerSync peerSync;
+    private Timeline engineTimeline;
+    private PFDScreenLayout layout;
+    private final Registry registry = new Registry();
+    private final FrameRateGovernor governor = new FrameRateGovernor(RenderScheduler.get(), Metrics.get().rendering());
 
     @Override
     public void init() throws Exception {
+        StartupPhase phase = StartupPhase.begin("init");
 
         if (getParameters().getNamed().containsKey("fgfshost")) {
             String host = getParameters().getNamed().get("fgfshost");
@@ -55,6 +115,85 @@ public class MainApp extends Application
                     : DEFAULT_FGFS_PORT;
             fgfsConn = new FGFSConnection(host, port);
         }
+
+        if (getParameters().getNamed().containsKey("metricsport")) {
+            String host = getParameters().getNamed().getOrDefault("metricshost", DEFAULT_METRICS_HOST);
+            int port = Integer.valueOf(getParameters().getNamed().get("metricsport"));
+            metricsServer = new MetricsHttpServer(Metrics.get(), new InetSocketAddress(host, port));
+            metricsServer.start();
+        }
+
+        if (getParameters().getNamed().containsKey("terrain")) {
+            int budgetMb = getParameters().getNamed().containsKey("terrainmb")
+                    ? Integer.valueOf(getParameters().getNamed().get("terrainmb"))
+                    : DEFAULT_TERRAIN_MB;
+            terrainDatabase = new TerrainDatabase(Paths.get(getParameters().getNamed().get("terrain")));
+            terrainCache = new TerrainCache(terrainDatabase, budgetMb * 1024L * 1024L);
+        }
+
+        if (getParameters().getNamed().containsKey("obstacles")) {
+            obstacleDatabase = new ObstacleDatabase(Paths.get(getParameters().getNamed().get("obstacles")));
+        }
+
+        if (getParameters().getNamed().containsKey("navdb")) {
+            navDatabase = new NavDatabase(Paths.get(getParameters().getNamed().get("navdb")));
+        }
+
+        if (getParameters().getNamed().containsKey("maptiles")) {
+            int budgetMb = getParameters().getNamed().containsKey("mapmb")
+                    ? Integer.valueOf(getParameters().getNamed().get("mapmb"))
+                    : DEFAULT_MAP_MB;
+            mapTileCache = new MapTileCache(Paths.get(getParameters().getNamed().get("maptiles")),
+                    budgetMb * 1024L * 1024L, MAP_THREADS);
+        }
+
+        // --alerts replaces the default rules
+        Properties alertRules = new Properties();
+        try (InputStream in = getParameters().getNamed().containsKey("alerts")
+                ? Files.newInputStream(Paths.get(getParameters().getNamed().get("alerts")))
+                : getClass().getResourceAsStream("/alerts/alerts.properties")) {
+            alertRules.load(in);
+        }
+        alertEngine = new AlertEngine(AlertRule.parseAll(alertRules));
+
+        // --ingest=<device, pipe, - or tcp:host:port> reads an MCU telemetry node; --ingestmap replaces the channel map
+        if (getParameters().getNamed().containsKey("ingest")) {
+            Properties channelMap = new Properties();
+            try (InputStream in = getParameters().getNamed().containsKey("ingestmap")
+                    ? Files.newInputStream(Paths.get(getParameters().getNamed().get("ingestmap")))
+                    : getClass().getResourceAsStream("/ingest/channels.properties")) {
+                channelMap.load(in);
+            }
+            telemetryIngest = new TelemetryIngest(TelemetryIngest.opener(getParameters().getNamed().get("ingest")),
+                    channelMap);
+            telemetryIngest.publish(registry);
+        }
+
+        // --sync=<unit> shares channels with the other display units; --syncchannels replaces the list of channels
+        if (getParameters().getNamed().containsKey("sync")) {
+            List<String> shared;
+            try (InputStream in = getParameters().getNamed().containsKey("syncchannels")
+                    ? Files.newInputStream(Paths.get(getParameters().getNamed().get("syncchannels")))
+                    : getClass().getResourceAsStream("/sync/channels.txt")) {
+                shared = PeerSync.readChannels(in);
+            }
+            InetAddress group = InetAddress.getByName(
+                    getParameters().getNamed().getOrDefault("syncgroup", PeerSync.DEFAULT_GROUP));
+            int port = getParameters().getNamed().containsKey("syncport")
+                    ? Integer.valueOf(getParameters().getNamed().get("syncport"))
+                    : PeerSync.DEFAULT_PORT;
+            NetworkInterface networkInterface = getParameters().getNamed().containsKey("syncif")
+                    ? NetworkInterface.getByName(getParameters().getNamed().get("syncif"))
+                    : NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+            peerSync = new PeerSync(Integer.valueOf(getParameters().getNamed().get("sync")), registry, shared,
+                    new InetSocketAddress(group, port), networkInterface);
+        }
+
+        if (terrainDatabase != null || obstacleDatabase != null) {
+            terrainAwareness = new TerrainAwareness(terrainDatabase, obstacleDatabase);
+            terrainAwareness.publish(registry);
+        }
+        phase.end();
     }
 
     @Override
@@ -66,6 +205,55 @@ public class MainApp extends Application
         if (telemetryUpdateService != null && telemetryUpdateService.isRunning()) {
             telemetryUpdateService.cancel();
         }
+
+        if (frameMonitor != null) {
+            frameMonitor.stop();
+        }
+
+        governor.stop();
+
+        if (terrainAwareness != null) {
+            terrainAwareness.stop();
+        }
+
+        if (nearestAirports != null) {
+            nearestAirports.stop();
+        }
+
+        if (engineTimeline != null) {
+            engineTimeline.stop();
+        }
+
+        if (telemetryIngest != null) {
+            telemetryIngest.close();
+        }
+
+        if (peerSync != null) {
+            peerSync.close();
+        }
+
+        RenderScheduler.get().stop();
+
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+
+        if (terrainCache != null) {
+            terrainCache.shutdown();
+            terrainDatabase.close();
+        }
+
+        if (obstacleDatabase != null) {
+            obstacleDatabase.close();
+        }
+
+        if (navDatabase != null) {
+            navDatabase.close();
+        }
+
+        if (mapTileCache != null) {
+            mapTileCache.shutdown();
+        }
     }
 
     private <T> Timeline createTimeline(WritableValue<T> target, long durationMs, T startValue, T endValue) {
@@ -80,20 +268,114 @@ public class MainApp extends Application
         return timeline;
     }
 
+    /**
+     * Binds target to a telemetry node channel, if the channel map has one.
+     *
+     * @param target
+     * @param channel from {@link TelemetryIngest#subscribe}, or null
+     */
+    private static void bind(DoubleProperty target, ObservableValue<? extends Number> channel) {
+        if (channel != null) {
+            target.bind(channel);
+        }
+    }
+
+    /**
+     * Plays a made-up flight for an input that no telemetry drives.
+     *
+     * @param timeline
+     * @param target
+     */
+    private static void playUnlessBound(Timeline timeline, Property<?> target) {
+        if (!target.isBound()) {
+            timeline.play();
+        }
+    }
+
+    /**
+     * Whether an instrument is selected for offscreen rasterization with --offscreen=all or a comma separated list,
+     * for example --offscreen=attitude,speed.
+     *
+     * @param instrument
+     * @return
+     */
+    private boolean isOffscreen(String instrument) {
+        String selected = getParameters().getNamed().get("offscreen");
+        return selected != null && (selected.equals("all") || Arrays.asList(selected.split(",")).contains(instrument));
+    }
+
     @Override
     public void start(Stage stage) throws Exception {
-        //Parent root = FXMLLoader.load(getClass().getResource("/fxml/PFDScreen.fxml"));
+        StartupPhase phase = StartupPhase.begin("layout");
+        layout = new PFDScreenLayout();
+        // Sized for every instrument up front, so the window does not grow as they come up
+        layout.instrumentPane.setPrefSize(instrumentWidth(), INSTRUMENT_HEIGHT);
+
+        if ("low".equals(getParameters().getNamed().get("power"))) {
+            governor.setProfile(FrameRateGovernor.Profile.LOW_POWER);
+        }
+
+        stage.setTitle("DEFIS");
+        stage.setScene(new Scene(layout.root));
+        stage.show();
+
+        frameMonitor = new FrameMonitor(Metrics.get().rendering(), 60);
+        frameMonitor.start();
+
+        // A fixed --maxfps replaces the governor
+        if (getParameters().getNamed().containsKey("maxfps")) {
+            RenderScheduler.get().setMaxFrameRate(Double.valueOf(getParameters().getNamed().get("maxfps")));
+        } else {
+            governor.start();
+        }
+        RenderScheduler.get().start();
+        phase.end();
+
+        // Attitude and air data on the pulse after the first frame, everything else on the ones after
+        new StartupSequence()
+                .then("primary-instruments", this::startPrimaryInstruments)
+                .then("secondary-instruments", this::startSecondaryInstruments)
+                .then("deferred-panels", layout::addDeferred)
+                .start();
+    }
+
+    /**
+     * Width the instruments need, so the window can be sized before any of them is built.
+     */
+    private double instrumentWidth() {
+        if (getParameters().getNamed().containsKey("ems")) {
+            return 920 + 360;
+        }
+        return mapTileCache != null ? 660 + 250 : INSTRUMENT_WIDTH;
+    }
 
+    /**
+     * Attitude, air data and heading, and the telemetry driving them.
+     */
+    private void startPrimaryInstruments() {
         SpeedTapeInstrument st = new SpeedTapeInstrument();
         AttitudeIndicatorInstrument ai = new AttitudeIndicatorInstrument();
         AltitudeTape alt = new AltitudeTape(60, 250);
-        HeadingIndicatorGauge hi = new HeadingIndicatorGauge(150, 150);
+        HorizontalSituationIndicator hsi = new HorizontalSituationIndicator(150, 150);
+        HeadingTape ht = new HeadingTape(300, 50);
+
+        st.setOffscreen(isOffscreen("speed"));
+        ai.setOffscreen(isOffscreen("attitude"));
+        ai.setTerrain(terrainCache);
+        alt.setOffscreen(isOffscreen("altitude"));
+        hsi.setOffscreen(isOffscreen("heading"));
+        ht.setOffscreen(isOffscreen("heading"));
 
         Timeline iasTimeline = createTimeline(st.airSpeedProperty(), 13000, 0, 120);
         Timeline bankTimeline = createTimeline(ai.bankAngleProperty(), 7500, -60, 60);
         Timeline pitchTimeline = createTimeline(ai.pitchAngleProperty(), 4000, -30, 30);
         Timeline altTimeline = createTimeline(alt.valueProperty(), 23000, -1200, 1200);
-        AnchorPane root = new AnchorPane(ai, alt, st);
+        Timeline headingTimeline = createTimeline(hsi.headingProperty(), 30000, 0, 360);
+        Timeline deviationTimeline = createTimeline(hsi.deviationProperty(), 9000, -1, 1);
+        hsi.courseProperty().set(45);
+        hsi.headingBugProperty().set(90);
+        ht.valueProperty().bind(hsi.headingProperty());
+        layout.instrumentPane.getChildren().addAll(ai, alt, st, hsi, ht);
 
         st.setLayoutX(160);
         st.setLayoutY(75);
@@ -103,13 +385,56 @@ public class MainApp extends Application
         alt.setLayoutY(75);
         alt.setOpacity(.85);
 
-        Scene scene = new Scene(root);
+        hsi.setLayoutX(325);
+        hsi.setLayoutY(325);
+
+        ht.setLayoutX(250);
+        ht.setLayoutY(10);
+        ht.setOpacity(.85);
+
+        // Through the registry, so the values come in the handoff after each read; FlightGear binds over them
+        if (telemetryIngest != null) {
+            telemetryIngest.setAlertEngine(alertEngine);
+            bind(st.airSpeedProperty(), telemetryIngest.subscribe("/velocities/airspeed-kt"));
+            bind(ai.bankAngleProperty(), telemetryIngest.subscribe("/orientation/roll-deg"));
+            ReadOnlyDoubleProperty pitch = telemetryIngest.subscribe("/orientation/pitch-deg");
+            bind(ai.pitchAngleProperty(), pitch != null ? pitch.negate() : null);
+            bind(alt.valueProperty(), telemetryIngest.subscribe("/position/altitude-ft"));
+            bind(hsi.headingProperty(), telemetryIngest.subscribe("/orientation/heading-magnetic-deg"));
+            bind(hsi.headingBugProperty(), telemetryIngest.subscribe("/autopilot/settings/heading-bug-deg"));
+            bind(hsi.courseProperty(), telemetryIngest.subscribe("/instrumentation/nav[0]/radials/selected-deg"));
+            bind(hsi.deviationProperty(),
+                    telemetryIngest.subscribe("/instrumentation/nav[0]/heading-needle-deflection-norm"));
+
+            SyntheticVision sv = ai.getSyntheticVision();
+            if (sv != null) {
+                bind(sv.latitudeProperty(), telemetryIngest.subscribe("/position/latitude-deg"));
+                bind(sv.longitudeProperty(), telemetryIngest.subscribe("/position/longitude-deg"));
+                bind(sv.altitudeProperty(), telemetryIngest.subscribe("/position/altitude-ft"));
+                bind(sv.headingProperty(), telemetryIngest.subscribe("/orientation/heading-deg"));
+            }
+            telemetryIngest.start();
+        }
 
         if (fgfsConn != null) {
-            final FGFSIntegrator fgfsInt = new FGFSIntegrator();
+            fgfsInt = new FGFSIntegrator();
+            fgfsInt.setAlertEngine(alertEngine);
+            fgfsInt.publish(registry);
             st.airSpeedProperty().bind(fgfsInt.airSpeedProperty());
             ai.bankAngleProperty().bind(fgfsInt.bankAnglProperty());
             ai.pitchAngleProperty().bind(fgfsInt.pitchAngProperty().negate());
+            hsi.headingProperty().bind(fgfsInt.headingProperty());
+            hsi.headingBugProperty().bind(fgfsInt.headingBugProperty());
+            hsi.courseProperty().bind(fgfsInt.navCourseProperty());
+            hsi.deviationProperty().bind(fgfsInt.navDeviationProperty());
+
+            SyntheticVision sv = ai.getSyntheticVision();
+            if (sv != null) {
+                sv.latitudeProperty().bind(fgfsInt.latitudeProperty());
+                sv.longitudeProperty().bind(fgfsInt.longitudeProperty());
+                sv.altitudeProperty().bind(fgfsInt.altitudeProperty());
+                sv.headingProperty().bind(fgfsInt.trueHeadingProperty());
+            }
 
             telemetryUpdateService = new ScheduledService<Void>()
             {
@@ -126,18 +451,143 @@ public class MainApp extends Application
                 }
             };
 
-            telemetryUpdateService.setPeriod(millis(25));
+            telemetryUpdateService.setPeriod(millis(governor.getProfile().getTelemetryPeriodMillis()));
+            governor.profileProperty().addListener((o, oldProfile, profile)
+                    -> telemetryUpdateService.setPeriod(millis(profile.getTelemetryPeriodMillis())));
             telemetryUpdateService.start();
         }
 
-        stage.setTitle("DEFIS");
-        stage.setScene(scene);
-        stage.show();
+        playUnlessBound(bankTimeline, ai.bankAngleProperty());
+        playUnlessBound(iasTimeline, st.airSpeedProperty());
+        playUnlessBound(pitchTimeline, ai.pitchAngleProperty());
+        playUnlessBound(altTimeline, alt.valueProperty());
+        playUnlessBound(headingTimeline, hsi.headingProperty());
+        playUnlessBound(deviationTimeline, hsi.deviationProperty());
+    }
+
+    /**
+     * Nearest airports, the map, the engine monitor, alerts, terrain awareness and sync with the other display units.
+     */
+    private void startSecondaryInstruments() {
+        if (navDatabase != null) {
+            nearestAirports = new NearestAirportsPanel(navDatabase, 5);
+            nearestAirports.setLayoutX(10);
+            nearestAirports.setLayoutY(340);
+            layout.instrumentPane.getChildren().add(nearestAirports);
+        }
+
+        MovingMap map = null;
+        if (mapTileCache != null) {
+            map = new MovingMap(250, 250, mapTileCache);
+            map.zoomProperty().set(getParameters().getNamed().containsKey("mapzoom")
+                    ? Integer.valueOf(getParameters().getNamed().get("mapzoom"))
+                    : DEFAULT_MAP_ZOOM);
+            if ("north".equals(getParameters().getNamed().get("maporientation"))) {
+                map.orientationProperty().set(MapOrientation.NORTH_UP);
+            }
+            map.setLayoutX(660);
+            map.setLayoutY(75);
+            layout.instrumentPane.getChildren().add(map);
+        }
+
+        // --ems=<cylinders> shows the engine monitor, driven by a made-up engine until there is an engine data source
+        if (getParameters().getNamed().containsKey("ems")) {
+            EngineMonitor ems = new EngineMonitor(360, 300,
+                    EngineMonitor.pistonEngine(Integer.valueOf(getParameters().getNamed().get("ems"))));
+            ems.setLayoutX(920);
+            ems.setLayoutY(10);
+            layout.instrumentPane.getChildren().add(ems);
+
+            double[] frame = new double[ems.getGaugeCount()];
+            engineTimeline = new Timeline(new KeyFrame(Duration.millis(100), e -> {
+                demoEngineFrame(ems, frame, System.nanoTime() / 1e9);
+                ems.applyFrame(frame);
+            }));
+            engineTimeline.setCycleCount(Timeline.INDEFINITE);
+        }
+
+        AlertAnnunciator annunciator = new AlertAnnunciator(alertEngine, 4);
+        annunciator.setLayoutX(490);
+        annunciator.setLayoutY(340);
+        annunciator.publish(registry);
+        // Telemetry has been running since the primary instruments, so alerts may already be on
+        annunciator.refresh();
+        layout.instrumentPane.getChildren().add(annunciator);
+
+        if (fgfsInt != null) {
+            if (terrainAwareness != null) {
+                terrainAwareness.latitudeProperty().bind(fgfsInt.latitudeProperty());
+                terrainAwareness.longitudeProperty().bind(fgfsInt.longitudeProperty());
+                terrainAwareness.altitudeProperty().bind(fgfsInt.altitudeProperty());
+                terrainAwareness.trackProperty().bind(fgfsInt.trueHeadingProperty());
+                terrainAwareness.groundSpeedProperty().bind(fgfsInt.groundSpeedProperty());
+                terrainAwareness.verticalSpeedProperty().bind(fgfsInt.verticalSpeedProperty().multiply(60));
+                terrainAwareness.start();
+            }
+
+            if (nearestAirports != null) {
+                nearestAirports.latitudeProperty().bind(fgfsInt.latitudeProperty());
+                nearestAirports.longitudeProperty().bind(fgfsInt.longitudeProperty());
+            }
+
+            if (map != null) {
+                map.latitudeProperty().bind(fgfsInt.latitudeProperty());
+                map.longitudeProperty().bind(fgfsInt.longitudeProperty());
+                map.trackProperty().bind(fgfsInt.trueHeadingProperty());
+            }
+        } else if (telemetryIngest != null) {
+            ReadOnlyDoubleProperty latitude = telemetryIngest.subscribe("/position/latitude-deg");
+            ReadOnlyDoubleProperty longitude = telemetryIngest.subscribe("/position/longitude-deg");
+            ReadOnlyDoubleProperty track = telemetryIngest.subscribe("/orientation/heading-deg");
 
-        bankTimeline.play();
-        iasTimeline.play();
-        pitchTimeline.play();
-        altTimeline.play();
+            // Terrain awareness only assesses a position the node reports
+            if (terrainAwareness != null && latitude != null && longitude != null) {
+                ReadOnlyDoubleProperty verticalSpeed = telemetryIngest.subscribe("/velocities/vertical-speed-fps");
+                terrainAwareness.latitudeProperty().bind(latitude);
+                terrainAwareness.longitudeProperty().bind(longitude);
+                bind(terrainAwareness.altitudeProperty(), telemetryIngest.subscribe("/position/altitude-ft"));
+                bind(terrainAwareness.trackProperty(), track);
+                bind(terrainAwareness.groundSpeedProperty(), telemetryIngest.subscribe("/velocities/groundspeed-kt"));
+                bind(terrainAwareness.verticalSpeedProperty(),
+                        verticalSpeed != null ? verticalSpeed.multiply(60) : null);
+                terrainAwareness.start();
+            }
+
+            if (nearestAirports != null) {
+                bind(nearestAirports.latitudeProperty(), latitude);
+                bind(nearestAirports.longitudeProperty(), longitude);
+            }
+
+            if (map != null) {
+                bind(map.latitudeProperty(), latitude);
+                bind(map.longitudeProperty(), longitude);
+                bind(map.trackProperty(), track);
+            }
+        }
+
+        // Once every local channel is published
+        if (peerSync != null) {
+            peerSync.start();
+        }
+
+        if (engineTimeline != null) {
+            engineTimeline.play();
+        }
+
+        if (nearestAirports != null) {
+            nearestAirports.start();
+        }
+    }
+
+    /**
+     * Moves every engine gauge slowly around the middle of its range, each cylinder a little out of step.
+     */
+    private static void demoEngineFrame(EngineMonitor ems, double[] frame, double seconds) {
+        for (int g = 0; g < frame.length; g++) {
+            double min = ems.getGauge(g).getMin();
+            double range = ems.getGauge(g).getMax() - min;
+            frame[g] = min + range * (0.6 + 0.3 * Math.sin(seconds / 7 + g * 0.4));
+        }
     }
 
     /**
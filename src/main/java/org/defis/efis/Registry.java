@@ -15,7 +15,13 @@
  */
 package org.defis.efis;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.value.ObservableNumberValue;
+import javafx.beans.value.ObservableValue;
 
 /**
  * Central hub for all telemetry and configuration settings. Back systems are managed by the SystemsManager.
@@ -43,16 +49,58 @@ import javafx.beans.Observable;
 public class Registry
 {
 
+    private final Map<String, ReadOnlyDoubleWrapper> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Binds the channel at path to the given numeric source, replacing any previous publisher.
+     *
+     * @param path
+     * @param property must be an {@link ObservableNumberValue}
+     */
+    @SuppressWarnings("unchecked")
     public void publish(String path, Observable property) {
+        if (!(property instanceof ObservableNumberValue)) {
+            throw new IllegalArgumentException("Only numeric telemetry can be published: " + path);
+        }
 
+        ReadOnlyDoubleWrapper channel = channel(path);
+        channel.unbind();
+        channel.bind((ObservableValue<? extends Number>) property);
     }
 
+    /**
+     * Detaches the publisher. The channel keeps its last value and subscribers stay bound to it.
+     *
+     * @param path
+     */
     public void unpublish(String path) {
+        ReadOnlyDoubleWrapper channel = channels.get(path);
+        if (channel != null) {
+            channel.unbind();
+        }
+    }
+
+    /**
+     * Returns the intermediary for path, creating it when nothing has been published there yet.
+     *
+     * @param path
+     * @return
+     */
+    public ReadOnlyDoubleProperty subscribe(String path) {
+        return channel(path).getReadOnlyProperty();
+    }
 
+    public boolean isPublished(String path) {
+        ReadOnlyDoubleWrapper channel = channels.get(path);
+        return channel != null && channel.isBound();
     }
 
-    public Observable subscribe(String path) {
-        return null;
+    private ReadOnlyDoubleWrapper channel(String path) {
+        ReadOnlyDoubleWrapper channel = channels.get(path);
+        if (channel != null) {
+            return channel;
+        }
+        return channels.computeIfAbsent(path, p -> new ReadOnlyDoubleWrapper(this, p));
     }
 
 }
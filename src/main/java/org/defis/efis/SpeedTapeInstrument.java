@@ -15,15 +15,30 @@
  */
 package org.defis.efis;
 
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.atomic.LongAdder;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.VPos;
 import javafx.scene.Parent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
-
-import static java.lang.Integer.valueOf;
+import javafx.scene.text.TextAlignment;
+import org.defis.efis.gauges.DrumReadout;
+import org.defis.efis.gauges.Fonts;
+import org.defis.efis.gauges.Java2D;
+import org.defis.efis.gauges.LabelCache;
+import org.defis.efis.gauges.OffscreenSurface;
+import org.defis.efis.gauges.RedrawTracker;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.jfr.InstrumentRedrawEvent;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
 
 /**
  * TODO: Remeber to use a PID for the auto-pilot.
@@ -38,7 +53,31 @@ import static java.lang.Integer.valueOf;
 public class SpeedTapeInstrument extends Parent
 {
 
+    private static final String[] DIGITS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    private static final Color BACKGROUND = Color.gray(0.4);
+
+    /**
+     * The moving tape with its ticks and labels.
+     */
+    private static final int TAPE_LAYER = 1;
+
+    /**
+     * The current speed box.
+     */
+    private static final int READOUT_LAYER = 2;
+
+    /**
+     * Pixels the last digit of the current speed rolls per knot.
+     */
+    private static final double DIGIT_PITCH = 20.5;
+
     private Canvas canvas;
+    /**
+     * The outline of the current speed box, which never changes and is drawn once.
+     */
+    private Canvas boxCanvas;
+    private Canvas readoutCanvas;
     private double maxX;
     private double maxY;
     private DoubleProperty airSpeed = new SimpleDoubleProperty(0);
@@ -46,45 +85,151 @@ public class SpeedTapeInstrument extends Parent
     private double tickSpacing = 4;
     private double tickStep = 2;
 
+    private double lastDrawnSpeed;
+    private final LabelCache tickLabels = new LabelCache(10, val -> Integer.toString((int) val));
+    private final LabelCache speedLabels = new LabelCache(1, val -> Integer.toString((int) val));
+    private DrumReadout lastDigit;
+
+    /**
+     * The edge of the tape and up to 41 ticks, 40 knots either way every 2 knots, as one polyline.
+     */
+    private final double[] tickX = new double[2 + 3 * 41];
+    private final double[] tickY = new double[tickX.length];
+    private final javafx.scene.text.Font speedFont = Fonts.size(javafx.scene.text.Font.getDefault().getSize() + 8);
+    private final RateMeter redraws = Metrics.get().rendering().instrument("SpeedTapeInstrument");
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed("SpeedTapeInstrument");
+
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final int tapeWatch;
+    private final int readoutWatch;
+    private final int wholeKnotsWatch;
+
+    /**
+     * Set when the instrument is rasterized on a worker thread into the surface instead of drawn on its canvases.
+     */
+    private boolean offscreen;
+    private OffscreenSurface surface;
+
     public SpeedTapeInstrument() {
         canvas = new Canvas(60, 250);
+        boxCanvas = new Canvas(60, 250);
+        readoutCanvas = new Canvas(60, 250);
         maxX = canvas.getWidth();
         maxY = canvas.getHeight();
-        airSpeed.addListener(l -> update());
 
-        getChildren().add(canvas);
+        tapeWatch = redrawTracker.watch(TAPE_LAYER, 1 / tickSpacing);
+        readoutWatch = redrawTracker.watch(READOUT_LAYER, 1 / DIGIT_PITCH);
+        wholeKnotsWatch = redrawTracker.watch(READOUT_LAYER, 1);
+        airSpeed.addListener(l -> airSpeedChanged());
+
+        drawBox(boxCanvas.getGraphicsContext2D());
+        getChildren().addAll(canvas, boxCanvas, readoutCanvas);
         update();
     }
 
+    /**
+     * Redraws the whole instrument.
+     */
     public void update() {
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        redraw();
+    }
+
+    private void airSpeedChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    /**
+     * Redraws only what the speed visibly moved since the last redraw, if anything.
+     */
+    private void render() {
+        trackAirSpeed(getAirSpeed());
+        if (redrawTracker.isDirty()) {
+            redraw();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private void trackAirSpeed(double speed) {
+        redrawTracker.update(tapeWatch, speed);
+        redrawTracker.update(readoutWatch, speed);
+        redrawTracker.update(wholeKnotsWatch, Math.floor(speed));
+    }
+
+    private void redraw() {
 //        System.out.println("SpeedTape.update(): " + getAirSpeed());
-        final GraphicsContext gc = canvas.getGraphicsContext2D();
+        InstrumentRedrawEvent event = InstrumentRedrawEvent.start();
 
-        gc.save();
+        double currentSpeed = getAirSpeed();
+        trackAirSpeed(currentSpeed);
+        int dirty = redrawTracker.getDirty();
+
+        if (offscreen) {
+            surface.setInput(0, currentSpeed);
+            surface.request();
+            // A frame always holds every layer
+            dirty = RedrawTracker.ALL_LAYERS;
+        } else {
+            drawLayers(dirty, currentSpeed);
+        }
+        redrawTracker.drawn(dirty);
+
+        if (event != null && event.shouldCommit()) {
+            event.instrument = "SpeedTapeInstrument";
+            event.valueDelta = Math.abs(currentSpeed - lastDrawnSpeed);
+            event.commit();
+        }
+        lastDrawnSpeed = currentSpeed;
+        redraws.mark();
+    }
+
+    /**
+     * Draws the dirty layers. Each sets the paints and font it uses and the transform is reset after it, rather than
+     * saving and restoring the graphics state, which copies it every frame.
+     */
+    private void drawLayers(int dirty, double currentSpeed) {
+        if ((dirty & TAPE_LAYER) != 0) {
+            GraphicsContext gc = canvas.getGraphicsContext2D();
+            gc.clearRect(0, 0, maxX, maxY);
+            drawTape(gc, currentSpeed);
+        }
+
+        if ((dirty & READOUT_LAYER) != 0) {
+            GraphicsContext gc = readoutCanvas.getGraphicsContext2D();
+            gc.clearRect(0, 0, maxX, maxY);
+            drawReadout(gc, currentSpeed);
+            gc.setTransform(1, 0, 0, 1, 0, 0);
+        }
+    }
 
-        //gc.clearRect(0, 0, maxX, maxX);
+    private void drawTape(GraphicsContext gc, double currentSpeed) {
         // Background
-        gc.setFill(Color.gray(0.4));
+        gc.setFill(BACKGROUND);
         gc.fillRect(10, 0, maxX - 10, maxY);
 
-        // Speed ticks
-        gc.beginPath();
-        gc.moveTo(maxX, 0);
-        gc.lineTo(maxX, maxY);
+        // Speed ticks, as one polyline down the edge and out and back along each tick. It covers the same pixels
+        // as stroking them as a path, and its points go straight to the canvas where a path would be copied.
+        tickX[0] = maxX;
+        tickY[0] = 0;
+        tickX[1] = maxX;
+        tickY[1] = maxY;
+        int points = 2;
 
         // -- Show up to 30 higher
-        double currentSpeed = getAirSpeed();
         int tickSpeed = (int) currentSpeed + (int) (currentSpeed % 2);
         gc.setStroke(Color.WHITE);
 
         while (tickSpeed < currentSpeed + 40) {
             double yLoc = maxY / 2 - (tickSpeed - currentSpeed) * tickSpacing;
-            gc.moveTo(maxX, yLoc);
-            gc.lineTo(maxX - (tickSpeed % 10 == 0 ? 10 : 5), yLoc);
+            points = addTick(points, yLoc, tickSpeed % 10 == 0 ? 10 : 5);
 
             // Draw the speed too
             if (tickSpeed % 10 == 0) {
-                String label = Integer.toString(tickSpeed);
+                String label = tickLabels.get(tickSpeed);
                 gc.strokeText(label, maxX - 10 - 9 * label.length(), yLoc + 5);
             }
 
@@ -95,12 +240,11 @@ public class SpeedTapeInstrument extends Parent
         tickSpeed = (int) currentSpeed - (int) currentSpeed % 2;
         while (tickSpeed >= 0 && tickSpeed > currentSpeed - 40) {
             double yLoc = maxY / 2 + (currentSpeed - tickSpeed) * tickSpacing;
-            gc.moveTo(maxX, yLoc);
-            gc.lineTo(maxX - (tickSpeed % 10 == 0 ? 10 : 5), yLoc);
+            points = addTick(points, yLoc, tickSpeed % 10 == 0 ? 10 : 5);
 
             // Draw the speed too
             if (tickSpeed % 10 == 0) {
-                String label = Integer.toString(tickSpeed);
+                String label = tickLabels.get(tickSpeed);
                 gc.strokeText(label, maxX - 10 - 9 * label.length(), yLoc + 5);
             }
 
@@ -108,10 +252,24 @@ public class SpeedTapeInstrument extends Parent
         }
 
         // -- Stroke the tick marks
-        gc.setStroke(Color.WHITE);
-        gc.stroke();
+        gc.strokePolyline(tickX, tickY, points);
+    }
 
-        // Current Speed
+    /**
+     * Adds a tick out from the edge and back. It turns half the line width past its length, where the square cap of a
+     * separate tick would end.
+     */
+    private int addTick(int points, double yLoc, double length) {
+        tickX[points] = maxX;
+        tickY[points++] = yLoc;
+        tickX[points] = maxX - length - 0.5;
+        tickY[points++] = yLoc;
+        tickX[points] = maxX;
+        tickY[points++] = yLoc;
+        return points;
+    }
+
+    private void drawBox(GraphicsContext gc) {
         gc.beginPath();
         gc.translate(0, canvas.getHeight() / 2 - 20);
         gc.moveTo(0, 10);
@@ -133,51 +291,71 @@ public class SpeedTapeInstrument extends Parent
         gc.setFill(Color.BLACK);
         gc.fill();
         gc.stroke();
-        gc.clip();
+    }
+
+    private void drawReadout(GraphicsContext gc, double currentSpeed) {
+        gc.translate(0, canvas.getHeight() / 2 - 20);
 
-        //gc.translate(0, 0);
-        // Display speed
-        Font font = new Font(gc.getFont().getSize() + 8);
-        gc.setFont(font);
+        // Display speed, the last digit rolling in the window of its drum
+        gc.setFont(speedFont);
         gc.setFill(Color.WHITE);
         gc.setStroke(Color.WHITE);
 
         double fracSpeed = currentSpeed - Math.floor(currentSpeed);
-        String speedLabel = Integer.toString((int) Math.floor(currentSpeed));
+        String speedLabel = speedLabels.get(Math.floor(currentSpeed));
 
         for (int ndx = 0; ndx < speedLabel.length(); ndx++) {
             int xLoc = 30 - 10 * (speedLabel.length() - ndx - 1);
-            String digit = speedLabel.substring(ndx, ndx + 1);
+            char ch = speedLabel.charAt(ndx);
+            // The labels are whole numbers, so the only other character is a minus
+            String digit = ch >= '0' && ch <= '9' ? DIGITS[ch - '0'] : "-";
             if (ndx == speedLabel.length() - 1) {
-                int value = valueOf(digit);
-                int beforeValue = (value - 1 < 0 ? 9 : value - 1);
-                int afterValue = (value + 1 == 10 ? 0 : value + 1);
-                int afterAfterValue = (afterValue + 1 == 10 ? 0 : afterValue + 1);
-
-                gc.fillText(digit, xLoc, 27 + (fracSpeed * 20.5));
-                gc.strokeText(digit, xLoc, 27 + (fracSpeed * 20.5));
-
-                digit = Integer.toString(afterValue);
-                gc.fillText(digit, xLoc, 27 + (fracSpeed * 20.5) - 20.5);
-                gc.strokeText(digit, xLoc, 27 + (fracSpeed * 20.5) - 20.5);
-
-                digit = Integer.toString(afterAfterValue);
-                gc.fillText(digit, xLoc, 27 + (fracSpeed * 20.5) - 41);
-                gc.strokeText(digit, xLoc, 27 + (fracSpeed * 20.5) - 41);
-
-                if (currentSpeed >= 1) {
-                    digit = Integer.toString(beforeValue);
-                    gc.fillText(digit, xLoc, 27 + (fracSpeed * 20.5) + 20.5);
-                    gc.strokeText(digit, xLoc, 27 + (fracSpeed * 20.5) + 20.5);
-                }
+                // Nothing rolls in below zero
+                double bottom = currentSpeed < 1 ? 27 + fracSpeed * DIGIT_PITCH + 5 : Double.POSITIVE_INFINITY;
+                lastDigit().draw(gc, xLoc, 27, (ch - '0') + fracSpeed, bottom);
             } else {
                 gc.fillText(digit, xLoc, 27);
                 gc.strokeText(digit, xLoc, 27);
             }
         }
+    }
+
+    /**
+     * The drum for the last digit, set up for the font of the current speed readout on first use.
+     */
+    private DrumReadout lastDigit() {
+        if (lastDigit == null) {
+            lastDigit = new DrumReadout(DIGITS, speedFont, Color.WHITE, Color.WHITE, DIGIT_PITCH, VPos.BASELINE,
+                    27, 13);
+        }
+        return lastDigit;
+    }
 
-        // Done
-        gc.restore();
+    public boolean isOffscreen() {
+        return offscreen;
+    }
+
+    /**
+     * Switches between drawing on the FX thread and rasterizing offscreen on a worker thread, and redraws the
+     * instrument.
+     *
+     * @param offscreen
+     */
+    public void setOffscreen(boolean offscreen) {
+        if (offscreen == this.offscreen) {
+            return;
+        }
+        this.offscreen = offscreen;
+
+        if (offscreen) {
+            if (surface == null) {
+                surface = new OffscreenSurface(maxX, maxY, 1, new Rasterizer());
+            }
+            getChildren().setAll(surface);
+        } else {
+            getChildren().setAll(canvas, boxCanvas, readoutCanvas);
+        }
+        update();
     }
 
     public double getAirSpeed() {
@@ -191,4 +369,126 @@ public class SpeedTapeInstrument extends Parent
     public DoubleProperty airSpeedProperty() {
         return airSpeed;
     }
+
+    /**
+     * Draws the tape and the speed box with Java2D for the offscreen surface, the same way {@link #drawTape} and
+     * {@link #drawReadout} do, with the last digit rolling as on the drum. Takes the speed as its only input.
+     */
+    private class Rasterizer implements OffscreenSurface.Rasterizer
+    {
+
+        private final LabelCache tickLabels = new LabelCache(10, val -> Integer.toString((int) val));
+        private final LabelCache speedLabels = new LabelCache(1, val -> Integer.toString((int) val));
+        private final Font tickFont;
+        private final Font speedFont;
+        private final java.awt.Color background = Java2D.color(BACKGROUND);
+
+        private final Path2D.Double path = new Path2D.Double();
+        private final Rectangle2D.Double rect = new Rectangle2D.Double();
+        private final AffineTransform identity = new AffineTransform();
+
+        private Rasterizer() {
+            double fontSize = javafx.scene.text.Font.getDefault().getSize();
+            tickFont = Java2D.font(fontSize);
+            speedFont = Java2D.font(fontSize + 8);
+        }
+
+        @Override
+        public void rasterize(Graphics2D g, double[] inputs) {
+            double currentSpeed = inputs[0];
+            rasterizeTape(g, currentSpeed);
+            g.setTransform(identity);
+            rasterizeReadout(g, currentSpeed);
+        }
+
+        private void rasterizeTape(Graphics2D g, double currentSpeed) {
+            g.setColor(background);
+            rect.setRect(10, 0, maxX - 10, maxY);
+            g.fill(rect);
+
+            g.setColor(java.awt.Color.WHITE);
+            g.setFont(tickFont);
+            path.reset();
+            path.moveTo(maxX, 0);
+            path.lineTo(maxX, maxY);
+
+            int tickSpeed = (int) currentSpeed + (int) (currentSpeed % 2);
+            while (tickSpeed < currentSpeed + 40) {
+                tick(g, tickSpeed, maxY / 2 - (tickSpeed - currentSpeed) * tickSpacing);
+                tickSpeed += 2;
+            }
+
+            tickSpeed = (int) currentSpeed - (int) currentSpeed % 2;
+            while (tickSpeed >= 0 && tickSpeed > currentSpeed - 40) {
+                tick(g, tickSpeed, maxY / 2 + (currentSpeed - tickSpeed) * tickSpacing);
+                tickSpeed -= 2;
+            }
+
+            g.draw(path);
+        }
+
+        private void tick(Graphics2D g, int tickSpeed, double yLoc) {
+            path.moveTo(maxX, yLoc);
+            path.lineTo(maxX - (tickSpeed % 10 == 0 ? 10 : 5), yLoc);
+
+            if (tickSpeed % 10 == 0) {
+                String label = tickLabels.get(tickSpeed);
+                Java2D.drawText(g, label, maxX - 10 - 9 * label.length(), yLoc + 5, TextAlignment.LEFT,
+                        VPos.BASELINE, false, true);
+            }
+        }
+
+        private void rasterizeReadout(Graphics2D g, double currentSpeed) {
+            g.translate(0, maxY / 2 - 20);
+            path.reset();
+            path.moveTo(0, 10);
+            path.lineTo(30, 10);
+            path.lineTo(30, 0);
+            path.lineTo(50, 0);
+
+            path.lineTo(50, 17);
+            path.lineTo(maxX, 20);
+            path.lineTo(50, 23);
+            path.lineTo(50, 40);
+
+            path.lineTo(30, 40);
+            path.lineTo(30, 30);
+            path.lineTo(0, 30);
+            path.closePath();
+
+            g.setColor(java.awt.Color.BLACK);
+            g.fill(path);
+            g.setColor(java.awt.Color.WHITE);
+            g.draw(path);
+            g.clip(path);
+
+            g.setFont(speedFont);
+            double fracSpeed = currentSpeed - Math.floor(currentSpeed);
+            String speedLabel = speedLabels.get(Math.floor(currentSpeed));
+
+            for (int ndx = 0; ndx < speedLabel.length(); ndx++) {
+                int xLoc = 30 - 10 * (speedLabel.length() - ndx - 1);
+                char ch = speedLabel.charAt(ndx);
+                if (ndx < speedLabel.length() - 1) {
+                    String digit = ch >= '0' && ch <= '9' ? DIGITS[ch - '0'] : "-";
+                    Java2D.drawText(g, digit, xLoc, 27, TextAlignment.LEFT, VPos.BASELINE, true, true);
+                    continue;
+                }
+
+                if (currentSpeed < 1) {
+                    // Nothing rolls in below zero
+                    rect.setRect(0, 0, maxX, 27 + fracSpeed * DIGIT_PITCH + 5);
+                    g.clip(rect);
+                }
+
+                // The faces of the drum that show in the box, the same as DrumReadout draws
+                double position = (ch - '0') + fracSpeed;
+                for (int face = (int) Math.floor(position - 13 / DIGIT_PITCH) - 1;
+                        face <= (int) Math.ceil(position + 27 / DIGIT_PITCH) + 1; face++) {
+                    Java2D.drawText(g, DIGITS[Math.floorMod(face, DIGITS.length)], xLoc,
+                            27 - (face - position) * DIGIT_PITCH, TextAlignment.LEFT, VPos.BASELINE, true, true);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis;
+
+import org.defis.efis.jfr.StartupPhaseEvent;
+import org.defis.efis.metrics.Metrics;
+
+/**
+ * Times one phase of startup into the startup metrics and a flight recording.
+ *
+ * <pre>
+ * StartupPhase phase = StartupPhase.begin("layout");
+ * ...
+ * phase.end();
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class StartupPhase
+{
+
+    private final String name;
+    private final long start = System.nanoTime();
+    private final StartupPhaseEvent event = new StartupPhaseEvent();
+
+    private StartupPhase(String name) {
+        this.name = name;
+        event.begin();
+    }
+
+    public static StartupPhase begin(String name) {
+        return new StartupPhase(name);
+    }
+
+    public void end() {
+        long nanos = System.nanoTime() - start;
+        event.phase = name;
+        event.commit();
+        Metrics.get().startup().phase(name, nanos);
+    }
+}
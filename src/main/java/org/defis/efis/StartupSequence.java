@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.animation.AnimationTimer;
+import org.defis.efis.metrics.Metrics;
+
+/**
+ * Brings the rest of the display up after its first frame, one phase per FX pulse, so the window shows as soon as
+ * the layout is built and each phase becomes visible as soon as it is done, rather than all at the end of start().
+ *
+ * The first pulse after {@link #start()} renders the window as it is. A pulse only starts once the one before it has
+ * been rendered, so the {@code first-frame} phase ends at the start of the second pulse; that pulse and every one
+ * after runs the next phase before rendering it. Phases run on the FX thread and are timed with {@link StartupPhase}.
+ * A phase that throws is logged and the others still run. When the last one is done the timings are logged and
+ * startup is marked ready, whether or not every phase succeeded.
+ *
+ * @author Matthew Tyler
+ */
+public class StartupSequence
+{
+
+    private static final Logger LOG = Logger.getLogger(StartupSequence.class.getName());
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Runnable> phases = new ArrayList<>();
+    private StartupPhase firstFrame;
+    private boolean firstPulse = true;
+    private int next;
+
+    private final AnimationTimer timer = new AnimationTimer()
+    {
+        @Override
+        public void handle(long now) {
+            step();
+        }
+    };
+
+    /**
+     * Adds a phase to run after the ones already added.
+     *
+     * @param name
+     * @param phase
+     * @return this sequence
+     */
+    public StartupSequence then(String name, Runnable phase) {
+        names.add(name);
+        phases.add(phase);
+        return this;
+    }
+
+    /**
+     * Starts running the phases, on the FX thread once the stage is showing.
+     */
+    public void start() {
+        firstFrame = StartupPhase.begin("first-frame");
+        timer.start();
+    }
+
+    private void step() {
+        if (firstPulse) {
+            // Renders the first frame after this returns
+            firstPulse = false;
+            return;
+        }
+        if (firstFrame != null) {
+            firstFrame.end();
+            firstFrame = null;
+        }
+
+        int current = next++;
+        if (next >= phases.size()) {
+            timer.stop();
+        }
+        if (current < phases.size()) {
+            // A phase that throws is logged and still timed, and the rest still run
+            StartupPhase phase = StartupPhase.begin(names.get(current));
+            try {
+                phases.get(current).run();
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "Startup phase " + names.get(current) + " failed", ex);
+            } finally {
+                phase.end();
+            }
+        }
+        if (next >= phases.size()) {
+            Metrics.get().startup().ready();
+            log();
+        }
+    }
+
+    private static void log() {
+        StringBuilder message = new StringBuilder("Started in ");
+        message.append(String.format(Locale.ROOT, "%.2f s:", Metrics.get().startup().getReadySeconds()));
+        Metrics.get().startup().getPhaseSeconds().forEach((phase, seconds) -> message
+                .append(String.format(Locale.ROOT, " %s %.0f ms,", phase, seconds * 1e3)));
+        message.setLength(message.length() - 1);
+        LOG.info(message.toString());
+    }
+}
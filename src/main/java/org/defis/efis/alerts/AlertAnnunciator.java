@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.alerts;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import org.defis.efis.Registry;
+import org.defis.efis.gauges.Fonts;
+
+/**
+ * Shows the alerts that are on, most urgent first, and publishes them as channels: {@code /alerts/<name>} is 1 while
+ * the alert is on, {@code /alerts/level} the level of the most urgent one (see {@link AlertPriority#level()}) and
+ * {@code /alerts/warning}, {@code /alerts/caution} and {@code /alerts/advisory} how many of each are on. Clicking the
+ * annunciator acknowledges latched alerts.
+ *
+ * The engine decides on the telemetry thread; changes are handed to the FX thread the way telemetry is, with only one
+ * handoff queued at a time.
+ *
+ * @author Matthew Tyler
+ */
+public class AlertAnnunciator extends VBox
+{
+
+    public static final String LEVEL_CHANNEL = "/alerts/level";
+
+    private static final Color[] COLORS = {Color.WHITE, Color.ORANGE, Color.RED};
+
+    private final AlertEngine engine;
+    private final Label[] rows;
+
+    /**
+     * Rules most urgent first, in configuration order within a priority.
+     */
+    private final int[] order;
+    private final boolean[] shown;
+    private final int[] shownRules;
+    private final int[] tally = new int[AlertPriority.values().length];
+
+    private final ReadOnlyDoubleWrapper[] ruleChannels;
+    private final ReadOnlyDoubleWrapper level = new ReadOnlyDoubleWrapper();
+    private final ReadOnlyDoubleWrapper[] counts = new ReadOnlyDoubleWrapper[AlertPriority.values().length];
+
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final Runnable refresh = this::refresh;
+
+    public AlertAnnunciator(AlertEngine engine, int count) {
+        this.engine = engine;
+        rows = new Label[count];
+        shownRules = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Label();
+            rows[i].setFont(Fonts.size(14));
+            shownRules[i] = -1;
+        }
+        getChildren().addAll(rows);
+
+        int rules = engine.getRuleCount();
+        shown = new boolean[rules];
+        order = new int[rules];
+        Integer[] sorted = new Integer[rules];
+        for (int r = 0; r < rules; r++) {
+            sorted[r] = r;
+        }
+        Arrays.sort(sorted, Comparator.comparing((Integer r) -> engine.getRule(r).getPriority()).reversed());
+        for (int r = 0; r < rules; r++) {
+            order[r] = sorted[r];
+        }
+
+        ruleChannels = new ReadOnlyDoubleWrapper[rules];
+        for (int r = 0; r < rules; r++) {
+            ruleChannels[r] = new ReadOnlyDoubleWrapper();
+        }
+        for (int p = 0; p < counts.length; p++) {
+            counts[p] = new ReadOnlyDoubleWrapper();
+        }
+
+        engine.setChangeListener(() -> {
+            if (refreshPending.compareAndSet(false, true)) {
+                Platform.runLater(refresh);
+            }
+        });
+        setOnMouseClicked(e -> engine.acknowledgeAll());
+    }
+
+    /**
+     * Publishes the alert channels to the registry.
+     *
+     * @param registry
+     */
+    public void publish(Registry registry) {
+        for (int r = 0; r < ruleChannels.length; r++) {
+            registry.publish("/alerts/" + engine.getRule(r).getName(), ruleChannels[r].getReadOnlyProperty());
+        }
+        registry.publish(LEVEL_CHANNEL, level.getReadOnlyProperty());
+        for (AlertPriority priority : AlertPriority.values()) {
+            registry.publish("/alerts/" + priority.name().toLowerCase(Locale.ROOT), counts[priority.ordinal()]
+                    .getReadOnlyProperty());
+        }
+    }
+
+    /**
+     * Shows the alerts that are on now. Rows only get new text when their alert changed.
+     */
+    public void refresh() {
+        refreshPending.set(false);
+        engine.copyShown(shown);
+
+        int row = 0;
+        int highest = 0;
+        Arrays.fill(tally, 0);
+        for (int r : order) {
+            ruleChannels[r].set(shown[r] ? 1 : 0);
+            if (!shown[r]) {
+                continue;
+            }
+            AlertPriority priority = engine.getRule(r).getPriority();
+            tally[priority.ordinal()]++;
+            highest = Math.max(highest, priority.level());
+            if (row < rows.length) {
+                if (shownRules[row] != r) {
+                    shownRules[row] = r;
+                    rows[row].setText(engine.getRule(r).getMessage());
+                    rows[row].setTextFill(COLORS[priority.ordinal()]);
+                }
+                row++;
+            }
+        }
+        level.set(highest);
+        for (int p = 0; p < counts.length; p++) {
+            counts[p].set(tally[p]);
+        }
+
+        for (; row < rows.length; row++) {
+            if (shownRules[row] != -1) {
+                shownRules[row] = -1;
+                rows[row].setText("");
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.alerts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Setter;
+
+/**
+ * Evaluates alert rules as telemetry comes in.
+ *
+ * The rules are compiled once into flat arrays, with a plan listing for each channel the rules that read it. A source
+ * looks up the index of each of its channels once with {@link #channel}, then {@link #publish publishes} every sample
+ * on its own thread; publishing runs only the rules of that channel and allocates nothing, so an alert comes on or
+ * goes off with the sample that crosses its threshold however many rules are loaded.
+ *
+ * Channels that have not been published yet read as NaN, which meets no condition. Thread safe; the change listener
+ * is called on the publishing thread, or the acknowledging one, after any alert came on or went off.
+ *
+ * @author Matthew Tyler
+ */
+public class AlertEngine
+{
+
+    /**
+     * Each rule has two terms: its condition, then its when condition.
+     */
+    private static final int TERMS = 2;
+
+    private final AlertRule[] rules;
+    private final Map<String, Integer> channels = new HashMap<>();
+    private final double[] values;
+
+    /**
+     * The plan: the rules reading channel c are planRules[planStart[c]] to planRules[planStart[c + 1] - 1].
+     */
+    private final int[] planStart;
+    private final int[] planRules;
+
+    /**
+     * By term: the channel, the channel subtracted from it or -1, whether it is a magnitude, whether it must be above
+     * its threshold, and the threshold. A rule without a when condition has a channel of -1 for that term.
+     */
+    private final int[] termChannel;
+    private final int[] termReference;
+    private final boolean[] termMagnitude;
+    private final boolean[] termAbove;
+    private final double[] termThreshold;
+
+    /**
+     * By rule: where an active alert goes off again, its threshold moved back by the hysteresis.
+     */
+    private final double[] offThreshold;
+    private final boolean[] latching;
+    private final int[] priority;
+
+    private final boolean[] active;
+    private final boolean[] latched;
+    private final boolean[] shown;
+    private final int[] shownCount = new int[AlertPriority.values().length];
+
+    @Setter
+    private volatile Runnable changeListener;
+
+    public AlertEngine(List<AlertRule> rules) {
+        this.rules = rules.toArray(new AlertRule[0]);
+        int count = this.rules.length;
+        termChannel = new int[count * TERMS];
+        termReference = new int[count * TERMS];
+        termMagnitude = new boolean[count * TERMS];
+        termAbove = new boolean[count * TERMS];
+        termThreshold = new double[count * TERMS];
+        offThreshold = new double[count];
+        latching = new boolean[count];
+        priority = new int[count];
+        active = new boolean[count];
+        latched = new boolean[count];
+        shown = new boolean[count];
+
+        for (int r = 0; r < count; r++) {
+            AlertRule rule = this.rules[r];
+            AlertRule.Condition condition = rule.getCondition();
+            compile(r * TERMS, condition);
+            compile(r * TERMS + 1, rule.getWhen());
+            offThreshold[r] = condition.isAbove()
+                    ? condition.getThreshold() - rule.getHysteresis()
+                    : condition.getThreshold() + rule.getHysteresis();
+            latching[r] = rule.isLatching();
+            priority[r] = rule.getPriority().ordinal();
+        }
+
+        values = new double[channels.size()];
+        Arrays.fill(values, Double.NaN);
+
+        // Count the rules reading each channel, then list them
+        int[] read = new int[TERMS * 2];
+        planStart = new int[channels.size() + 1];
+        for (int r = 0; r < count; r++) {
+            for (int i = channelsRead(r, read) - 1; i >= 0; i--) {
+                planStart[read[i] + 1]++;
+            }
+        }
+        for (int c = 0; c < channels.size(); c++) {
+            planStart[c + 1] += planStart[c];
+        }
+        planRules = new int[planStart[channels.size()]];
+        int[] next = Arrays.copyOf(planStart, channels.size());
+        for (int r = 0; r < count; r++) {
+            for (int i = channelsRead(r, read) - 1; i >= 0; i--) {
+                planRules[next[read[i]]++] = r;
+            }
+        }
+    }
+
+    private void compile(int term, AlertRule.Condition condition) {
+        if (condition == null) {
+            termChannel[term] = -1;
+            termReference[term] = -1;
+            return;
+        }
+        termChannel[term] = channelIndex(condition.getChannel());
+        termReference[term] = condition.getReference() == null ? -1 : channelIndex(condition.getReference());
+        termMagnitude[term] = condition.isMagnitude();
+        termAbove[term] = condition.isAbove();
+        termThreshold[term] = condition.getThreshold();
+    }
+
+    private int channelIndex(String path) {
+        return channels.computeIfAbsent(path, p -> channels.size());
+    }
+
+    /**
+     * Puts the distinct channels a rule reads into the array and returns how many there are.
+     */
+    private int channelsRead(int rule, int[] read) {
+        int found = 0;
+        for (int term = rule * TERMS; term < rule * TERMS + TERMS; term++) {
+            found = addChannel(read, found, termChannel[term]);
+            found = addChannel(read, found, termReference[term]);
+        }
+        return found;
+    }
+
+    private static int addChannel(int[] read, int found, int channel) {
+        if (channel < 0) {
+            return found;
+        }
+        for (int i = 0; i < found; i++) {
+            if (read[i] == channel) {
+                return found;
+            }
+        }
+        read[found] = channel;
+        return found + 1;
+    }
+
+    /**
+     * Returns the index to publish a channel under, or -1 when no rule reads it.
+     *
+     * @param path
+     * @return
+     */
+    public int channel(String path) {
+        Integer channel = channels.get(path);
+        return channel == null ? -1 : channel;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    public AlertRule getRule(int rule) {
+        return rules[rule];
+    }
+
+    /**
+     * Takes a new sample of a channel and runs the rules that read it.
+     *
+     * @param channel from {@link #channel}
+     * @param value
+     */
+    public void publish(int channel, double value) {
+        boolean changed = false;
+        synchronized (this) {
+            values[channel] = value;
+            for (int i = planStart[channel]; i < planStart[channel + 1]; i++) {
+                changed |= evaluate(planRules[i]);
+            }
+        }
+        if (changed) {
+            fireChange();
+        }
+    }
+
+    /**
+     * Takes the alert off if it is only on because it latched.
+     *
+     * @param rule
+     */
+    public void acknowledge(int rule) {
+        boolean changed;
+        synchronized (this) {
+            latched[rule] = false;
+            changed = updateShown(rule);
+        }
+        if (changed) {
+            fireChange();
+        }
+    }
+
+    public void acknowledgeAll() {
+        boolean changed = false;
+        synchronized (this) {
+            for (int r = 0; r < rules.length; r++) {
+                latched[r] = false;
+                changed |= updateShown(r);
+            }
+        }
+        if (changed) {
+            fireChange();
+        }
+    }
+
+    /**
+     * @param rule
+     * @return true while the alert is on, met or latched
+     */
+    public synchronized boolean isShown(int rule) {
+        return shown[rule];
+    }
+
+    /**
+     * @param rule
+     * @return true while the rule's condition is met, hysteresis included
+     */
+    public synchronized boolean isActive(int rule) {
+        return active[rule];
+    }
+
+    public synchronized int getShownCount(AlertPriority priority) {
+        return shownCount[priority.ordinal()];
+    }
+
+    /**
+     * @return the level of the most urgent alert that is on, or 0 when none is
+     */
+    public synchronized int getLevel() {
+        for (int p = shownCount.length - 1; p >= 0; p--) {
+            if (shownCount[p] > 0) {
+                return p + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copies which alerts are on, all at the same instant, indexed by rule.
+     *
+     * @param into at least {@link #getRuleCount()} long
+     */
+    public synchronized void copyShown(boolean[] into) {
+        System.arraycopy(shown, 0, into, 0, shown.length);
+    }
+
+    /**
+     * Runs a rule on the current values and returns whether its alert came on or went off.
+     */
+    private boolean evaluate(int rule) {
+        int term = rule * TERMS;
+        boolean enabled = termChannel[term + 1] < 0 || meets(term + 1, termThreshold[term + 1]);
+        boolean met = enabled && meets(term, active[rule] ? offThreshold[rule] : termThreshold[term]);
+        if (met == active[rule]) {
+            return false;
+        }
+        active[rule] = met;
+        if (met && latching[rule]) {
+            latched[rule] = true;
+        }
+        return updateShown(rule);
+    }
+
+    private boolean meets(int term, double threshold) {
+        double value = values[termChannel[term]];
+        if (termReference[term] >= 0) {
+            value -= values[termReference[term]];
+        }
+        if (termMagnitude[term]) {
+            value = Math.abs(value);
+        }
+        return termAbove[term] ? value > threshold : value < threshold;
+    }
+
+    private boolean updateShown(int rule) {
+        boolean on = active[rule] || latched[rule];
+        if (on == shown[rule]) {
+            return false;
+        }
+        shown[rule] = on;
+        shownCount[priority[rule]] += on ? 1 : -1;
+        return true;
+    }
+
+    private void fireChange() {
+        Runnable listener = changeListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.alerts;
+
+/**
+ * How urgent an alert is, least urgent first. An alert's level, its ordinal plus one, is what the
+ * {@code /alerts/level} channel shows; level 0 is no alert.
+ *
+ * @author Matthew Tyler
+ */
+public enum AlertPriority
+{
+    ADVISORY, CAUTION, WARNING;
+
+    public int level() {
+        return ordinal() + 1;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.alerts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import lombok.Getter;
+
+/**
+ * One alert condition from configuration.
+ *
+ * Rules are read from properties, all keys of a rule starting with {@code alert.<name>.}:
+ *
+ * <pre>
+ * alert.overspeed.condition=/velocities/airspeed-kt &gt; 163
+ * alert.overspeed.hysteresis=3
+ * alert.overspeed.priority=warning
+ * alert.overspeed.latching=true
+ * alert.overspeed.message=OVERSPEED
+ * alert.overspeed.when=/velocities/groundspeed-kt &gt; 30
+ * </pre>
+ *
+ * Only the condition is required. The alert comes on when the condition is met and goes off once the value is back
+ * by more than the hysteresis; a latching alert stays on after that until it is acknowledged. The optional when
+ * condition enables the rule, for example to keep a stall alert quiet on the ground.
+ *
+ * @author Matthew Tyler
+ */
+@Getter
+public class AlertRule
+{
+
+    private static final String PREFIX = "alert.";
+
+    private final String name;
+    private final String message;
+    private final AlertPriority priority;
+    private final boolean latching;
+    private final Condition condition;
+    private final double hysteresis;
+
+    /**
+     * Null when the rule is always enabled.
+     */
+    private final Condition when;
+
+    public AlertRule(String name, String message, AlertPriority priority, boolean latching, Condition condition,
+            double hysteresis, Condition when) {
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("Negative hysteresis for alert " + name);
+        }
+        this.name = name;
+        this.message = message;
+        this.priority = priority;
+        this.latching = latching;
+        this.condition = condition;
+        this.hysteresis = hysteresis;
+        this.when = when;
+    }
+
+    /**
+     * Reads the rule with the given name.
+     *
+     * @param name
+     * @param properties
+     * @return
+     * @throws IllegalArgumentException if the rule is missing or malformed
+     */
+    public static AlertRule parse(String name, Properties properties) {
+        String key = PREFIX + name + ".";
+        String condition = properties.getProperty(key + "condition");
+        if (condition == null) {
+            throw new IllegalArgumentException("No condition for alert " + name);
+        }
+        String when = properties.getProperty(key + "when");
+
+        try {
+            return new AlertRule(name,
+                    properties.getProperty(key + "message", name.toUpperCase(Locale.ROOT)).trim(),
+                    AlertPriority.valueOf(properties.getProperty(key + "priority", "caution").trim()
+                            .toUpperCase(Locale.ROOT)),
+                    Boolean.parseBoolean(properties.getProperty(key + "latching", "false").trim()),
+                    Condition.parse(condition),
+                    Double.parseDouble(properties.getProperty(key + "hysteresis", "0").trim()),
+                    when == null ? null : Condition.parse(when));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Bad alert " + name + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads every rule in the properties, in order of name.
+     *
+     * @param properties
+     * @return
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static List<AlertRule> parseAll(Properties properties) {
+        List<AlertRule> rules = new ArrayList<>();
+        for (String name : names(properties)) {
+            rules.add(parse(name, properties));
+        }
+        return rules;
+    }
+
+    /**
+     * Names of the rules in the properties, from their {@code alert.<name>.condition} keys.
+     */
+    private static String[] names(Properties properties) {
+        return properties.stringPropertyNames().stream()
+                .filter(key -> key.startsWith(PREFIX) && key.endsWith(".condition"))
+                .map(key -> key.substring(PREFIX.length(), key.length() - ".condition".length()))
+                .sorted()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * A comparison of one channel, or the difference of two, with a threshold:
+     * {@code <path> [- <path>] > <threshold>}, or with {@code <}. The value may be put between bars for its
+     * magnitude, as in {@code |/orientation/roll-deg| > 45}.
+     */
+    @Getter
+    public static class Condition
+    {
+
+        private final String channel;
+
+        /**
+         * Subtracted from the channel, or null.
+         */
+        private final String reference;
+        private final boolean magnitude;
+        private final boolean above;
+        private final double threshold;
+
+        public Condition(String channel, String reference, boolean magnitude, boolean above, double threshold) {
+            this.channel = channel;
+            this.reference = reference;
+            this.magnitude = magnitude;
+            this.above = above;
+            this.threshold = threshold;
+        }
+
+        public static Condition parse(String text) {
+            int comparison = Math.max(text.lastIndexOf('>'), text.lastIndexOf('<'));
+            if (comparison < 0) {
+                throw new IllegalArgumentException("No > or < in " + text);
+            }
+            boolean above = text.charAt(comparison) == '>';
+            double threshold = Double.parseDouble(text.substring(comparison + 1).trim());
+
+            String value = text.substring(0, comparison).trim();
+            boolean magnitude = value.length() > 1 && value.startsWith("|") && value.endsWith("|");
+            if (magnitude) {
+                value = value.substring(1, value.length() - 1).trim();
+            }
+
+            String[] channels = value.split("\\s+-\\s+");
+            if (channels.length > 2) {
+                throw new IllegalArgumentException("More than two channels in " + text);
+            }
+            for (String channel : channels) {
+                if (!channel.startsWith("/") || channel.indexOf(' ') >= 0) {
+                    throw new IllegalArgumentException("Not a channel path: " + channel);
+                }
+            }
+            return new Condition(channels[0], channels.length > 1 ? channels[1] : null, magnitude, above, threshold);
+        }
+
+        @Override
+        public String toString() {
+            String value = reference == null ? channel : channel + " - " + reference;
+            return (magnitude ? "|" + value + "|" : value) + (above ? " > " : " < ") + threshold;
+        }
+    }
+}
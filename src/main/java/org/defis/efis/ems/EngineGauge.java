@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.ems;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javafx.scene.paint.Color;
+import lombok.Getter;
+
+import static lombok.AccessLevel.NONE;
+
+/**
+ * What one engine gauge shows: its label, its range, how finely its readout resolves, and its coloured bands. The
+ * {@link EngineMonitor} turns the bands into pixels once, when it lays its gauges out.
+ *
+ * @author Matthew Tyler
+ */
+@Getter
+public class EngineGauge
+{
+
+    public enum Style
+    {
+        /**
+         * A needle over an arc of 240 degrees, for RPM and manifold pressure.
+         */
+        DIAL,
+        /**
+         * A vertical bar, for temperatures, pressures and flows.
+         */
+        BAR
+    }
+
+    /**
+     * Colours of the bands, and of the value while it is in one of them.
+     */
+    public enum Zone
+    {
+        NORMAL(Color.LIMEGREEN), CAUTION(Color.ORANGE), REDLINE(Color.RED);
+
+        @Getter
+        private final Color color;
+
+        Zone(Color color) {
+            this.color = color;
+        }
+    }
+
+    private final String label;
+    private final Style style;
+    private final double min;
+    private final double max;
+
+    /**
+     * Smallest change the readout shows: 1 for whole units, 0.1 for tenths.
+     */
+    private final double resolution;
+
+    @Getter(NONE)
+    private final List<Band> bands = new ArrayList<>();
+
+    public EngineGauge(String label, Style style, double min, double max, double resolution) {
+        if (!(max > min) || !(resolution > 0)) {
+            throw new IllegalArgumentException("Bad range or resolution for gauge " + label);
+        }
+        this.label = label;
+        this.style = style;
+        this.min = min;
+        this.max = max;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Adds a band. Where bands overlap, the one added last wins.
+     *
+     * @param from
+     * @param to
+     * @param zone
+     * @return this gauge
+     */
+    public EngineGauge band(double from, double to, Zone zone) {
+        if (!(to > from)) {
+            throw new IllegalArgumentException("Empty band on gauge " + label);
+        }
+        bands.add(new Band(from, to, zone));
+        return this;
+    }
+
+    public List<Band> getBands() {
+        return Collections.unmodifiableList(bands);
+    }
+
+    @Getter
+    public static class Band
+    {
+
+        private final double from;
+        private final double to;
+        private final Zone zone;
+
+        Band(double from, double to, Zone zone) {
+            this.from = from;
+            this.to = to;
+            this.zone = zone;
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.ems;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleFunction;
+import javafx.geometry.VPos;
+import javafx.scene.Parent;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.ArcType;
+import javafx.scene.text.TextAlignment;
+import org.defis.efis.gauges.Fonts;
+import org.defis.efis.gauges.LabelCache;
+import org.defis.efis.gauges.RedrawTracker;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.jfr.InstrumentRedrawEvent;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
+
+/**
+ * An engine monitor: dials across the top and a row of bars below, one per {@link EngineGauge}.
+ *
+ * Everything that does not move, the frames, bands and labels, is drawn once on a canvas of its own. The
+ * values are drawn together on a second canvas: a whole engine frame is applied with {@link #applyFrame}, the redraw
+ * tracker decides whether any gauge moved by a pixel or a readout step, and at most once a pulse all bars are filled
+ * with one path per colour, all needles stroked with one path and the readouts written from cached labels. The bands
+ * are turned into pixels and angles once, when the gauges are laid out.
+ *
+ * FX thread only, like the other instruments.
+ *
+ * @author Matthew Tyler
+ */
+public class EngineMonitor extends Parent
+{
+
+    private static final int VALUE_LAYER = 1;
+
+    /**
+     * Dials sweep from 210 degrees, lower left, clockwise through the top to -30 degrees, lower right.
+     */
+    private static final double DIAL_START = 210;
+    private static final double DIAL_SWEEP = 240;
+
+    private static final int NO_ZONE = -1;
+    private static final EngineGauge.Zone[] ZONES = EngineGauge.Zone.values();
+
+    private static final double READOUT_HEIGHT = 16;
+    private static final double LABEL_HEIGHT = 16;
+    private static final double BAND_WIDTH = 3;
+
+    private final Canvas scaleCanvas;
+    private final Canvas valueCanvas;
+    private final EngineGauge[] gauges;
+    private final double[] values;
+    private final double[] drawnValues;
+
+    /**
+     * By gauge, laid out once: whether it is a dial, the bar's rectangle or the dial's centre and radius, pixels or
+     * degrees per unit, and where the readout goes.
+     */
+    private final boolean[] dial;
+    private final double[] left;
+    private final double[] top;
+    private final double[] barWidth;
+    private final double[] bottom;
+    private final double[] radius;
+    private final double[] scale;
+    private final double[] readoutX;
+    private final double[] readoutY;
+    private final LabelCache[] readouts;
+
+    /**
+     * The bands of gauge g are bandFrom[bandStart[g]] to bandFrom[bandStart[g + 1] - 1], in the order they were
+     * added; the last band holding a value gives its zone.
+     */
+    private final int[] bandStart;
+    private final double[] bandFrom;
+    private final double[] bandTo;
+    private final int[] bandZone;
+
+    /**
+     * Zone of each gauge's value in the frame being drawn.
+     */
+    private final int[] zones;
+
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+    private final RateMeter redraws = Metrics.get().rendering().instrument(getClass().getSimpleName());
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed(getClass().getSimpleName());
+
+    public EngineMonitor(double width, double height, List<EngineGauge> gauges) {
+        this.gauges = gauges.toArray(new EngineGauge[0]);
+        int count = this.gauges.length;
+        scaleCanvas = new Canvas(width, height);
+        valueCanvas = new Canvas(width, height);
+        values = new double[count];
+        drawnValues = new double[count];
+        dial = new boolean[count];
+        left = new double[count];
+        top = new double[count];
+        barWidth = new double[count];
+        bottom = new double[count];
+        radius = new double[count];
+        scale = new double[count];
+        readoutX = new double[count];
+        readoutY = new double[count];
+        readouts = new LabelCache[count];
+        zones = new int[count];
+
+        bandStart = new int[count + 1];
+        for (int g = 0; g < count; g++) {
+            bandStart[g + 1] = bandStart[g] + this.gauges[g].getBands().size();
+        }
+        bandFrom = new double[bandStart[count]];
+        bandTo = new double[bandStart[count]];
+        bandZone = new int[bandStart[count]];
+
+        layOut(width, height);
+        for (int g = 0; g < count; g++) {
+            EngineGauge gauge = this.gauges[g];
+            values[g] = gauge.getMin();
+            readouts[g] = new LabelCache(gauge.getResolution(), formatter(gauge.getResolution()));
+
+            int b = bandStart[g];
+            for (EngineGauge.Band band : gauge.getBands()) {
+                bandFrom[b] = band.getFrom();
+                bandTo[b] = band.getTo();
+                bandZone[b] = band.getZone().ordinal();
+                b++;
+            }
+
+            // A pixel of bar or needle tip travel, or a readout step, whichever is finer
+            double pixel = dial[g] ? Math.toDegrees(1 / radius[g]) / scale[g] : 1 / scale[g];
+            redrawTracker.watch(VALUE_LAYER, Math.min(pixel, gauge.getResolution()));
+        }
+
+        drawScales(scaleCanvas.getGraphicsContext2D());
+        getChildren().addAll(scaleCanvas, valueCanvas);
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        render();
+    }
+
+    /**
+     * Places the dials in a row across the top, at most 40% of the height, and the bars in a row below them.
+     */
+    private void layOut(double totalWidth, double totalHeight) {
+        int dials = 0;
+        for (EngineGauge gauge : gauges) {
+            dials += gauge.getStyle() == EngineGauge.Style.DIAL ? 1 : 0;
+        }
+        int bars = gauges.length - dials;
+        double dialSize = dials == 0 ? 0 : Math.min(totalHeight * 0.4, totalWidth / dials);
+        double dialCell = dials == 0 ? 0 : totalWidth / dials;
+        double barCell = bars == 0 ? 0 : totalWidth / bars;
+
+        int dialIndex = 0;
+        int barIndex = 0;
+        for (int g = 0; g < gauges.length; g++) {
+            EngineGauge gauge = gauges[g];
+            double range = gauge.getMax() - gauge.getMin();
+            if (gauge.getStyle() == EngineGauge.Style.DIAL) {
+                dial[g] = true;
+                radius[g] = dialSize * 0.4;
+                left[g] = dialCell * dialIndex + dialCell / 2;
+                top[g] = dialSize * 0.5;
+                scale[g] = DIAL_SWEEP / range;
+                readoutX[g] = left[g];
+                readoutY[g] = top[g] + radius[g] * 0.45;
+                dialIndex++;
+            } else {
+                barWidth[g] = Math.max(4, barCell * 0.4);
+                left[g] = barCell * barIndex + (barCell - barWidth[g]) / 2;
+                top[g] = dialSize + READOUT_HEIGHT + 4;
+                bottom[g] = totalHeight - LABEL_HEIGHT - 2;
+                scale[g] = (bottom[g] - top[g]) / range;
+                readoutX[g] = barCell * barIndex + barCell / 2;
+                readoutY[g] = dialSize + READOUT_HEIGHT / 2;
+                barIndex++;
+            }
+        }
+    }
+
+    private static DoubleFunction<String> formatter(double resolution) {
+        int decimals = Math.max(0, (int) Math.ceil(-Math.log10(resolution) - 1e-9));
+        String format = "%." + decimals + "f";
+        return value -> String.format(format, value);
+    }
+
+    public int getGaugeCount() {
+        return gauges.length;
+    }
+
+    public EngineGauge getGauge(int gauge) {
+        return gauges[gauge];
+    }
+
+    public double getValue(int gauge) {
+        return values[gauge];
+    }
+
+    /**
+     * Sets one gauge. To update several at once, use {@link #applyFrame}.
+     *
+     * @param gauge
+     * @param value
+     */
+    public void setValue(int gauge, double value) {
+        values[gauge] = value;
+        inputChanged();
+    }
+
+    /**
+     * Sets every gauge from a frame of values in gauge order, then redraws once if anything moved enough to show.
+     *
+     * @param frame at least {@link #getGaugeCount()} long
+     */
+    public void applyFrame(double[] frame) {
+        System.arraycopy(frame, 0, values, 0, values.length);
+        inputChanged();
+    }
+
+    /**
+     * Asks for a render on the next pulse, or renders right away when the render scheduler is not running.
+     */
+    private void inputChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    private void render() {
+        for (int g = 0; g < values.length; g++) {
+            redrawTracker.update(g, values[g]);
+        }
+        if (redrawTracker.isDirty()) {
+            redraw();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private void redraw() {
+        InstrumentRedrawEvent event = InstrumentRedrawEvent.start();
+
+        GraphicsContext gc = valueCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, valueCanvas.getWidth(), valueCanvas.getHeight());
+        for (int g = 0; g < values.length; g++) {
+            zones[g] = zone(g, values[g]);
+        }
+        drawBars(gc);
+        drawNeedles(gc);
+        drawReadouts(gc);
+
+        double delta = 0;
+        for (int g = 0; g < values.length; g++) {
+            delta = Math.max(delta, Math.abs(values[g] - drawnValues[g]));
+            drawnValues[g] = values[g];
+        }
+        if (event != null && event.shouldCommit()) {
+            event.instrument = getClass().getSimpleName();
+            event.valueDelta = delta;
+            event.commit();
+        }
+        redrawTracker.drawn(RedrawTracker.ALL_LAYERS);
+        redraws.mark();
+    }
+
+    /**
+     * Fills every bar with one path per colour.
+     */
+    private void drawBars(GraphicsContext gc) {
+        for (int zone = NO_ZONE; zone < ZONES.length; zone++) {
+            boolean any = false;
+            gc.beginPath();
+            for (int g = 0; g < values.length; g++) {
+                if (dial[g] || zones[g] != zone) {
+                    continue;
+                }
+                double height = (clamp(g, values[g]) - gauges[g].getMin()) * scale[g];
+                gc.rect(left[g], bottom[g] - height, barWidth[g], height);
+                any = true;
+            }
+            if (any) {
+                gc.setFill(color(zone));
+                gc.fill();
+            }
+        }
+    }
+
+    /**
+     * Strokes every needle with one path.
+     */
+    private void drawNeedles(GraphicsContext gc) {
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(3);
+        gc.beginPath();
+        for (int g = 0; g < values.length; g++) {
+            if (!dial[g]) {
+                continue;
+            }
+            double angle = Math.toRadians(angle(g, clamp(g, values[g])));
+            gc.moveTo(left[g], top[g]);
+            gc.lineTo(left[g] + Math.cos(angle) * radius[g] * 0.9, top[g] - Math.sin(angle) * radius[g] * 0.9);
+        }
+        gc.stroke();
+    }
+
+    private void drawReadouts(GraphicsContext gc) {
+        gc.setFont(Fonts.size(14));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        for (int zone = NO_ZONE; zone < ZONES.length; zone++) {
+            gc.setFill(color(zone));
+            for (int g = 0; g < values.length; g++) {
+                if (zones[g] != zone) {
+                    continue;
+                }
+                double resolution = gauges[g].getResolution();
+                gc.fillText(readouts[g].get(Math.round(values[g] / resolution) * resolution), readoutX[g],
+                        readoutY[g]);
+            }
+        }
+    }
+
+    /**
+     * Draws the frames, bands and labels, once.
+     */
+    private void drawScales(GraphicsContext gc) {
+        gc.setFont(Fonts.size(12));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.BOTTOM);
+        for (int g = 0; g < gauges.length; g++) {
+            if (dial[g]) {
+                drawDialScale(gc, g);
+            } else {
+                drawBarScale(gc, g);
+            }
+        }
+    }
+
+    private void drawDialScale(GraphicsContext gc, int g) {
+        double r = radius[g];
+        gc.setLineWidth(BAND_WIDTH * 2);
+        for (int b = bandStart[g]; b < bandStart[g + 1]; b++) {
+            double from = angle(g, clamp(g, bandFrom[b]));
+            double to = angle(g, clamp(g, bandTo[b]));
+            gc.setStroke(ZONES[bandZone[b]].getColor());
+            gc.strokeArc(left[g] - r, top[g] - r, 2 * r, 2 * r, to, from - to, ArcType.OPEN);
+        }
+
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(1);
+        gc.strokeArc(left[g] - r, top[g] - r, 2 * r, 2 * r, DIAL_START - DIAL_SWEEP, DIAL_SWEEP, ArcType.OPEN);
+
+        gc.setFill(Color.WHITE);
+        gc.fillText(gauges[g].getLabel(), left[g], top[g] + r);
+    }
+
+    private void drawBarScale(GraphicsContext gc, int g) {
+        double min = gauges[g].getMin();
+        for (int b = bandStart[g]; b < bandStart[g + 1]; b++) {
+            double from = bottom[g] - (clamp(g, bandFrom[b]) - min) * scale[g];
+            double to = bottom[g] - (clamp(g, bandTo[b]) - min) * scale[g];
+            gc.setFill(ZONES[bandZone[b]].getColor());
+            gc.fillRect(left[g] - BAND_WIDTH - 1, to, BAND_WIDTH, from - to);
+        }
+
+        gc.setStroke(Color.GRAY);
+        gc.setLineWidth(1);
+        gc.strokeRect(left[g] - 0.5, top[g] - 0.5, barWidth[g] + 1, bottom[g] - top[g] + 1);
+
+        gc.setFill(Color.WHITE);
+        gc.fillText(gauges[g].getLabel(), left[g] + barWidth[g] / 2, bottom[g] + LABEL_HEIGHT + 1);
+    }
+
+    /**
+     * Degrees counterclockwise from three o'clock for a value on a dial.
+     */
+    private double angle(int g, double value) {
+        return DIAL_START - (value - gauges[g].getMin()) * scale[g];
+    }
+
+    private double clamp(int g, double value) {
+        return Math.max(gauges[g].getMin(), Math.min(gauges[g].getMax(), value));
+    }
+
+    private int zone(int g, double value) {
+        for (int b = bandStart[g + 1] - 1; b >= bandStart[g]; b--) {
+            if (value >= bandFrom[b] && value <= bandTo[b]) {
+                return bandZone[b];
+            }
+        }
+        return NO_ZONE;
+    }
+
+    private static Color color(int zone) {
+        return zone == NO_ZONE ? Color.WHITE : ZONES[zone].getColor();
+    }
+
+    /**
+     * Gauges for a typical four or six cylinder piston engine: RPM and manifold pressure dials, then oil pressure, oil
+     * temperature, fuel flow, and a CHT and an EGT bar per cylinder, in that order.
+     *
+     * @param cylinders
+     * @return
+     */
+    public static List<EngineGauge> pistonEngine(int cylinders) {
+        List<EngineGauge> gauges = new ArrayList<>();
+        gauges.add(new EngineGauge("RPM", EngineGauge.Style.DIAL, 0, 2800, 10)
+                .band(500, 2700, EngineGauge.Zone.NORMAL)
+                .band(2700, 2800, EngineGauge.Zone.REDLINE));
+        gauges.add(new EngineGauge("MAP", EngineGauge.Style.DIAL, 10, 30, 0.1)
+                .band(15, 29, EngineGauge.Zone.NORMAL));
+        gauges.add(new EngineGauge("OIL P", EngineGauge.Style.BAR, 0, 115, 1)
+                .band(0, 25, EngineGauge.Zone.REDLINE)
+                .band(25, 60, EngineGauge.Zone.CAUTION)
+                .band(60, 90, EngineGauge.Zone.NORMAL)
+                .band(90, 100, EngineGauge.Zone.CAUTION)
+                .band(100, 115, EngineGauge.Zone.REDLINE));
+        gauges.add(new EngineGauge("OIL T", EngineGauge.Style.BAR, 50, 260, 1)
+                .band(50, 100, EngineGauge.Zone.CAUTION)
+                .band(100, 235, EngineGauge.Zone.NORMAL)
+                .band(235, 245, EngineGauge.Zone.CAUTION)
+                .band(245, 260, EngineGauge.Zone.REDLINE));
+        gauges.add(new EngineGauge("FF", EngineGauge.Style.BAR, 0, 20, 0.1)
+                .band(0, 16, EngineGauge.Zone.NORMAL));
+        for (int c = 1; c <= cylinders; c++) {
+            gauges.add(new EngineGauge("C" + c, EngineGauge.Style.BAR, 100, 500, 1)
+                    .band(100, 200, EngineGauge.Zone.CAUTION)
+                    .band(200, 435, EngineGauge.Zone.NORMAL)
+                    .band(435, 500, EngineGauge.Zone.REDLINE));
+        }
+        for (int c = 1; c <= cylinders; c++) {
+            gauges.add(new EngineGauge("E" + c, EngineGauge.Style.BAR, 800, 1650, 1)
+                    .band(1000, 1500, EngineGauge.Zone.NORMAL));
+        }
+        return gauges;
+    }
+}
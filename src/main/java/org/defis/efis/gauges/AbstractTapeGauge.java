@@ -15,6 +15,8 @@
  */
 package org.defis.efis.gauges;
 
+import java.util.concurrent.atomic.LongAdder;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.VPos;
@@ -27,6 +29,9 @@ import javafx.scene.text.TextAlignment;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import org.defis.efis.jfr.InstrumentRedrawEvent;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
 
 import static javafx.scene.text.TextAlignment.LEFT;
 import static javafx.scene.text.TextAlignment.RIGHT;
@@ -40,6 +45,28 @@ import static lombok.AccessLevel.PROTECTED;
 public abstract class AbstractTapeGauge extends Parent
 {
 
+    /**
+     * The moving tape: background, ticks and tick labels.
+     */
+    protected static final int TAPE_LAYER = 1;
+
+    /**
+     * The magnifier and the current value in it.
+     */
+    protected static final int READOUT_LAYER = 2;
+
+    /**
+     * Pixels the rolling digits of the current value move per indicator step.
+     */
+    private static final double INDICATOR_PITCH = 18;
+
+    /**
+     * Depth of the notch of a horizontal tape's magnifier, and half the width of its box. Horizontal tapes need to be
+     * about 46 pixels high for the rolling digits to stay inside the box.
+     */
+    static final double MAGNIFIER_NOTCH = 6;
+    static final double MAGNIFIER_HALF_WIDTH = 30;
+
     @Accessors(fluent = true)
     @Getter
     private final DoubleProperty valueProperty = new SimpleDoubleProperty(0);
@@ -47,6 +74,8 @@ public abstract class AbstractTapeGauge extends Parent
     @Getter(PROTECTED)
     private final Canvas canvas;
 
+    private final Canvas readoutCanvas;
+
     @Getter(PROTECTED)
     private final DisplayOrientation orientation;
 
@@ -77,61 +106,214 @@ public abstract class AbstractTapeGauge extends Parent
     private Color backgroundColor = Color.gray(0.4);
 
     @Getter(PROTECTED)
-    @Setter(PROTECTED)
     private boolean negativeDrawn = false;
 
     @Getter(PROTECTED)
-    @Setter(PROTECTED)
     private String tickLabelFormat = "%(,.0f";
 
+    /**
+     * When positive, values are shown modulo this, as on a heading tape. The strip cache then cuts the tape into tiles
+     * that divide the modulus, so that the tape runs on across the wrap by blitting the tile from the other end.
+     */
+    @Getter(PROTECTED)
+    private double wrapModulus;
+
+    /**
+     * When set, ticks and tick labels are pre-rendered into image tiles and each frame only blits the visible part of
+     * the strip. Tiles can only be rendered on the FX thread; anywhere else the gauge draws its ticks directly.
+     */
+    @Getter
+    @Setter
+    private boolean stripCached = true;
+
+    private TapeStripCache stripCache;
+
+    /**
+     * When set, the gauge is rasterized on a worker thread into an {@link OffscreenSurface} instead of drawn on its
+     * canvases. Subclasses that override the canvas drawing methods look the same only on the canvas path.
+     */
+    @Getter
+    private boolean offscreen;
+
+    private OffscreenSurface surface;
+    private TapeRasterizer rasterizer;
+
     @Getter(PROTECTED)
-    @Setter(PROTECTED)
     private String indicatorLabelFormat = "%(,.0f";
 
+    private LabelCache tickLabels;
+    private LabelCache indicatorHeads;
+    private LabelCache indicatorTails;
+    private DrumReadout indicatorDrum;
+    private Font valueFont;
+
     @Getter(PROTECTED)
     private Setup setup;
 
+    private double lastDrawnValue;
+
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private int tapeWatch;
+    private int readoutWatch;
+    private int headWatch;
+    private double headUnit;
+
+    private final RateMeter redraws = Metrics.get().rendering().instrument(getClass().getSimpleName());
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed(getClass().getSimpleName());
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+
     protected AbstractTapeGauge(double width, double height, DisplayOrientation orientation,
             double unitsToMajorTick, double unitsToMinorTick, double visibleRange, double indicatorStep) {
         canvas = new Canvas(width, height);
+        readoutCanvas = new Canvas(width, height);
         this.orientation = orientation;
         this.unitsToMajorTick = unitsToMajorTick;
         this.unitsToMinorTick = unitsToMinorTick;
         this.visibleRange = visibleRange;
         this.indicatorStep = indicatorStep;
 
-        tapeWidth = width - 10;
+        tapeWidth = (isHorizontal() ? height : width) - 10;
 
-        valueProperty.addListener(l -> update());
+        valueProperty.addListener(l -> valueChanged());
 
-        getChildren().add(canvas);
+        getChildren().addAll(canvas, readoutCanvas);
     }
 
+    /**
+     * Redraws the whole gauge.
+     */
     protected void update() {
         if (setup == null) {
             initialize();
         }
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        redraw();
+    }
+
+    private void valueChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    /**
+     * Redraws only the layers the value visibly moved since the last redraw, if any.
+     */
+    private void render() {
+        if (setup == null) {
+            update();
+            return;
+        }
+
+        trackValue(getValue());
+        if (redrawTracker.isDirty()) {
+            redraw();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private void trackValue(double value) {
+        redrawTracker.update(tapeWatch, value);
+        redrawTracker.update(readoutWatch, value);
+        redrawTracker.update(headWatch, Math.floor(Math.signum(value) * Math.floor(Math.abs(value) + 0.5) / headUnit));
+    }
+
+    private void redraw() {
+        InstrumentRedrawEvent event = InstrumentRedrawEvent.start();
 
-        GraphicsContext gc = getGraphicsContext();
         double value = getValue();
+        trackValue(value);
+        int dirty = redrawTracker.getDirty();
+
+        if (offscreen) {
+            surface.setInput(0, value);
+            surface.request();
+            // A frame always holds every layer
+            dirty = RedrawTracker.ALL_LAYERS;
+        } else {
+            drawLayers(dirty, value);
+        }
+        redrawTracker.drawn(dirty);
 
-        clear(gc);
+        if (event != null && event.shouldCommit()) {
+            event.instrument = getClass().getSimpleName();
+            event.valueDelta = Math.abs(value - lastDrawnValue);
+            event.commit();
+        }
+        lastDrawnValue = value;
+        redraws.mark();
+    }
+
+    /**
+     * Draws the dirty layers. Each step sets the paints and text settings it uses and the transform is reset after
+     * it, rather than saving and restoring the graphics state, which copies it every frame.
+     */
+    private void drawLayers(int dirty, double value) {
+        if ((dirty & TAPE_LAYER) != 0) {
+            GraphicsContext gc = getGraphicsContext();
+            clear(gc);
 
-        gc.save();
-        drawBackground(gc);
-        gc.restore();
+            drawBackground(gc);
+            gc.setTransform(1, 0, 0, 1, 0, 0);
 
-        gc.save();
-        drawTicks(gc);
-        gc.restore();
+            drawTape(gc, value);
+            gc.setTransform(1, 0, 0, 1, 0, 0);
+        }
+
+        if ((dirty & READOUT_LAYER) != 0) {
+            GraphicsContext gc = readoutCanvas.getGraphicsContext2D();
+            gc.clearRect(0, 0, getWidth(), getHeight());
 
-        gc.save();
-        drawMagnifier(gc);
-        gc.restore();
+            drawMagnifier(gc);
+            gc.setTransform(1, 0, 0, 1, 0, 0);
 
-        gc.save();
-        drawCurrentValue(gc, value);
-        gc.restore();
+            drawCurrentValue(gc, value);
+            gc.setTransform(1, 0, 0, 1, 0, 0);
+        }
+    }
+
+    /**
+     * Draws the ticks for the value, blitted from the cached strip on the FX thread and directly anywhere else.
+     *
+     * @param gc
+     * @param value
+     */
+    protected void drawTape(GraphicsContext gc, double value) {
+        if (stripCached && Platform.isFxApplicationThread()) {
+            if (stripCache == null) {
+                stripCache = new TapeStripCache(this);
+            }
+            stripCache.draw(gc, value);
+        } else {
+            drawTicks(gc);
+        }
+    }
+
+    /**
+     * Switches between drawing on the FX thread and rasterizing offscreen on a worker thread, and redraws the gauge.
+     *
+     * @param offscreen
+     */
+    public void setOffscreen(boolean offscreen) {
+        if (offscreen == this.offscreen) {
+            return;
+        }
+        this.offscreen = offscreen;
+
+        if (offscreen) {
+            if (surface == null) {
+                if (setup == null) {
+                    initialize();
+                }
+                rasterizer = new TapeRasterizer(this);
+                surface = new OffscreenSurface(getWidth(), getHeight(), 1, rasterizer);
+            }
+            getChildren().setAll(surface);
+        } else {
+            getChildren().setAll(canvas, readoutCanvas);
+        }
+        update();
     }
 
     protected GraphicsContext getGraphicsContext() {
@@ -167,48 +349,152 @@ public abstract class AbstractTapeGauge extends Parent
      * @return
      */
     public double getValue() {
-        return valueProperty.get();
+        return wrap(valueProperty.get());
     }
 
-    protected void drawTicks(GraphicsContext gc) {
+    /**
+     * Brings a value into [0, modulus) when the tape wraps.
+     *
+     * @param value
+     * @return
+     */
+    protected double wrap(double value) {
+        if (wrapModulus <= 0) {
+            return value;
+        }
+        double wrapped = value % wrapModulus;
+        return wrapped < 0 ? wrapped + wrapModulus : wrapped;
+    }
+
+    /**
+     * Returns the value of the rolling digits face at or next to a value: below it on a wrapping tape, so the faces
+     * keep rolling the same way past zero, and toward zero otherwise, since negative values roll the other way.
+     *
+     * @param value
+     * @return
+     */
+    double indicatorFace(double value) {
+        double step = getIndicatorStep();
+        return wrapModulus > 0 ? Math.floor(value / step) * step : value - (value % step);
+    }
+
+    protected boolean isHorizontal() {
+        return getOrientation() == DisplayOrientation.UP || getOrientation() == DisplayOrientation.DOWN;
+    }
 
-        // TODO: All these values can be pre-calculated once and re-used during the lifetime of the gauge
+    protected void drawTicks(GraphicsContext gc) {
         gc.translate(setup.tX, setup.tY);
+        drawTickRange(gc, getValue() - getVisibleRange() / 1.75, getValue() + getVisibleRange() / 1.75,
+                -setup.valueDir * setup.pixelsToUnit * getValue());
+    }
+
+    /**
+     * Draws the ticks and major tick labels for every tick value in [from, to]. A tick is placed along the tape at
+     * zeroLoc + valueDir * pixelsToUnit * tickValue, so the caller decides where the value 0 would land. On a wrapping
+     * tape, ticks past either end are labeled with their wrapped value.
+     *
+     * @param gc
+     * @param from
+     * @param to
+     * @param zeroLoc
+     */
+    protected void drawTickRange(GraphicsContext gc, double from, double to, double zeroLoc) {
         gc.setStroke(Color.WHITE);
         gc.setTextAlign(setup.textAlignment);
         gc.setTextBaseline(setup.textBaseline);
 
         gc.beginPath();
 
-        for (double displayValue = getValue() - getVisibleRange() / 1.75;
-                displayValue < getValue() + getVisibleRange() / 1.75;
-                displayValue += getUnitsToMinorTick()) {
-
-            double normalizedValue = displayValue - (displayValue % getUnitsToMinorTick());
-            if (!isNegativeDrawn() && normalizedValue < 0) {
+        for (long tick = (long) Math.ceil(from / getUnitsToMinorTick()); tick * getUnitsToMinorTick() <= to; tick++) {
+            double tickValue = tick * getUnitsToMinorTick();
+            if (!isNegativeDrawn() && wrapModulus <= 0 && tickValue < 0) {
                 continue;
             }
 
-            // TODO: Note only drawing for vertical tape display
-            double tickLoc = getSetup().pixelsToUnit * (getValue() - normalizedValue);
-            double tickLength = normalizedValue % getUnitsToMajorTick() == 0 ? 10 : 5;
-
-            gc.moveTo(0, tickLoc);
-            gc.lineTo(setup.tickDir * tickLength, tickLoc);
+            double tickLoc = zeroLoc + setup.valueDir * setup.pixelsToUnit * tickValue;
+            boolean major = tickValue % getUnitsToMajorTick() == 0;
+            double tickLength = major ? 10 : 5;
+            double labelLoc = tickLength * setup.tickDir + 3 * setup.tickDir;
+
+            if (setup.horizontal) {
+                gc.moveTo(tickLoc, 0);
+                gc.lineTo(tickLoc, setup.tickDir * tickLength);
+            } else {
+                gc.moveTo(0, tickLoc);
+                gc.lineTo(setup.tickDir * tickLength, tickLoc);
+            }
 
-            String label = generateTickLabel(normalizedValue);
-            if (normalizedValue % getUnitsToMajorTick() == 0) {
-                gc.strokeText(label,
-                        tickLength * setup.tickDir + 3 * setup.tickDir, tickLoc - 1);
+            if (major) {
+                String label = tickLabels.get(wrap(tickValue));
+                if (setup.horizontal) {
+                    gc.strokeText(label, tickLoc, labelLoc);
+                } else {
+                    gc.strokeText(label, labelLoc, tickLoc - 1);
+                }
             }
         }
 
         gc.stroke();
     }
 
+    protected void setNegativeDrawn(boolean negativeDrawn) {
+        this.negativeDrawn = negativeDrawn;
+        invalidateStripCache();
+    }
+
+    /**
+     * Makes the tape wrap around at the given modulus, for example 360 for a heading tape. The modulus must be a
+     * multiple of the major tick.
+     *
+     * @param wrapModulus the wrap, or 0 for a tape that does not wrap
+     */
+    protected void setWrapModulus(double wrapModulus) {
+        this.wrapModulus = wrapModulus;
+        // The tiles are cut to the modulus
+        stripCache = null;
+        invalidateStripCache();
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+    }
+
+    protected void setTickLabelFormat(String tickLabelFormat) {
+        this.tickLabelFormat = tickLabelFormat;
+        if (tickLabels != null) {
+            tickLabels.clear();
+        }
+        invalidateStripCache();
+    }
+
+    protected void setIndicatorLabelFormat(String indicatorLabelFormat) {
+        this.indicatorLabelFormat = indicatorLabelFormat;
+        if (indicatorHeads != null) {
+            indicatorHeads.clear();
+            indicatorTails.clear();
+        }
+        indicatorDrum = null;
+        if (rasterizer != null) {
+            rasterizer.invalidate();
+        }
+        redrawTracker.markDirty(READOUT_LAYER);
+    }
+
+    /**
+     * Drops the pre-rendered tiles and has the next value change redraw the tape. Subclasses must call this when
+     * anything that affects how ticks or tick labels are drawn changes.
+     */
+    protected void invalidateStripCache() {
+        if (stripCache != null) {
+            stripCache.invalidate();
+        }
+        if (rasterizer != null) {
+            rasterizer.invalidate();
+        }
+        redrawTracker.markDirty(TAPE_LAYER);
+    }
+
     /**
      * Converts a major tick value into the text that will be displayed. A descendent class may override this when using
-     * simple String.format() isn't sufficient.
+     * simple String.format() isn't sufficient. Labels are cached per tick value, so the result must only depend on
+     * the value.
      *
      * @param val
      * @return
@@ -217,6 +503,13 @@ public abstract class AbstractTapeGauge extends Parent
         return String.format(getTickLabelFormat(), val);
     }
 
+    /**
+     * Converts a whole indicator value into the text shown in the magnifier. Labels are cached per value and the
+     * current value is rounded half up before lookup, as %.0f would.
+     *
+     * @param val
+     * @return
+     */
     protected String generateIndicatorLabel(double val) {
         return String.format(getIndicatorLabelFormat(), val);
     }
@@ -252,16 +545,49 @@ public abstract class AbstractTapeGauge extends Parent
                 break;
             case DOWN:
                 setup.bgTy = getHeight() - getTapeWidth();
+                setup.tY = getHeight();
                 setup.tickDir = -1;
+                setup.textBaseline = VPos.BOTTOM;
             case UP:
                 setup.bgWidth = getWidth();
                 setup.bgHeight = getTapeWidth();
                 setup.tX = getWidth() / 2;
+                setup.horizontal = true;
+                setup.valueDir = 1;
+                setup.textAlignment = TextAlignment.CENTER;
+                if (setup.tickDir > 0) {
+                    setup.textBaseline = VPos.TOP;
+                }
         }
 
+        valueFont = Fonts.size(Font.getDefault().getSize() + 8);
         setup.pixelsToUnit = calcDisplayRange() / getVisibleRange();
         setup.numRollingDigits = Integer.toString((int) unitsToMinorTick).length();
-        setup.valueX = 35;
+        if (setup.horizontal) {
+            // Centered in the box, with the head one digit narrower than the rolling digits
+            setup.valueX = setup.tX - 6;
+            setup.valueY = setup.tY + setup.tickDir * (MAGNIFIER_NOTCH + getHeight()) / 2;
+            setup.valueClipWidth = setup.tX + MAGNIFIER_HALF_WIDTH - setup.valueX;
+        } else {
+            setup.valueX = 35;
+            setup.valueY = setup.tY;
+            setup.valueClipWidth = getWidth() - 35;
+        }
+
+        tapeWatch = redrawTracker.watch(TAPE_LAYER, 1 / setup.pixelsToUnit);
+        readoutWatch = redrawTracker.watch(READOUT_LAYER, getIndicatorStep() / INDICATOR_PITCH);
+        headWatch = redrawTracker.watch(READOUT_LAYER, 1);
+        headUnit = Math.pow(10, setup.numRollingDigits);
+
+        tickLabels = new LabelCache(getUnitsToMinorTick(), this::generateTickLabel);
+        indicatorHeads = new LabelCache(1, val -> {
+            String label = generateIndicatorLabel(val);
+            return label.substring(0, label.length() - setup.numRollingDigits);
+        });
+        indicatorTails = new LabelCache(getIndicatorStep(), val -> {
+            String label = generateIndicatorLabel(val);
+            return label.substring(label.length() - 2);
+        });
     }
 
     private void drawMagnifier(GraphicsContext gc) {
@@ -270,7 +596,11 @@ public abstract class AbstractTapeGauge extends Parent
 
         gc.translate(setup.tX, setup.tY);
 
-        leftFacingIndicator(gc);
+        if (setup.horizontal) {
+            boxIndicator(gc);
+        } else {
+            leftFacingIndicator(gc);
+        }
 
         gc.fill();
         gc.stroke();
@@ -293,35 +623,102 @@ public abstract class AbstractTapeGauge extends Parent
         gc.closePath();
     }
 
+    /**
+     * The magnifier of a horizontal tape: a box across the tape with a notch pointing at the current value.
+     *
+     * @param gc
+     */
+    protected void boxIndicator(GraphicsContext gc) {
+        double dir = getSetup().tickDir;
+        gc.beginPath();
+        gc.moveTo(0, 0);
+        gc.lineTo(4, dir * MAGNIFIER_NOTCH);
+        gc.lineTo(MAGNIFIER_HALF_WIDTH, dir * MAGNIFIER_NOTCH);
+        gc.lineTo(MAGNIFIER_HALF_WIDTH, dir * getHeight());
+        gc.lineTo(-MAGNIFIER_HALF_WIDTH, dir * getHeight());
+        gc.lineTo(-MAGNIFIER_HALF_WIDTH, dir * MAGNIFIER_NOTCH);
+        gc.lineTo(-4, dir * MAGNIFIER_NOTCH);
+        gc.closePath();
+    }
+
     private void drawCurrentValue(GraphicsContext gc, double value) {
 
-        gc.translate(setup.valueX, setup.tY);
+        gc.translate(setup.valueX, setup.valueY);
         gc.setTextAlign(RIGHT);
         gc.setTextBaseline(VPos.CENTER);
         gc.setStroke(Color.WHITE);
         gc.setFill(Color.WHITE);
-        gc.setFont(new Font(gc.getFont().getSize() + 8));
+        gc.setFont(valueFont);
+
+        GlyphAtlas atlas = GlyphAtlas.isAvailable() ? GlyphAtlas.get(valueFont, Color.WHITE, Color.WHITE) : null;
 
-        String label = generateIndicatorLabel(value);
+        // Wrapped after rounding, so a heading of 359.5 reads 000 rather than 360
+        String label = indicatorHeads.get(wrap(Math.signum(value) * Math.floor(Math.abs(value) + 0.5)));
+        if (atlas != null) {
+            atlas.draw(gc, label, 0, -2, RIGHT, VPos.CENTER);
+        } else {
+            strokeAndFillText(gc, 0, 0, label);
+        }
 
-        strokeAndFillText(gc, label);
+        // The drum only shows its window and the atlas cuts its glyphs to it, so only plain text needs a clip
+        DrumReadout drum = value >= 2 * getIndicatorStep() ? indicatorDrum() : null;
+        if (drum != null) {
+            drum.draw(gc, 0, -2, value / getIndicatorStep());
+            return;
+        }
 
-        gc.beginPath();
-        gc.rect(0, -20, getWidth() - 35, 40);
-        gc.clip();
+        if (atlas == null) {
+            gc.save();
+            gc.beginPath();
+            gc.rect(0, -20, setup.valueClipWidth, 40);
+            gc.clip();
+        }
 
         gc.setTextAlign(LEFT);
         for (double rollingValue = value - 2 * getIndicatorStep();
                 rollingValue <= value + 2 * getIndicatorStep();
                 rollingValue += getIndicatorStep()) {
-            double normalizedValue = rollingValue - (rollingValue % getIndicatorStep());
-            label = generateIndicatorLabel(normalizedValue);
-            label = label.substring(label.length() - 2);
+            double normalizedValue = indicatorFace(rollingValue);
+            // Just past north the digits rolling in from below are those of 359, not of -1
+            label = indicatorTails.get(wrap(normalizedValue));
 
             double lY = -36 * (normalizedValue - getValue()) / (2 * getIndicatorStep());
-            strokeAndFillText(gc, 0, lY, label);
+            if (atlas != null) {
+                atlas.draw(gc, label, 0, lY - 2, LEFT, VPos.CENTER, -20, 20);
+            } else {
+                strokeAndFillText(gc, 0, lY, label);
+            }
             //strokeAndFillText(gc, 0, -33 * (rollingValue - getValue()) / (2 * getIndicatorStep()), label);
         }
+
+        if (atlas == null) {
+            gc.restore();
+        }
+    }
+
+    /**
+     * Returns the drum that rolls the last digits of the current value, or null when those digits do not repeat every
+     * 100 units. Only non-negative values roll on the drum, since the digits of negative values run the other way. A
+     * tape that wraps at other than a multiple of 100, such as heading, has no drum: at 359.6 the drum would roll on
+     * from 59 to 60 where the digits roll over to 00.
+     *
+     * @return
+     */
+    private DrumReadout indicatorDrum() {
+        if (indicatorDrum == null) {
+            int faceCount = (int) Math.round(100 / getIndicatorStep());
+            if (faceCount * getIndicatorStep() != 100 || wrapModulus > 0 && wrapModulus % 100 != 0) {
+                return null;
+            }
+
+            String[] faces = new String[faceCount];
+            for (int face = 0; face < faceCount; face++) {
+                faces[face] = indicatorTails.get(face * getIndicatorStep());
+            }
+            indicatorDrum = new DrumReadout(faces, valueFont, Color.WHITE, Color.WHITE, INDICATOR_PITCH, VPos.CENTER,
+                    18, 22);
+        }
+        return indicatorDrum;
     }
 
     protected void strokeAndFillText(GraphicsContext gc, double x, double y, String label) {
@@ -342,7 +739,17 @@ public abstract class AbstractTapeGauge extends Parent
         public VPos textBaseline = VPos.CENTER;
         public TextAlignment textAlignment = TextAlignment.LEFT;
         public int numRollingDigits;
-        public double valueX;
+        public double valueX, valueY, valueClipWidth;
+
+        /**
+         * Set for UP and DOWN tapes, which run along x with ticks along y.
+         */
+        public boolean horizontal;
+
+        /**
+         * Direction of growing values along the tape: up on vertical tapes, right on horizontal ones.
+         */
+        public double valueDir = -1;
     }
 
     protected void drawRollingValues(TextAlignment alignment, VPos baseline) {
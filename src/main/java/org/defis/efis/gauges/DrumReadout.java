@@ -0,0 +1,212 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * A rolling drum readout, like the last digits of a mechanical counter. The faces (for example "0" to "9", or "00",
+ * "20" ... "80" for an altimeter) are pre-rendered once into a vertical strip, one face every pitch pixels with higher
+ * faces above lower ones, and wrapped at both ends. Drawing the drum at a fractional position is then a single image
+ * blit of the window around that position, no matter how many faces are partly visible.
+ *
+ * The strip is rasterized with a snapshot, so it is rendered on first use from the FX thread; anywhere else the faces
+ * in the window are drawn as text, clipped to the window.
+ *
+ * @author Matthew Tyler
+ */
+public class DrumReadout
+{
+
+    private static final int PADDING = 2;
+
+    private final String[] faces;
+    private final Font font;
+    private final Paint fill;
+    private final Paint stroke;
+    private final double pitch;
+    private final VPos baseline;
+
+    /**
+     * How far the window reaches above and below the anchor of the face being read.
+     */
+    private final double above;
+    private final double below;
+
+    /**
+     * Range of face indices, beyond 0 to faces.length - 1, rendered into the strip so that any window wraps.
+     */
+    private final int lowest;
+    private final int highest;
+
+    /**
+     * Width of the strip, generous enough for the longest face in any font.
+     */
+    private final double stripWidth;
+
+    private WritableImage strip;
+
+    /**
+     * @param faces the faces in rolling order, position 0 being faces[0]
+     * @param font
+     * @param fill may be null to only stroke the faces
+     * @param stroke may be null to only fill the faces
+     * @param pitch distance in pixels between two consecutive faces
+     * @param baseline what the y passed to {@link #draw} refers to, as with a text baseline
+     * @param above how far the window reaches above the anchor
+     * @param below how far the window reaches below the anchor
+     */
+    public DrumReadout(String[] faces, Font font, Paint fill, Paint stroke, double pitch, VPos baseline,
+            double above, double below) {
+        this.faces = faces.clone();
+        this.font = font;
+        this.fill = fill;
+        this.stroke = stroke;
+        this.pitch = pitch;
+        this.baseline = baseline;
+        this.above = above;
+        this.below = below;
+
+        lowest = -(int) Math.ceil(below / pitch) - 1;
+        highest = faces.length + (int) Math.ceil(above / pitch) + 1;
+
+        int chars = 0;
+        for (String face : faces) {
+            chars = Math.max(chars, face.length());
+        }
+        stripWidth = Math.ceil(chars * font.getSize()) + 2 * PADDING;
+    }
+
+    /**
+     * @return the number of faces on the drum, positions wrap around at this value
+     */
+    public int getFaceCount() {
+        return faces.length;
+    }
+
+    /**
+     * Draws the window of the drum turned to the given position. Whole positions line a face up with (x, y), in
+     * between the drum is part way from one face to the next. Positions wrap, so any value is valid.
+     *
+     * @param gc
+     * @param x left edge of the faces
+     * @param y where the face at the position is anchored
+     * @param position
+     */
+    public void draw(GraphicsContext gc, double x, double y, double position) {
+        draw(gc, x, y, position, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Draws the window like {@link #draw(GraphicsContext, double, double, double)} with nothing below bottom, as a clip
+     * there would. The window is cut short instead, which allocates nothing where a clip copies its path into the
+     * graphics state.
+     *
+     * @param gc
+     * @param x left edge of the faces
+     * @param y where the face at the position is anchored
+     * @param position
+     * @param bottom
+     */
+    public void draw(GraphicsContext gc, double x, double y, double position, double bottom) {
+        position = position % faces.length;
+        if (position < 0) {
+            position += faces.length;
+        }
+
+        double height = Math.min(above + below, bottom - (y - above));
+        if (height <= 0) {
+            return;
+        }
+
+        if (!Platform.isFxApplicationThread()) {
+            drawFaces(gc, x, y, position, height);
+            return;
+        }
+
+        if (strip == null) {
+            render();
+        }
+
+        double anchor = stripY(position);
+        gc.drawImage(strip, 0, anchor - above, stripWidth, height, x - PADDING, y - above, stripWidth, height);
+    }
+
+    private double stripY(double index) {
+        return (highest - index) * pitch + pitch;
+    }
+
+    private void render() {
+        Canvas canvas = new Canvas(stripWidth, Math.ceil(stripY(lowest) + pitch));
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        prepare(gc);
+        for (int index = lowest; index <= highest; index++) {
+            drawFace(gc, face(index), PADDING, stripY(index));
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        strip = canvas.snapshot(parameters, null);
+    }
+
+    private void drawFaces(GraphicsContext gc, double x, double y, double position, double height) {
+        gc.save();
+        gc.beginPath();
+        gc.rect(x - PADDING, y - above, stripWidth, height);
+        gc.clip();
+        prepare(gc);
+        for (int index = (int) Math.floor(position - below / pitch) - 1;
+                index <= (int) Math.ceil(position + above / pitch) + 1; index++) {
+            drawFace(gc, face(index), x, y - (index - position) * pitch);
+        }
+        gc.restore();
+    }
+
+    private String face(int index) {
+        int face = index % faces.length;
+        return faces[face < 0 ? face + faces.length : face];
+    }
+
+    private void prepare(GraphicsContext gc) {
+        gc.setFont(font);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(baseline);
+        if (fill != null) {
+            gc.setFill(fill);
+        }
+        if (stroke != null) {
+            gc.setStroke(stroke);
+        }
+    }
+
+    private void drawFace(GraphicsContext gc, String face, double x, double y) {
+        if (fill != null) {
+            gc.fillText(face, x, y);
+        }
+        if (stroke != null) {
+            gc.strokeText(face, x, y);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import javafx.scene.text.Font;
+
+/**
+ * Shared {@link Font} instances by size, so drawing code can switch fonts every frame without creating one.
+ *
+ * @author Matthew Tyler
+ */
+public final class Fonts
+{
+
+    private static volatile Font[] fonts = new Font[0];
+
+    private Fonts() {
+    }
+
+    /**
+     * Returns the default font family at the given size.
+     *
+     * @param size
+     * @return
+     */
+    public static Font size(double size) {
+        Font[] cached = fonts;
+        for (int i = 0; i < cached.length; i++) {
+            if (cached[i].getSize() == size) {
+                return cached[i];
+            }
+        }
+        return add(size);
+    }
+
+    private static synchronized Font add(double size) {
+        for (Font font : fonts) {
+            if (font.getSize() == size) {
+                return font;
+            }
+        }
+
+        Font font = new Font(size);
+        Font[] grown = new Font[fonts.length + 1];
+        System.arraycopy(fonts, 0, grown, 0, fonts.length);
+        grown[fonts.length] = font;
+        fonts = grown;
+        return font;
+    }
+}
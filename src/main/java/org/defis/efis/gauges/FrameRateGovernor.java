@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import lombok.Getter;
+import org.defis.efis.metrics.RenderMetrics;
+
+/**
+ * Sets the frame rate cap of the {@link RenderScheduler} from how often the instruments actually have something new
+ * to show. Instruments only redraw for changes that are visible, so their redraw rate is the rate of meaningful change
+ * in the telemetry: sitting on the ramp it is close to zero, in a steep turn every pulse.
+ *
+ * Twice a second the governor looks at the busiest instrument. When it redrew on most of the allowed frames the
+ * display is falling behind, and the cap goes straight to the ceiling of the profile. Otherwise the cap follows the
+ * redraw rate with some headroom, down to the floor of the profile, falling by at most half per step so a pause in a
+ * maneuver does not make the next movement stutter.
+ *
+ * The profile also sets how often telemetry should be polled, for whoever owns the polling to follow.
+ *
+ * @author Matthew Tyler
+ */
+public class FrameRateGovernor extends AnimationTimer
+{
+
+    private static final long EVALUATION_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * Share of the allowed frames the busiest instrument has to redraw on for the display to count as saturated.
+     */
+    private static final double SATURATION = 0.8;
+
+    /**
+     * Cap over the redraw rate when not saturated, so that the rate can grow without being held back by the cap.
+     */
+    private static final double HEADROOM = 1.5;
+
+    private final RenderScheduler scheduler;
+    private final RenderMetrics metrics;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final ObjectProperty<Profile> profile = new SimpleObjectProperty<>(Profile.NORMAL);
+    private final Map<String, Long> lastRedraws = new HashMap<>();
+    private long lastEvaluation;
+
+    @Getter
+    private double targetFrameRate;
+
+    public FrameRateGovernor(RenderScheduler scheduler, RenderMetrics metrics) {
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        profile.addListener((o, oldProfile, newProfile) -> profileChanged(newProfile));
+    }
+
+    public ObjectProperty<Profile> profileProperty() {
+        return profile;
+    }
+
+    public Profile getProfile() {
+        return profile.get();
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile.set(profile);
+    }
+
+    @Override
+    public void start() {
+        lastEvaluation = 0;
+        profileChanged(getProfile());
+        super.start();
+    }
+
+    /**
+     * Stops governing and lifts the frame rate cap.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        setTarget(0);
+    }
+
+    @Override
+    public void handle(long now) {
+        if (lastEvaluation == 0) {
+            lastEvaluation = now;
+            remember(metrics.getRedraws());
+            return;
+        }
+        long elapsed = now - lastEvaluation;
+        if (elapsed < EVALUATION_NANOS) {
+            return;
+        }
+        lastEvaluation = now;
+
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            metrics.fxThreadCpuTime(threads.getCurrentThreadCpuTime());
+        }
+
+        double busiest = 0;
+        Map<String, Long> redraws = metrics.getRedraws();
+        for (Map.Entry<String, Long> instrument : redraws.entrySet()) {
+            long previous = lastRedraws.getOrDefault(instrument.getKey(), instrument.getValue());
+            busiest = Math.max(busiest, (instrument.getValue() - previous) * 1e9 / elapsed);
+        }
+        remember(redraws);
+
+        setTarget(govern(busiest));
+    }
+
+    private double govern(double changesPerSecond) {
+        Profile current = getProfile();
+        if (changesPerSecond >= targetFrameRate * SATURATION) {
+            return current.getCeiling();
+        }
+        double target = Math.max(changesPerSecond * HEADROOM, targetFrameRate / 2);
+        return Math.max(current.getFloor(), Math.min(current.getCeiling(), Math.ceil(target)));
+    }
+
+    private void profileChanged(Profile newProfile) {
+        metrics.lowPower(newProfile == Profile.LOW_POWER);
+        // Start high and let the next evaluations bring the rate down
+        setTarget(newProfile.getCeiling());
+    }
+
+    private void setTarget(double framesPerSecond) {
+        targetFrameRate = framesPerSecond;
+        scheduler.setMaxFrameRate(framesPerSecond);
+        metrics.targetFrameRate(framesPerSecond);
+    }
+
+    private void remember(Map<String, Long> redraws) {
+        lastRedraws.clear();
+        lastRedraws.putAll(redraws);
+    }
+
+    /**
+     * Frame rate limits and telemetry polling period.
+     */
+    @Getter
+    public enum Profile
+    {
+
+        NORMAL(10, 60, 25),
+        /**
+         * For battery backup or a hot unit: fewer frames and slower telemetry polling.
+         */
+        LOW_POWER(2, 20, 100);
+
+        private final double floor;
+        private final double ceiling;
+        private final long telemetryPeriodMillis;
+
+        Profile(double floor, double ceiling, long telemetryPeriodMillis) {
+            this.floor = floor;
+            this.ceiling = ceiling;
+            this.telemetryPeriodMillis = telemetryPeriodMillis;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Pre-rasterized numeric glyphs for one font and style. Drawing a label becomes one image blit per character instead
+ * of laying out and rasterizing text, and allocates nothing.
+ *
+ * Atlases are rasterized with a snapshot, so they can only be created and used on the FX thread; {@link #draw} falls
+ * back to plain text everywhere else and for characters the atlas does not hold.
+ *
+ * @author Matthew Tyler
+ */
+public class GlyphAtlas
+{
+
+    public static final String CHARACTERS = "0123456789-+.,()";
+
+    private static final int PADDING = 2;
+    private static final List<GlyphAtlas> ATLASES = new ArrayList<>();
+
+    private final Font font;
+    private final Paint fill;
+    private final Paint stroke;
+
+    private final WritableImage image;
+    private final double[] advance = new double[CHARACTERS.length()];
+    private final double cellWidth;
+    private final double cellHeight;
+
+    /**
+     * Offset from the y passed to fillText to the top of the text box, by {@link VPos#ordinal()}.
+     */
+    private final double[] topOffset = new double[VPos.values().length];
+
+    /**
+     * Returns the atlas for the font and style, rasterizing it on first use. Either paint may be null to skip filling
+     * or stroking. Must be called on the FX thread.
+     *
+     * @param font
+     * @param fill
+     * @param stroke
+     * @return
+     */
+    public static GlyphAtlas get(Font font, Paint fill, Paint stroke) {
+        for (int i = 0; i < ATLASES.size(); i++) {
+            GlyphAtlas atlas = ATLASES.get(i);
+            if (atlas.font.equals(font) && Objects.equals(atlas.fill, fill) && Objects.equals(atlas.stroke, stroke)) {
+                return atlas;
+            }
+        }
+
+        GlyphAtlas atlas = new GlyphAtlas(font, fill, stroke);
+        ATLASES.add(atlas);
+        return atlas;
+    }
+
+    /**
+     * @return true when atlases can be used from the current thread
+     */
+    public static boolean isAvailable() {
+        return Platform.isFxApplicationThread();
+    }
+
+    private GlyphAtlas(Font font, Paint fill, Paint stroke) {
+        this.font = font;
+        this.fill = fill;
+        this.stroke = stroke;
+
+        Text text = new Text();
+        text.setFont(font);
+        double widest = 0;
+        for (int i = 0; i < CHARACTERS.length(); i++) {
+            text.setText(CHARACTERS.substring(i, i + 1));
+            advance[i] = text.getLayoutBounds().getWidth();
+            widest = Math.max(widest, advance[i]);
+        }
+
+        text.setText(CHARACTERS);
+        for (VPos baseline : VPos.values()) {
+            text.setTextOrigin(baseline);
+            topOffset[baseline.ordinal()] = text.getLayoutBounds().getMinY();
+        }
+        double height = text.getLayoutBounds().getHeight();
+
+        cellWidth = Math.ceil(widest) + 2 * PADDING;
+        cellHeight = Math.ceil(height) + 2 * PADDING;
+
+        Canvas canvas = new Canvas(cellWidth * CHARACTERS.length(), cellHeight);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(font);
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.TOP);
+        if (fill != null) {
+            gc.setFill(fill);
+        }
+        if (stroke != null) {
+            gc.setStroke(stroke);
+        }
+
+        double glyphTop = PADDING - topOffset[VPos.TOP.ordinal()];
+        for (int i = 0; i < CHARACTERS.length(); i++) {
+            String glyph = CHARACTERS.substring(i, i + 1);
+            if (fill != null) {
+                gc.fillText(glyph, i * cellWidth + PADDING, glyphTop);
+            }
+            if (stroke != null) {
+                gc.strokeText(glyph, i * cellWidth + PADDING, glyphTop);
+            }
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        image = canvas.snapshot(parameters, null);
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * @param text
+     * @param start
+     * @param end
+     * @return the advance width of the characters, or -1 if any of them is not in the atlas
+     */
+    public double width(CharSequence text, int start, int end) {
+        double width = 0;
+        for (int i = start; i < end; i++) {
+            int glyph = CHARACTERS.indexOf(text.charAt(i));
+            if (glyph < 0) {
+                return -1;
+            }
+            width += advance[glyph];
+        }
+        return width;
+    }
+
+    /**
+     * Draws text[start, end) the way fillText and strokeText with this atlas' font and paints would, aligned at x
+     * and y. Uses the graphics context's current transform and clip, but not its font, paints or text settings.
+     *
+     * @param gc
+     * @param text
+     * @param start
+     * @param end
+     * @param x
+     * @param y
+     * @param align
+     * @param baseline
+     */
+    public void draw(GraphicsContext gc, String text, int start, int end, double x, double y,
+            TextAlignment align, VPos baseline) {
+        double width = width(text, start, end);
+        if (width < 0 || !isAvailable()) {
+            drawText(gc, start == 0 && end == text.length() ? text : text.substring(start, end), x, y, align,
+                    baseline);
+            return;
+        }
+
+        drawCells(gc, text, start, end, x, y, width, align, baseline, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY);
+    }
+
+    public void draw(GraphicsContext gc, String text, double x, double y, TextAlignment align, VPos baseline) {
+        draw(gc, text, 0, text.length(), x, y, align, baseline);
+    }
+
+    /**
+     * Draws text like {@link #draw(GraphicsContext, String, double, double, TextAlignment, VPos)}, showing only what
+     * lies between top and bottom, as a clip to that band would. The cells are cropped instead, which allocates
+     * nothing where a clip copies its path into the graphics state.
+     *
+     * @param gc
+     * @param text
+     * @param x
+     * @param y
+     * @param align
+     * @param baseline
+     * @param top
+     * @param bottom
+     */
+    public void draw(GraphicsContext gc, String text, double x, double y, TextAlignment align, VPos baseline,
+            double top, double bottom) {
+        double width = width(text, 0, text.length());
+        if (width < 0 || !isAvailable()) {
+            gc.save();
+            gc.beginPath();
+            gc.rect(-Short.MAX_VALUE, top, 2 * Short.MAX_VALUE, bottom - top);
+            gc.clip();
+            drawText(gc, text, x, y, align, baseline);
+            gc.restore();
+            return;
+        }
+
+        drawCells(gc, text, 0, text.length(), x, y, width, align, baseline, top, bottom);
+    }
+
+    private void drawCells(GraphicsContext gc, String text, int start, int end, double x, double y, double width,
+            TextAlignment align, VPos baseline, double top, double bottom) {
+        double left = align == TextAlignment.RIGHT ? x - width : align == TextAlignment.CENTER ? x - width / 2 : x;
+        double cellTop = y + topOffset[baseline.ordinal()] - PADDING;
+        double from = Math.max(cellTop, top);
+        double to = Math.min(cellTop + cellHeight, bottom);
+        if (to <= from) {
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            int glyph = CHARACTERS.indexOf(text.charAt(i));
+            gc.drawImage(image, glyph * cellWidth, from - cellTop, cellWidth, to - from,
+                    left - PADDING, from, cellWidth, to - from);
+            left += advance[glyph];
+        }
+    }
+
+    private void drawText(GraphicsContext gc, String text, double x, double y, TextAlignment align, VPos baseline) {
+        gc.save();
+        gc.setFont(font);
+        gc.setTextAlign(align);
+        gc.setTextBaseline(baseline);
+        if (fill != null) {
+            gc.setFill(fill);
+            gc.fillText(text, x, y);
+        }
+        if (stroke != null) {
+            gc.setStroke(stroke);
+            gc.strokeText(text, x, y);
+        }
+        gc.restore();
+    }
+}
@@ -15,31 +15,127 @@
  */
 package org.defis.efis.gauges;
 
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.LongAdder;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.geometry.VPos;
+import javafx.scene.CacheHint;
+import javafx.scene.Group;
 import javafx.scene.Parent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Rotate;
 import lombok.Getter;
+import org.defis.efis.jfr.InstrumentRedrawEvent;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
 
 import static lombok.AccessLevel.PROTECTED;
 
 /**
- * A basic heading indicator gauge. Descendant classes should add things like a heading bug or full HSI.
+ * A basic heading indicator gauge: a compass card turned by the heading under a fixed lubber line. Descendant classes
+ * should add things like a heading bug or full HSI.
+ *
+ * The card is drawn once, north up, and turned by a node transform with its bitmap cached, so a heading change never
+ * redraws it. Descendant classes add whatever turns with the card to {@link #getCard()} and whatever stays put to
+ * the canvas.
  *
  * @author Matthew Tyler
  */
 public class HeadingIndicatorGauge extends Parent
 {
 
+    /**
+     * The compass card, turned by the heading. Descendant classes may add layers of their own from the next bit up.
+     */
+    protected static final int COMPASS_LAYER = 1;
+
+    /**
+     * Labels of the card every 30 degrees, starting at north.
+     */
+    private static final String[] CARD_LABELS = {"N", "3", "6", "E", "12", "15", "S", "21", "24", "W", "30", "33"};
+
+    /**
+     * Fixed symbology drawn over the card: the lubber line.
+     */
     @Getter(PROTECTED)
     private final Canvas canvas;
+
+    /**
+     * The compass card and everything that turns with it.
+     */
+    @Getter(PROTECTED)
+    private final Group card = new Group();
+    private final Rotate cardRotate;
+    private final Canvas rose;
+
     private DoubleProperty headingProperty = new SimpleDoubleProperty(0);
+    private double lastDrawnHeading;
+    private final RateMeter redraws = Metrics.get().rendering().instrument(getClass().getSimpleName());
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed(getClass().getSimpleName());
+
+    /**
+     * Tracks which layers need redrawing. Descendant classes watch their own inputs and call {@link #inputChanged()}
+     * when one of them changes.
+     */
+    @Getter(PROTECTED)
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final int headingWatch;
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+
+    /**
+     * Set when the gauge is rasterized on a worker thread into the surface instead of drawn on its canvas.
+     */
+    private boolean offscreen;
+    private OffscreenSurface surface;
 
+    /**
+     * The card for offscreen frames, rasterized on the worker on first use.
+     */
+    private BufferedImage roseImage;
+
+    /**
+     * The card shows heading 0 until the first update, which descendant classes call at the end of their constructor,
+     * once their own inputs are watched.
+     *
+     * @param width
+     * @param height
+     */
     public HeadingIndicatorGauge(double width, double height) {
         canvas = new Canvas(width, height);
-        headingProperty.addListener(l -> update());
-        update();
+        rose = new Canvas(width, height);
+        // One pixel at the rim of the card
+        headingWatch = redrawTracker.watch(COMPASS_LAYER, Math.toDegrees(2 / Math.min(width, height)));
+        headingProperty.addListener(l -> inputChanged());
+
+        GraphicsContext gc = rose.getGraphicsContext2D();
+        gc.save();
+        gc.translate(width / 2, height / 2);
+        drawCompass(gc);
+        gc.restore();
+
+        gc = canvas.getGraphicsContext2D();
+        gc.save();
+        gc.translate(width / 2, height / 2);
+        drawLubberLine(gc);
+        gc.restore();
+
+        cardRotate = new Rotate(0, width / 2, height / 2);
+        card.getChildren().add(rose);
+        card.getTransforms().add(cardRotate);
+        card.setCache(true);
+        card.setCacheHint(CacheHint.ROTATE);
+
+        getChildren().addAll(card, canvas);
     }
 
     public DoubleProperty headingProperty() {
@@ -50,35 +146,239 @@ public class HeadingIndicatorGauge extends Parent
         return headingProperty.get();
     }
 
+    /**
+     * Asks for a render on the next pulse, or renders right away when the render scheduler is not running.
+     */
+    protected void inputChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    /**
+     * Redraws if the inputs changed enough to show since the last redraw.
+     */
+    private void render() {
+        trackInputs();
+        if (redrawTracker.isDirty()) {
+            update();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    /**
+     * Passes the current inputs to the redraw tracker. Descendant classes that watch inputs of their own override this
+     * and call it.
+     */
+    protected void trackInputs() {
+        redrawTracker.update(headingWatch, getHeading());
+    }
+
     protected void update() {
+        InstrumentRedrawEvent event = InstrumentRedrawEvent.start();
+
+        trackInputs();
         double heading = getHeading();
-        GraphicsContext gc = getCanvas().getGraphicsContext2D();
 
-        gc.save();
-        transform(gc, heading);
-        clear(gc);
-        gc.restore();
+        if (offscreen) {
+            captureInputs(surface);
+            surface.request();
+        } else {
+            updateLayers(redrawTracker.getDirty());
+        }
 
-        gc.save();
-        transform(gc, heading);
-        drawCompass(gc, heading);
-        gc.restore();
+        if (event != null && event.shouldCommit()) {
+            event.instrument = getClass().getSimpleName();
+            event.valueDelta = Math.abs(heading - lastDrawnHeading);
+            event.commit();
+        }
+        lastDrawnHeading = heading;
+        redrawTracker.drawn(RedrawTracker.ALL_LAYERS);
+        redraws.mark();
+    }
+
+    /**
+     * Brings the dirty layers up to date with the inputs. Descendant classes that add layers override this and call
+     * it.
+     *
+     * @param dirty
+     */
+    protected void updateLayers(int dirty) {
+        if ((dirty & COMPASS_LAYER) != 0) {
+            cardRotate.setAngle(-getHeading());
+        }
+    }
+
+    /**
+     * Draws the compass card, north up, with the origin at its center. Called once, from the constructor, so an
+     * override must not rely on fields of its own class.
+     *
+     * @param gc
+     */
+    protected void drawCompass(GraphicsContext gc) {
+        double radius = getRadius();
+
+        gc.setFill(Color.gray(0.2));
+        gc.fillOval(-radius, -radius, 2 * radius, 2 * radius);
 
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(1.5);
+        gc.beginPath();
+        for (int degrees = 0; degrees < 360; degrees += 5) {
+            double inner = radius - (degrees % 10 == 0 ? 12 : 7);
+            double sin = Math.sin(Math.toRadians(degrees));
+            double cos = Math.cos(Math.toRadians(degrees));
+            gc.moveTo(sin * inner, -cos * inner);
+            gc.lineTo(sin * radius, -cos * radius);
+        }
+        gc.stroke();
+
+        gc.setFill(Color.WHITE);
+        gc.setFont(Fonts.size(Math.round(radius / 6)));
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.TOP);
+        for (int label = 0; label < CARD_LABELS.length; label++) {
+            gc.save();
+            gc.rotate(label * 30);
+            gc.fillText(CARD_LABELS[label], 0, -radius + 14);
+            gc.restore();
+        }
     }
 
-    protected void clear(GraphicsContext gc) {
+    private void drawLubberLine(GraphicsContext gc) {
+        double radius = getRadius();
 
+        gc.setFill(Color.WHITE);
         gc.beginPath();
-        gc.arc(0, 0, getCanvas().getWidth() / 2, getCanvas().getHeight() / 2, 0, 360);
-        gc.clip();
-        gc.clearRect(-getCanvas().getWidth() / 2, -getCanvas().getHeight() / 2, getCanvas().getWidth(), getCanvas().getHeight());
+        gc.moveTo(-6, -radius - 1);
+        gc.lineTo(6, -radius - 1);
+        gc.lineTo(0, -radius + 9);
+        gc.closePath();
+        gc.fill();
+    }
+
+    protected double getRadius() {
+        return Math.min(canvas.getWidth(), canvas.getHeight()) / 2;
     }
 
-    protected void transform(GraphicsContext gc, double heading) {
-        gc.translate(getCanvas().getWidth() / 2, getCanvas().getHeight() / 2);
+    public boolean isOffscreen() {
+        return offscreen;
     }
 
-    protected void drawCompass(GraphicsContext gc, double heading) {
+    /**
+     * Switches between drawing on the FX thread and rasterizing offscreen on a worker thread, and redraws the gauge.
+     *
+     * @param offscreen
+     */
+    public void setOffscreen(boolean offscreen) {
+        if (offscreen == this.offscreen) {
+            return;
+        }
+        this.offscreen = offscreen;
+
+        if (offscreen) {
+            if (surface == null) {
+                surface = new OffscreenSurface(getCanvas().getWidth(), getCanvas().getHeight(),
+                        getOffscreenInputCount(), this::rasterize);
+            }
+            getChildren().setAll(surface);
+        } else {
+            getChildren().setAll(card, canvas);
+        }
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        update();
+    }
+
+    /**
+     * Returns how many inputs {@link #captureInputs} sets. Descendant classes that rasterize inputs of their own
+     * override this and the two methods below.
+     *
+     * @return
+     */
+    protected int getOffscreenInputCount() {
+        return 1;
+    }
+
+    /**
+     * Sets the inputs of the next offscreen frame, the heading first.
+     *
+     * @param surface
+     */
+    protected void captureInputs(OffscreenSurface surface) {
+        surface.setInput(0, getHeading());
+    }
+
+    /**
+     * The offscreen counterpart of the card and the canvas, called on a raster worker with the inputs set by
+     * {@link #captureInputs}. The graphics are clipped to the dial with the origin at its center. The card is
+     * rasterized once and drawn turned.
+     *
+     * @param g
+     * @param inputs
+     */
+    protected void rasterizeCompass(Graphics2D g, double[] inputs) {
+        double radius = getRadius();
+        if (roseImage == null) {
+            roseImage = rasterizeRose(radius);
+        }
+
+        AffineTransform screen = g.getTransform();
+        g.rotate(Math.toRadians(-inputs[0]));
+        g.drawImage(roseImage, (int) -radius, (int) -radius, null);
+        g.setTransform(screen);
+
+        Path2D.Double lubber = new Path2D.Double();
+        lubber.moveTo(-6, -radius - 1);
+        lubber.lineTo(6, -radius - 1);
+        lubber.lineTo(0, -radius + 9);
+        lubber.closePath();
+        g.setColor(java.awt.Color.WHITE);
+        g.fill(lubber);
+    }
+
+    private BufferedImage rasterizeRose(double radius) {
+        int size = (int) Math.ceil(2 * radius);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.translate(radius, radius);
+
+            g.setColor(Java2D.color(Color.gray(0.2)));
+            g.fill(new Ellipse2D.Double(-radius, -radius, 2 * radius, 2 * radius));
+
+            Path2D.Double ticks = new Path2D.Double();
+            for (int degrees = 0; degrees < 360; degrees += 5) {
+                double inner = radius - (degrees % 10 == 0 ? 12 : 7);
+                double sin = Math.sin(Math.toRadians(degrees));
+                double cos = Math.cos(Math.toRadians(degrees));
+                ticks.moveTo(sin * inner, -cos * inner);
+                ticks.lineTo(sin * radius, -cos * radius);
+            }
+            g.setColor(java.awt.Color.WHITE);
+            g.setStroke(new BasicStroke(1.5f));
+            g.draw(ticks);
+
+            g.setFont(Java2D.font(Math.round(radius / 6)));
+            AffineTransform center = g.getTransform();
+            for (int label = 0; label < CARD_LABELS.length; label++) {
+                g.rotate(Math.toRadians(label * 30));
+                Java2D.drawText(g, CARD_LABELS[label], 0, -radius + 14, TextAlignment.CENTER, VPos.TOP, true, false);
+                g.setTransform(center);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
 
+    private void rasterize(Graphics2D g, double[] inputs) {
+        double width = getCanvas().getWidth();
+        double height = getCanvas().getHeight();
+        g.clip(new Ellipse2D.Double(0, 0, width, height));
+        g.translate(width / 2, height / 2);
+        rasterizeCompass(g, inputs);
     }
 }
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import static org.defis.efis.gauges.DisplayOrientation.UP;
+
+/**
+ * A heading tape for across the top of the PFD. The value is the heading in degrees; it wraps at 360 and may be set
+ * outside [0, 360).
+ *
+ * @author Matthew Tyler
+ */
+public class HeadingTape extends AbstractTapeGauge
+{
+
+    public HeadingTape(double width, double height) {
+        super(width, height, UP, 30, 10, 90, 1);
+        setIndicatorLabelFormat("%03.0f");
+        setWrapModulus(360);
+        update();
+    }
+
+    /**
+     * Labels the cardinal points with their letter and the others in tens of degrees, as on a compass card.
+     *
+     * @param val
+     * @return
+     */
+    @Override
+    protected String generateTickLabel(double val) {
+        int heading = (int) Math.round(val) % 360;
+        switch (heading) {
+            case 0:
+                return "N";
+            case 90:
+                return "E";
+            case 180:
+                return "S";
+            case 270:
+                return "W";
+            default:
+                return Integer.toString(heading / 10);
+        }
+    }
+}
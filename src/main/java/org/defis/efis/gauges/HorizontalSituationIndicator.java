@@ -0,0 +1,291 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polygon;
+import javafx.scene.transform.Rotate;
+
+/**
+ * A heading indicator with the course deviation indicator of a nav receiver and a heading bug: the HSI.
+ *
+ * The course needle with its deviation bar and the heading bug turn with the card, by transforms of their own on top
+ * of the card's, so heading, course and bug changes never redraw anything. Only a change of the deviation redraws the
+ * needle.
+ *
+ * @author Matthew Tyler
+ */
+public class HorizontalSituationIndicator extends HeadingIndicatorGauge
+{
+
+    /**
+     * The course needle, the deviation dots and the deviation bar.
+     */
+    private static final int NEEDLE_LAYER = COMPASS_LAYER << 1;
+
+    /**
+     * The course the needle is turned to on the card.
+     */
+    private static final int COURSE_LAYER = COMPASS_LAYER << 2;
+
+    private static final int BUG_LAYER = COMPASS_LAYER << 3;
+
+    /**
+     * Dots either side of the needle. A deviation of 1, full scale, puts the bar on the outer dot.
+     */
+    private static final int DOTS = 2;
+
+    private static final Color NEEDLE_COLOR = Color.MAGENTA;
+    private static final Color BUG_COLOR = Color.CYAN;
+
+    /**
+     * Selected course in degrees.
+     */
+    private final DoubleProperty course = new SimpleDoubleProperty(0);
+
+    private final DoubleProperty headingBug = new SimpleDoubleProperty(0);
+
+    /**
+     * Course deviation, from -1 (full scale left) to 1 (full scale right).
+     */
+    private final DoubleProperty deviation = new SimpleDoubleProperty(0);
+
+    private final Canvas needle;
+    private final Rotate needleRotate;
+    private final Rotate bugRotate = new Rotate();
+    private final double dotSpacing;
+
+    private final int courseWatch;
+    private final int bugWatch;
+    private final int deviationWatch;
+
+    public HorizontalSituationIndicator(double width, double height) {
+        super(width, height);
+        double radius = getRadius();
+        dotSpacing = radius * 0.18;
+
+        // One pixel at the rim, and one pixel of bar travel
+        double rimQuantum = Math.toDegrees(2 / Math.min(width, height));
+        courseWatch = getRedrawTracker().watch(COURSE_LAYER, rimQuantum);
+        bugWatch = getRedrawTracker().watch(BUG_LAYER, rimQuantum);
+        deviationWatch = getRedrawTracker().watch(NEEDLE_LAYER, 1 / (DOTS * dotSpacing));
+
+        needle = new Canvas(width, height);
+        needleRotate = new Rotate(0, width / 2, height / 2);
+        needle.getTransforms().add(needleRotate);
+
+        Polygon bug = new Polygon(bugOutline(radius));
+        bug.setFill(BUG_COLOR);
+        bug.setLayoutX(width / 2);
+        bug.setLayoutY(height / 2);
+        bug.getTransforms().add(bugRotate);
+
+        getCard().getChildren().addAll(needle, bug);
+
+        GraphicsContext gc = getCanvas().getGraphicsContext2D();
+        gc.save();
+        gc.translate(width / 2, height / 2);
+        drawAircraft(gc);
+        gc.restore();
+
+        course.addListener(l -> inputChanged());
+        headingBug.addListener(l -> inputChanged());
+        deviation.addListener(l -> inputChanged());
+        update();
+    }
+
+    public DoubleProperty courseProperty() {
+        return course;
+    }
+
+    public double getCourse() {
+        return course.get();
+    }
+
+    public DoubleProperty headingBugProperty() {
+        return headingBug;
+    }
+
+    public double getHeadingBug() {
+        return headingBug.get();
+    }
+
+    public DoubleProperty deviationProperty() {
+        return deviation;
+    }
+
+    public double getDeviation() {
+        return deviation.get();
+    }
+
+    @Override
+    protected void trackInputs() {
+        super.trackInputs();
+        getRedrawTracker().update(courseWatch, getCourse());
+        getRedrawTracker().update(bugWatch, getHeadingBug());
+        getRedrawTracker().update(deviationWatch, getDeviation());
+    }
+
+    @Override
+    protected void updateLayers(int dirty) {
+        super.updateLayers(dirty);
+
+        if ((dirty & NEEDLE_LAYER) != 0) {
+            GraphicsContext gc = needle.getGraphicsContext2D();
+            gc.clearRect(0, 0, needle.getWidth(), needle.getHeight());
+            gc.save();
+            gc.translate(needle.getWidth() / 2, needle.getHeight() / 2);
+            drawNeedle(gc, getDeviation());
+            gc.restore();
+        }
+        if ((dirty & COURSE_LAYER) != 0) {
+            needleRotate.setAngle(getCourse());
+        }
+        if ((dirty & BUG_LAYER) != 0) {
+            bugRotate.setAngle(getHeadingBug());
+        }
+    }
+
+    /**
+     * Draws the course needle pointing up, with the bar at the deviation.
+     *
+     * @param gc
+     * @param deviation
+     */
+    private void drawNeedle(GraphicsContext gc, double deviation) {
+        double radius = getRadius();
+
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(1.5);
+        for (int dot = -DOTS; dot <= DOTS; dot++) {
+            if (dot != 0) {
+                gc.strokeOval(dot * dotSpacing - 3, -3, 6, 6);
+            }
+        }
+
+        gc.setFill(NEEDLE_COLOR);
+        gc.setStroke(NEEDLE_COLOR);
+        gc.setLineWidth(3);
+        gc.beginPath();
+        gc.moveTo(0, -radius + 16);
+        gc.lineTo(-6, -radius + 28);
+        gc.lineTo(6, -radius + 28);
+        gc.closePath();
+        gc.fill();
+
+        gc.strokeLine(0, -radius + 28, 0, -radius * 0.4);
+        gc.strokeLine(0, radius * 0.4, 0, radius - 16);
+
+        double bar = barOffset(deviation);
+        gc.strokeLine(bar, -radius * 0.38, bar, radius * 0.38);
+    }
+
+    private void drawAircraft(GraphicsContext gc) {
+        gc.setStroke(Color.WHITE);
+        gc.setLineWidth(2);
+        gc.strokeLine(0, -10, 0, 12);
+        gc.strokeLine(-12, 0, 12, 0);
+        gc.strokeLine(-5, 10, 5, 10);
+    }
+
+    private double barOffset(double deviation) {
+        return Math.max(-1, Math.min(1, deviation)) * DOTS * dotSpacing;
+    }
+
+    /**
+     * The heading bug at the top of the card: a notched block straddling the rim.
+     *
+     * @param radius
+     * @return
+     */
+    private static double[] bugOutline(double radius) {
+        return new double[]{
+            -8, -radius, 8, -radius, 8, -radius + 7, 3, -radius + 7, 0, -radius + 3, -3, -radius + 7, -8, -radius + 7
+        };
+    }
+
+    @Override
+    protected int getOffscreenInputCount() {
+        return 4;
+    }
+
+    @Override
+    protected void captureInputs(OffscreenSurface surface) {
+        super.captureInputs(surface);
+        surface.setInput(1, getCourse());
+        surface.setInput(2, getHeadingBug());
+        surface.setInput(3, getDeviation());
+    }
+
+    @Override
+    protected void rasterizeCompass(Graphics2D g, double[] inputs) {
+        super.rasterizeCompass(g, inputs);
+        double radius = getRadius();
+        AffineTransform screen = g.getTransform();
+
+        g.rotate(Math.toRadians(inputs[1] - inputs[0]));
+        g.setColor(java.awt.Color.WHITE);
+        g.setStroke(new BasicStroke(1.5f));
+        for (int dot = -DOTS; dot <= DOTS; dot++) {
+            if (dot != 0) {
+                g.draw(new Ellipse2D.Double(dot * dotSpacing - 3, -3, 6, 6));
+            }
+        }
+
+        Path2D.Double arrow = new Path2D.Double();
+        arrow.moveTo(0, -radius + 16);
+        arrow.lineTo(-6, -radius + 28);
+        arrow.lineTo(6, -radius + 28);
+        arrow.closePath();
+        g.setColor(Java2D.color(NEEDLE_COLOR));
+        g.fill(arrow);
+
+        double bar = barOffset(inputs[3]);
+        g.setStroke(new BasicStroke(3));
+        g.draw(new Line2D.Double(0, -radius + 28, 0, -radius * 0.4));
+        g.draw(new Line2D.Double(0, radius * 0.4, 0, radius - 16));
+        g.draw(new Line2D.Double(bar, -radius * 0.38, bar, radius * 0.38));
+        g.setTransform(screen);
+
+        g.rotate(Math.toRadians(inputs[2] - inputs[0]));
+        double[] outline = bugOutline(radius);
+        Path2D.Double bug = new Path2D.Double();
+        bug.moveTo(outline[0], outline[1]);
+        for (int point = 2; point < outline.length; point += 2) {
+            bug.lineTo(outline[point], outline[point + 1]);
+        }
+        bug.closePath();
+        g.setColor(Java2D.color(BUG_COLOR));
+        g.fill(bug);
+        g.setTransform(screen);
+
+        g.setColor(java.awt.Color.WHITE);
+        g.setStroke(new BasicStroke(2));
+        g.draw(new Line2D.Double(0, -10, 0, 12));
+        g.draw(new Line2D.Double(-12, 0, 12, 0));
+        g.draw(new Line2D.Double(-5, 10, 5, 10));
+    }
+}
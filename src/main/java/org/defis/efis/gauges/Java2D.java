@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import javafx.geometry.VPos;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Helpers for rasterizers of {@link OffscreenSurface}s that draw the same instruments as the canvas code, so they take
+ * the JavaFX colors, alignments and baselines the canvas code uses.
+ *
+ * @author Matthew Tyler
+ */
+public final class Java2D
+{
+
+    private Java2D() {
+    }
+
+    public static java.awt.Color color(Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(),
+                (float) color.getOpacity());
+    }
+
+    /**
+     * Returns the Java2D font closest to the JavaFX default font at the given size.
+     *
+     * @param size
+     * @return
+     */
+    public static java.awt.Font font(double size) {
+        return new java.awt.Font(java.awt.Font.SANS_SERIF, java.awt.Font.PLAIN, 1).deriveFont((float) size);
+    }
+
+    /**
+     * Draws text the way GraphicsContext fillText and strokeText would with the given alignment and baseline, in the
+     * current color and font of the graphics.
+     *
+     * @param g
+     * @param text
+     * @param x
+     * @param y
+     * @param align
+     * @param baseline
+     * @param fill
+     * @param stroke
+     */
+    public static void drawText(Graphics2D g, String text, double x, double y, TextAlignment align, VPos baseline,
+            boolean fill, boolean stroke) {
+        FontMetrics metrics = g.getFontMetrics();
+        switch (align) {
+            case RIGHT:
+                x -= metrics.stringWidth(text);
+                break;
+            case CENTER:
+                x -= metrics.stringWidth(text) / 2.0;
+                break;
+            default:
+        }
+        switch (baseline) {
+            case TOP:
+                y += metrics.getAscent();
+                break;
+            case CENTER:
+                y += (metrics.getAscent() - metrics.getDescent()) / 2.0;
+                break;
+            case BOTTOM:
+                y -= metrics.getDescent();
+                break;
+            default:
+        }
+
+        if (fill) {
+            g.drawString(text, (float) x, (float) y);
+        }
+        if (stroke) {
+            Shape outline = g.getFont().createGlyphVector(g.getFontRenderContext(), text)
+                    .getOutline((float) x, (float) y);
+            g.draw(outline);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * Formatted labels for values on a regular grid (every step units), formatted once on first use and then reused.
+ * Values off the grid are formatted every time. The cache grows to cover whatever range the gauge actually visits, up
+ * to {@link #MAX_LABELS} labels.
+ *
+ * Not thread safe; each gauge keeps its own caches and uses them from the thread it draws on.
+ *
+ * @author Matthew Tyler
+ */
+public class LabelCache
+{
+
+    public static final int MAX_LABELS = 1 << 16;
+
+    private final double step;
+    private final DoubleFunction<String> formatter;
+
+    private String[] labels = new String[0];
+    private long first;
+
+    public LabelCache(double step, DoubleFunction<String> formatter) {
+        this.step = step;
+        this.formatter = formatter;
+    }
+
+    public String get(double value) {
+        long index = Math.round(value / step);
+        if (index * step != value) {
+            return formatter.apply(value);
+        }
+
+        long slot = index - first;
+        if (slot < 0 || slot >= labels.length) {
+            if (!grow(index)) {
+                return formatter.apply(value);
+            }
+            slot = index - first;
+        }
+
+        String label = labels[(int) slot];
+        if (label == null) {
+            label = formatter.apply(value + 0.0);
+            labels[(int) slot] = label;
+        }
+        return label;
+    }
+
+    /**
+     * Drops every label, for when the formatting changes.
+     */
+    public void clear() {
+        labels = new String[0];
+    }
+
+    private boolean grow(long index) {
+        long low = labels.length == 0 ? index : Math.min(first, index);
+        long high = labels.length == 0 ? index : Math.max(first + labels.length - 1, index);
+
+        // Leave room to keep going in the same direction without growing again right away
+        long slack = Math.max(16, (high - low + 1) / 2);
+        low = index < first || labels.length == 0 ? low - slack : low;
+        high = index >= first + labels.length || labels.length == 0 ? high + slack : high;
+
+        if (high - low + 1 > MAX_LABELS) {
+            return false;
+        }
+
+        String[] grown = new String[(int) (high - low + 1)];
+        if (labels.length > 0) {
+            System.arraycopy(labels, 0, grown, (int) (first - low), labels.length);
+        }
+        labels = grown;
+        first = low;
+        return true;
+    }
+}
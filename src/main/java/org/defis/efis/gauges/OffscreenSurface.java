@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javafx.application.Platform;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * An instrument face that is rasterized on a worker thread instead of the FX thread. The instrument sets its inputs and
+ * requests a frame from whatever thread it likes; a worker from a shared pool draws the frame with Java2D into a pixel
+ * buffer of its own, and the FX thread only copies finished frames into the image this view shows.
+ *
+ * Frames are triple buffered: the worker draws into the back buffer, the FX thread uploads from the front buffer, and
+ * the two only ever swap a reference through the buffer in the middle, so neither waits for the other. A frame that is
+ * replaced before the FX thread gets to it is simply dropped. Requests made while a frame is being drawn coalesce into
+ * one more frame with the latest inputs, so a surface keeps at most one worker busy.
+ *
+ * @author Matthew Tyler
+ */
+public class OffscreenSurface extends ImageView
+{
+
+    private final int width;
+    private final int height;
+    private final Rasterizer rasterizer;
+    private final WritableImage image;
+
+    /**
+     * Inputs as last set by the instrument, copied to {@link #inputs} under its lock when a frame starts.
+     */
+    private final double[] requested;
+    private final double[] inputs;
+
+    private Frame back;
+    private final AtomicReference<Frame> middle;
+    private Frame front;
+
+    private final AtomicBoolean rasterizing = new AtomicBoolean();
+    private volatile boolean stale;
+
+    private final Runnable rasterizeTask = this::rasterizeLoop;
+    private final Runnable uploadTask = this::upload;
+    private final RenderScheduler.Target uploadTarget = new RenderScheduler.Target(uploadTask);
+
+    /**
+     * @param width
+     * @param height
+     * @param inputCount how many inputs the rasterizer reads
+     * @param rasterizer draws a frame, always called on a worker thread and never for two frames at once
+     */
+    public OffscreenSurface(double width, double height, int inputCount, Rasterizer rasterizer) {
+        this.width = (int) Math.ceil(width);
+        this.height = (int) Math.ceil(height);
+        this.rasterizer = rasterizer;
+        requested = new double[inputCount];
+        inputs = new double[inputCount];
+
+        back = new Frame();
+        middle = new AtomicReference<>(new Frame());
+        front = new Frame();
+        image = new WritableImage(this.width, this.height);
+        setImage(image);
+    }
+
+    /**
+     * @return the number of threads rasterizing offscreen surfaces, one less than the cores so the FX thread keeps one
+     */
+    public static int getWorkerCount() {
+        return Workers.COUNT;
+    }
+
+    /**
+     * Sets an input for the next frame. Safe to call from any thread.
+     *
+     * @param index
+     * @param value
+     */
+    public void setInput(int index, double value) {
+        synchronized (requested) {
+            requested[index] = value;
+        }
+    }
+
+    /**
+     * Asks for a frame with the inputs set so far. Safe to call from any thread, and as often as inputs change.
+     */
+    public void request() {
+        stale = true;
+        if (rasterizing.compareAndSet(false, true)) {
+            Workers.POOL.execute(rasterizeTask);
+        }
+    }
+
+    private void rasterizeLoop() {
+        do {
+            while (stale) {
+                stale = false;
+                synchronized (requested) {
+                    System.arraycopy(requested, 0, inputs, 0, inputs.length);
+                }
+                rasterize(back);
+
+                back.fresh = true;
+                back = middle.getAndSet(back);
+                if (!uploadTarget.request()) {
+                    Platform.runLater(uploadTask);
+                }
+            }
+            rasterizing.set(false);
+            // A request that came in after the last frame started but saw this loop still running
+        } while (stale && rasterizing.compareAndSet(false, true));
+    }
+
+    private void rasterize(Frame frame) {
+        Arrays.fill(frame.pixels, 0);
+
+        Graphics2D g = frame.image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            rasterizer.rasterize(g, inputs);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Copies the newest finished frame, if there is one the view does not show yet, into the image.
+     */
+    private void upload() {
+        if (!middle.get().fresh) {
+            return;
+        }
+        front.fresh = false;
+        front = middle.getAndSet(front);
+
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(),
+                front.pixels, 0, width);
+    }
+
+    /**
+     * Draws one frame of an instrument.
+     */
+    public interface Rasterizer
+    {
+
+        /**
+         * @param g a cleared frame, antialiased, in pixels from its top left corner
+         * @param inputs the inputs the frame is drawn for, not to be kept
+         */
+        void rasterize(Graphics2D g, double[] inputs);
+    }
+
+    private class Frame
+    {
+
+        private final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        private final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        private volatile boolean fresh;
+    }
+
+    /**
+     * The pool is only started once the first surface requests a frame.
+     */
+    private static class Workers
+    {
+
+        private static final int COUNT = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(COUNT, new RasterThreads());
+    }
+
+    private static class RasterThreads implements ThreadFactory
+    {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "defis-raster-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.util.Arrays;
+
+/**
+ * Decides which layers of an instrument need redrawing. An instrument watches each of its inputs once per layer the
+ * input moves, with the smallest change of that input that is visible on the layer (its quantum, for example one
+ * pixel of tape travel). A new input value dirties the watched layers only once it is at least a quantum away from
+ * the value those layers were last drawn with, so sensor noise below a pixel never causes a redraw while a slow drift
+ * still does as soon as it adds up to something visible.
+ *
+ * Layers are bits chosen by the instrument. Not thread safe; an instrument uses its tracker from the thread it draws
+ * on.
+ *
+ * @author Matthew Tyler
+ */
+public class RedrawTracker
+{
+
+    public static final int ALL_LAYERS = -1;
+
+    private int[] layers = new int[0];
+    private double[] quanta = new double[0];
+    private double[] pending = new double[0];
+    private double[] drawn = new double[0];
+
+    private int dirty = ALL_LAYERS;
+
+    /**
+     * Starts watching an input for the given layers.
+     *
+     * @param layers the layers the input moves
+     * @param quantum the smallest visible change of the input on those layers
+     * @return the watch, for {@link #update} and {@link #setQuantum}
+     */
+    public int watch(int layers, double quantum) {
+        int watch = this.layers.length;
+        this.layers = Arrays.copyOf(this.layers, watch + 1);
+        quanta = Arrays.copyOf(quanta, watch + 1);
+        pending = Arrays.copyOf(pending, watch + 1);
+        drawn = Arrays.copyOf(drawn, watch + 1);
+
+        this.layers[watch] = layers;
+        quanta[watch] = quantum;
+        pending[watch] = Double.NaN;
+        drawn[watch] = Double.NaN;
+        return watch;
+    }
+
+    /**
+     * Changes the quantum of a watch, for when the scale of a layer changes. Does not dirty anything by itself.
+     *
+     * @param watch
+     * @param quantum
+     */
+    public void setQuantum(int watch, double quantum) {
+        quanta[watch] = quantum;
+    }
+
+    /**
+     * Records a new value of a watched input.
+     *
+     * @param watch
+     * @param value
+     * @return true if the value dirtied the watched layers
+     */
+    public boolean update(int watch, double value) {
+        pending[watch] = value;
+        // Written so that NaN, nothing drawn yet, is always significant
+        if (!(Math.abs(value - drawn[watch]) < quanta[watch])) {
+            dirty |= layers[watch];
+            return true;
+        }
+        return false;
+    }
+
+    public void markDirty(int layers) {
+        dirty |= layers;
+    }
+
+    public boolean isDirty() {
+        return dirty != 0;
+    }
+
+    /**
+     * @param layers
+     * @return true if any of the layers is dirty
+     */
+    public boolean isDirty(int layers) {
+        return (dirty & layers) != 0;
+    }
+
+    /**
+     * @return the dirty layers
+     */
+    public int getDirty() {
+        return dirty;
+    }
+
+    /**
+     * Records that the layers were redrawn from the latest values. Watches of inputs that also move other layers keep
+     * their last drawn value until all of their layers have been redrawn.
+     *
+     * @param layers
+     */
+    public void drawn(int layers) {
+        for (int watch = 0; watch < this.layers.length; watch++) {
+            if ((this.layers[watch] & ~layers) == 0) {
+                drawn[watch] = pending[watch];
+            }
+        }
+        dirty &= ~layers;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.animation.AnimationTimer;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RenderMetrics;
+
+/**
+ * Draws instruments on the FX pulse instead of from their property listeners. An instrument owns a {@link Target} and
+ * requests a render whenever one of its inputs changes, from any thread; each pulse then renders every requested
+ * target once, on the FX thread, no matter how many times its inputs changed since the last pulse.
+ *
+ * Two limits keep the FX thread from falling behind the display. The frame rate cap skips pulses that come sooner
+ * than the cap allows, and the render budget stops rendering targets once a pulse has spent its share of the frame.
+ * Targets left over stay queued, in order, for the next pulse. Either way an instrument's canvas never holds more
+ * than one frame of drawing commands, because it is drawn at most once per pulse.
+ *
+ * While the scheduler is not running, requests are refused and instruments draw synchronously as before, which is
+ * what the benchmarks and any code running without a stage rely on.
+ *
+ * @author Matthew Tyler
+ */
+public class RenderScheduler extends AnimationTimer
+{
+
+    private static final RenderScheduler INSTANCE = new RenderScheduler(Metrics.get().rendering());
+
+    private final RenderMetrics metrics;
+    private final Queue<Target> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private volatile boolean running;
+    private volatile long minFrameNanos;
+    private volatile long renderBudgetNanos = TimeUnit.MILLISECONDS.toNanos(8);
+    private long lastFrame;
+
+    public static RenderScheduler get() {
+        return INSTANCE;
+    }
+
+    private RenderScheduler(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Caps how often the scheduler renders.
+     *
+     * @param framesPerSecond the cap, or 0 to render on every pulse
+     */
+    public void setMaxFrameRate(double framesPerSecond) {
+        minFrameNanos = framesPerSecond > 0 ? (long) (1e9 / framesPerSecond) : 0;
+    }
+
+    public double getMaxFrameRate() {
+        long min = minFrameNanos;
+        return min > 0 ? 1e9 / min : 0;
+    }
+
+    /**
+     * Sets how long a pulse may spend rendering before the remaining targets are deferred to the next pulse. At least
+     * one target is rendered per pulse.
+     *
+     * @param millis
+     */
+    public void setRenderBudget(double millis) {
+        renderBudgetNanos = (long) (millis * 1e6);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        super.start();
+    }
+
+    /**
+     * Stops rendering on the pulse. Targets still queued are dropped; their instruments draw synchronously again on
+     * their next change.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        super.stop();
+        lastFrame = 0;
+
+        Target target;
+        while ((target = queue.poll()) != null) {
+            queued.decrementAndGet();
+            target.requested.set(false);
+        }
+    }
+
+    @Override
+    public void handle(long now) {
+        // Allow for pulses arriving a little early so that a cap at the display rate does not skip every other one
+        if (lastFrame != 0 && now - lastFrame < minFrameNanos - minFrameNanos / 8) {
+            return;
+        }
+        lastFrame = now;
+
+        long deadline = System.nanoTime() + renderBudgetNanos;
+        int pending = queued.get();
+        for (int rendered = 0; rendered < pending; rendered++) {
+            if (rendered > 0 && System.nanoTime() > deadline) {
+                metrics.deferred(pending - rendered);
+                return;
+            }
+
+            Target target = queue.poll();
+            if (target == null) {
+                return;
+            }
+            queued.decrementAndGet();
+
+            // Cleared first, so that a change while rendering asks for another render on the next pulse
+            target.requested.set(false);
+            target.render.run();
+        }
+    }
+
+    private void enqueue(Target target) {
+        queue.add(target);
+        queued.incrementAndGet();
+    }
+
+    /**
+     * The handle an instrument renders through.
+     */
+    public static class Target
+    {
+
+        private final Runnable render;
+        private final AtomicBoolean requested = new AtomicBoolean();
+
+        /**
+         * @param render draws the instrument, always called on the FX thread
+         */
+        public Target(Runnable render) {
+            this.render = render;
+        }
+
+        /**
+         * Asks for a render on the next pulse. Safe to call from any thread, and as often as inputs change.
+         *
+         * @return false if the scheduler is not running, in which case the caller should draw right away
+         */
+        public boolean request() {
+            RenderScheduler scheduler = INSTANCE;
+            if (!scheduler.running) {
+                return false;
+            }
+            if (requested.compareAndSet(false, true)) {
+                scheduler.enqueue(this);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import javafx.geometry.VPos;
+
+import static javafx.scene.text.TextAlignment.LEFT;
+import static javafx.scene.text.TextAlignment.RIGHT;
+
+/**
+ * Draws a tape gauge into an {@link OffscreenSurface}: the same background, ticks, labels, magnifier and rolling
+ * value as the canvas path, with Java2D on a raster worker. Takes the value as its only input.
+ *
+ * The gauge's settings are read again on the worker after {@link #invalidate}, and labels are cached here rather than
+ * shared with the canvas path, since frames are drawn off the FX thread. Overrides of the canvas drawing methods do
+ * not apply.
+ *
+ * @author Matthew Tyler
+ */
+class TapeRasterizer implements OffscreenSurface.Rasterizer
+{
+
+    private final AbstractTapeGauge gauge;
+    private final AbstractTapeGauge.Setup setup;
+    private final Font tickFont;
+    private final Font valueFont;
+
+    private final Path2D.Double path = new Path2D.Double();
+    private final Rectangle2D.Double rect = new Rectangle2D.Double();
+    private final AffineTransform identity = new AffineTransform();
+
+    private volatile boolean invalid = true;
+    private java.awt.Color backgroundColor;
+    private boolean negativeDrawn;
+    private LabelCache tickLabels;
+    private LabelCache indicatorHeads;
+    private LabelCache indicatorTails;
+
+    /**
+     * Must be created on the FX thread, once the gauge is set up.
+     *
+     * @param gauge
+     */
+    TapeRasterizer(AbstractTapeGauge gauge) {
+        this.gauge = gauge;
+        setup = gauge.getSetup();
+
+        double fontSize = javafx.scene.text.Font.getDefault().getSize();
+        tickFont = Java2D.font(fontSize);
+        valueFont = Java2D.font(fontSize + 8);
+    }
+
+    /**
+     * Has the next frame read the gauge's settings again.
+     */
+    void invalidate() {
+        invalid = true;
+    }
+
+    @Override
+    public void rasterize(Graphics2D g, double[] inputs) {
+        if (invalid) {
+            invalid = false;
+            configure();
+        }
+        double value = inputs[0];
+
+        g.setColor(backgroundColor);
+        rect.setRect(setup.bgTx, setup.bgTy, setup.bgWidth, setup.bgHeight);
+        g.fill(rect);
+
+        g.translate(setup.tX, setup.tY);
+        drawTicks(g, value);
+        g.setTransform(identity);
+
+        g.translate(setup.tX, setup.tY);
+        drawMagnifier(g);
+        g.setTransform(identity);
+
+        g.translate(setup.valueX, setup.valueY);
+        drawCurrentValue(g, value);
+    }
+
+    private void configure() {
+        backgroundColor = Java2D.color(gauge.getBackgroundColor());
+        negativeDrawn = gauge.isNegativeDrawn();
+
+        int rollingDigits = setup.numRollingDigits;
+        tickLabels = new LabelCache(gauge.getUnitsToMinorTick(), gauge::generateTickLabel);
+        indicatorHeads = new LabelCache(1, val -> {
+            String label = gauge.generateIndicatorLabel(val);
+            return label.substring(0, label.length() - rollingDigits);
+        });
+        indicatorTails = new LabelCache(gauge.getIndicatorStep(), val -> {
+            String label = gauge.generateIndicatorLabel(val);
+            return label.substring(label.length() - 2);
+        });
+    }
+
+    private void drawTicks(Graphics2D g, double value) {
+        double from = value - gauge.getVisibleRange() / 1.75;
+        double to = value + gauge.getVisibleRange() / 1.75;
+        double zeroLoc = -setup.valueDir * setup.pixelsToUnit * value;
+        double minorTick = gauge.getUnitsToMinorTick();
+        boolean wraps = gauge.getWrapModulus() > 0;
+
+        g.setColor(java.awt.Color.WHITE);
+        g.setFont(tickFont);
+        path.reset();
+
+        for (long tick = (long) Math.ceil(from / minorTick); tick * minorTick <= to; tick++) {
+            double tickValue = tick * minorTick;
+            if (!negativeDrawn && !wraps && tickValue < 0) {
+                continue;
+            }
+
+            double tickLoc = zeroLoc + setup.valueDir * setup.pixelsToUnit * tickValue;
+            boolean major = tickValue % gauge.getUnitsToMajorTick() == 0;
+            double tickLength = major ? 10 : 5;
+            double labelLoc = tickLength * setup.tickDir + 3 * setup.tickDir;
+
+            if (setup.horizontal) {
+                path.moveTo(tickLoc, 0);
+                path.lineTo(tickLoc, setup.tickDir * tickLength);
+            } else {
+                path.moveTo(0, tickLoc);
+                path.lineTo(setup.tickDir * tickLength, tickLoc);
+            }
+
+            if (major) {
+                String label = tickLabels.get(gauge.wrap(tickValue));
+                if (setup.horizontal) {
+                    Java2D.drawText(g, label, tickLoc, labelLoc, setup.textAlignment, setup.textBaseline, false, true);
+                } else {
+                    Java2D.drawText(g, label, labelLoc, tickLoc - 1, setup.textAlignment, setup.textBaseline, false,
+                            true);
+                }
+            }
+        }
+
+        g.draw(path);
+    }
+
+    private void drawMagnifier(Graphics2D g) {
+        path.reset();
+        if (setup.horizontal) {
+            boxMagnifier();
+        } else {
+            leftFacingMagnifier();
+        }
+
+        g.setColor(java.awt.Color.BLACK);
+        g.fill(path);
+        g.setColor(java.awt.Color.WHITE);
+        g.draw(path);
+    }
+
+    private void leftFacingMagnifier() {
+        double width = gauge.getWidth();
+
+        path.moveTo(0, 0);
+        path.lineTo(8, -3);
+        path.lineTo(8, -10);
+        path.lineTo(35, -10);
+        path.lineTo(35, -20);
+        path.lineTo(width, -20);
+        path.lineTo(width, 20);
+        path.lineTo(35, 20);
+        path.lineTo(35, 10);
+        path.lineTo(8, 10);
+        path.lineTo(8, 3);
+        path.closePath();
+    }
+
+    private void boxMagnifier() {
+        double dir = setup.tickDir;
+        double notch = AbstractTapeGauge.MAGNIFIER_NOTCH;
+        double half = AbstractTapeGauge.MAGNIFIER_HALF_WIDTH;
+
+        path.moveTo(0, 0);
+        path.lineTo(4, dir * notch);
+        path.lineTo(half, dir * notch);
+        path.lineTo(half, dir * gauge.getHeight());
+        path.lineTo(-half, dir * gauge.getHeight());
+        path.lineTo(-half, dir * notch);
+        path.lineTo(-4, dir * notch);
+        path.closePath();
+    }
+
+    private void drawCurrentValue(Graphics2D g, double value) {
+        double step = gauge.getIndicatorStep();
+
+        g.setColor(java.awt.Color.WHITE);
+        g.setFont(valueFont);
+
+        String label = indicatorHeads.get(gauge.wrap(Math.signum(value) * Math.floor(Math.abs(value) + 0.5)));
+        Java2D.drawText(g, label, 0, -2, RIGHT, VPos.CENTER, true, true);
+
+        rect.setRect(0, -20, setup.valueClipWidth, 40);
+        g.clip(rect);
+
+        for (double rollingValue = value - 2 * step; rollingValue <= value + 2 * step; rollingValue += step) {
+            double normalizedValue = gauge.indicatorFace(rollingValue);
+            double lY = -36 * (normalizedValue - value) / (2 * step);
+            Java2D.drawText(g, indicatorTails.get(gauge.wrap(normalizedValue)), 0, lY - 2, LEFT, VPos.CENTER, true,
+                    true);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.gauges;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Pre-rendered ticks and tick labels of a tape gauge, cut into tiles along the tape. Tile n holds the values from
+ * n * span to (n + 1) * span, where span is at least the visible range, so a frame never needs more than two tiles.
+ * Ticks and labels of neighbouring values are drawn into each tile and clipped at its edge, so the two halves of a
+ * label that straddles a seam line up again when the tiles are blitted next to each other.
+ *
+ * On a wrapping tape the span also divides the modulus, so tile n and tile n + modulus / span hold the same ticks.
+ * Across the wrap the second tile is the first one of the other end, blitted past the seam, and nothing is redrawn.
+ *
+ * Tiles are rendered lazily through {@link AbstractTapeGauge#drawTickRange} and kept in a few slots that are reused
+ * least recently used first, so steady flight and slow climbs only ever blit.
+ *
+ * @author Matthew Tyler
+ */
+class TapeStripCache
+{
+
+    private static final int SLOTS = 3;
+
+    /**
+     * Extra room around a tile, in pixels, from which ticks and labels of neighbouring values may reach into it.
+     */
+    private static final double LABEL_MARGIN = 20;
+
+    private final AbstractTapeGauge gauge;
+    private final double span;
+    private final double pixelsToUnit;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    /**
+     * Distinct tiles around a wrapping tape, or 0.
+     */
+    private final long tilesPerTurn;
+
+    private final long[] tiles = new long[SLOTS];
+    private final WritableImage[] images = new WritableImage[SLOTS];
+    private final long[] lastUsed = new long[SLOTS];
+    private long frame;
+
+    private final Canvas scratch;
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    TapeStripCache(AbstractTapeGauge gauge) {
+        this.gauge = gauge;
+        pixelsToUnit = gauge.getSetup().pixelsToUnit;
+        double major = gauge.getUnitsToMajorTick();
+        double modulus = gauge.getWrapModulus();
+        double minSpan = Math.ceil(gauge.getVisibleRange() / major) * major;
+        double wrapSpan = minSpan;
+        while (modulus > 0 && modulus % wrapSpan != 0 && wrapSpan < modulus) {
+            wrapSpan += major;
+        }
+        span = wrapSpan;
+        tilesPerTurn = modulus > 0 ? Math.round(modulus / span) : 0;
+
+        int along = (int) Math.ceil(span * pixelsToUnit);
+        tileWidth = gauge.getSetup().horizontal ? along : (int) Math.ceil(gauge.getWidth());
+        tileHeight = gauge.getSetup().horizontal ? (int) Math.ceil(gauge.getHeight()) : along;
+
+        scratch = new Canvas(tileWidth, tileHeight);
+        snapshotParameters.setFill(Color.TRANSPARENT);
+    }
+
+    void invalidate() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            lastUsed[slot] = 0;
+            images[slot] = null;
+        }
+    }
+
+    /**
+     * Blits the part of the strip that is visible at the given value.
+     *
+     * @param gc the gauge's graphics context, untransformed
+     * @param value
+     */
+    void draw(GraphicsContext gc, double value) {
+        AbstractTapeGauge.Setup setup = gauge.getSetup();
+        frame++;
+
+        double lowest, highest;
+        if (setup.horizontal) {
+            lowest = value - setup.tX / pixelsToUnit;
+            highest = value + (gauge.getWidth() - setup.tX) / pixelsToUnit;
+        } else {
+            lowest = value - (gauge.getHeight() - setup.tY) / pixelsToUnit;
+            highest = value + setup.tY / pixelsToUnit;
+        }
+
+        for (long tile = (long) Math.floor(lowest / span); tile <= (long) Math.floor(highest / span); tile++) {
+            WritableImage image = tile(tilesPerTurn > 0 ? Math.floorMod(tile, tilesPerTurn) : tile);
+            double along = pixelsToUnit * (value - origin(tile));
+            if (setup.horizontal) {
+                gc.drawImage(image, setup.tX - along, 0);
+            } else {
+                gc.drawImage(image, 0, setup.tY + along);
+            }
+        }
+    }
+
+    /**
+     * The value at the top of a vertical tile or the left of a horizontal one.
+     */
+    private double origin(long tile) {
+        return gauge.getSetup().horizontal ? tile * span : (tile + 1) * span;
+    }
+
+    private WritableImage tile(long tile) {
+        int victim = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (images[slot] != null && tiles[slot] == tile) {
+                lastUsed[slot] = frame;
+                return images[slot];
+            }
+            if (lastUsed[slot] < lastUsed[victim]) {
+                victim = slot;
+            }
+        }
+
+        tiles[victim] = tile;
+        lastUsed[victim] = frame;
+        images[victim] = render(tile, images[victim]);
+        return images[victim];
+    }
+
+    private WritableImage render(long tile, WritableImage reuse) {
+        AbstractTapeGauge.Setup setup = gauge.getSetup();
+        double low = tile * span;
+        double margin = LABEL_MARGIN / pixelsToUnit;
+
+        GraphicsContext gc = scratch.getGraphicsContext2D();
+        gc.clearRect(0, 0, tileWidth, tileHeight);
+        gc.save();
+        if (setup.horizontal) {
+            gc.translate(0, setup.tY);
+        } else {
+            gc.translate(setup.tX, 0);
+        }
+        gauge.drawTickRange(gc, low - margin, low + span + margin, -setup.valueDir * pixelsToUnit * origin(tile));
+        gc.restore();
+
+        return scratch.snapshot(snapshotParameters, reuse);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.ingest;
+
+import java.nio.ByteBuffer;
+import lombok.Getter;
+
+import static org.defis.efis.ingest.TelemetryProtocol.HEADER;
+import static org.defis.efis.ingest.TelemetryProtocol.OVERHEAD;
+
+/**
+ * Decodes {@link TelemetryProtocol} frames in place from a byte buffer and hands each value to a sink.
+ *
+ * Values are read with absolute gets straight out of the buffer the bytes were read into; decoding creates no objects.
+ * Bytes that do not start a frame with a good CRC are skipped one at a time until the next sync, so a node can be
+ * plugged in mid-stream or lose bytes on a noisy line. Not thread safe; one decoder per byte stream.
+ *
+ * @author Matthew Tyler
+ */
+public class TelemetryDecoder
+{
+
+    /**
+     * Receives every decoded value on the decoding thread.
+     */
+    public interface Sink
+    {
+
+        void accept(int channel, double value);
+    }
+
+    private final Sink sink;
+
+    @Getter
+    private long frames;
+
+    @Getter
+    private long crcErrors;
+
+    /**
+     * Frames with a good CRC but a payload type this side does not know.
+     */
+    @Getter
+    private long unknownTypes;
+
+    /**
+     * Bytes skipped looking for the next frame, bad frames included.
+     */
+    @Getter
+    private long skippedBytes;
+
+    public TelemetryDecoder(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Decodes every whole frame between the buffer's position and limit, and leaves the position at the first byte not
+     * yet decoded: the start of a partial frame, for the caller to compact and read more onto.
+     *
+     * @param buffer big endian
+     * @return the number of values handed to the sink
+     */
+    public int decode(ByteBuffer buffer) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int decoded = 0;
+
+        while (limit - position >= OVERHEAD + HEADER + 1) {
+            if (buffer.get(position) != TelemetryProtocol.SYNC_1
+                    || buffer.get(position + 1) != TelemetryProtocol.SYNC_2) {
+                position++;
+                skippedBytes++;
+                continue;
+            }
+
+            int length = buffer.get(position + 2) & 0xff;
+            if (length <= HEADER || length > HEADER + TelemetryProtocol.MAX_PAYLOAD) {
+                position++;
+                skippedBytes++;
+                continue;
+            }
+            int crcAt = position + 3 + length;
+            if (crcAt + 2 > limit) {
+                // The rest of the frame has not arrived yet
+                break;
+            }
+            if (TelemetryProtocol.crc(buffer, position + 2, crcAt) != (buffer.getShort(crcAt) & 0xffff)) {
+                crcErrors++;
+                position++;
+                skippedBytes++;
+                continue;
+            }
+
+            int channel = buffer.getShort(position + 3) & 0xffff;
+            int type = buffer.get(position + 5) & 0xff;
+            int payload = position + 6;
+            position = crcAt + 2;
+            frames++;
+            if (TelemetryProtocol.payloadSize(type) != length - HEADER) {
+                unknownTypes++;
+                continue;
+            }
+
+            sink.accept(channel, value(buffer, type, payload));
+            decoded++;
+        }
+
+        buffer.position(position);
+        return decoded;
+    }
+
+    private static double value(ByteBuffer buffer, int type, int at) {
+        switch (type) {
+            case TelemetryProtocol.INT8:
+                return buffer.get(at);
+            case TelemetryProtocol.INT16:
+                return buffer.getShort(at);
+            case TelemetryProtocol.INT32:
+                return buffer.getInt(at);
+            case TelemetryProtocol.FLOAT32:
+                return buffer.getFloat(at);
+            default:
+                return buffer.getDouble(at);
+        }
+    }
+}
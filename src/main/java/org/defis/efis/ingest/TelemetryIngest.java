@@ -0,0 +1,336 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import lombok.Getter;
+import org.defis.efis.Registry;
+import org.defis.efis.alerts.AlertEngine;
+import org.defis.efis.metrics.ChannelMetrics;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.SourceMetrics;
+
+/**
+ * Reads {@link TelemetryProtocol} frames from a telemetry node over any byte channel, a serial device, a named pipe,
+ * standard input or a TCP socket, into properties published to the {@link Registry}.
+ *
+ * A daemon thread reads into one direct buffer and decodes in place; each value is scaled and stored by channel in a
+ * plain array, and sent to the alert engine if there is one, with no objects in between. After each read the latest
+ * values are handed to the FX thread the way FlightGear telemetry is, with only one handoff queued at a time. When
+ * the channel ends or fails it is opened again after a second, so a node can be restarted without restarting the
+ * EFIS.
+ *
+ * The channel map is a properties file naming the path of each channel id, with an optional scale for integer
+ * payloads:
+ *
+ * <pre>
+ * channel.1=/orientation/roll-deg
+ * channel.1.scale=0.01
+ * </pre>
+ *
+ * Frames of channels that are not in the map are counted and dropped. A channel is only published to the registry
+ * once its first frame has arrived, so a sensor that never reports stays unpublished instead of reading 0.
+ * Instruments bind to the channels through {@link #subscribe}.
+ *
+ * @author Matthew Tyler
+ */
+public class TelemetryIngest implements Closeable
+{
+
+    private static final String SOURCE = "mcu";
+    private static final String PREFIX = "channel.";
+    private static final int CHANNEL_IDS = 1 << 16;
+    private static final int BUFFER_SIZE = 4096;
+    private static final long REOPEN_MILLIS = 1000;
+
+    private final Callable<ReadableByteChannel> opener;
+    private volatile ReadableByteChannel channel;
+    private volatile boolean closed;
+    private Thread reader;
+
+    /**
+     * Slot of each channel id, or -1 when the id is not in the map.
+     */
+    private final int[] slots = new int[CHANNEL_IDS];
+    private final String[] paths;
+    private final double[] scales;
+    private final DoubleProperty[] properties;
+    private final ChannelMetrics[] channelMetrics;
+
+    private final double[] latest;
+    private final double[] pending;
+    private final double[] applied;
+    /**
+     * Whether the property of each slot is bound in the registry yet, on the FX thread.
+     */
+    private final boolean[] published;
+    private final AtomicBoolean handoffPending = new AtomicBoolean();
+    private final Runnable applyPending = this::applyPending;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final TelemetryDecoder decoder = new TelemetryDecoder(this::accept);
+    private final SourceMetrics sourceMetrics = Metrics.get().source(SOURCE);
+
+    private Registry registry;
+    private AlertEngine alertEngine;
+
+    /**
+     * Alert engine channel of each slot, or -1 when no rule reads it.
+     */
+    private int[] alertChannels;
+
+    /**
+     * Frames of channel ids that are not in the map.
+     */
+    @Getter
+    private volatile long unmappedFrames;
+
+    /**
+     * @param opener opens the byte channel, again after it ends or fails
+     * @param channelMap
+     * @throws IllegalArgumentException if the channel map is malformed
+     */
+    public TelemetryIngest(Callable<ReadableByteChannel> opener, Properties channelMap) {
+        this.opener = opener;
+        Arrays.fill(slots, -1);
+
+        List<String> mapped = new ArrayList<>();
+        List<Double> mappedScales = new ArrayList<>();
+        for (String key : channelMap.stringPropertyNames()) {
+            if (!key.startsWith(PREFIX) || key.indexOf('.', PREFIX.length()) >= 0) {
+                continue;
+            }
+            int id;
+            try {
+                id = Integer.parseInt(key.substring(PREFIX.length()));
+                mappedScales.add(Double.valueOf(channelMap.getProperty(key + ".scale", "1")));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad channel map entry " + key, ex);
+            }
+            if (id < 0 || id >= CHANNEL_IDS) {
+                throw new IllegalArgumentException("Channel id out of range: " + key);
+            }
+            slots[id] = mapped.size();
+            mapped.add(channelMap.getProperty(key).trim());
+        }
+
+        int count = mapped.size();
+        paths = mapped.toArray(new String[0]);
+        scales = new double[count];
+        properties = new DoubleProperty[count];
+        channelMetrics = new ChannelMetrics[count];
+        for (int i = 0; i < count; i++) {
+            scales[i] = mappedScales.get(i);
+            properties[i] = new SimpleDoubleProperty();
+            channelMetrics[i] = Metrics.get().channel(paths[i]);
+        }
+        // NaN until the first frame of the channel
+        latest = new double[count];
+        Arrays.fill(latest, Double.NaN);
+        pending = latest.clone();
+        applied = latest.clone();
+        published = new boolean[count];
+    }
+
+    /**
+     * Returns an opener for a source given on the command line: {@code tcp:<host>:<port>}, {@code -} for standard
+     * input, or the path of a serial device or named pipe. Serial devices are read as they are set up, so set the
+     * baud rate and raw mode with stty first.
+     *
+     * @param source
+     * @return
+     */
+    public static Callable<ReadableByteChannel> opener(String source) {
+        if (source.startsWith("tcp:")) {
+            int colon = source.lastIndexOf(':');
+            String host = source.substring(4, colon);
+            int port = Integer.parseInt(source.substring(colon + 1));
+            return () -> SocketChannel.open(new InetSocketAddress(host, port));
+        }
+        if (source.equals("-")) {
+            return () -> Channels.newChannel(System.in);
+        }
+        return () -> FileChannel.open(Paths.get(source), StandardOpenOption.READ);
+    }
+
+    /**
+     * Publishes a property for every channel in the map to the registry, each when its first frame arrives. Set
+     * before starting.
+     *
+     * @param registry
+     */
+    public void publish(Registry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Returns the registry channel of a path in the channel map, for an instrument to bind to, or null when the map
+     * does not have it. The channel changes on the FX thread, in the one handoff after each read, and reads 0 until
+     * the first frame of its sensor.
+     *
+     * @param path
+     * @return
+     * @throws IllegalStateException if not published to a registry yet
+     */
+    public ReadOnlyDoubleProperty subscribe(String path) {
+        if (registry == null) {
+            throw new IllegalStateException("Not published to a registry");
+        }
+        return Arrays.asList(paths).contains(path) ? registry.subscribe(path) : null;
+    }
+
+    /**
+     * Sends every value to the alert engine on the reading thread, before it is handed to the FX thread. Set before
+     * starting.
+     *
+     * @param engine
+     */
+    public void setAlertEngine(AlertEngine engine) {
+        alertChannels = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            alertChannels[i] = engine.channel(paths[i]);
+        }
+        alertEngine = engine;
+    }
+
+    public long getFrames() {
+        return decoder.getFrames();
+    }
+
+    public long getCrcErrors() {
+        return decoder.getCrcErrors();
+    }
+
+    public void start() {
+        reader = new Thread(this::run, "defis-ingest");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        ReadableByteChannel open = channel;
+        if (open != null) {
+            open.close();
+        }
+        if (reader != null) {
+            reader.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try (ReadableByteChannel open = opener.call()) {
+                channel = open;
+                if (closed) {
+                    return;
+                }
+                buffer.clear();
+                readUntilEnd(open);
+            } catch (ClosedChannelException ex) {
+                // Closed by close(), or the node went away
+            } catch (Exception ex) {
+                Logger.getLogger(TelemetryIngest.class.getName()).log(Level.WARNING, "Telemetry node: {0}",
+                        ex.getMessage());
+            }
+            sourceMetrics.pollFailed();
+
+            try {
+                Thread.sleep(REOPEN_MILLIS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void readUntilEnd(ReadableByteChannel open) throws IOException {
+        while (open.read(buffer) >= 0) {
+            long start = System.nanoTime();
+            buffer.flip();
+            int decoded = decoder.decode(buffer);
+            buffer.compact();
+            if (decoded > 0) {
+                handOff();
+                sourceMetrics.pollSucceeded(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Decoded values, on the reading thread.
+     */
+    private void accept(int id, double value) {
+        int slot = slots[id];
+        if (slot < 0) {
+            unmappedFrames++;
+            return;
+        }
+        value *= scales[slot];
+        latest[slot] = value;
+        channelMetrics[slot].updated(System.nanoTime());
+        if (alertEngine != null && alertChannels[slot] >= 0) {
+            alertEngine.publish(alertChannels[slot], value);
+        }
+    }
+
+    private void handOff() {
+        synchronized (pending) {
+            System.arraycopy(latest, 0, pending, 0, latest.length);
+        }
+        if (handoffPending.compareAndSet(false, true)) {
+            Platform.runLater(applyPending);
+        }
+    }
+
+    private void applyPending() {
+        synchronized (pending) {
+            handoffPending.set(false);
+            System.arraycopy(pending, 0, applied, 0, applied.length);
+        }
+        for (int i = 0; i < properties.length; i++) {
+            if (published[i]) {
+                properties[i].set(applied[i]);
+            } else if (!Double.isNaN(applied[i]) && registry != null) {
+                properties[i].set(applied[i]);
+                registry.publish(paths[i], properties[i]);
+                published[i] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.ingest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The framed binary protocol telemetry nodes send to the EFIS, one value per frame, big endian:
+ *
+ * <pre>
+ * offset  size  field
+ * 0       2     sync, 0xA5 0x5A
+ * 2       1     length of the channel id, type and payload: 3 plus the payload size
+ * 3       2     channel id, unsigned
+ * 5       1     payload type: 1 int8, 2 int16, 3 int32, 4 float32, 5 float64
+ * 6       1-8   payload
+ * 6+n     2     CRC-16/CCITT-FALSE of the length, channel id, type and payload
+ * </pre>
+ *
+ * Integer payloads are usually scaled, for example hundredths of a degree in an int16; the receiving side's channel
+ * map holds the scale. A frame of a type the receiver does not know is skipped whole, by its length.
+ *
+ * @author Matthew Tyler
+ */
+public final class TelemetryProtocol
+{
+
+    public static final byte SYNC_1 = (byte) 0xA5;
+    public static final byte SYNC_2 = (byte) 0x5A;
+
+    public static final int INT8 = 1;
+    public static final int INT16 = 2;
+    public static final int INT32 = 3;
+    public static final int FLOAT32 = 4;
+    public static final int FLOAT64 = 5;
+
+    /**
+     * Sync and length before the counted bytes, and the CRC after them.
+     */
+    public static final int OVERHEAD = 5;
+
+    /**
+     * Bytes counted by the length besides the payload: the channel id and the type.
+     */
+    public static final int HEADER = 3;
+
+    public static final int MAX_PAYLOAD = 8;
+    public static final int MAX_FRAME = OVERHEAD + HEADER + MAX_PAYLOAD;
+
+    private static final int[] PAYLOAD_SIZES = {0, 1, 2, 4, 4, 8};
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? crc << 1 ^ 0x1021 : crc << 1;
+            }
+            CRC_TABLE[i] = crc & 0xffff;
+        }
+    }
+
+    private TelemetryProtocol() {
+    }
+
+    /**
+     * Returns the payload size of a type, or 0 for a type this side does not know.
+     *
+     * @param type
+     * @return
+     */
+    public static int payloadSize(int type) {
+        return type > 0 && type < PAYLOAD_SIZES.length ? PAYLOAD_SIZES[type] : 0;
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE of the bytes from index from to index to, exclusive, without moving the buffer's position.
+     *
+     * @param buffer
+     * @param from
+     * @param to
+     * @return
+     */
+    public static int crc(ByteBuffer buffer, int from, int to) {
+        int crc = 0xffff;
+        for (int i = from; i < to; i++) {
+            crc = (crc << 8 ^ CRC_TABLE[(crc >>> 8 ^ buffer.get(i)) & 0xff]) & 0xffff;
+        }
+        return crc;
+    }
+
+    /**
+     * Writes one frame at the buffer's position, for nodes and tests. Integer types take the value rounded.
+     *
+     * @param out with at least {@link #MAX_FRAME} bytes remaining
+     * @param channel from 0 to 65535
+     * @param type
+     * @param value
+     */
+    public static void put(ByteBuffer out, int channel, int type, double value) {
+        int size = payloadSize(type);
+        if (size == 0) {
+            throw new IllegalArgumentException("Unknown payload type " + type);
+        }
+        int start = out.position();
+        out.put(SYNC_1).put(SYNC_2).put((byte) (HEADER + size)).putShort((short) channel).put((byte) type);
+        switch (type) {
+            case INT8:
+                out.put((byte) Math.round(value));
+                break;
+            case INT16:
+                out.putShort((short) Math.round(value));
+                break;
+            case INT32:
+                out.putInt((int) Math.round(value));
+                break;
+            case FLOAT32:
+                out.putFloat((float) value);
+                break;
+            default:
+                out.putDouble(value);
+                break;
+        }
+        out.putShort((short) crc(out, start + 2, out.position()));
+    }
+}
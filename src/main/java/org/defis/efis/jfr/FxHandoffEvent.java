@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Begins when a background thread queues work for the JavaFX Application Thread and commits when that work starts,
+ * so the duration is the time spent waiting for the FX thread.
+ *
+ * @author Matthew Tyler
+ */
+@Name("org.defis.efis.FxHandoff")
+@Label("FX Handoff")
+@Category({"DEFIS", "Telemetry"})
+@Description("Wait between queueing telemetry for the FX thread and the FX thread picking it up")
+public class FxHandoffEvent extends jdk.jfr.Event
+{
+
+    @Label("Source")
+    public String source;
+}
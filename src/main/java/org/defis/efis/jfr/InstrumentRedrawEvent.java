@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One redraw of an instrument. The value delta is the largest change of any input since the previous redraw, in the
+ * instrument's own units, which tells apart redraws that moved something from redraws caused by noise.
+ *
+ * @author Matthew Tyler
+ */
+@Name("org.defis.efis.InstrumentRedraw")
+@Label("Instrument Redraw")
+@Category({"DEFIS", "Rendering"})
+@Description("Redraw of one instrument")
+public class InstrumentRedrawEvent extends jdk.jfr.Event
+{
+
+    private static final EventType TYPE = EventType.getEventType(InstrumentRedrawEvent.class);
+
+    @Label("Instrument")
+    public String instrument;
+
+    @Label("Value Delta")
+    public double valueDelta;
+
+    /**
+     * Begins the event for a redraw, or returns null when it is not being recorded, so redraws that nobody records
+     * allocate nothing.
+     *
+     * @return the begun event, or null
+     */
+    public static InstrumentRedrawEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        InstrumentRedrawEvent event = new InstrumentRedrawEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A batch of channel values pushed to subscribers. The event duration includes every listener, and therefore every
+ * synchronous redraw, triggered by the batch.
+ *
+ * @author Matthew Tyler
+ */
+@Name("org.defis.efis.RegistryPublish")
+@Label("Registry Publish")
+@Category({"DEFIS", "Telemetry"})
+@Description("Batch of telemetry values published to subscribers")
+public class RegistryPublishEvent extends jdk.jfr.Event
+{
+
+    @Label("Channels")
+    public int channels;
+
+    @Label("Changed")
+    @Description("Channels whose value differed from the previous batch")
+    public int changed;
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of bringing the display up, from the start of init() to the last deferred panel.
+ *
+ * @author Matthew Tyler
+ */
+@Name("org.defis.efis.StartupPhase")
+@Label("Startup Phase")
+@Category({"DEFIS", "Startup"})
+@Description("A phase of startup, such as building the layout or the primary instruments")
+public class StartupPhaseEvent extends jdk.jfr.Event
+{
+
+    @Label("Phase")
+    public String phase;
+}
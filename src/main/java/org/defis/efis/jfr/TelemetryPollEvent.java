@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One poll (or receive) of a telemetry source. The event duration is the round trip.
+ *
+ * @author Matthew Tyler
+ */
+@Name("org.defis.efis.TelemetryPoll")
+@Label("Telemetry Poll")
+@Category({"DEFIS", "Telemetry"})
+@Description("Poll or receive of one batch of telemetry channels from a source")
+public class TelemetryPollEvent extends jdk.jfr.Event
+{
+
+    @Label("Source")
+    public String source;
+
+    @Label("Channels")
+    public int channels;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
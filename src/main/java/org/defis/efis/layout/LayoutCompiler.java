@@ -0,0 +1,614 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.layout;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javafx.beans.DefaultProperty;
+import javafx.beans.NamedArg;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+import org.xml.sax.SAXException;
+
+/**
+ * Compiles an FXML layout into a Java class that builds the same scene graph with plain constructor and setter
+ * calls, so a screen comes up without parsing XML or resolving properties by reflection at startup.
+ *
+ * The compiler understands the static subset of FXML that screen layouts use: imports, elements with a no-argument
+ * or {@link NamedArg} constructor, attributes and static properties such as {@code BorderPane.alignment}, property
+ * elements and default properties, and {@code fx:id}. Values are converted as FXMLLoader would: numbers, booleans,
+ * enum constants, colours and anything with a {@code valueOf(String)}. Controllers, event handlers, scripts,
+ * includes and bindings are not supported; a layout using them fails to compile.
+ *
+ * Every node with an fx:id becomes a public field of the generated class. Nodes named in a {@code <?defer ...?>}
+ * processing instruction, which FXMLLoader ignores, are left out of the constructor and built by
+ * {@code addDeferred()}, which puts them back where they were, so that panels not needed for the first frame can
+ * come up after it.
+ *
+ * <pre>
+ * java -cp defis.jar org.defis.efis.layout.LayoutCompiler src/main/resources/fxml/PFDScreen.fxml src/main/java \
+ *     org.defis.efis.layout.PFDScreenLayout
+ * </pre>
+ *
+ * Given a fourth argument, the source root of the checked-in class, the compiler fails when that class differs from
+ * the one it generated, so the build catches an FXML change committed without its layout.
+ *
+ * @author Matthew Tyler
+ */
+public class LayoutCompiler
+{
+
+    private static final String FX_NAMESPACE = "http://javafx.com/fxml/1";
+    private static final String DEFER_INSTRUCTION = "defer";
+
+    private static final String LICENSE = ""
+            + "/*\n"
+            + " *  Copyright 2017 DEFIS\n"
+            + " *\n"
+            + " *  Licensed under the Apache License, Version 2.0 (the \"License\");\n"
+            + " *  you may not use this file except in compliance with the License.\n"
+            + " *  You may obtain a copy of the License at\n"
+            + " *\n"
+            + " *      http://www.apache.org/licenses/LICENSE-2.0\n"
+            + " *\n"
+            + " *  Unless required by applicable law or agreed to in writing, software\n"
+            + " *  distributed under the License is distributed on an \"AS IS\" BASIS,\n"
+            + " *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n"
+            + " *  See the License for the specific language governing permissions and\n"
+            + " *  limitations under the License.\n"
+            + " */\n";
+
+    private final String source;
+    private final String packageName;
+    private final String className;
+
+    private final List<String> importedPackages = new ArrayList<>();
+    private final Map<String, Class<?>> importedClasses = new HashMap<>();
+    private final Set<String> deferred = new HashSet<>();
+
+    /**
+     * Elements holding a deferred node, so addDeferred() can reach them.
+     */
+    private final Set<Element> deferredParents = new HashSet<>();
+
+    private final Set<String> imports = new TreeSet<>();
+    private final Map<String, Integer> names = new HashMap<>();
+    private final Map<String, Class<?>> fields = new LinkedHashMap<>();
+    private final Map<String, Boolean> fieldIsPublic = new HashMap<>();
+    private final Set<String> finalFields = new HashSet<>();
+    private final Set<String> constructorArguments = new HashSet<>();
+    private final StringBuilder deferredCode = new StringBuilder();
+    private final StringBuilder factories = new StringBuilder();
+
+    /**
+     * @param source name of the FXML file, for the generated documentation and error messages
+     * @param qualifiedClassName of the class to generate
+     */
+    public LayoutCompiler(String source, String qualifiedClassName) {
+        this.source = source;
+        int dot = qualifiedClassName.lastIndexOf('.');
+        packageName = dot < 0 ? "" : qualifiedClassName.substring(0, dot);
+        className = qualifiedClassName.substring(dot + 1);
+    }
+
+    /**
+     * Compiles a layout and returns the source of the generated class.
+     *
+     * @param document the parsed FXML, namespace aware
+     * @return
+     */
+    public String compile(Document document) {
+        for (Node node = document.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof ProcessingInstruction) {
+                instruction((ProcessingInstruction) node);
+            }
+        }
+        Element root = document.getDocumentElement();
+        findDeferredParents(root);
+
+        addField("root", classOf(root), true, true);
+        StringBuilder constructor = new StringBuilder();
+        String rootName = element(root, constructor, "        ", true);
+        constructor.append("        this.root = ").append(rootName).append(";\n");
+
+        StringBuilder out = new StringBuilder(LICENSE);
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        for (String name : imports) {
+            if (!name.startsWith("java.lang.") || name.lastIndexOf('.') != "java.lang".length()) {
+                out.append("import ").append(name).append(";\n");
+            }
+        }
+        out.append("\n/**\n * Generated by ").append(LayoutCompiler.class.getSimpleName()).append(" from ")
+                .append(source).append(". Do not edit; change the layout and compile it again.\n */\n");
+        out.append("public final class ").append(className).append("\n{\n\n");
+        for (Map.Entry<String, Class<?>> field : fields.entrySet()) {
+            boolean isPublic = fieldIsPublic.get(field.getKey());
+            boolean isFinal = finalFields.contains(field.getKey());
+            out.append("    ").append(isPublic ? "public " : "private ").append(isFinal ? "final " : "")
+                    .append(field.getValue().getSimpleName()).append(' ').append(field.getKey()).append(";\n");
+        }
+        out.append("\n    public ").append(className).append("() {\n").append(constructor).append("    }\n");
+        out.append("\n    /**\n     * Builds the deferred nodes and puts them where the layout has them. Call once.\n     */\n");
+        out.append("    public void addDeferred() {\n").append(deferredCode).append("    }\n");
+        out.append(factories);
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private void instruction(ProcessingInstruction instruction) {
+        String data = instruction.getData().trim();
+        switch (instruction.getTarget()) {
+            case "import":
+                if (data.endsWith(".*")) {
+                    importedPackages.add(data.substring(0, data.length() - 2));
+                } else {
+                    Class<?> type = load(data);
+                    importedClasses.put(type.getSimpleName(), type);
+                }
+                break;
+            case DEFER_INSTRUCTION:
+                deferred.addAll(Arrays.asList(data.split("\\s+")));
+                break;
+            default:
+                throw new IllegalArgumentException(source + ": unsupported processing instruction <?"
+                        + instruction.getTarget() + "?>");
+        }
+    }
+
+    private void findDeferredParents(Element element) {
+        for (Element child : childElements(element)) {
+            for (Element node : isPropertyElement(child) ? childElements(child) : Arrays.asList(child)) {
+                if (deferred.contains(fxId(node))) {
+                    deferredParents.add(element);
+                }
+                findDeferredParents(node);
+            }
+        }
+    }
+
+    /**
+     * Writes the code building an element and returns the name of the variable holding it.
+     */
+    private String element(Element element, StringBuilder code, String indent, boolean inConstructor) {
+        Class<?> type = classOf(element);
+        String id = fxId(element);
+        String name = id != null ? id : newName(type);
+        code.append(indent);
+        if (id != null) {
+            addField(id, type, true, inConstructor);
+        } else if (inConstructor && deferredParents.contains(element)) {
+            // Kept in a field, for addDeferred() to add to
+            addField(name, type, false, true);
+        } else {
+            code.append(type.getSimpleName()).append(' ');
+        }
+        code.append(name).append(" = ").append(construct(element, type)).append(";\n");
+        if (id != null && find(type, "setId", 1, false) != null) {
+            // As FXMLLoader does, so style sheets can select the node by its fx:id
+            code.append(indent).append(name).append(".setId(").append(quote(id)).append(");\n");
+        }
+
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (isIgnored(attribute) || constructorArguments.contains(attribute.getName())) {
+                continue;
+            }
+            attribute(type, name, attribute.getName(), attribute.getValue(), code, indent);
+        }
+        constructorArguments.clear();
+
+        for (Element child : childElements(element)) {
+            if (isPropertyElement(child)) {
+                property(type, name, element, child.getLocalName(), childElements(child), code, indent, inConstructor);
+            } else {
+                DefaultProperty defaultProperty = type.getAnnotation(DefaultProperty.class);
+                if (defaultProperty == null) {
+                    throw new IllegalArgumentException(source + ": " + type.getSimpleName()
+                            + " has no default property for " + child.getTagName());
+                }
+                property(type, name, element, defaultProperty.value(), Arrays.asList(child), code, indent,
+                        inConstructor);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Returns the expression creating an element: the no-argument constructor, or the {@link NamedArg} constructor
+     * taking the most of its attributes.
+     */
+    private String construct(Element element, Class<?> type) {
+        Constructor<?> best = null;
+        int bestMatches = -1;
+        for (Constructor<?> constructor : type.getConstructors()) {
+            String[] argumentNames = namedArguments(constructor);
+            if (argumentNames == null) {
+                continue;
+            }
+            int matches = 0;
+            for (String argument : argumentNames) {
+                if (element.hasAttribute(argument)) {
+                    matches++;
+                }
+            }
+            if (matches > bestMatches || matches == bestMatches && argumentNames.length < best.getParameterCount()) {
+                best = constructor;
+                bestMatches = matches;
+            }
+        }
+        if (best == null) {
+            throw new IllegalArgumentException(source + ": cannot construct " + type.getName());
+        }
+
+        StringBuilder expression = new StringBuilder("new ").append(type.getSimpleName()).append('(');
+        String[] argumentNames = namedArguments(best);
+        Annotation[][] annotations = best.getParameterAnnotations();
+        for (int p = 0; p < argumentNames.length; p++) {
+            String value;
+            if (element.hasAttribute(argumentNames[p])) {
+                value = element.getAttribute(argumentNames[p]);
+                constructorArguments.add(argumentNames[p]);
+            } else {
+                value = namedArg(annotations[p]).defaultValue();
+                if (value.isEmpty()) {
+                    value = best.getParameterTypes()[p].isPrimitive() ? "0" : null;
+                }
+            }
+            expression.append(p > 0 ? ", " : "").append(value == null ? "null"
+                    : literal(best.getParameterTypes()[p], value));
+        }
+        return expression.append(')').toString();
+    }
+
+    /**
+     * Returns the argument names of a constructor, an empty array for the no-argument one, or null when not every
+     * parameter is named.
+     */
+    private static String[] namedArguments(Constructor<?> constructor) {
+        Annotation[][] annotations = constructor.getParameterAnnotations();
+        String[] argumentNames = new String[annotations.length];
+        for (int p = 0; p < annotations.length; p++) {
+            NamedArg namedArg = namedArg(annotations[p]);
+            if (namedArg == null) {
+                return null;
+            }
+            argumentNames[p] = namedArg.value();
+        }
+        return argumentNames;
+    }
+
+    private static NamedArg namedArg(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof NamedArg) {
+                return (NamedArg) annotation;
+            }
+        }
+        return null;
+    }
+
+    private void attribute(Class<?> type, String name, String attribute, String value, StringBuilder code,
+            String indent) {
+        int dot = attribute.indexOf('.');
+        if (dot > 0) {
+            // A static property, as in BorderPane.alignment
+            Class<?> owner = resolve(attribute.substring(0, dot));
+            Method setter = find(owner, "set" + capitalize(attribute.substring(dot + 1)), 2, true);
+            code.append(indent).append(owner.getSimpleName()).append('.').append(setter.getName()).append('(')
+                    .append(name).append(", ").append(literal(setter.getParameterTypes()[1], value)).append(");\n");
+            return;
+        }
+
+        Method setter = find(type, "set" + capitalize(attribute), 1, false);
+        if (setter != null) {
+            code.append(indent).append(name).append('.').append(setter.getName()).append('(')
+                    .append(literal(setter.getParameterTypes()[0], value)).append(");\n");
+            return;
+        }
+        Method getter = find(type, "get" + capitalize(attribute), 0, false);
+        if (getter != null && List.class.isAssignableFrom(getter.getReturnType())) {
+            for (String item : value.split(",")) {
+                code.append(indent).append(name).append('.').append(getter.getName()).append("().add(")
+                        .append(literal(String.class, item.trim())).append(");\n");
+            }
+            return;
+        }
+        throw new IllegalArgumentException(source + ": " + type.getSimpleName() + " has no property " + attribute);
+    }
+
+    private void property(Class<?> type, String name, Element parent, String property, List<Element> values,
+            StringBuilder code, String indent, boolean inConstructor) {
+        Method getter = find(type, "get" + capitalize(property), 0, false);
+        boolean list = getter != null && List.class.isAssignableFrom(getter.getReturnType());
+        Method setter = list ? null : find(type, "set" + capitalize(property), 1, false);
+        if (!list && (setter == null || values.size() != 1)) {
+            throw new IllegalArgumentException(source + ": cannot set " + type.getSimpleName() + "." + property);
+        }
+
+        List<String> built = new ArrayList<>();
+        for (int index = 0; index < values.size(); index++) {
+            Element value = values.get(index);
+            String id = fxId(value);
+            if (inConstructor && deferred.contains(id)) {
+                deferNode(value, id, name, list ? getter.getName() + "().add(" + index + ", " + id + ")"
+                        : setter.getName() + "(" + id + ")");
+                continue;
+            }
+            built.add(element(value, code, indent, inConstructor));
+        }
+        if (built.isEmpty()) {
+            return;
+        }
+        if (list) {
+            code.append(indent).append(name).append('.').append(getter.getName()).append("().")
+                    .append(built.size() == 1 ? "add(" : "addAll(").append(String.join(", ", built)).append(");\n");
+        } else {
+            code.append(indent).append(name).append('.').append(setter.getName()).append('(').append(built.get(0))
+                    .append(");\n");
+        }
+    }
+
+    /**
+     * Moves a deferred node into a factory of its own, called from addDeferred(). Deferred nodes are added in the
+     * order of the layout, so adding each at its index in the layout puts it back in its place.
+     */
+    private void deferNode(Element element, String id, String parentName, String add) {
+        String factory = "create" + capitalize(id);
+        StringBuilder body = new StringBuilder();
+        element(element, body, "        ", false);
+        factories.append("\n    private void ").append(factory).append("() {\n").append(body).append("    }\n");
+        deferredCode.append("        ").append(factory).append("();\n");
+        deferredCode.append("        ").append(parentName).append('.').append(add).append(";\n");
+    }
+
+    /**
+     * Returns the Java expression for an attribute value of the given type.
+     */
+    private String literal(Class<?> type, String value) {
+        if (type == double.class || type == Double.class) {
+            switch (value) {
+                case "Infinity":
+                    return "Double.POSITIVE_INFINITY";
+                case "-Infinity":
+                    return "Double.NEGATIVE_INFINITY";
+                default:
+                    return Double.toString(Double.parseDouble(value));
+            }
+        }
+        if (type == float.class || type == Float.class) {
+            return Float.parseFloat(value) + "f";
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.toString(Integer.parseInt(value));
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.toString(Boolean.parseBoolean(value));
+        }
+        if (type == String.class || type == Object.class) {
+            return quote(value);
+        }
+        if (type.isEnum()) {
+            imports.add(type.getName());
+            return type.getSimpleName() + "." + value.trim().toUpperCase(Locale.ROOT);
+        }
+        if (type.getName().equals("javafx.scene.paint.Paint") || type.getName().equals("javafx.scene.paint.Color")) {
+            imports.add("javafx.scene.paint.Color");
+            return "Color.web(" + quote(value) + ")";
+        }
+        try {
+            Method valueOf = type.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(valueOf.getModifiers())) {
+                imports.add(type.getName());
+                return type.getSimpleName() + ".valueOf(" + quote(value) + ")";
+            }
+        } catch (NoSuchMethodException ex) {
+            // Not convertible
+        }
+        throw new IllegalArgumentException(source + ": cannot convert \"" + value + "\" to " + type.getName());
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ' || c > '~') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static Method find(Class<?> type, String name, int parameters, boolean isStatic) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == parameters
+                    && Modifier.isStatic(method.getModifiers()) == isStatic) {
+                return method;
+            }
+        }
+        if (isStatic) {
+            throw new IllegalArgumentException(type.getName() + " has no static " + name);
+        }
+        return null;
+    }
+
+    private boolean isIgnored(Attr attribute) {
+        if ("xmlns".equals(attribute.getName()) || "xmlns".equals(attribute.getPrefix())) {
+            return true;
+        }
+        if (FX_NAMESPACE.equals(attribute.getNamespaceURI())) {
+            switch (attribute.getLocalName()) {
+                case "id":
+                    return true;
+                case "controller":
+                    // The generated class stands in for the controller's layout; wire behaviour in code
+                    return true;
+                default:
+                    throw new IllegalArgumentException(source + ": unsupported attribute fx:"
+                            + attribute.getLocalName());
+            }
+        }
+        if (attribute.getValue().startsWith("#") && attribute.getName().startsWith("on")) {
+            throw new IllegalArgumentException(source + ": event handlers are not supported: "
+                    + attribute.getName());
+        }
+        return false;
+    }
+
+    private static String fxId(Element element) {
+        String id = element.getAttributeNS(FX_NAMESPACE, "id");
+        return id.isEmpty() ? null : id;
+    }
+
+    private static boolean isPropertyElement(Element element) {
+        return Character.isLowerCase(element.getLocalName().charAt(0));
+    }
+
+    private static List<Element> childElements(Element element) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element) {
+                children.add((Element) node);
+            }
+        }
+        return children;
+    }
+
+    private Class<?> classOf(Element element) {
+        return resolve(element.getLocalName());
+    }
+
+    private Class<?> resolve(String simpleName) {
+        Class<?> type = importedClasses.get(simpleName);
+        if (type == null) {
+            for (String importedPackage : importedPackages) {
+                try {
+                    type = Class.forName(importedPackage + "." + simpleName, false,
+                            LayoutCompiler.class.getClassLoader());
+                    importedClasses.put(simpleName, type);
+                    break;
+                } catch (ClassNotFoundException ex) {
+                    // Try the next package
+                }
+            }
+        }
+        if (type == null) {
+            throw new IllegalArgumentException(source + ": " + simpleName + " is not imported");
+        }
+        imports.add(type.getName());
+        return type;
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name, false, LayoutCompiler.class.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalArgumentException("Cannot import " + name, ex);
+        }
+    }
+
+    private void addField(String name, Class<?> type, boolean isPublic, boolean isFinal) {
+        if (fields.put(name, type) != null) {
+            throw new IllegalArgumentException(source + ": fx:id " + name + " is used twice");
+        }
+        fieldIsPublic.put(name, isPublic);
+        if (isFinal) {
+            finalFields.add(name);
+        }
+    }
+
+    private String newName(Class<?> type) {
+        String base = Character.toLowerCase(type.getSimpleName().charAt(0)) + type.getSimpleName().substring(1);
+        int count = names.merge(base, 1, Integer::sum);
+        return base + count;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * @param args the FXML file, the source root to write to, the name of the class and optionally the source root of
+     * the checked-in class to compare with
+     * @throws IOException
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IllegalStateException if the checked-in class is missing or differs from the generated one
+     */
+    public static void main(String[] args) throws IOException, ParserConfigurationException, SAXException {
+        if (args.length != 3 && args.length != 4) {
+            System.err.println(
+                    "Usage: LayoutCompiler <fxml file> <source root> <class name> [<checked-in source root>]");
+            System.exit(1);
+        }
+        Path fxml = Paths.get(args[0]);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(fxml.toFile());
+
+        LayoutCompiler compiler = new LayoutCompiler(fxml.getFileName().toString(), args[2]);
+        String generated = compiler.compile(document);
+
+        Path out = Paths.get(args[1], args[2].replace('.', '/') + ".java");
+        Files.createDirectories(out.getParent());
+        Files.write(out, generated.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Wrote " + out);
+
+        if (args.length == 4) {
+            Path checkedIn = Paths.get(args[3], args[2].replace('.', '/') + ".java");
+            if (!Files.exists(checkedIn)) {
+                throw new IllegalStateException(checkedIn + " is missing; run mvn -Playouts process-classes");
+            }
+            // Line endings depend on the checkout
+            String[] expected = generated.split("\n", -1);
+            String[] actual = new String(Files.readAllBytes(checkedIn), StandardCharsets.UTF_8).replace("\r", "")
+                    .split("\n", -1);
+            for (int i = 0; i < Math.max(expected.length, actual.length); i++) {
+                if (i >= expected.length || i >= actual.length || !expected[i].equals(actual[i])) {
+                    throw new IllegalStateException(checkedIn + " is out of date with " + fxml + " at line " + (i + 1)
+                            + "; run mvn -Playouts process-classes and commit it");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.layout;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TitledPane;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+
+/**
+ * Generated by LayoutCompiler from PFDScreen.fxml. Do not edit; change the layout and compile it again.
+ */
+public final class PFDScreenLayout
+{
+
+    public final BorderPane root;
+    private final HBox hBox1;
+    public final TitledPane autopilotPanel;
+    public TitledPane gpsPanel;
+    public TitledPane comm1Panel;
+    public TitledPane comm2Panel;
+    public TitledPane xpdrPanel;
+    public final Pane instrumentPane;
+
+    public PFDScreenLayout() {
+        BorderPane borderPane1 = new BorderPane();
+        borderPane1.getStyleClass().add("mainFxmlClass");
+        hBox1 = new HBox();
+        BorderPane.setAlignment(hBox1, Pos.CENTER);
+        hBox1.setPrefHeight(75.0);
+        hBox1.setPrefWidth(100.0);
+        hBox1.setSpacing(2.0);
+        autopilotPanel = new TitledPane();
+        autopilotPanel.setId("autopilotPanel");
+        autopilotPanel.setAnimated(false);
+        autopilotPanel.setCollapsible(false);
+        autopilotPanel.setText("Autopilot");
+        VBox vBox1 = new VBox();
+        vBox1.setPrefHeight(200.0);
+        vBox1.setPrefWidth(100.0);
+        Label label1 = new Label();
+        label1.setText("Not engaged");
+        Label label2 = new Label();
+        label2.setText("Bank Pitch");
+        vBox1.getChildren().addAll(label1, label2);
+        autopilotPanel.setContent(vBox1);
+        hBox1.getChildren().add(autopilotPanel);
+        borderPane1.setTop(hBox1);
+        instrumentPane = new Pane();
+        instrumentPane.setId("instrumentPane");
+        BorderPane.setAlignment(instrumentPane, Pos.CENTER);
+        borderPane1.setCenter(instrumentPane);
+        this.root = borderPane1;
+    }
+
+    /**
+     * Builds the deferred nodes and puts them where the layout has them. Call once.
+     */
+    public void addDeferred() {
+        createGpsPanel();
+        hBox1.getChildren().add(1, gpsPanel);
+        createComm1Panel();
+        hBox1.getChildren().add(2, comm1Panel);
+        createComm2Panel();
+        hBox1.getChildren().add(3, comm2Panel);
+        createXpdrPanel();
+        hBox1.getChildren().add(4, xpdrPanel);
+    }
+
+    private void createGpsPanel() {
+        gpsPanel = new TitledPane();
+        gpsPanel.setId("gpsPanel");
+        gpsPanel.setAnimated(false);
+        gpsPanel.setCollapsible(false);
+        gpsPanel.setText("GPS 3D 14");
+        VBox vBox2 = new VBox();
+        vBox2.setPrefHeight(200.0);
+        vBox2.setPrefWidth(100.0);
+        Label label3 = new Label();
+        label3.setText("Alt 5540");
+        Label label4 = new Label();
+        label4.setText("N33.45.575");
+        Label label5 = new Label();
+        label5.setText("W116.20.223");
+        vBox2.getChildren().addAll(label3, label4, label5);
+        Insets insets1 = new Insets(10.0, 0.0, 0.0, 0.0);
+        vBox2.setPadding(insets1);
+        gpsPanel.setContent(vBox2);
+    }
+
+    private void createComm1Panel() {
+        comm1Panel = new TitledPane();
+        comm1Panel.setId("comm1Panel");
+        comm1Panel.setAnimated(false);
+        comm1Panel.setCollapsible(false);
+        comm1Panel.setPrefHeight(100.0);
+        comm1Panel.setPrefWidth(170.0);
+        comm1Panel.setText("COMM 1");
+        HBox hBox2 = new HBox();
+        hBox2.setPrefHeight(74.0);
+        hBox2.setPrefWidth(133.0);
+        VBox vBox3 = new VBox();
+        vBox3.setPrefHeight(54.0);
+        vBox3.setPrefWidth(57.0);
+        Label label6 = new Label();
+        label6.setText("118.000");
+        Label label7 = new Label();
+        label7.setText("124.500");
+        vBox3.getChildren().addAll(label6, label7);
+        Button button1 = new Button();
+        button1.setMnemonicParsing(false);
+        button1.setText("Button");
+        hBox2.getChildren().addAll(vBox3, button1);
+        comm1Panel.setContent(hBox2);
+    }
+
+    private void createComm2Panel() {
+        comm2Panel = new TitledPane();
+        comm2Panel.setId("comm2Panel");
+        comm2Panel.setAnimated(false);
+        comm2Panel.setCollapsible(false);
+        comm2Panel.setText("COMM 2");
+        HBox hBox3 = new HBox();
+        hBox3.setPrefHeight(74.0);
+        hBox3.setPrefWidth(139.0);
+        VBox vBox4 = new VBox();
+        vBox4.setPrefHeight(54.0);
+        vBox4.setPrefWidth(55.0);
+        Label label8 = new Label();
+        label8.setText("118.000");
+        Label label9 = new Label();
+        label9.setText("124.500");
+        vBox4.getChildren().addAll(label8, label9);
+        Button button2 = new Button();
+        button2.setMnemonicParsing(false);
+        button2.setText("Button");
+        hBox3.getChildren().addAll(vBox4, button2);
+        comm2Panel.setContent(hBox3);
+    }
+
+    private void createXpdrPanel() {
+        xpdrPanel = new TitledPane();
+        xpdrPanel.setId("xpdrPanel");
+        xpdrPanel.setAnimated(false);
+        xpdrPanel.setCollapsible(false);
+        xpdrPanel.setText("XPDR");
+        HBox hBox4 = new HBox();
+        hBox4.setMinWidth(Double.NEGATIVE_INFINITY);
+        hBox4.setPrefHeight(100.0);
+        hBox4.setPrefWidth(100.0);
+        hBox4.setSpacing(5.0);
+        Label label10 = new Label();
+        label10.setText("1200");
+        Label label11 = new Label();
+        label11.setText("ALT");
+        hBox4.getChildren().addAll(label10, label11);
+        xpdrPanel.setContent(hBox4);
+    }
+}
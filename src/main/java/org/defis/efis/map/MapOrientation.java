@@ -0,0 +1,27 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.map;
+
+/**
+ * Which way is up on the {@link MovingMap}: north, with the aircraft symbol turning, or the aircraft's track, with the
+ * map turning under a fixed symbol.
+ *
+ * @author Matthew Tyler
+ */
+public enum MapOrientation
+{
+    NORTH_UP, TRACK_UP
+}
@@ -0,0 +1,277 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.map;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javafx.scene.image.Image;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Decoded map tiles from a directory of pre-built tiles, least recently used first out once they take more than a
+ * fixed number of bytes.
+ *
+ * Tiles are PNG files in the usual layout of web map tiles, {@code <zoom>/<x>/<y>.png}, in the web Mercator projection
+ * with x growing east and y growing south. Once decoded a tile is an {@link Image}, which JavaFX uploads as a texture
+ * the first time it is drawn and keeps for as long as the image is reachable, so the budget bounds the textures too.
+ *
+ * {@link #get} never waits: a tile that is not decoded yet is queued for the loader threads, and the load listener is
+ * told when it is in. Tiles the map shows are decoded before tiles it only {@link #prefetch prefetches}, most recently
+ * asked for first. Tiles that are not on disk are remembered, so they are not looked for again.
+ *
+ * @author Matthew Tyler
+ */
+public class MapTileCache
+{
+
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Prefetches beyond this many queued tiles are dropped, so prefetching cannot build a backlog when flying fast.
+     */
+    private static final int MAX_PENDING = 64;
+
+    @Getter
+    private final Path root;
+
+    @Getter
+    private final long budgetBytes;
+
+    /**
+     * In access order, eldest first.
+     */
+    private final LinkedHashMap<Long, Image> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<Long> pending = new HashSet<>();
+    private final Set<Long> absent = new HashSet<>();
+    private long usedBytes;
+
+    private final ThreadPoolExecutor loader;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Called on a loader thread after each tile is decoded.
+     */
+    @Setter
+    private volatile Runnable loadListener;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param root the directory with a subdirectory for each zoom level
+     * @param budgetBytes for decoded tiles, at four bytes a pixel
+     * @param threads decoding tiles
+     */
+    public MapTileCache(Path root, long budgetBytes, int threads) {
+        this.root = root;
+        this.budgetBytes = budgetBytes;
+        loader = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "defis-map");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Returns the key of a tile.
+     *
+     * @param zoom from 0 to 24
+     * @param x from 0 to 2^zoom - 1
+     * @param y from 0 to 2^zoom - 1
+     * @return
+     */
+    public static long key(int zoom, int x, int y) {
+        return (long) zoom << 48 | (long) x << 24 | y;
+    }
+
+    /**
+     * Returns a tile if it is decoded, or queues it for decoding and returns null. Safe from any thread.
+     *
+     * @param zoom
+     * @param x
+     * @param y
+     * @return
+     */
+    public Image get(int zoom, int x, int y) {
+        return request(zoom, x, y, false);
+    }
+
+    /**
+     * Returns a tile if it is decoded, without queueing it otherwise.
+     *
+     * @param zoom
+     * @param x
+     * @param y
+     * @return
+     */
+    public Image getIfPresent(int zoom, int x, int y) {
+        synchronized (tiles) {
+            return tiles.get(key(zoom, x, y));
+        }
+    }
+
+    /**
+     * Queues a tile for decoding behind the tiles that are shown, unless it is decoded or the queue is long.
+     *
+     * @param zoom
+     * @param x
+     * @param y
+     */
+    public void prefetch(int zoom, int x, int y) {
+        request(zoom, x, y, true);
+    }
+
+    public long getUsedBytes() {
+        synchronized (tiles) {
+            return usedBytes;
+        }
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Stops the loader threads. Tiles already decoded stay available.
+     */
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private Image request(int zoom, int x, int y, boolean prefetch) {
+        if (y < 0 || y >= 1 << zoom || x < 0 || x >= 1 << zoom) {
+            return null;
+        }
+        long key = key(zoom, x, y);
+        synchronized (tiles) {
+            Image tile = tiles.get(key);
+            if (tile != null || absent.contains(key) || prefetch && pending.size() >= MAX_PENDING
+                    || !pending.add(key)) {
+                return tile;
+            }
+        }
+        try {
+            loader.execute(new Load(key, prefetch, requests.incrementAndGet()));
+        } catch (RejectedExecutionException ex) {
+            // Shut down
+            synchronized (tiles) {
+                pending.remove(key);
+            }
+        }
+        return null;
+    }
+
+    private void load(long key) {
+        Image tile = decode(key);
+        loads.increment();
+
+        synchronized (tiles) {
+            pending.remove(key);
+            if (tile == null) {
+                absent.add(key);
+                return;
+            }
+            tiles.put(key, tile);
+            usedBytes += bytes(tile);
+
+            Iterator<Map.Entry<Long, Image>> eldest = tiles.entrySet().iterator();
+            while (usedBytes > budgetBytes && tiles.size() > 1) {
+                usedBytes -= bytes(eldest.next().getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        Runnable listener = loadListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Reads and decodes a tile, or returns null when there is no readable tile.
+     */
+    private Image decode(long key) {
+        int zoom = (int) (key >>> 48);
+        int x = (int) (key >>> 24) & 0xffffff;
+        int y = (int) key & 0xffffff;
+        Path file = root.resolve(Integer.toString(zoom)).resolve(Integer.toString(x)).resolve(y + ".png");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            Image tile = new Image(in);
+            return tile.isError() ? null : tile;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static long bytes(Image tile) {
+        return (long) tile.getWidth() * (long) tile.getHeight() * 4;
+    }
+
+    /**
+     * A queued tile. Shown tiles go before prefetched ones, and newer requests before older ones.
+     */
+    private class Load implements Runnable, Comparable<Load>
+    {
+
+        private final long key;
+        private final boolean prefetch;
+        private final long sequence;
+
+        Load(long key, boolean prefetch, long sequence) {
+            this.key = key;
+            this.prefetch = prefetch;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            load(key);
+        }
+
+        @Override
+        public int compareTo(Load other) {
+            if (prefetch != other.prefetch) {
+                return prefetch ? 1 : -1;
+            }
+            return Long.compare(other.sequence, sequence);
+        }
+    }
+}
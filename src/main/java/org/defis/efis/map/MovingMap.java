@@ -0,0 +1,333 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.map;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Translate;
+import org.defis.efis.gauges.RedrawTracker;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
+
+/**
+ * A moving map of pre-built tiles around the aircraft, north up or track up.
+ *
+ * The tiles sit in a fixed grid of image views, big enough to cover the view at any rotation. Moving and turning only
+ * change the translate and rotate transforms of the grid, so the map pans at display rate without redrawing anything;
+ * the views are only given other tiles when the aircraft crosses a tile edge, the zoom changes or a tile comes in
+ * from the {@link MapTileCache}. Until a tile is decoded its view shows the matching part of a coarser tile from the
+ * cache, if there is one, and crossing a tile edge queues the tiles ahead along the track.
+ *
+ * @author Matthew Tyler
+ */
+public class MovingMap extends Parent
+{
+
+    private static final int TILE_SIZE = MapTileCache.TILE_SIZE;
+
+    private static final int PAN_LAYER = 1;
+    private static final int ROTATION_LAYER = 2;
+    private static final int TILES_LAYER = 4;
+
+    /**
+     * Coarser zoom levels to stand in for a tile that is not decoded yet.
+     */
+    private static final int FALLBACK_LEVELS = 3;
+
+    /**
+     * Rows of tiles past the edge of the view to queue ahead along the track.
+     */
+    private static final int PREFETCH_TILES = 2;
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final double width;
+    private final double height;
+    private final MapTileCache cache;
+
+    private final DoubleProperty latitude = new SimpleDoubleProperty();
+    private final DoubleProperty longitude = new SimpleDoubleProperty();
+    private final DoubleProperty track = new SimpleDoubleProperty();
+    private final IntegerProperty zoom = new SimpleIntegerProperty(10);
+    private final ObjectProperty<MapOrientation> orientation = new SimpleObjectProperty<>(MapOrientation.TRACK_UP);
+
+    private final Group tiles = new Group();
+    private final Translate pan = new Translate();
+    private final Rotate mapRotate;
+    private final Rotate aircraftRotate;
+
+    /**
+     * Half the diagonal of the view: the map must reach this far from the aircraft in every direction.
+     */
+    private final double radius;
+
+    /**
+     * The grid, row by row. The view in column i and row j shows tile (originX + i, originY + j).
+     */
+    private final int span;
+    private final ImageView[] views;
+    private int shownZoom = -1;
+    private int originX;
+    private int originY;
+
+    /**
+     * The aircraft in pixels of the whole world at the current zoom.
+     */
+    private double worldX;
+    private double worldY;
+
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final int worldXWatch;
+    private final int worldYWatch;
+    private final int trackWatch;
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+    private final RateMeter redraws = Metrics.get().rendering().instrument(getClass().getSimpleName());
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed(getClass().getSimpleName());
+
+    /**
+     * Set while a tile load is queued to the FX thread, so a burst of loads lays the tiles out once.
+     */
+    private final AtomicBoolean loadPending = new AtomicBoolean();
+    private final Runnable tilesLoaded = () -> {
+        loadPending.set(false);
+        redrawTracker.markDirty(TILES_LAYER);
+        inputChanged();
+    };
+
+    public MovingMap(double width, double height, MapTileCache cache) {
+        this.width = width;
+        this.height = height;
+        this.cache = cache;
+        radius = Math.hypot(width, height) / 2;
+        span = (int) Math.ceil(2 * radius / TILE_SIZE) + 1;
+
+        views = new ImageView[span * span];
+        for (int j = 0; j < span; j++) {
+            for (int i = 0; i < span; i++) {
+                ImageView view = new ImageView();
+                view.setX(i * TILE_SIZE);
+                view.setY(j * TILE_SIZE);
+                view.setFitWidth(TILE_SIZE);
+                view.setFitHeight(TILE_SIZE);
+                views[j * span + i] = view;
+            }
+        }
+        mapRotate = new Rotate(0, width / 2, height / 2);
+        tiles.getChildren().addAll(views);
+        tiles.getTransforms().addAll(mapRotate, pan);
+
+        Polygon aircraft = new Polygon(0, -10, 7, 8, 0, 4, -7, 8);
+        aircraft.setFill(Color.YELLOW);
+        aircraft.setStroke(Color.BLACK);
+        aircraft.setLayoutX(width / 2);
+        aircraft.setLayoutY(height / 2);
+        aircraftRotate = new Rotate();
+        aircraft.getTransforms().add(aircraftRotate);
+
+        getChildren().addAll(new Rectangle(width, height, Color.BLACK), tiles, aircraft);
+        setClip(new Rectangle(width, height));
+
+        // A quarter of a pixel, and a tenth of a degree
+        worldXWatch = redrawTracker.watch(PAN_LAYER, 0.25);
+        worldYWatch = redrawTracker.watch(PAN_LAYER, 0.25);
+        trackWatch = redrawTracker.watch(ROTATION_LAYER, 0.1);
+
+        latitude.addListener(l -> inputChanged());
+        longitude.addListener(l -> inputChanged());
+        track.addListener(l -> inputChanged());
+        zoom.addListener(l -> inputChanged());
+        orientation.addListener(l -> {
+            redrawTracker.markDirty(ROTATION_LAYER);
+            inputChanged();
+        });
+        cache.setLoadListener(() -> {
+            if (loadPending.compareAndSet(false, true)) {
+                Platform.runLater(tilesLoaded);
+            }
+        });
+
+        redrawTracker.markDirty(RedrawTracker.ALL_LAYERS);
+        render();
+    }
+
+    public DoubleProperty latitudeProperty() {
+        return latitude;
+    }
+
+    public DoubleProperty longitudeProperty() {
+        return longitude;
+    }
+
+    /**
+     * True track in degrees; the aircraft's heading will do when there is no track.
+     *
+     * @return
+     */
+    public DoubleProperty trackProperty() {
+        return track;
+    }
+
+    /**
+     * Zoom level of the tiles shown, the map being 256 * 2^zoom pixels around.
+     *
+     * @return
+     */
+    public IntegerProperty zoomProperty() {
+        return zoom;
+    }
+
+    public ObjectProperty<MapOrientation> orientationProperty() {
+        return orientation;
+    }
+
+    /**
+     * Asks for a render on the next pulse, or renders right away when the render scheduler is not running.
+     */
+    private void inputChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    /**
+     * Moves the map if the aircraft moved or turned enough to show since the last update.
+     */
+    private void render() {
+        trackInputs();
+        if (redrawTracker.isDirty()) {
+            update();
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private void trackInputs() {
+        double size = (double) TILE_SIZE * (1 << zoom.get());
+        double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude.get())));
+        worldX = (longitude.get() + 180) / 360 * size;
+        worldY = (1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * size;
+
+        redrawTracker.update(worldXWatch, worldX);
+        redrawTracker.update(worldYWatch, worldY);
+        redrawTracker.update(trackWatch, track.get());
+    }
+
+    private void update() {
+        int z = zoom.get();
+        int firstX = (int) Math.floor((worldX - radius) / TILE_SIZE);
+        int firstY = (int) Math.floor((worldY - radius) / TILE_SIZE);
+        if (z != shownZoom || firstX != originX || firstY != originY || redrawTracker.isDirty(TILES_LAYER)) {
+            boolean moved = z != shownZoom || firstX != originX || firstY != originY;
+            shownZoom = z;
+            originX = firstX;
+            originY = firstY;
+            layoutTiles();
+            if (moved) {
+                prefetchAhead();
+            }
+        }
+
+        pan.setX(width / 2 - (worldX - (double) originX * TILE_SIZE));
+        pan.setY(height / 2 - (worldY - (double) originY * TILE_SIZE));
+        if (orientation.get() == MapOrientation.TRACK_UP) {
+            mapRotate.setAngle(-track.get());
+            aircraftRotate.setAngle(0);
+        } else {
+            mapRotate.setAngle(0);
+            aircraftRotate.setAngle(track.get());
+        }
+
+        redrawTracker.drawn(RedrawTracker.ALL_LAYERS);
+        redraws.mark();
+    }
+
+    /**
+     * Gives every view of the grid its tile, or the part of a coarser tile that covers it.
+     */
+    private void layoutTiles() {
+        int z = shownZoom;
+        int count = 1 << z;
+        for (int j = 0; j < span; j++) {
+            int y = originY + j;
+            for (int i = 0; i < span; i++) {
+                ImageView view = views[j * span + i];
+                if (y < 0 || y >= count) {
+                    view.setImage(null);
+                    continue;
+                }
+                int x = Math.floorMod(originX + i, count);
+                Image tile = cache.get(z, x, y);
+                if (tile != null) {
+                    view.setViewport(null);
+                    view.setImage(tile);
+                    continue;
+                }
+                showFallback(view, z, x, y);
+            }
+        }
+    }
+
+    private void showFallback(ImageView view, int z, int x, int y) {
+        for (int levels = 1; levels <= FALLBACK_LEVELS && levels <= z; levels++) {
+            Image coarser = cache.getIfPresent(z - levels, x >> levels, y >> levels);
+            if (coarser != null) {
+                int mask = (1 << levels) - 1;
+                double part = coarser.getWidth() / (1 << levels);
+                view.setViewport(new Rectangle2D((x & mask) * part, (y & mask) * part, part, part));
+                view.setImage(coarser);
+                return;
+            }
+        }
+        view.setImage(null);
+    }
+
+    /**
+     * Queues the tiles just past the edge of the view along the track, and the tiles either side of them.
+     */
+    private void prefetchAhead() {
+        double along = Math.toRadians(track.get());
+        double dx = Math.sin(along);
+        double dy = -Math.cos(along);
+        int z = shownZoom;
+        int count = 1 << z;
+        for (int k = 1; k <= PREFETCH_TILES; k++) {
+            double reach = radius + k * TILE_SIZE;
+            for (int side = -1; side <= 1; side++) {
+                double px = worldX + dx * reach - dy * side * TILE_SIZE;
+                double py = worldY + dy * reach + dx * side * TILE_SIZE;
+                int x = Math.floorMod((int) Math.floor(px / TILE_SIZE), count);
+                cache.prefetch(z, x, (int) Math.floor(py / TILE_SIZE));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+/**
+ * Update counters for one telemetry channel, registered as {@code type=Channel,name=<path>}: the number of updates,
+ * the updates in the last completed one second window and the seconds since the last update, infinite until the
+ * first. The count runs from startup and is never reset; the rate rolls over every second, see {@link RateMeter}.
+ *
+ * @author Matthew Tyler
+ */
+public class ChannelMetrics implements ChannelMetricsMXBean
+{
+
+    private final String path;
+    private final RateMeter updates = new RateMeter();
+    private volatile long lastUpdateNanos;
+    private volatile boolean updated;
+
+    ChannelMetrics(String path) {
+        this.path = path;
+    }
+
+    public void updated(long now) {
+        updates.mark(now);
+        lastUpdateNanos = now;
+        updated = true;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public long getUpdates() {
+        return updates.getTotal();
+    }
+
+    @Override
+    public double getUpdatesPerSecond() {
+        return updates.getRate();
+    }
+
+    @Override
+    public double getStalenessSeconds() {
+        return updated ? (System.nanoTime() - lastUpdateNanos) / 1e9 : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+/**
+ * Update rate and staleness of one telemetry channel.
+ *
+ * @author Matthew Tyler
+ */
+public interface ChannelMetricsMXBean
+{
+
+    String getPath();
+
+    long getUpdates();
+
+    double getUpdatesPerSecond();
+
+    /**
+     * @return seconds since the last update, infinite if the channel never updated
+     */
+    double getStalenessSeconds();
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Counts FX pulses and infers dropped frames from gaps between them. A gap of more than one and a half frame periods
+ * counts every whole period missed.
+ *
+ * @author Matthew Tyler
+ */
+public class FrameMonitor extends AnimationTimer
+{
+
+    private final RenderMetrics metrics;
+    private final long framePeriodNanos;
+    private long lastPulse;
+
+    public FrameMonitor(RenderMetrics metrics, double framesPerSecond) {
+        this.metrics = metrics;
+        this.framePeriodNanos = (long) (1e9 / framesPerSecond);
+    }
+
+    @Override
+    public void handle(long now) {
+        long dropped = 0;
+        if (lastPulse != 0) {
+            long gap = now - lastPulse;
+            if (gap > framePeriodNanos + framePeriodNanos / 2) {
+                dropped = Math.round((double) gap / framePeriodNanos) - 1;
+            }
+        }
+        lastPulse = now;
+        metrics.frame(now, dropped);
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        lastPulse = 0;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Operational metrics of a running DEFIS: telemetry sources, channels and rendering. Every meter is updated from
+ * lock-free counters on the thread doing the work and read by JMX (domain {@code org.defis.efis}) or by
+ * {@link MetricsHttpServer} in the Prometheus text format.
+ *
+ * @author Matthew Tyler
+ */
+public class Metrics
+{
+
+    private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+    private static final String DOMAIN = "org.defis.efis";
+
+    private static final Metrics DEFAULT = new Metrics(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+    private final ConcurrentMap<String, SourceMetrics> sources = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ChannelMetrics> channels = new ConcurrentHashMap<>();
+    private final RenderMetrics rendering = new RenderMetrics();
+    private final StartupMetrics startup = new StartupMetrics();
+
+    public static Metrics get() {
+        return DEFAULT;
+    }
+
+    public Metrics(MBeanServer server) {
+        this.server = server;
+        register("type=Rendering", rendering);
+        register("type=Startup", startup);
+    }
+
+    public SourceMetrics source(String name) {
+        return sources.computeIfAbsent(name, n -> register("type=TelemetrySource,name=" + ObjectName.quote(n),
+                new SourceMetrics(n)));
+    }
+
+    public ChannelMetrics channel(String path) {
+        return channels.computeIfAbsent(path, p -> register("type=Channel,name=" + ObjectName.quote(p),
+                new ChannelMetrics(p)));
+    }
+
+    public RenderMetrics rendering() {
+        return rendering;
+    }
+
+    public StartupMetrics startup() {
+        return startup;
+    }
+
+    private <T> T register(String properties, T mbean) {
+        if (server != null) {
+            try {
+                server.registerMBean(mbean, new ObjectName(DOMAIN + ":" + properties));
+            } catch (JMException ex) {
+                LOG.log(Level.WARNING, "Could not register " + properties, ex);
+            }
+        }
+        return mbean;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format.
+     *
+     * @param out
+     */
+    public void writePrometheus(StringBuilder out) {
+        Map<String, SourceMetrics> sortedSources = new TreeMap<>(sources);
+        Map<String, ChannelMetrics> sortedChannels = new TreeMap<>(channels);
+
+        header(out, "defis_source_link_up", "gauge", "1 when the last poll of the source succeeded.");
+        sortedSources.forEach((n, s) -> sample(out, "defis_source_link_up", "source", n, s.isLinkUp() ? 1 : 0));
+
+        header(out, "defis_source_link_drops_total", "counter", "Times the source link went down.");
+        sortedSources.forEach((n, s) -> sample(out, "defis_source_link_drops_total", "source", n, s.getLinkDrops()));
+
+        header(out, "defis_source_reconnects_total", "counter", "Times the source link came back up.");
+        sortedSources.forEach((n, s) -> sample(out, "defis_source_reconnects_total", "source", n, s.getReconnects()));
+
+        header(out, "defis_source_poll_failures_total", "counter", "Failed polls of the source.");
+        sortedSources.forEach((n, s) -> sample(out, "defis_source_poll_failures_total", "source", n,
+                s.getPollFailures()));
+
+        header(out, "defis_source_poll_round_trip_seconds", "summary", "Round trip time of successful polls.");
+        sortedSources.forEach((n, s) -> {
+            LatencyHistogram rtt = s.getPollRoundTrip();
+            for (double q : new double[]{0.5, 0.9, 0.99}) {
+                out.append("defis_source_poll_round_trip_seconds{source=\"").append(escape(n))
+                        .append("\",quantile=\"").append(q).append("\"} ");
+                value(out, rtt.percentileMs(q * 100) / 1000).append('\n');
+            }
+            sample(out, "defis_source_poll_round_trip_seconds_count", "source", n, rtt.getCount());
+            sample(out, "defis_source_poll_round_trip_seconds_sum", "source", n, rtt.getSumSeconds());
+        });
+
+        header(out, "defis_channel_updates_total", "counter", "Updates received per telemetry channel.");
+        sortedChannels.forEach((p, c) -> sample(out, "defis_channel_updates_total", "channel", p, c.getUpdates()));
+
+        header(out, "defis_channel_update_rate", "gauge", "Updates per second over the last second.");
+        sortedChannels.forEach((p, c) -> sample(out, "defis_channel_update_rate", "channel", p,
+                c.getUpdatesPerSecond()));
+
+        header(out, "defis_channel_staleness_seconds", "gauge", "Seconds since the channel last updated.");
+        sortedChannels.forEach((p, c) -> sample(out, "defis_channel_staleness_seconds", "channel", p,
+                c.getStalenessSeconds()));
+
+        header(out, "defis_instrument_redraws_total", "counter", "Redraws per instrument.");
+        rendering.getRedraws().forEach((i, r) -> sample(out, "defis_instrument_redraws_total", "instrument", i, r));
+
+        header(out, "defis_instrument_redraw_rate", "gauge", "Redraws per second over the last second.");
+        rendering.getRedrawsPerSecond().forEach((i, r) -> sample(out, "defis_instrument_redraw_rate", "instrument",
+                i, r));
+
+        header(out, "defis_instrument_suppressed_redraws_total", "counter",
+                "Input changes per instrument too small to show, so not redrawn.");
+        rendering.getSuppressedRedraws().forEach((i, r) -> sample(out, "defis_instrument_suppressed_redraws_total",
+                "instrument", i, r));
+
+        header(out, "defis_frames_total", "counter", "FX pulses.");
+        sample(out, "defis_frames_total", null, null, rendering.getFrames());
+
+        header(out, "defis_frame_rate", "gauge", "FX pulses per second over the last second.");
+        sample(out, "defis_frame_rate", null, null, rendering.getFramesPerSecond());
+
+        header(out, "defis_dropped_frames_total", "counter", "Frames missed between FX pulses.");
+        sample(out, "defis_dropped_frames_total", null, null, rendering.getDroppedFrames());
+
+        header(out, "defis_deferred_renders_total", "counter", "Instrument renders pushed to the next pulse.");
+        sample(out, "defis_deferred_renders_total", null, null, rendering.getDeferredRenders());
+
+        header(out, "defis_target_frame_rate", "gauge", "Frame rate the governor currently allows.");
+        sample(out, "defis_target_frame_rate", null, null, rendering.getTargetFrameRate());
+
+        header(out, "defis_frame_rate_transitions_total", "counter", "Changes of the governed frame rate.");
+        sample(out, "defis_frame_rate_transitions_total", null, null, rendering.getFrameRateTransitions());
+
+        header(out, "defis_low_power", "gauge", "1 when the low power profile is active.");
+        sample(out, "defis_low_power", null, null, rendering.isLowPower() ? 1 : 0);
+
+        header(out, "defis_fx_thread_cpu_seconds_total", "counter", "CPU time used by the FX thread.");
+        sample(out, "defis_fx_thread_cpu_seconds_total", null, null, rendering.getFxThreadCpuSeconds());
+
+        header(out, "defis_process_cpu_seconds_total", "counter", "CPU time used by the process.");
+        sample(out, "defis_process_cpu_seconds_total", null, null, rendering.getProcessCpuSeconds());
+
+        header(out, "defis_startup_phase_seconds", "gauge", "Duration of each startup phase.");
+        startup.getPhaseSeconds().forEach((p, s) -> sample(out, "defis_startup_phase_seconds", "phase", p, s));
+
+        header(out, "defis_startup_phase_completed_seconds", "gauge", "Seconds from JVM start to the end of each "
+                + "startup phase.");
+        startup.getPhaseCompletedSeconds().forEach((p, s) -> sample(out, "defis_startup_phase_completed_seconds",
+                "phase", p, s));
+
+        header(out, "defis_startup_ready_seconds", "gauge", "Seconds from JVM start until startup was done.");
+        if (!Double.isNaN(startup.getReadySeconds())) {
+            sample(out, "defis_startup_ready_seconds", null, null, startup.getReadySeconds());
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String labelValue, double value) {
+        out.append(name);
+        if (label != null) {
+            out.append('{').append(label).append("=\"").append(escape(labelValue)).append("\"}");
+        }
+        out.append(' ');
+        value(out, value).append('\n');
+    }
+
+    private static StringBuilder value(StringBuilder out, double value) {
+        if (Double.isInfinite(value)) {
+            return out.append(value > 0 ? "+Inf" : "-Inf");
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return out.append((long) value);
+        }
+        return out.append(value);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
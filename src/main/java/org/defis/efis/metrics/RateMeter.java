@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free event counter that also reports the number of events in the last completed one second window.
+ *
+ * @author Matthew Tyler
+ */
+public class RateMeter
+{
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder window = new LongAdder();
+    private volatile long lastWindowCount;
+
+    public void mark() {
+        mark(System.nanoTime());
+    }
+
+    public void mark(long now) {
+        roll(now);
+        total.increment();
+        window.increment();
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return events per second over the last completed window, 0 when nothing happened for a whole window
+     */
+    public double getRate() {
+        roll(System.nanoTime());
+        return lastWindowCount;
+    }
+
+    private void roll(long now) {
+        long start = windowStart.get();
+        long elapsed = now - start;
+        if (elapsed >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            long count = window.sumThenReset();
+            lastWindowCount = elapsed >= 2 * WINDOW_NANOS ? 0 : count;
+        }
+    }
+}
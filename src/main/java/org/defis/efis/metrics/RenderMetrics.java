@@ -0,0 +1,182 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendering counters, registered as {@code type=Rendering}: frames and redraws of each instrument, with their rates,
+ * dropped frames, redraws suppressed as too small to show, renders deferred to the next pulse, the frame rate set by
+ * the governor and its changes, CPU time of the FX thread and the process, and whether low power mode is on.
+ *
+ * Counts run from startup and are never reset, so rates over any period are differences between two reads; the per
+ * second rates cover the last completed one second window, see {@link RateMeter}.
+ *
+ * @author Matthew Tyler
+ */
+public class RenderMetrics implements RenderMetricsMXBean
+{
+
+    private final ConcurrentMap<String, RateMeter> redraws = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> suppressed = new ConcurrentHashMap<>();
+    private final RateMeter frames = new RateMeter();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder deferredRenders = new LongAdder();
+    private volatile double targetFrameRate;
+    private final LongAdder frameRateTransitions = new LongAdder();
+    private volatile long fxThreadCpuNanos;
+    private volatile boolean lowPower;
+
+    RenderMetrics() {
+    }
+
+    /**
+     * Returns the redraw meter of an instrument. Instruments look it up once and mark it on every redraw.
+     *
+     * @param instrument
+     * @return
+     */
+    public RateMeter instrument(String instrument) {
+        return redraws.computeIfAbsent(instrument, i -> new RateMeter());
+    }
+
+    /**
+     * Returns the counter of input changes an instrument did not redraw for, because they were too small to show.
+     *
+     * @param instrument
+     * @return
+     */
+    public LongAdder suppressed(String instrument) {
+        return suppressed.computeIfAbsent(instrument, i -> new LongAdder());
+    }
+
+    /**
+     * Counts instrument renders pushed to the next pulse because the current one ran out of time.
+     *
+     * @param renders
+     */
+    public void deferred(long renders) {
+        deferredRenders.add(renders);
+    }
+
+    /**
+     * Records a new target frame rate set by the governor.
+     *
+     * @param framesPerSecond
+     */
+    public void targetFrameRate(double framesPerSecond) {
+        if (framesPerSecond != targetFrameRate) {
+            frameRateTransitions.increment();
+        }
+        targetFrameRate = framesPerSecond;
+    }
+
+    /**
+     * Records the CPU time the FX thread has used so far, as sampled on the FX thread.
+     *
+     * @param nanos
+     */
+    public void fxThreadCpuTime(long nanos) {
+        fxThreadCpuNanos = nanos;
+    }
+
+    public void lowPower(boolean lowPower) {
+        this.lowPower = lowPower;
+    }
+
+    public void frame(long now, long dropped) {
+        frames.mark(now);
+        if (dropped > 0) {
+            droppedFrames.add(dropped);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getRedraws() {
+        Map<String, Long> result = new TreeMap<>();
+        redraws.forEach((name, meter) -> result.put(name, meter.getTotal()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getRedrawsPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        redraws.forEach((name, meter) -> result.put(name, meter.getRate()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getSuppressedRedraws() {
+        Map<String, Long> result = new TreeMap<>();
+        suppressed.forEach((name, count) -> result.put(name, count.sum()));
+        return result;
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.getTotal();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return frames.getRate();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    @Override
+    public long getDeferredRenders() {
+        return deferredRenders.sum();
+    }
+
+    @Override
+    public double getTargetFrameRate() {
+        return targetFrameRate;
+    }
+
+    @Override
+    public long getFrameRateTransitions() {
+        return frameRateTransitions.sum();
+    }
+
+    @Override
+    public double getFxThreadCpuSeconds() {
+        return fxThreadCpuNanos / 1e9;
+    }
+
+    @Override
+    public double getProcessCpuSeconds() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime() / 1e9;
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public boolean isLowPower() {
+        return lowPower;
+    }
+}
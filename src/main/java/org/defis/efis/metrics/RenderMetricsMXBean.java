@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.util.Map;
+
+/**
+ * Display side counters: redraws per instrument and frames delivered or dropped by the FX pulse.
+ *
+ * @author Matthew Tyler
+ */
+public interface RenderMetricsMXBean
+{
+
+    Map<String, Long> getRedraws();
+
+    Map<String, Double> getRedrawsPerSecond();
+
+    Map<String, Long> getSuppressedRedraws();
+
+    long getFrames();
+
+    double getFramesPerSecond();
+
+    long getDroppedFrames();
+
+    long getDeferredRenders();
+
+    /**
+     * @return the frame rate the governor currently allows, 0 when it is not running
+     */
+    double getTargetFrameRate();
+
+    long getFrameRateTransitions();
+
+    double getFxThreadCpuSeconds();
+
+    /**
+     * @return CPU time used by the whole process, NaN where the JVM does not report it
+     */
+    double getProcessCpuSeconds();
+
+    boolean isLowPower();
+}
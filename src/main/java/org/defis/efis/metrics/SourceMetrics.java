@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one telemetry source. A reconnect is counted whenever the link comes back up after having been down.
+ *
+ * @author Matthew Tyler
+ */
+public class SourceMetrics implements SourceMetricsMXBean
+{
+
+    private final String name;
+    private final AtomicBoolean linkUp = new AtomicBoolean();
+    private final AtomicBoolean everUp = new AtomicBoolean();
+    private final LongAdder linkDrops = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder pollFailures = new LongAdder();
+    private final LatencyHistogram pollRoundTrip = new LatencyHistogram();
+
+    SourceMetrics(String name) {
+        this.name = name;
+    }
+
+    public void pollSucceeded(long roundTripNanos) {
+        pollRoundTrip.record(roundTripNanos);
+        if (linkUp.compareAndSet(false, true) && !everUp.compareAndSet(false, true)) {
+            reconnects.increment();
+        }
+    }
+
+    public void pollFailed() {
+        pollFailures.increment();
+        if (linkUp.compareAndSet(true, false)) {
+            linkDrops.increment();
+        }
+    }
+
+    LatencyHistogram getPollRoundTrip() {
+        return pollRoundTrip;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isLinkUp() {
+        return linkUp.get();
+    }
+
+    @Override
+    public long getLinkDrops() {
+        return linkDrops.sum();
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getPolls() {
+        return pollRoundTrip.getCount();
+    }
+
+    @Override
+    public long getPollFailures() {
+        return pollFailures.sum();
+    }
+
+    @Override
+    public double getPollRoundTripP50Ms() {
+        return pollRoundTrip.percentileMs(50);
+    }
+
+    @Override
+    public double getPollRoundTripP90Ms() {
+        return pollRoundTrip.percentileMs(90);
+    }
+
+    @Override
+    public double getPollRoundTripP99Ms() {
+        return pollRoundTrip.percentileMs(99);
+    }
+}
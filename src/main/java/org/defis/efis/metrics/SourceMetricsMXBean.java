@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+/**
+ * Health of one telemetry source (FlightGear, an MCU link, a peer EFIS).
+ *
+ * @author Matthew Tyler
+ */
+public interface SourceMetricsMXBean
+{
+
+    String getName();
+
+    boolean isLinkUp();
+
+    long getLinkDrops();
+
+    long getReconnects();
+
+    long getPolls();
+
+    long getPollFailures();
+
+    double getPollRoundTripP50Ms();
+
+    double getPollRoundTripP90Ms();
+
+    double getPollRoundTripP99Ms();
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * @author Matthew Tyler
+ */
+public class StartupMetrics implements StartupMetricsMXBean
+{
+
+    private final Map<String, Double> phaseSeconds = new LinkedHashMap<>();
+    private final Map<String, Double> completedSeconds = new LinkedHashMap<>();
+    private volatile double readySeconds = Double.NaN;
+
+    StartupMetrics() {
+    }
+
+    /**
+     * Records a phase that has just ended.
+     *
+     * @param phase
+     * @param nanos how long it took
+     */
+    public synchronized void phase(String phase, long nanos) {
+        phaseSeconds.put(phase, nanos / 1e9);
+        completedSeconds.put(phase, uptimeSeconds());
+    }
+
+    /**
+     * Records that every phase is done.
+     */
+    public void ready() {
+        readySeconds = uptimeSeconds();
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPhaseSeconds() {
+        return new LinkedHashMap<>(phaseSeconds);
+    }
+
+    @Override
+    public synchronized Map<String, Double> getPhaseCompletedSeconds() {
+        return new LinkedHashMap<>(completedSeconds);
+    }
+
+    @Override
+    public double getReadySeconds() {
+        return readySeconds;
+    }
+
+    private static double uptimeSeconds() {
+        return ManagementFactory.getRuntimeMXBean().getUptime() / 1e3;
+    }
+}
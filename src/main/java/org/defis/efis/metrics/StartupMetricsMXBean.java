@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.metrics;
+
+import java.util.Map;
+
+/**
+ * How long each phase of startup took, and when it was done.
+ *
+ * @author Matthew Tyler
+ */
+public interface StartupMetricsMXBean
+{
+
+    /**
+     * @return the duration of each phase in seconds, in the order they ran
+     */
+    Map<String, Double> getPhaseSeconds();
+
+    /**
+     * @return seconds from JVM start to the end of each phase
+     */
+    Map<String, Double> getPhaseCompletedSeconds();
+
+    /**
+     * @return seconds from JVM start until every phase was done, NaN while starting
+     */
+    double getReadySeconds();
+}
@@ -0,0 +1,444 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.nav;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+/**
+ * A read-only database of airports with their runways, navaids and waypoints, compiled by {@link NavDatabaseCompiler}
+ * and memory-mapped, so opening it only reads the header and queries only touch the pages they need.
+ *
+ * Entries are sorted by one degree cells of latitude and longitude, with a table of where each cell starts, for the
+ * nearest and radius queries. A second table lists the entries in the order of their idents, for lookups by ident or
+ * the start of one. The file is laid out like this, big-endian:
+ *
+ * <pre>
+ * int    magic, "DNAV"
+ * short  version, 1
+ * short  0
+ * int    entries
+ * int    runways
+ * int    bytes of names
+ * int[]  180 x 360 + 1 indexes of the first entry of each cell, by {@link #cellIndex}
+ * int[]  entries, in the order of their idents
+ * per entry, 36 bytes:
+ *     byte[8] ident, ASCII, padded with zeros
+ *     int     latitude and int longitude in millionths of a degree
+ *     byte    {@link NavType} ordinal
+ *     byte    runways
+ *     short   elevation in feet
+ *     int     frequency in kHz
+ *     int     first runway
+ *     int     offset of the name
+ *     short   length of the longest runway in feet
+ *     short   0
+ * per runway, 16 bytes:
+ *     byte[8] designator, as in 16L/34R
+ *     short   length and short width in feet
+ *     short   true heading of the first end in degrees
+ *     byte    1 for a hard surface
+ *     byte    0
+ * names, as a short length and that many bytes of UTF-8
+ * </pre>
+ *
+ * Queries allocate nothing: they fill arrays from the caller with entry indexes, which the accessors take. Reads are
+ * absolute and safe from any thread.
+ *
+ * @author Matthew Tyler
+ */
+public class NavDatabase implements Closeable
+{
+
+    static final int MAGIC = 0x444e4156;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 20;
+    static final int CELL_COUNT = 180 * 360;
+    static final int IDENT_BYTES = 8;
+    static final int ENTRY_BYTES = 36;
+    static final int RUNWAY_BYTES = 16;
+    static final double MICRODEGREES = 1e-6;
+
+    public static final double EARTH_RADIUS_NM = 3440.065;
+
+    /**
+     * Radius the nearest query starts from, doubled until enough entries are found.
+     */
+    private static final double FIRST_RADIUS_NM = 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    @Getter
+    private final int entries;
+    @Getter
+    private final int runways;
+    private final int identOrderStart;
+    private final int entriesStart;
+    private final int runwaysStart;
+    private final int namesStart;
+
+    public NavDatabase(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException(path + " is not a navigation database");
+            }
+            entries = buffer.getInt(8);
+            runways = buffer.getInt(12);
+            identOrderStart = HEADER_BYTES + 4 * (CELL_COUNT + 1);
+            entriesStart = identOrderStart + 4 * entries;
+            runwaysStart = entriesStart + ENTRY_BYTES * entries;
+            namesStart = runwaysStart + RUNWAY_BYTES * runways;
+            if (buffer.capacity() < (long) namesStart + buffer.getInt(16)) {
+                throw new IOException(path + " is truncated");
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The index of the cell whose south west corner is at the given whole degrees.
+     *
+     * @param lat from -90 to 89
+     * @param lon from -180 to 179
+     * @return
+     */
+    static int cellIndex(int lat, int lon) {
+        return (lat + 90) * 360 + (lon + 180);
+    }
+
+    public String ident(int entry) {
+        return paddedText(entryOffset(entry));
+    }
+
+    public String name(int entry) {
+        int offset = namesStart + buffer.getInt(entryOffset(entry) + 28);
+        return text(offset + 2, buffer.getShort(offset) & 0xffff);
+    }
+
+    public NavType type(int entry) {
+        return NavType.of(buffer.get(entryOffset(entry) + 16));
+    }
+
+    public double latitude(int entry) {
+        return buffer.getInt(entryOffset(entry) + 8) * MICRODEGREES;
+    }
+
+    public double longitude(int entry) {
+        return buffer.getInt(entryOffset(entry) + 12) * MICRODEGREES;
+    }
+
+    /**
+     * Elevation of an airport, in feet.
+     *
+     * @param entry
+     * @return
+     */
+    public int elevation(int entry) {
+        return buffer.getShort(entryOffset(entry) + 18);
+    }
+
+    /**
+     * Frequency of a navaid, in kHz.
+     *
+     * @param entry
+     * @return
+     */
+    public int frequency(int entry) {
+        return buffer.getInt(entryOffset(entry) + 20);
+    }
+
+    public int runwayCount(int entry) {
+        return buffer.get(entryOffset(entry) + 17) & 0xff;
+    }
+
+    /**
+     * The index of the first runway of an airport; the others follow it.
+     *
+     * @param entry
+     * @return
+     */
+    public int firstRunway(int entry) {
+        return buffer.getInt(entryOffset(entry) + 24);
+    }
+
+    /**
+     * Length of the longest runway of an airport, in feet.
+     *
+     * @param entry
+     * @return
+     */
+    public int longestRunway(int entry) {
+        return buffer.getShort(entryOffset(entry) + 32) & 0xffff;
+    }
+
+    public String runwayDesignator(int runway) {
+        return paddedText(runwayOffset(runway));
+    }
+
+    public int runwayLength(int runway) {
+        return buffer.getShort(runwayOffset(runway) + 8) & 0xffff;
+    }
+
+    public int runwayWidth(int runway) {
+        return buffer.getShort(runwayOffset(runway) + 10) & 0xffff;
+    }
+
+    public int runwayHeading(int runway) {
+        return buffer.getShort(runwayOffset(runway) + 12);
+    }
+
+    public boolean isHardSurface(int runway) {
+        return buffer.get(runwayOffset(runway) + 14) != 0;
+    }
+
+    /**
+     * Finds the entries nearest to a position, nearest first.
+     *
+     * @param lat
+     * @param lon
+     * @param types mask of the {@link NavType#mask() types} to include
+     * @param minRunwayLength in feet, for airports; 0 for any
+     * @param results filled with entry indexes, as many as it holds
+     * @param distances filled with the distances of the results in nautical miles, at least as long as results
+     * @return the number of results
+     */
+    public int nearest(double lat, double lon, int types, int minRunwayLength, int[] results, double[] distances) {
+        double radius = FIRST_RADIUS_NM;
+        while (true) {
+            int found = collect(lat, lon, radius, types, minRunwayLength, results, distances);
+            if (found == results.length || radius >= Math.PI * EARTH_RADIUS_NM) {
+                return found;
+            }
+            radius *= 2;
+        }
+    }
+
+    /**
+     * Finds the entries within a distance of a position, nearest first, up to as many as results holds.
+     *
+     * @param lat
+     * @param lon
+     * @param radius in nautical miles
+     * @param types mask of the {@link NavType#mask() types} to include
+     * @param results filled with entry indexes
+     * @param distances filled with the distances of the results in nautical miles, at least as long as results
+     * @return the number of results
+     */
+    public int within(double lat, double lon, double radius, int types, int[] results, double[] distances) {
+        return collect(lat, lon, radius, types, 0, results, distances);
+    }
+
+    /**
+     * Finds the entries whose ident starts with a prefix, ignoring case, in the order of their idents.
+     *
+     * @param prefix
+     * @param results filled with entry indexes, up to as many as it holds
+     * @return the number of results
+     */
+    public int findPrefix(CharSequence prefix, int[] results) {
+        if (prefix.length() > IDENT_BYTES) {
+            return 0;
+        }
+
+        // The first ident not before the prefix
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(identOrder(middle), prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int found = 0;
+        for (int i = low; i < entries && found < results.length; i++) {
+            int entry = identOrder(i);
+            if (comparePrefix(entry, prefix) != 0) {
+                break;
+            }
+            results[found++] = entry;
+        }
+        return found;
+    }
+
+    /**
+     * Great circle distance, in nautical miles.
+     *
+     * @param lat1
+     * @param lon1
+     * @param lat2
+     * @param lon2
+     * @return
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        return distance(lat1, Math.cos(Math.toRadians(lat1)), lon1, lat2, lon2);
+    }
+
+    /**
+     * Initial true bearing of the great circle from one position to another, from 0 to 360 degrees.
+     *
+     * @param lat1
+     * @param lon1
+     * @param lat2
+     * @param lon2
+     * @return
+     */
+    public static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double deltaLambda = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(deltaLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLambda);
+        double bearing = Math.toDegrees(Math.atan2(y, x));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    /**
+     * Unmapping is left to the garbage collector; the mapping stays valid until the database is unreachable.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static double distance(double lat1, double cosLat1, double lon1, double lat2, double lon2) {
+        double sinHalfLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinHalfLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinHalfLat * sinHalfLat + cosLat1 * Math.cos(Math.toRadians(lat2)) * sinHalfLon * sinHalfLon;
+        return 2 * Math.asin(Math.min(1, Math.sqrt(a))) * EARTH_RADIUS_NM;
+    }
+
+    /**
+     * Keeps the entries within the radius that are nearest, as many as results holds, by insertion into the sorted
+     * results.
+     */
+    private int collect(double lat, double lon, double radius, int types, int minRunwayLength, int[] results,
+            double[] distances) {
+        double latSpan = Math.toDegrees(radius / EARTH_RADIUS_NM);
+        int firstRow = (int) Math.max(-90, Math.floor(lat - latSpan));
+        int lastRow = (int) Math.min(89, Math.floor(lat + latSpan));
+
+        // Longitude degrees are shortest on the edge of the box nearest a pole
+        double widestLat = Math.max(Math.abs(lat - latSpan), Math.abs(lat + latSpan));
+        int firstColumn = -180;
+        int lastColumn = 179;
+        if (widestLat < 89) {
+            double lonSpan = latSpan / Math.cos(Math.toRadians(widestLat));
+            if (Math.floor(lon + lonSpan) - Math.floor(lon - lonSpan) < 360) {
+                firstColumn = (int) Math.floor(lon - lonSpan);
+                lastColumn = (int) Math.floor(lon + lonSpan);
+            }
+        }
+
+        double cosLat = Math.cos(Math.toRadians(lat));
+        int found = 0;
+        if (results.length == 0) {
+            return found;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = cellIndex(row, Math.floorMod(column + 180, 360) - 180);
+                int end = cellStart(cell + 1);
+                for (int entry = cellStart(cell); entry < end; entry++) {
+                    int offset = entryOffset(entry);
+                    if ((types & 1 << buffer.get(offset + 16)) == 0
+                            || (buffer.getShort(offset + 32) & 0xffff) < minRunwayLength) {
+                        continue;
+                    }
+                    double distance = distance(lat, cosLat, lon, buffer.getInt(offset + 8) * MICRODEGREES,
+                            buffer.getInt(offset + 12) * MICRODEGREES);
+                    if (distance > radius || found == results.length && distance >= distances[found - 1]) {
+                        continue;
+                    }
+
+                    int slot = found < results.length ? found++ : found - 1;
+                    while (slot > 0 && distances[slot - 1] > distance) {
+                        results[slot] = results[slot - 1];
+                        distances[slot] = distances[slot - 1];
+                        slot--;
+                    }
+                    results[slot] = entry;
+                    distances[slot] = distance;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Compares the start of an entry's ident with a prefix, as far as the prefix goes.
+     */
+    private int comparePrefix(int entry, CharSequence prefix) {
+        int offset = entryOffset(entry);
+        for (int i = 0; i < prefix.length(); i++) {
+            int difference = buffer.get(offset + i) - Character.toUpperCase(prefix.charAt(i));
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private int cellStart(int cell) {
+        return buffer.getInt(HEADER_BYTES + 4 * cell);
+    }
+
+    private int identOrder(int position) {
+        return buffer.getInt(identOrderStart + 4 * position);
+    }
+
+    private int entryOffset(int entry) {
+        return entriesStart + ENTRY_BYTES * entry;
+    }
+
+    private int runwayOffset(int runway) {
+        return runwaysStart + RUNWAY_BYTES * runway;
+    }
+
+    private String paddedText(int offset) {
+        int length = 0;
+        while (length < IDENT_BYTES && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        return text(offset, length);
+    }
+
+    private String text(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.nav;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles airport, runway, navaid and waypoint source files into a {@link NavDatabase} file.
+ *
+ * Sources are CSV files, one entry per line, with fields in double quotes where they hold commas. Lines starting with
+ * # are comments.
+ *
+ * <pre>
+ * airport:  ident, name, latitude, longitude, elevation in feet
+ * runway:   airport ident, designator as in 16L/34R, length and width in feet, true heading, surface as in ASP or TURF
+ * navaid:   ident, name, type (VOR, NDB or DME), latitude, longitude, frequency in kHz
+ * waypoint: ident, latitude, longitude
+ * </pre>
+ *
+ * <pre>
+ * java -cp defis.jar org.defis.efis.nav.NavDatabaseCompiler nav.dnav airport=airports.csv runway=runways.csv ...
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class NavDatabaseCompiler
+{
+
+    private static final String[] HARD_SURFACES = {"ASP", "CON", "BIT", "PEM", "TAR"};
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> airports = new HashMap<>();
+
+    public void addAirport(String ident, String name, double lat, double lon, int elevation) {
+        Entry airport = add(NavType.AIRPORT, ident, name, lat, lon);
+        airport.elevation = checkShort(elevation, "elevation");
+        airports.putIfAbsent(airport.ident, airport);
+    }
+
+    /**
+     * Adds a runway to an airport that has been added.
+     *
+     * @param airportIdent
+     * @param designator
+     * @param length in feet
+     * @param width in feet
+     * @param heading true, in degrees
+     * @param hardSurface
+     */
+    public void addRunway(String airportIdent, String designator, int length, int width, int heading,
+            boolean hardSurface) {
+        Entry airport = airports.get(airportIdent.toUpperCase(Locale.ROOT));
+        if (airport == null) {
+            throw new IllegalArgumentException("No airport " + airportIdent + " for runway " + designator);
+        }
+        if (airport.runways.size() == 255) {
+            throw new IllegalArgumentException("Too many runways at " + airportIdent);
+        }
+        airport.runways.add(new Runway(checkIdent(designator), checkLength(length), checkLength(width), heading,
+                hardSurface));
+        airport.longestRunway = Math.max(airport.longestRunway, length);
+    }
+
+    /**
+     * @param ident
+     * @param name
+     * @param type one of the navaid types
+     * @param lat
+     * @param lon
+     * @param frequency in kHz
+     */
+    public void addNavaid(String ident, String name, NavType type, double lat, double lon, int frequency) {
+        if (type == NavType.AIRPORT || type == NavType.WAYPOINT) {
+            throw new IllegalArgumentException(type + " is not a navaid type");
+        }
+        add(type, ident, name, lat, lon).frequency = frequency;
+    }
+
+    public void addWaypoint(String ident, double lat, double lon) {
+        add(NavType.WAYPOINT, ident, "", lat, lon);
+    }
+
+    /**
+     * Adds the entries of a source file.
+     *
+     * @param type one of airport, runway, navaid or waypoint
+     * @param csv
+     * @throws IOException
+     */
+    public void addSource(String type, Path csv) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            int number = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                number++;
+                if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                try {
+                    addRecord(type, splitCsv(line));
+                } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+                    throw new IOException(csv + ":" + number + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    private void addRecord(String type, List<String> fields) {
+        switch (type) {
+            case "airport":
+                addAirport(fields.get(0), fields.get(1), number(fields.get(2)), number(fields.get(3)),
+                        (int) Math.round(number(fields.get(4))));
+                break;
+            case "runway":
+                addRunway(fields.get(0), fields.get(1), (int) number(fields.get(2)), (int) number(fields.get(3)),
+                        (int) Math.round(number(fields.get(4))), isHardSurface(fields.get(5)));
+                break;
+            case "navaid":
+                addNavaid(fields.get(0), fields.get(1), navaidType(fields.get(2)), number(fields.get(3)),
+                        number(fields.get(4)), (int) Math.round(number(fields.get(5))));
+                break;
+            case "waypoint":
+                addWaypoint(fields.get(0), number(fields.get(1)), number(fields.get(2)));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown source type " + type);
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        for (Entry entry : entries) {
+            int row = (int) Math.min(89, Math.floor(entry.lat * NavDatabase.MICRODEGREES));
+            int column = (int) Math.min(179, Math.floor(entry.lon * NavDatabase.MICRODEGREES));
+            entry.cell = NavDatabase.cellIndex(row, column);
+        }
+        List<Entry> byCell = new ArrayList<>(entries);
+        byCell.sort(Comparator.<Entry>comparingInt(e -> e.cell).thenComparing(e -> e.ident));
+        for (int i = 0; i < byCell.size(); i++) {
+            byCell.get(i).index = i;
+        }
+        List<Entry> byIdent = new ArrayList<>(byCell);
+        byIdent.sort(Comparator.comparing(e -> e.ident));
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream nameOut = new DataOutputStream(names);
+        int runways = 0;
+        for (Entry entry : byCell) {
+            entry.nameOffset = names.size();
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            nameOut.writeShort(Math.min(name.length, 0xffff));
+            nameOut.write(name, 0, Math.min(name.length, 0xffff));
+            entry.firstRunway = runways;
+            runways += entry.runways.size();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(NavDatabase.MAGIC);
+            out.writeShort(NavDatabase.VERSION);
+            out.writeShort(0);
+            out.writeInt(byCell.size());
+            out.writeInt(runways);
+            out.writeInt(names.size());
+
+            int next = 0;
+            for (int cell = 0; cell <= NavDatabase.CELL_COUNT; cell++) {
+                while (next < byCell.size() && byCell.get(next).cell < cell) {
+                    next++;
+                }
+                out.writeInt(next);
+            }
+            for (Entry entry : byIdent) {
+                out.writeInt(entry.index);
+            }
+
+            for (Entry entry : byCell) {
+                writePadded(out, entry.ident);
+                out.writeInt(entry.lat);
+                out.writeInt(entry.lon);
+                out.writeByte(entry.type.ordinal());
+                out.writeByte(entry.runways.size());
+                out.writeShort(entry.elevation);
+                out.writeInt(entry.frequency);
+                out.writeInt(entry.firstRunway);
+                out.writeInt(entry.nameOffset);
+                out.writeShort(entry.longestRunway);
+                out.writeShort(0);
+            }
+            for (Entry entry : byCell) {
+                for (Runway runway : entry.runways) {
+                    writePadded(out, runway.designator);
+                    out.writeShort(runway.length);
+                    out.writeShort(runway.width);
+                    out.writeShort(runway.heading);
+                    out.writeByte(runway.hardSurface ? 1 : 0);
+                    out.writeByte(0);
+                }
+            }
+            names.writeTo(out);
+        }
+    }
+
+    private Entry add(NavType type, String ident, String name, double lat, double lon) {
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new IllegalArgumentException("Position out of range: " + lat + ", " + lon);
+        }
+        Entry entry = new Entry(type, checkIdent(ident), name.trim(),
+                (int) Math.round(lat / NavDatabase.MICRODEGREES), (int) Math.round(lon / NavDatabase.MICRODEGREES));
+        entries.add(entry);
+        return entry;
+    }
+
+    private static String checkIdent(String ident) {
+        String checked = ident.trim().toUpperCase(Locale.ROOT);
+        boolean ascii = checked.chars().allMatch(c -> c < 128);
+        if (checked.isEmpty() || checked.length() > NavDatabase.IDENT_BYTES || !ascii) {
+            throw new IllegalArgumentException("Idents are 1 to " + NavDatabase.IDENT_BYTES + " ASCII characters: "
+                    + ident);
+        }
+        return checked;
+    }
+
+    private static int checkShort(int value, String what) {
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(what + " out of range: " + value);
+        }
+        return value;
+    }
+
+    private static int checkLength(int feet) {
+        if (feet < 0 || feet > 0xffff) {
+            throw new IllegalArgumentException("Runway dimension out of range: " + feet);
+        }
+        return feet;
+    }
+
+    private static double number(String field) {
+        return field.trim().isEmpty() ? 0 : Double.parseDouble(field.trim());
+    }
+
+    private static boolean isHardSurface(String surface) {
+        String upper = surface.trim().toUpperCase(Locale.ROOT);
+        for (String hard : HARD_SURFACES) {
+            if (upper.startsWith(hard)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static NavType navaidType(String type) {
+        String upper = type.trim().toUpperCase(Locale.ROOT);
+        if (upper.startsWith("VOR")) {
+            return NavType.VOR;
+        }
+        if (upper.startsWith("NDB")) {
+            return NavType.NDB;
+        }
+        if (upper.equals("DME")) {
+            return NavType.DME;
+        }
+        throw new IllegalArgumentException("Unknown navaid type " + type);
+    }
+
+    private static void writePadded(DataOutputStream out, String ident) throws IOException {
+        for (int i = 0; i < NavDatabase.IDENT_BYTES; i++) {
+            out.writeByte(i < ident.length() ? ident.charAt(i) : 0);
+        }
+    }
+
+    /**
+     * Splits a CSV line, with fields in double quotes where they hold commas or quotes, which are doubled.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: NavDatabaseCompiler <output> <airport|runway|navaid|waypoint>=<csv file>...");
+            System.exit(1);
+        }
+
+        NavDatabaseCompiler compiler = new NavDatabaseCompiler();
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator < 0) {
+                System.err.println("Sources are given as type=file: " + args[i]);
+                System.exit(1);
+            }
+            compiler.addSource(args[i].substring(0, separator), Paths.get(args[i].substring(separator + 1)));
+        }
+        compiler.write(Paths.get(args[0]));
+        System.out.println(compiler.entries.size() + " entries");
+    }
+
+    private static class Entry
+    {
+
+        final NavType type;
+        final String ident;
+        final String name;
+        final int lat;
+        final int lon;
+        final List<Runway> runways = new ArrayList<>();
+        int elevation;
+        int frequency;
+        int longestRunway;
+        int cell;
+        int index;
+        int firstRunway;
+        int nameOffset;
+
+        Entry(NavType type, String ident, String name, int lat, int lon) {
+            this.type = type;
+            this.ident = ident;
+            this.name = name;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    private static class Runway
+    {
+
+        final String designator;
+        final int length;
+        final int width;
+        final int heading;
+        final boolean hardSurface;
+
+        Runway(String designator, int length, int width, int heading, boolean hardSurface) {
+            this.designator = designator;
+            this.length = length;
+            this.width = width;
+            this.heading = heading;
+            this.hardSurface = hardSurface;
+        }
+    }
+}
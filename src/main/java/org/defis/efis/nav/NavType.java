@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.nav;
+
+/**
+ * Kinds of entries in the {@link NavDatabase}. Queries select kinds by a mask of {@link #mask()} bits.
+ *
+ * @author Matthew Tyler
+ */
+public enum NavType
+{
+    AIRPORT, VOR, NDB, DME, WAYPOINT;
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    private static final NavType[] TYPES = values();
+
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Like values()[ordinal], without copying the array.
+     *
+     * @param ordinal
+     * @return
+     */
+    static NavType of(int ordinal) {
+        return TYPES[ordinal];
+    }
+}
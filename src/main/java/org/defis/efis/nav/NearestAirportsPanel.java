@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.nav;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.defis.efis.gauges.Fonts;
+
+/**
+ * The nearest airports to the aircraft, with their distance, bearing and longest runway, refreshed every second.
+ *
+ * The query runs on the FX thread; it reads a few cells of the memory-mapped database and allocates nothing. Rows are
+ * only given new text when the airport, or its rounded distance or bearing, changed.
+ *
+ * @author Matthew Tyler
+ */
+public class NearestAirportsPanel extends VBox
+{
+
+    private static final long REFRESH_MILLIS = 1000;
+
+    private final DoubleProperty latitude = new SimpleDoubleProperty();
+    private final DoubleProperty longitude = new SimpleDoubleProperty();
+
+    private final NavDatabase database;
+    private final Label[] rows;
+    private final int[] airports;
+    private final double[] distances;
+
+    /**
+     * The airport, distance and bearing each row shows, to skip rows that did not change.
+     */
+    private final int[] shownAirports;
+    private final long[] shownDistances;
+    private final long[] shownBearings;
+    private final Timeline timeline;
+
+    /**
+     * Shortest runway an airport needs to be listed, in feet.
+     */
+    @Getter
+    @Setter
+    private int minRunwayLength;
+
+    public NearestAirportsPanel(NavDatabase database, int count) {
+        this.database = database;
+        rows = new Label[count];
+        airports = new int[count];
+        distances = new double[count];
+        shownAirports = new int[count];
+        shownDistances = new long[count];
+        shownBearings = new long[count];
+
+        Label title = new Label("NEAREST");
+        title.setTextFill(Color.CYAN);
+        title.setFont(Fonts.size(12));
+        getChildren().add(title);
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Label();
+            rows[i].setTextFill(Color.WHITE);
+            rows[i].setFont(Fonts.size(12));
+            shownAirports[i] = -1;
+        }
+        getChildren().addAll(rows);
+
+        timeline = new Timeline(new KeyFrame(Duration.millis(REFRESH_MILLIS), e -> refresh()));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    public DoubleProperty latitudeProperty() {
+        return latitude;
+    }
+
+    public DoubleProperty longitudeProperty() {
+        return longitude;
+    }
+
+    public void start() {
+        refresh();
+        timeline.play();
+    }
+
+    public void stop() {
+        timeline.stop();
+    }
+
+    /**
+     * Queries the nearest airports and updates the rows that changed.
+     */
+    public void refresh() {
+        double lat = latitude.get();
+        double lon = longitude.get();
+        int found = database.nearest(lat, lon, NavType.AIRPORT.mask(), minRunwayLength, airports, distances);
+
+        for (int i = 0; i < rows.length; i++) {
+            if (i >= found) {
+                if (shownAirports[i] != -1) {
+                    shownAirports[i] = -1;
+                    rows[i].setText("");
+                }
+                continue;
+            }
+
+            int airport = airports[i];
+            long distance = Math.round(distances[i] * 10);
+            long bearing = Math.round(NavDatabase.bearing(lat, lon, database.latitude(airport),
+                    database.longitude(airport))) % 360;
+            if (airport == shownAirports[i] && distance == shownDistances[i] && bearing == shownBearings[i]) {
+                continue;
+            }
+            shownAirports[i] = airport;
+            shownDistances[i] = distance;
+            shownBearings[i] = bearing;
+            rows[i].setText(String.format("%-7s %5.1f nm %03d\u00b0 %5d ft", database.ident(airport), distance / 10.0,
+                    bearing, database.longestRunway(airport)));
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.sync;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableDoubleValue;
+import lombok.Getter;
+import org.defis.efis.Registry;
+
+import static org.defis.efis.sync.SyncProtocol.DELTA_ENTRY;
+import static org.defis.efis.sync.SyncProtocol.HEADER;
+import static org.defis.efis.sync.SyncProtocol.MAX_DATAGRAM;
+
+/**
+ * Shares registry channels with the other display units on a UDP multicast group, and merges what they share under
+ * their own prefix: the roll of unit 2 reads as {@code /efis[2]/orientation/roll-deg} on every other unit, next to
+ * {@code /efis[2]/sync/online} and {@code /efis[2]/sync/lost}.
+ *
+ * A change to a shared channel wakes the sending thread, which sends everything that changed since its last datagram
+ * as one delta, so a unit is never more than a datagram behind its peer however fast the telemetry comes. Every
+ * second it sends a keyframe of every shared channel with its path instead, which is how a unit that starts late, or
+ * lost a delta, catches up. Datagrams are numbered; a gap in the numbers is counted as lost packets, and a unit not
+ * heard from for three seconds goes offline. Encoding and decoding use reused buffers and arrays; received values are
+ * handed to the FX thread the way telemetry is, with only one handoff queued at a time.
+ *
+ * Every unit needs its own number. Several units can run on one host, all joined to the group on the loopback
+ * interface.
+ *
+ * @author Matthew Tyler
+ */
+public class PeerSync implements Closeable
+{
+
+    public static final String DEFAULT_GROUP = "239.255.77.77";
+    public static final int DEFAULT_PORT = 47700;
+
+    static final Charset PATH_CHARSET = StandardCharsets.UTF_8;
+
+    private static final long KEYFRAME_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PEER_TIMEOUT_NANOS = 3 * KEYFRAME_NANOS;
+    private static final int MAX_UNITS = 256;
+
+    @Getter
+    private final int unit;
+    private final int session = ThreadLocalRandom.current().nextInt();
+    private final Registry registry;
+    private final InetSocketAddress group;
+    private final DatagramChannel channel;
+    private volatile boolean closed;
+
+    /**
+     * The shared channels, by channel id.
+     */
+    private final String[] paths;
+    private final byte[][] pathBytes;
+    private final ObservableDoubleValue[] sources;
+
+    /**
+     * Latest local values, and which changed since the last datagram; guarded by itself.
+     */
+    private final double[] local;
+    private final boolean[] localDirty;
+    private final int[] localDirtyIds;
+    private int localDirtyCount;
+
+    private Thread sender;
+    private Thread receiver;
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+
+    // Sending thread
+    private final ByteBuffer out = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final int[] sendIds;
+    private final double[] sendValues;
+    private int sequence;
+
+    // Receiving thread
+    private final ByteBuffer in = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final AtomicReferenceArray<RemoteUnit> remotes = new AtomicReferenceArray<>(MAX_UNITS);
+    private boolean conflictLogged;
+
+    private final AtomicBoolean applyPending = new AtomicBoolean();
+    private final Runnable applyRemote = this::applyRemote;
+
+    @Getter
+    private volatile long sentDatagrams;
+
+    @Getter
+    private volatile long keyframes;
+
+    /**
+     * Datagrams on the group that were not ours to read.
+     */
+    @Getter
+    private volatile long rejected;
+
+    /**
+     * Joins the group. Nothing is sent or received until {@link #start()}.
+     *
+     * @param unit this unit's number, 1 to 255
+     * @param registry
+     * @param shared paths of the channels to share
+     * @param group multicast group and port
+     * @param networkInterface to join the group on
+     * @throws IOException
+     */
+    public PeerSync(int unit, Registry registry, List<String> shared, InetSocketAddress group,
+            NetworkInterface networkInterface) throws IOException {
+        if (unit < 1 || unit >= MAX_UNITS) {
+            throw new IllegalArgumentException("Unit must be from 1 to " + (MAX_UNITS - 1) + ": " + unit);
+        }
+        if (shared.size() > SyncProtocol.MAX_CHANNELS) {
+            throw new IllegalArgumentException("Too many shared channels: " + shared.size());
+        }
+        this.unit = unit;
+        this.registry = registry;
+        this.group = group;
+
+        int count = shared.size();
+        paths = shared.toArray(new String[0]);
+        pathBytes = new byte[count][];
+        sources = new ObservableDoubleValue[count];
+        for (int id = 0; id < count; id++) {
+            pathBytes[id] = paths[id].getBytes(PATH_CHARSET);
+            if (pathBytes[id].length > SyncProtocol.MAX_PATH) {
+                throw new IllegalArgumentException("Path too long to share: " + paths[id]);
+            }
+            sources[id] = registry.subscribe(paths[id]);
+        }
+        local = new double[count];
+        localDirty = new boolean[count];
+        localDirtyIds = new int[count];
+        sendIds = new int[count];
+        sendValues = new double[count];
+
+        channel = DatagramChannel.open(StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(group.getPort()))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface)
+                .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true)
+                .setOption(StandardSocketOptions.IP_MULTICAST_TTL, 1);
+        channel.join(group.getAddress(), networkInterface);
+    }
+
+    /**
+     * Reads a list of channels to share: one path per line, with blank lines and lines starting with # left out.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static List<String> readChannels(InputStream in) throws IOException {
+        List<String> channels = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, PATH_CHARSET));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                channels.add(line);
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Returns the prefix another unit's channels are merged under.
+     *
+     * @param unit
+     * @return
+     */
+    public static String prefix(int unit) {
+        return "/efis[" + unit + "]";
+    }
+
+    /**
+     * Starts listening to the shared channels and the other units. Call on the FX thread.
+     */
+    public void start() {
+        for (int id = 0; id < sources.length; id++) {
+            int changed = id;
+            local[id] = sources[id].get();
+            sources[id].addListener(l -> localChanged(changed));
+        }
+
+        sender = new Thread(this::send, "defis-sync-send");
+        sender.setDaemon(true);
+        receiver = new Thread(this::receive, "defis-sync-receive");
+        receiver.setDaemon(true);
+        sender.start();
+        receiver.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        if (sender != null) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    /**
+     * @param unit
+     * @return whether the unit was heard from in the last three seconds
+     */
+    public boolean isOnline(int unit) {
+        RemoteUnit remote = remotes.get(unit);
+        return remote != null && remote.isOnline();
+    }
+
+    /**
+     * @param unit
+     * @return datagrams from the unit that never came, judging by the gaps in their numbers
+     */
+    public long getLost(int unit) {
+        RemoteUnit remote = remotes.get(unit);
+        return remote == null ? 0 : remote.getLost();
+    }
+
+    /**
+     * @param unit
+     * @return datagrams received from the unit, in order
+     */
+    public long getReceived(int unit) {
+        RemoteUnit remote = remotes.get(unit);
+        return remote == null ? 0 : remote.getReceived();
+    }
+
+    /**
+     * A shared channel changed, on the FX thread.
+     */
+    private void localChanged(int id) {
+        double value = sources[id].get();
+        synchronized (local) {
+            local[id] = value;
+            if (!localDirty[id]) {
+                localDirty[id] = true;
+                localDirtyIds[localDirtyCount++] = id;
+            }
+        }
+        if (wakePending.compareAndSet(false, true)) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    private void send() {
+        long nextKeyframe = System.nanoTime();
+        while (!closed) {
+            wakePending.set(false);
+            long now = System.nanoTime();
+            try {
+                if (now - nextKeyframe >= 0) {
+                    sendKeyframe();
+                    nextKeyframe = now + KEYFRAME_NANOS;
+                } else {
+                    sendDeltas();
+                }
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                Logger.getLogger(PeerSync.class.getName()).log(Level.WARNING, "Sync send: {0}", ex.getMessage());
+            }
+            expireUnits(now);
+            LockSupport.parkNanos(this, nextKeyframe - System.nanoTime());
+        }
+    }
+
+    /**
+     * Sends every shared channel with its path, in as many datagrams as it takes.
+     */
+    private void sendKeyframe() throws IOException {
+        int count = paths.length;
+        synchronized (local) {
+            System.arraycopy(local, 0, sendValues, 0, count);
+            for (int k = 0; k < localDirtyCount; k++) {
+                localDirty[localDirtyIds[k]] = false;
+            }
+            localDirtyCount = 0;
+        }
+
+        begin(SyncProtocol.KEYFRAME);
+        int entries = 0;
+        for (int id = 0; id < count; id++) {
+            byte[] path = pathBytes[id];
+            if (out.remaining() < DELTA_ENTRY + 1 + path.length) {
+                finish(entries);
+                begin(SyncProtocol.KEYFRAME);
+                entries = 0;
+            }
+            out.putShort((short) id).putDouble(sendValues[id]).put((byte) path.length).put(path);
+            entries++;
+        }
+        finish(entries);
+        keyframes++;
+    }
+
+    /**
+     * Sends the channels that changed since the last datagram.
+     */
+    private void sendDeltas() throws IOException {
+        int count;
+        synchronized (local) {
+            count = localDirtyCount;
+            for (int k = 0; k < count; k++) {
+                int id = localDirtyIds[k];
+                sendIds[k] = id;
+                sendValues[k] = local[id];
+                localDirty[id] = false;
+            }
+            localDirtyCount = 0;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        begin(SyncProtocol.DELTA);
+        int entries = 0;
+        for (int k = 0; k < count; k++) {
+            if (out.remaining() < DELTA_ENTRY) {
+                finish(entries);
+                begin(SyncProtocol.DELTA);
+                entries = 0;
+            }
+            out.putShort((short) sendIds[k]).putDouble(sendValues[k]);
+            entries++;
+        }
+        finish(entries);
+    }
+
+    private void begin(byte kind) {
+        out.clear();
+        out.putShort(SyncProtocol.MAGIC).put(SyncProtocol.VERSION).put(kind).put((byte) unit).put((byte) 0)
+                .putShort((short) 0).putInt(session).putInt(sequence);
+    }
+
+    private void finish(int entries) throws IOException {
+        out.putShort(SyncProtocol.OFFSET_COUNT, (short) entries);
+        out.flip();
+        channel.send(out, group);
+        sequence++;
+        sentDatagrams++;
+    }
+
+    private void receive() {
+        while (!closed) {
+            in.clear();
+            try {
+                channel.receive(in);
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                Logger.getLogger(PeerSync.class.getName()).log(Level.WARNING, "Sync receive: {0}", ex.getMessage());
+                continue;
+            }
+            in.flip();
+
+            if (in.limit() < HEADER || in.getShort(SyncProtocol.OFFSET_MAGIC) != SyncProtocol.MAGIC
+                    || in.get(SyncProtocol.OFFSET_VERSION) != SyncProtocol.VERSION) {
+                rejected++;
+                continue;
+            }
+            int from = in.get(SyncProtocol.OFFSET_UNIT) & 0xff;
+            if (from == unit) {
+                // Our own datagrams come back when the group is looped back, but not from another session
+                if (in.getInt(SyncProtocol.OFFSET_SESSION) != session && !conflictLogged) {
+                    conflictLogged = true;
+                    Logger.getLogger(PeerSync.class.getName()).log(Level.WARNING,
+                            "Another unit on the sync group is also numbered {0}", unit);
+                }
+                continue;
+            }
+            if (from == 0) {
+                rejected++;
+                continue;
+            }
+
+            RemoteUnit remote = remotes.get(from);
+            if (remote == null) {
+                remote = new RemoteUnit(from);
+                remotes.set(from, remote);
+            }
+            if (remote.receive(in, System.nanoTime())) {
+                handOff();
+            }
+        }
+    }
+
+    private void expireUnits(long now) {
+        for (int from = 1; from < MAX_UNITS; from++) {
+            RemoteUnit remote = remotes.get(from);
+            if (remote != null && remote.expire(now, PEER_TIMEOUT_NANOS)) {
+                handOff();
+            }
+        }
+    }
+
+    private void handOff() {
+        if (applyPending.compareAndSet(false, true)) {
+            Platform.runLater(applyRemote);
+        }
+    }
+
+    private void applyRemote() {
+        applyPending.set(false);
+        for (int from = 1; from < MAX_UNITS; from++) {
+            RemoteUnit remote = remotes.get(from);
+            if (remote != null) {
+                remote.apply(registry);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.sync;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import org.defis.efis.Registry;
+
+import static org.defis.efis.sync.SyncProtocol.DELTA_ENTRY;
+import static org.defis.efis.sync.SyncProtocol.HEADER;
+
+/**
+ * What one other display unit shares, as heard from its datagrams.
+ *
+ * The receiving thread decodes datagrams into values by the sender's channel ids, learning the path of each id from
+ * keyframes, and notes which ids changed. The FX thread then sets the changed channels, published under the unit's
+ * prefix the first time they are seen. A keyframe only creates a path string when the path of an id changed, so
+ * steady traffic creates no objects.
+ *
+ * @author Matthew Tyler
+ */
+final class RemoteUnit
+{
+
+    private final String prefix;
+
+    // Receiving side, under the lock
+    private boolean started;
+    private int session;
+    private int lastSequence;
+    private String[] paths = new String[0];
+    private byte[][] pathBytes = new byte[0][];
+    private double[] values = new double[0];
+    private boolean[] dirty = new boolean[0];
+    private int[] dirtyIds = new int[0];
+    private int dirtyCount;
+    private boolean online;
+    private long lastHeard;
+    private long received;
+    private long lost;
+
+    // FX side
+    private int[] applyIds = new int[0];
+    private double[] applyValues = new double[0];
+    private String[] applyPaths = new String[0];
+    private DoubleProperty[] properties = new DoubleProperty[0];
+    private String[] propertyPaths = new String[0];
+    private final Map<String, DoubleProperty> byPath = new HashMap<>();
+    private final DoubleProperty onlineChannel = new SimpleDoubleProperty();
+    private final DoubleProperty lostChannel = new SimpleDoubleProperty();
+    private boolean published;
+
+    RemoteUnit(int unit) {
+        prefix = PeerSync.prefix(unit);
+    }
+
+    /**
+     * Takes in a datagram from this unit, its header already checked, and returns whether anything changed.
+     */
+    synchronized boolean receive(ByteBuffer packet, long now) {
+        int packetSession = packet.getInt(SyncProtocol.OFFSET_SESSION);
+        int sequence = packet.getInt(SyncProtocol.OFFSET_SEQUENCE);
+        if (!started || packetSession != session) {
+            // First heard, or restarted: its channel ids may mean other paths now
+            started = true;
+            session = packetSession;
+            Arrays.fill(paths, null);
+            Arrays.fill(pathBytes, null);
+            Arrays.fill(dirty, false);
+            dirtyCount = 0;
+        } else {
+            int gap = sequence - lastSequence - 1;
+            if (gap < 0) {
+                // Late or duplicated; what it carried is already out of date
+                return false;
+            }
+            lost += gap;
+        }
+        lastSequence = sequence;
+        lastHeard = now;
+        received++;
+
+        boolean changed = !online;
+        online = true;
+        int count = packet.getShort(SyncProtocol.OFFSET_COUNT) & 0xffff;
+        if (packet.get(SyncProtocol.OFFSET_KIND) == SyncProtocol.KEYFRAME) {
+            changed |= keyframe(packet, count);
+        } else {
+            changed |= deltas(packet, count);
+        }
+        return changed;
+    }
+
+    private boolean deltas(ByteBuffer packet, int count) {
+        int end = packet.limit();
+        int at = HEADER;
+        for (int e = 0; e < count && at + DELTA_ENTRY <= end; e++, at += DELTA_ENTRY) {
+            int id = packet.getShort(at) & 0xffff;
+            if (id >= paths.length || paths[id] == null) {
+                // Not learned yet; the next keyframe brings it
+                continue;
+            }
+            set(id, packet.getDouble(at + 2));
+        }
+        return dirtyCount > 0;
+    }
+
+    private boolean keyframe(ByteBuffer packet, int count) {
+        int end = packet.limit();
+        int at = HEADER;
+        for (int e = 0; e < count && at + DELTA_ENTRY + 1 <= end; e++) {
+            int id = packet.getShort(at) & 0xffff;
+            double value = packet.getDouble(at + 2);
+            int length = packet.get(at + DELTA_ENTRY) & 0xff;
+            int path = at + DELTA_ENTRY + 1;
+            if (path + length > end) {
+                break;
+            }
+            at = path + length;
+
+            ensureCapacity(id);
+            if (!samePath(pathBytes[id], packet, path, length)) {
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = packet.get(path + i);
+                }
+                pathBytes[id] = bytes;
+                paths[id] = new String(bytes, PeerSync.PATH_CHARSET);
+            }
+            set(id, value);
+        }
+        return dirtyCount > 0;
+    }
+
+    private static boolean samePath(byte[] known, ByteBuffer packet, int at, int length) {
+        if (known == null || known.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (known[i] != packet.get(at + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void set(int id, double value) {
+        values[id] = value;
+        if (!dirty[id]) {
+            dirty[id] = true;
+            dirtyIds[dirtyCount++] = id;
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < paths.length) {
+            return;
+        }
+        int size = Math.min(SyncProtocol.MAX_CHANNELS, Math.max(id + 1, paths.length * 2));
+        paths = Arrays.copyOf(paths, size);
+        pathBytes = Arrays.copyOf(pathBytes, size);
+        values = Arrays.copyOf(values, size);
+        dirty = Arrays.copyOf(dirty, size);
+        dirtyIds = Arrays.copyOf(dirtyIds, size);
+    }
+
+    /**
+     * Marks the unit offline when nothing was heard from it for the timeout, and returns whether it just went.
+     */
+    synchronized boolean expire(long now, long timeoutNanos) {
+        if (online && now - lastHeard > timeoutNanos) {
+            online = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the channels that changed since the last call, on the FX thread.
+     */
+    void apply(Registry registry) {
+        int count;
+        boolean isOnline;
+        long lostNow;
+        synchronized (this) {
+            count = dirtyCount;
+            if (applyIds.length < count) {
+                applyIds = new int[dirtyIds.length];
+                applyValues = new double[dirtyIds.length];
+                applyPaths = new String[dirtyIds.length];
+            }
+            for (int k = 0; k < count; k++) {
+                int id = dirtyIds[k];
+                applyIds[k] = id;
+                applyValues[k] = values[id];
+                applyPaths[k] = paths[id];
+                dirty[id] = false;
+            }
+            dirtyCount = 0;
+            isOnline = online;
+            lostNow = lost;
+        }
+
+        if (!published) {
+            registry.publish(prefix + "/sync/online", onlineChannel);
+            registry.publish(prefix + "/sync/lost", lostChannel);
+            published = true;
+        }
+        for (int k = 0; k < count; k++) {
+            int id = applyIds[k];
+            if (id >= properties.length) {
+                properties = Arrays.copyOf(properties, Math.max(id + 1, properties.length * 2));
+                propertyPaths = Arrays.copyOf(propertyPaths, properties.length);
+            }
+            if (propertyPaths[id] != applyPaths[k]) {
+                properties[id] = byPath.computeIfAbsent(applyPaths[k], path -> {
+                    DoubleProperty property = new SimpleDoubleProperty();
+                    registry.publish(prefix + path, property);
+                    return property;
+                });
+                propertyPaths[id] = applyPaths[k];
+            }
+            properties[id].set(applyValues[k]);
+        }
+        onlineChannel.set(isOnline ? 1 : 0);
+        lostChannel.set(lostNow);
+    }
+
+    synchronized long getReceived() {
+        return received;
+    }
+
+    synchronized long getLost() {
+        return lost;
+    }
+
+    synchronized boolean isOnline() {
+        return online;
+    }
+}
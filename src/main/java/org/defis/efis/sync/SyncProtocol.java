@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.sync;
+
+/**
+ * The datagrams display units exchange to share channels. All fields are big endian:
+ *
+ * <pre>
+ * magic u16 | version u8 | kind u8 | unit u8 | reserved u8 | count u16 | session u32 | sequence u32 | entries
+ * </pre>
+ *
+ * A delta entry is a channel id (u16) and its value (f64). A keyframe entry adds the channel's path, a length (u8)
+ * then UTF-8 bytes, so a unit that joins late or lost packets learns every channel from the next keyframe. Channel
+ * ids are the sender's own; deltas for an id not yet learned from a keyframe are dropped.
+ *
+ * The sequence counts every datagram a unit sends in its session; a unit picks a new session each time it starts, so
+ * its peers start counting again instead of taking a restart for lost packets.
+ *
+ * @author Matthew Tyler
+ */
+final class SyncProtocol
+{
+
+    static final short MAGIC = (short) 0xDEF5;
+    static final byte VERSION = 1;
+
+    static final byte DELTA = 0;
+    static final byte KEYFRAME = 1;
+
+    static final int HEADER = 16;
+    static final int DELTA_ENTRY = 10;
+    static final int MAX_PATH = 255;
+
+    /**
+     * Small enough not to be fragmented on Ethernet.
+     */
+    static final int MAX_DATAGRAM = 1400;
+
+    static final int MAX_CHANNELS = 1 << 16;
+
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 2;
+    static final int OFFSET_KIND = 3;
+    static final int OFFSET_UNIT = 4;
+    static final int OFFSET_COUNT = 6;
+    static final int OFFSET_SESSION = 8;
+    static final int OFFSET_SEQUENCE = 12;
+
+    private SyncProtocol() {
+    }
+}
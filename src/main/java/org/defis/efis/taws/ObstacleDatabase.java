@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.taws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+/**
+ * A read-only database of obstacles (towers, masts, wind turbines), memory-mapped and indexed by a regular grid of
+ * cells over the area it covers, so a query only reads the obstacles of the few cells around a position.
+ *
+ * The obstacles are sorted by cell, row by row, and a table holds where each cell starts, so the obstacles of a run of
+ * cells in one row are contiguous. The file is laid out like this, big-endian:
+ *
+ * <pre>
+ * int    magic, "DOBS"
+ * short  version, 1
+ * short  cells per degree
+ * int    south edge, in whole degrees
+ * int    west edge, in whole degrees
+ * int    rows of cells, from the south edge north
+ * int    columns of cells, from the west edge east
+ * int    obstacles
+ * int[]  rows x columns + 1 indexes of the first obstacle of each cell, the last one the number of obstacles
+ * per obstacle: int latitude and int longitude in millionths of a degree, short top in meters above sea level
+ * </pre>
+ *
+ * Reads are absolute and safe from any thread.
+ *
+ * @author Matthew Tyler
+ */
+public class ObstacleDatabase implements Closeable
+{
+
+    static final int MAGIC = 0x444f4253;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 28;
+    static final int OBSTACLE_BYTES = 10;
+    static final double MICRODEGREES = 1e-6;
+
+    private static final double METERS_PER_DEGREE = 6_371_000 * Math.PI / 180;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final int cellsPerDegree;
+    private final int south;
+    private final int west;
+    private final int rows;
+    private final int columns;
+    @Getter
+    private final int obstacles;
+    private final int obstaclesStart;
+
+    public ObstacleDatabase(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException(path + " is not an obstacle database");
+            }
+            cellsPerDegree = buffer.getShort(6);
+            south = buffer.getInt(8);
+            west = buffer.getInt(12);
+            rows = buffer.getInt(16);
+            columns = buffer.getInt(20);
+            obstacles = buffer.getInt(24);
+            obstaclesStart = HEADER_BYTES + 4 * (rows * columns + 1);
+            if (buffer.capacity() < obstaclesStart + (long) obstacles * OBSTACLE_BYTES) {
+                throw new IOException(path + " is truncated");
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the top of the highest obstacle within a distance of a position. Allocates nothing.
+     *
+     * @param lat
+     * @param lon
+     * @param radius in meters
+     * @return the top in meters above sea level, or negative infinity when there is no obstacle that close
+     */
+    public double highestTop(double lat, double lon, double radius) {
+        double highest = Double.NEGATIVE_INFINITY;
+        double metersEast = METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        double latRadius = radius / METERS_PER_DEGREE;
+        double lonRadius = radius / metersEast;
+
+        int firstRow = Math.max(0, (int) Math.floor((lat - latRadius - south) * cellsPerDegree));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((lat + latRadius - south) * cellsPerDegree));
+        int firstColumn = Math.max(0, (int) Math.floor((lon - lonRadius - west) * cellsPerDegree));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor((lon + lonRadius - west) * cellsPerDegree));
+        if (firstColumn > lastColumn) {
+            return highest;
+        }
+
+        double radiusSquared = radius * radius;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int start = cellStart(row * columns + firstColumn);
+            int end = cellStart(row * columns + lastColumn + 1);
+            for (int obstacle = start; obstacle < end; obstacle++) {
+                int offset = obstaclesStart + obstacle * OBSTACLE_BYTES;
+                double north = (buffer.getInt(offset) * MICRODEGREES - lat) * METERS_PER_DEGREE;
+                double east = (buffer.getInt(offset + 4) * MICRODEGREES - lon) * metersEast;
+                if (north * north + east * east <= radiusSquared) {
+                    highest = Math.max(highest, buffer.getShort(offset + 8));
+                }
+            }
+        }
+        return highest;
+    }
+
+    private int cellStart(int cell) {
+        return buffer.getInt(HEADER_BYTES + 4 * cell);
+    }
+
+    /**
+     * Unmapping is left to the garbage collector; the mapping stays valid until the database is unreachable.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
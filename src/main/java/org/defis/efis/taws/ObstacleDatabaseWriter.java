@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.taws;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds an {@link ObstacleDatabase} file, from CSV files or from obstacles added by the caller.
+ *
+ * CSV files have one obstacle per line, as latitude, longitude and the height of its top above sea level in feet, the
+ * unit obstacle data is published in. Lines starting with # are comments.
+ *
+ * <pre>
+ * java -cp defis.jar org.defis.efis.taws.ObstacleDatabaseWriter obstacles.dobs 60 wa.csv or.csv ...
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class ObstacleDatabaseWriter
+{
+
+    private static final double METERS_PER_FOOT = 0.3048;
+
+    private final int cellsPerDegree;
+    private final List<int[]> obstacles = new ArrayList<>();
+
+    /**
+     * @param cellsPerDegree of the index; cells should be a few times wider than the radius of the queries
+     */
+    public ObstacleDatabaseWriter(int cellsPerDegree) {
+        if (cellsPerDegree < 1 || cellsPerDegree > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Cells per degree out of range: " + cellsPerDegree);
+        }
+        this.cellsPerDegree = cellsPerDegree;
+    }
+
+    /**
+     * Adds an obstacle.
+     *
+     * @param lat
+     * @param lon
+     * @param top in meters above sea level
+     */
+    public void add(double lat, double lon, int top) {
+        if (top < Short.MIN_VALUE || top > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Obstacle top out of range: " + top);
+        }
+        obstacles.add(new int[]{
+            (int) Math.round(lat / ObstacleDatabase.MICRODEGREES),
+            (int) Math.round(lon / ObstacleDatabase.MICRODEGREES),
+            top
+        });
+    }
+
+    /**
+     * Adds the obstacles of a CSV file. Tops are rounded up to the next meter.
+     *
+     * @param csv
+     * @throws IOException
+     */
+    public void addCsv(Path csv) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            int number = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    add(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()),
+                            (int) Math.ceil(Double.parseDouble(fields[2].trim()) * METERS_PER_FOOT));
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+                    throw new IOException(csv + ":" + number + ": not latitude, longitude, top", ex);
+                }
+            }
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        int south = Integer.MAX_VALUE;
+        int west = Integer.MAX_VALUE;
+        int north = Integer.MIN_VALUE;
+        int east = Integer.MIN_VALUE;
+        for (int[] obstacle : obstacles) {
+            south = Math.min(south, wholeDegrees(obstacle[0]));
+            west = Math.min(west, wholeDegrees(obstacle[1]));
+            north = Math.max(north, wholeDegrees(obstacle[0]));
+            east = Math.max(east, wholeDegrees(obstacle[1]));
+        }
+        if (obstacles.isEmpty()) {
+            south = west = 0;
+            north = east = -1;
+        }
+        int rows = (north - south + 1) * cellsPerDegree;
+        int columns = (east - west + 1) * cellsPerDegree;
+
+        int[] cells = new int[obstacles.size()];
+        for (int i = 0; i < cells.length; i++) {
+            int[] obstacle = obstacles.get(i);
+            int row = (int) Math.floor((obstacle[0] * ObstacleDatabase.MICRODEGREES - south) * cellsPerDegree);
+            int column = (int) Math.floor((obstacle[1] * ObstacleDatabase.MICRODEGREES - west) * cellsPerDegree);
+            cells[i] = Math.min(rows - 1, row) * columns + Math.min(columns - 1, column);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < cells.length; i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> cells[i]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(ObstacleDatabase.MAGIC);
+            out.writeShort(ObstacleDatabase.VERSION);
+            out.writeShort(cellsPerDegree);
+            out.writeInt(south);
+            out.writeInt(west);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(obstacles.size());
+
+            int next = 0;
+            for (int cell = 0; cell <= rows * columns; cell++) {
+                while (next < order.size() && cells[order.get(next)] < cell) {
+                    next++;
+                }
+                out.writeInt(next);
+            }
+            for (int i : order) {
+                int[] obstacle = obstacles.get(i);
+                out.writeInt(obstacle[0]);
+                out.writeInt(obstacle[1]);
+                out.writeShort(obstacle[2]);
+            }
+        }
+    }
+
+    private static int wholeDegrees(int microdegrees) {
+        return (int) Math.floor(microdegrees * ObstacleDatabase.MICRODEGREES);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: ObstacleDatabaseWriter <output> <cells per degree> <csv files...>");
+            System.exit(1);
+        }
+
+        ObstacleDatabaseWriter writer = new ObstacleDatabaseWriter(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            writer.addCsv(Paths.get(args[i]));
+        }
+        writer.write(Paths.get(args[0]));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.taws;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.defis.efis.Registry;
+import org.defis.efis.terrain.TerrainDatabase;
+
+/**
+ * Forward looking terrain and obstacle awareness. Several times a second the flight path is projected ahead along the
+ * track at the current ground speed and vertical speed, and compared with the terrain and the obstacles under it.
+ * When the projected path comes closer than the required clearance to either within a minute the caution is raised,
+ * within half a minute the warning.
+ *
+ * The track is taken from the true heading, so wind is not accounted for. There is no runway database, so an approach
+ * raises the caution on short final; below the minimum ground speed, on the ground, nothing is assessed.
+ *
+ * The outputs are numeric so they can be published as Registry channels: caution and warning are 1 when raised and 0
+ * otherwise, and the clearance is the lowest projected clearance in feet, or NaN when there is nothing to assess.
+ *
+ * @author Matthew Tyler
+ */
+public class TerrainAwareness
+{
+
+    public static final String CAUTION_CHANNEL = "/taws/caution";
+    public static final String WARNING_CHANNEL = "/taws/warning";
+    public static final String CLEARANCE_CHANNEL = "/taws/clearance-ft";
+
+    public static final int CLEAR = 0;
+    public static final int CAUTION = 1;
+    public static final int WARNING = 2;
+
+    public static final double DEFAULT_REQUIRED_CLEARANCE = 300;
+
+    private static final long PERIOD_MILLIS = 250;
+    private static final double CAUTION_SECONDS = 60;
+    private static final double WARNING_SECONDS = 30;
+    private static final double STEP_SECONDS = 1;
+    private static final double MIN_GROUND_SPEED = 40;
+
+    /**
+     * Distance from the projected path within which obstacles count, in meters.
+     */
+    private static final double OBSTACLE_RADIUS = 300;
+
+    private static final double METERS_PER_DEGREE = 6_371_000 * Math.PI / 180;
+    private static final double METERS_PER_FOOT = 0.3048;
+    private static final double METERS_PER_SECOND_PER_KNOT = 1852 / 3600.0;
+
+    private final DoubleProperty latitude = new SimpleDoubleProperty();
+    private final DoubleProperty longitude = new SimpleDoubleProperty();
+
+    /**
+     * Altitude above sea level, in feet.
+     */
+    private final DoubleProperty altitude = new SimpleDoubleProperty();
+
+    /**
+     * True track over the ground, in degrees.
+     */
+    private final DoubleProperty track = new SimpleDoubleProperty();
+
+    /**
+     * Ground speed, in knots.
+     */
+    private final DoubleProperty groundSpeed = new SimpleDoubleProperty();
+
+    /**
+     * Vertical speed, in feet per minute.
+     */
+    private final DoubleProperty verticalSpeed = new SimpleDoubleProperty();
+
+    private final ReadOnlyDoubleWrapper caution = new ReadOnlyDoubleWrapper(this, CAUTION_CHANNEL);
+    private final ReadOnlyDoubleWrapper warning = new ReadOnlyDoubleWrapper(this, WARNING_CHANNEL);
+    private final ReadOnlyDoubleWrapper clearance = new ReadOnlyDoubleWrapper(this, CLEARANCE_CHANNEL, Double.NaN);
+
+    private final TerrainDatabase terrain;
+    private final ObstacleDatabase obstacles;
+    private final Timeline timeline;
+
+    /**
+     * Clearance the projected path has to keep from terrain and obstacles, in feet.
+     */
+    @Getter
+    @Setter
+    private double requiredClearance = DEFAULT_REQUIRED_CLEARANCE;
+
+    /**
+     * The lowest clearance found by the last assessment, in feet.
+     */
+    @Getter
+    private double lowestClearance = Double.NaN;
+
+    /**
+     * Either database may be null, and is then left out.
+     *
+     * @param terrain
+     * @param obstacles
+     */
+    public TerrainAwareness(TerrainDatabase terrain, ObstacleDatabase obstacles) {
+        this.terrain = terrain;
+        this.obstacles = obstacles;
+
+        timeline = new Timeline(new KeyFrame(Duration.millis(PERIOD_MILLIS), e -> evaluate()));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    public DoubleProperty latitudeProperty() {
+        return latitude;
+    }
+
+    public DoubleProperty longitudeProperty() {
+        return longitude;
+    }
+
+    public DoubleProperty altitudeProperty() {
+        return altitude;
+    }
+
+    public DoubleProperty trackProperty() {
+        return track;
+    }
+
+    public DoubleProperty groundSpeedProperty() {
+        return groundSpeed;
+    }
+
+    public DoubleProperty verticalSpeedProperty() {
+        return verticalSpeed;
+    }
+
+    public ReadOnlyDoubleProperty cautionProperty() {
+        return caution.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty warningProperty() {
+        return warning.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty clearanceProperty() {
+        return clearance.getReadOnlyProperty();
+    }
+
+    /**
+     * Publishes the caution, warning and clearance channels.
+     *
+     * @param registry
+     */
+    public void publish(Registry registry) {
+        registry.publish(CAUTION_CHANNEL, cautionProperty());
+        registry.publish(WARNING_CHANNEL, warningProperty());
+        registry.publish(CLEARANCE_CHANNEL, clearanceProperty());
+    }
+
+    /**
+     * Starts assessing on the FX thread, several times a second.
+     */
+    public void start() {
+        timeline.play();
+    }
+
+    public void stop() {
+        timeline.stop();
+    }
+
+    /**
+     * Assesses the current inputs and sets the outputs.
+     */
+    public void evaluate() {
+        int alert = assess(latitude.get(), longitude.get(), altitude.get(), track.get(), groundSpeed.get(),
+                verticalSpeed.get());
+        caution.set(alert == CAUTION ? 1 : 0);
+        warning.set(alert == WARNING ? 1 : 0);
+        clearance.set(lowestClearance);
+    }
+
+    /**
+     * Projects the flight path ahead and returns the alert it calls for. Allocates nothing, and reads four terrain
+     * samples and the obstacles of a few index cells at each of the projected positions, one a second.
+     *
+     * @param lat
+     * @param lon
+     * @param altitude above sea level, in feet
+     * @param track true, in degrees
+     * @param groundSpeed in knots
+     * @param verticalSpeed in feet per minute
+     * @return {@link #CLEAR}, {@link #CAUTION} or {@link #WARNING}
+     */
+    public int assess(double lat, double lon, double altitude, double track, double groundSpeed,
+            double verticalSpeed) {
+        lowestClearance = Double.NaN;
+        if (groundSpeed < MIN_GROUND_SPEED) {
+            return CLEAR;
+        }
+
+        double speed = groundSpeed * METERS_PER_SECOND_PER_KNOT;
+        double north = Math.cos(Math.toRadians(track)) * speed / METERS_PER_DEGREE;
+        double east = Math.sin(Math.toRadians(track)) * speed
+                / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+        double height = altitude * METERS_PER_FOOT;
+        double climb = verticalSpeed * METERS_PER_FOOT / 60;
+        double required = requiredClearance * METERS_PER_FOOT;
+
+        int alert = CLEAR;
+        double lowest = Double.POSITIVE_INFINITY;
+        for (double time = 0; time <= CAUTION_SECONDS; time += STEP_SECONDS) {
+            double floor = highestPoint(lat + north * time, lon + east * time);
+            double margin = height + climb * time - floor;
+            lowest = Math.min(lowest, margin);
+            if (margin < required) {
+                alert = Math.max(alert, time <= WARNING_SECONDS ? WARNING : CAUTION);
+            }
+        }
+
+        if (lowest != Double.POSITIVE_INFINITY) {
+            lowestClearance = lowest / METERS_PER_FOOT;
+        }
+        return alert;
+    }
+
+    /**
+     * The higher of the terrain and the obstacles around a position, in meters, or negative infinity when there are
+     * no databases.
+     */
+    private double highestPoint(double lat, double lon) {
+        double highest = Double.NEGATIVE_INFINITY;
+        if (terrain != null) {
+            highest = terrain.elevation(lat, lon);
+        }
+        if (obstacles != null) {
+            highest = Math.max(highest, obstacles.highestTop(lat, lon, OBSTACLE_RADIUS));
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.terrain;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.Parent;
+import org.defis.efis.gauges.OffscreenSurface;
+import org.defis.efis.gauges.RedrawTracker;
+import org.defis.efis.gauges.RenderScheduler;
+import org.defis.efis.metrics.Metrics;
+import org.defis.efis.metrics.RateMeter;
+
+/**
+ * Terrain as seen from the aircraft, for behind the pitch ladder of the attitude indicator.
+ *
+ * The view is drawn level and facing the heading, with the horizon through the origin of the node and the same scale in
+ * degrees across and up and down, so that the pitch and bank transforms of the horizon put it in place. It only has to
+ * be drawn again when the aircraft moves or turns, not when its attitude changes.
+ *
+ * Frames are rasterized on the workers of an {@link OffscreenSurface}, at half resolution, by casting a ray from the
+ * aircraft for each column of pixels. Each ray steps out to {@link #RANGE} in steps that grow with the distance, reads
+ * coarser meshes as its steps grow, and fills the rows the terrain rises above what nearer terrain already covered.
+ * Meshes that are not decoded yet are stood in for by a coarser one that is, or left out, and the frame is drawn again
+ * as they come in. Nothing is drawn where there is no terrain, so the sky and ground behind show through.
+ *
+ * @author Matthew Tyler
+ */
+public class SyntheticVision extends Parent
+{
+
+    /**
+     * Terrain farther than this is not drawn, in meters.
+     */
+    private static final double RANGE = 40_000;
+    private static final double NEAR = 30;
+
+    /**
+     * Each step along a ray is this much longer than the one before, so that steps stay about the same on screen.
+     */
+    private static final double STEP_GROWTH = 1.035;
+
+    private static final double EARTH_RADIUS = 6_371_000;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+    private static final double METERS_PER_FOOT = 0.3048;
+
+    /**
+     * Terrain has no sharp edges, so it is rasterized at a fraction of the display resolution and scaled up.
+     */
+    private static final int DOWNSCALE = 2;
+
+    private static final int TERRAIN_LAYER = 1;
+
+    /**
+     * Elevations in meters and the colors of the terrain at them, blended in between.
+     */
+    private static final double[] RAMP_HEIGHTS = {0, 300, 1000, 2000, 3000, 4500};
+    private static final int[] RAMP_COLORS = {0x4f7a3a, 0x5f7f3f, 0x7d7446, 0x876b4c, 0x8c8c8c, 0xf0f0f0};
+    private static final int SEA_COLOR = 0x2a4d7a;
+    private static final int HAZE_COLOR = 0x9fb6cd;
+
+    /**
+     * The blended ramp, every RAMP_STEP meters.
+     */
+    private static final double RAMP_STEP = 25;
+    private static final int[] RAMP = ramp();
+
+    private final DoubleProperty latitude = new SimpleDoubleProperty();
+    private final DoubleProperty longitude = new SimpleDoubleProperty();
+
+    /**
+     * Altitude above sea level, in feet.
+     */
+    private final DoubleProperty altitude = new SimpleDoubleProperty();
+
+    /**
+     * True heading, in degrees.
+     */
+    private final DoubleProperty heading = new SimpleDoubleProperty();
+
+    private final TerrainCache cache;
+    private final double pixelsPerDegree;
+    private final double above;
+    private final OffscreenSurface surface;
+
+    private final RenderScheduler.Target renderTarget = new RenderScheduler.Target(this::render);
+    private final RedrawTracker redrawTracker = new RedrawTracker();
+    private final int latitudeWatch;
+    private final int longitudeWatch;
+    private final int altitudeWatch;
+    private final int headingWatch;
+    private final RateMeter redraws = Metrics.get().rendering().instrument("SyntheticVision");
+    private final LongAdder suppressed = Metrics.get().rendering().suppressed("SyntheticVision");
+
+    /**
+     * Takes over the load listener of the cache, to draw again as meshes come in.
+     *
+     * @param cache
+     * @param width of the view in pixels, centered on the heading
+     * @param above degrees shown above the horizon
+     * @param below degrees shown below the horizon, less than 90
+     * @param pixelsPerDegree the scale of the view, the same as the pitch ladder's
+     */
+    public SyntheticVision(TerrainCache cache, double width, double above, double below, double pixelsPerDegree) {
+        this.cache = cache;
+        this.pixelsPerDegree = pixelsPerDegree;
+        this.above = above;
+
+        int columns = (int) Math.ceil(width / DOWNSCALE);
+        int rows = (int) Math.ceil((above + below) * pixelsPerDegree / DOWNSCALE);
+        surface = new OffscreenSurface(columns, rows, 4, new Rasterizer(columns, rows));
+        surface.setFitWidth(columns * DOWNSCALE);
+        surface.setFitHeight(rows * DOWNSCALE);
+        surface.setSmooth(true);
+        surface.setLayoutX(-columns * DOWNSCALE / 2.0);
+        surface.setLayoutY(-above * pixelsPerDegree);
+        getChildren().add(surface);
+
+        // About ten meters of travel, three meters of height and a column of heading
+        latitudeWatch = redrawTracker.watch(TERRAIN_LAYER, 10 / METERS_PER_DEGREE);
+        longitudeWatch = redrawTracker.watch(TERRAIN_LAYER, 10 / METERS_PER_DEGREE);
+        altitudeWatch = redrawTracker.watch(TERRAIN_LAYER, 10);
+        headingWatch = redrawTracker.watch(TERRAIN_LAYER, DOWNSCALE / pixelsPerDegree);
+
+        latitude.addListener(l -> inputChanged());
+        longitude.addListener(l -> inputChanged());
+        altitude.addListener(l -> inputChanged());
+        heading.addListener(l -> inputChanged());
+        cache.setLoadListener(surface::request);
+
+        render();
+    }
+
+    public DoubleProperty latitudeProperty() {
+        return latitude;
+    }
+
+    public DoubleProperty longitudeProperty() {
+        return longitude;
+    }
+
+    public DoubleProperty altitudeProperty() {
+        return altitude;
+    }
+
+    public DoubleProperty headingProperty() {
+        return heading;
+    }
+
+    private void inputChanged() {
+        if (!renderTarget.request()) {
+            render();
+        }
+    }
+
+    private void render() {
+        redrawTracker.update(latitudeWatch, latitude.get());
+        redrawTracker.update(longitudeWatch, longitude.get());
+        redrawTracker.update(altitudeWatch, altitude.get());
+        redrawTracker.update(headingWatch, heading.get());
+        if (!redrawTracker.isDirty()) {
+            suppressed.increment();
+            return;
+        }
+
+        surface.setInput(0, latitude.get());
+        surface.setInput(1, longitude.get());
+        surface.setInput(2, altitude.get());
+        surface.setInput(3, heading.get());
+        surface.request();
+
+        redrawTracker.drawn(RedrawTracker.ALL_LAYERS);
+        redraws.mark();
+    }
+
+    private static int[] ramp() {
+        int[] ramp = new int[(int) (RAMP_HEIGHTS[RAMP_HEIGHTS.length - 1] / RAMP_STEP) + 1];
+        int band = 0;
+        for (int i = 0; i < ramp.length; i++) {
+            double height = i * RAMP_STEP;
+            while (band < RAMP_HEIGHTS.length - 2 && height >= RAMP_HEIGHTS[band + 1]) {
+                band++;
+            }
+            double blend = Math.min(1, (height - RAMP_HEIGHTS[band]) / (RAMP_HEIGHTS[band + 1] - RAMP_HEIGHTS[band]));
+            int rgb = 0;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                double value = (RAMP_COLORS[band] >> shift & 0xff) * (1 - blend)
+                        + (RAMP_COLORS[band + 1] >> shift & 0xff) * blend;
+                rgb |= (int) value << shift;
+            }
+            ramp[i] = rgb;
+        }
+        return ramp;
+    }
+
+    /**
+     * Casts the rays of a frame. Runs on one worker at a time.
+     */
+    private class Rasterizer implements OffscreenSurface.Rasterizer
+    {
+
+        /**
+         * Slots of the meshes used during the current frame, to save going through the cache for each step.
+         */
+        private static final int RECENT = 1024;
+
+        private final int columns;
+        private final int rows;
+        private final BufferedImage image;
+        private final int[] pixels;
+
+        /**
+         * Tangent of the elevation angle at the middle of each row.
+         */
+        private final double[] rowTangents;
+
+        /**
+         * Length of step along a ray from which each level of detail is used.
+         */
+        private final double[] lodSteps = new double[TerrainCache.MAX_LOD + 1];
+
+        private final long[] recentKeys = new long[RECENT];
+        private final TerrainMesh[] recentMeshes = new TerrainMesh[RECENT];
+
+        /**
+         * Stands in the recent meshes for a mesh that is being loaded.
+         */
+        private final TerrainMesh loading = new TerrainMesh(0, 0, 0, 1, 2, new float[4]);
+
+        /**
+         * The tile and mesh the ray is in.
+         */
+        private int rayTile;
+        private boolean raySea;
+        private long rayKey;
+        private TerrainMesh rayMesh;
+
+        Rasterizer(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB_PRE);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+            rowTangents = new double[rows];
+            for (int row = 0; row < rows; row++) {
+                rowTangents[row] = Math.tan(Math.toRadians(above - (row + 0.5) * DOWNSCALE / pixelsPerDegree));
+            }
+
+            double sampleSpacing = METERS_PER_DEGREE / (cache.getDatabase().getSamples() - 1);
+            for (int lod = 0; lod <= TerrainCache.MAX_LOD; lod++) {
+                lodSteps[lod] = sampleSpacing * (1 << lod);
+            }
+        }
+
+        @Override
+        public void rasterize(Graphics2D g, double[] inputs) {
+            Arrays.fill(pixels, 0);
+            Arrays.fill(recentMeshes, null);
+
+            double lat = inputs[0];
+            double lon = inputs[1];
+            double height = inputs[2] * METERS_PER_FOOT;
+            double degreesNorth = 1 / METERS_PER_DEGREE;
+            double degreesEast = 1 / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+
+            for (int column = 0; column < columns; column++) {
+                double bearing = Math.toRadians(inputs[3] + (column + 0.5 - columns / 2.0) * DOWNSCALE / pixelsPerDegree);
+                castRay(column, lat, lon, height, Math.cos(bearing) * degreesNorth, Math.sin(bearing) * degreesEast);
+            }
+
+            g.drawImage(image, 0, 0, null);
+        }
+
+        /**
+         * @param column
+         * @param lat of the aircraft
+         * @param lon of the aircraft
+         * @param height of the aircraft, in meters
+         * @param north degrees of latitude per meter along the ray
+         * @param east degrees of longitude per meter along the ray
+         */
+        private void castRay(int column, double lat, double lon, double height, double north, double east) {
+            // Rows from here down are covered by nearer terrain
+            int covered = rows;
+            int lod = 0;
+            double previous = Double.NaN;
+            rayTile = -1;
+            rayMesh = null;
+
+            for (double distance = NEAR; distance < RANGE && covered > 0; distance *= STEP_GROWTH) {
+                double step = distance * (STEP_GROWTH - 1);
+                while (lod < TerrainCache.MAX_LOD && step >= lodSteps[lod + 1]) {
+                    lod++;
+                }
+
+                double terrain = terrainHeight(lat + north * distance, lon + east * distance, lod);
+                if (Double.isNaN(terrain)) {
+                    previous = Double.NaN;
+                    continue;
+                }
+
+                // Below the horizontal by the curvature of the earth as well
+                double tangent = (terrain - height - distance * distance / (2 * EARTH_RADIUS)) / distance;
+                int top = covered;
+                while (top > 0 && rowTangents[top - 1] < tangent) {
+                    top--;
+                }
+                if (top < covered) {
+                    double slope = Double.isNaN(previous) ? 0 : (terrain - previous) / step;
+                    int color = color(raySea, terrain, slope, distance);
+                    for (int row = top; row < covered; row++) {
+                        pixels[row * columns + column] = color;
+                    }
+                    covered = top;
+                }
+                previous = terrain;
+            }
+        }
+
+        /**
+         * Returns the height of the terrain from the mesh at the level of detail, or a coarser one if that is not
+         * loaded yet, or NaN if none is. Sets {@link #raySea} for places without a tile, which are at 0.
+         */
+        private double terrainHeight(double lat, double lon, int lod) {
+            if (lat >= 90 || lat < -90) {
+                return Double.NaN;
+            }
+            if (lon >= 180) {
+                lon -= 360;
+            } else if (lon < -180) {
+                lon += 360;
+            }
+
+            // Offset to stay positive, where a cast rounds down
+            int tileLat = (int) (lat + 90) - 90;
+            int tileLon = (int) (lon + 180) - 180;
+            int tile = TerrainDatabase.tileIndex(tileLat, tileLon);
+            if (tile != rayTile) {
+                rayTile = tile;
+                raySea = !cache.getDatabase().hasTile(tile);
+            }
+            if (raySea) {
+                return 0;
+            }
+
+            double cells = cache.getDatabase().getSamples() - 1;
+            int row = (int) ((tileLat + 1 - lat) * cells);
+            int col = (int) ((lon - tileLon) * cells);
+            for (int level = lod; level <= TerrainCache.MAX_LOD; level++) {
+                int blockSpan = TerrainCache.MESH_CELLS << level;
+                TerrainMesh mesh = mesh(TerrainCache.key(tile, level, row / blockSpan, col / blockSpan));
+                if (mesh != null) {
+                    return mesh.height(lat, lon);
+                }
+            }
+            return Double.NaN;
+        }
+
+        private TerrainMesh mesh(long key) {
+            if (rayMesh != null && key == rayKey) {
+                return rayMesh;
+            }
+
+            int slot = (int) (key ^ key >>> 32 ^ key >>> 15) & (RECENT - 1);
+            TerrainMesh mesh = recentMeshes[slot];
+            if (mesh == null || recentKeys[slot] != key) {
+                mesh = cache.get(key);
+                recentKeys[slot] = key;
+                recentMeshes[slot] = mesh == null ? loading : mesh;
+            }
+            if (mesh == loading || mesh == null) {
+                return null;
+            }
+
+            rayKey = key;
+            rayMesh = mesh;
+            return mesh;
+        }
+
+        /**
+         * Shades the terrain color at a height by the slope facing the aircraft and fades it into the haze with
+         * distance, in 1/256ths.
+         *
+         * @param sea whether the place has no tile in the database, which is sea
+         * @param height in meters; land below sea level takes the lowest step of the ramp
+         */
+        private int color(boolean sea, double height, double slope, double distance) {
+            int base = sea ? SEA_COLOR : RAMP[Math.max(0, Math.min(RAMP.length - 1, (int) (height / RAMP_STEP)))];
+            int shade = Math.max(115, Math.min(294, (int) (205 + 384 * slope)));
+            int haze = (int) (179 * distance / RANGE);
+
+            int rgb = 0xff000000;
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int shaded = Math.min(255, (base >> shift & 0xff) * shade >> 8);
+                rgb |= (shaded * (256 - haze) + (HAZE_COLOR >> shift & 0xff) * haze) >> 8 << shift;
+            }
+            return rgb;
+        }
+    }
+}
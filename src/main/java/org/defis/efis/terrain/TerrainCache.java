@@ -0,0 +1,218 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.terrain;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Decoded {@link TerrainMesh}es of a {@link TerrainDatabase}, least recently used first out once they take more than a
+ * fixed number of bytes.
+ *
+ * Each tile is cut into blocks of {@link #MESH_CELLS} by {@link #MESH_CELLS} cells at every level of detail, so a block
+ * covers twice as much ground at each level up. A mesh is identified by a key from {@link #key}.
+ *
+ * {@link #get} never waits: a mesh that is not decoded yet is queued for a single loader thread, and the load listener
+ * is told when it is in, so the caller can draw again.
+ *
+ * @author Matthew Tyler
+ */
+public class TerrainCache
+{
+
+    private static final Logger LOG = Logger.getLogger(TerrainCache.class.getName());
+
+    /**
+     * Coarsest level of detail; tiles must have a multiple of 2^MAX_LOD cells per side.
+     */
+    public static final int MAX_LOD = 4;
+
+    static final int MESH_CELLS = 32;
+
+    @Getter
+    private final TerrainDatabase database;
+
+    @Getter
+    private final long budgetBytes;
+
+    /**
+     * In access order, eldest first.
+     */
+    private final LinkedHashMap<Long, TerrainMesh> meshes = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<Long> pending = new HashSet<>();
+    private long usedBytes;
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "defis-terrain");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Called on the loader thread after each mesh is decoded.
+     */
+    @Setter
+    private volatile Runnable loadListener;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TerrainCache(TerrainDatabase database, long budgetBytes) {
+        this.database = database;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the key of a mesh.
+     *
+     * @param tileIndex from {@link TerrainDatabase#tileIndex}
+     * @param lod from 0 to {@link #MAX_LOD}
+     * @param blockRow from the north edge of the tile
+     * @param blockCol from the west edge of the tile
+     * @return
+     */
+    public static long key(int tileIndex, int lod, int blockRow, int blockCol) {
+        return (long) tileIndex << 32 | (long) lod << 24 | blockRow << 12 | blockCol;
+    }
+
+    /**
+     * Returns a mesh if it is decoded, or queues it for decoding and returns null. Safe from any thread.
+     *
+     * @param key
+     * @return
+     */
+    public TerrainMesh get(long key) {
+        synchronized (meshes) {
+            TerrainMesh mesh = meshes.get(key);
+            if (mesh != null || !pending.add(key)) {
+                return mesh;
+            }
+        }
+        try {
+            loader.execute(() -> load(key));
+        } catch (RejectedExecutionException ex) {
+            // Shut down
+            synchronized (meshes) {
+                pending.remove(key);
+            }
+        }
+        return null;
+    }
+
+    public long getUsedBytes() {
+        synchronized (meshes) {
+            return usedBytes;
+        }
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Stops the loader thread. Meshes already decoded stay available.
+     */
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private void load(long key) {
+        TerrainMesh mesh = null;
+        try {
+            mesh = decode(key);
+            loads.increment();
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Terrain mesh " + Long.toHexString(key) + " failed to load", ex);
+        } finally {
+            synchronized (meshes) {
+                // On failure too, so the next get() tries again
+                pending.remove(key);
+                if (mesh != null) {
+                    store(key, mesh);
+                }
+            }
+        }
+        if (mesh == null) {
+            return;
+        }
+
+        Runnable listener = loadListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Adds a decoded mesh and evicts the least recently used ones over the budget. Holding the lock on meshes.
+     */
+    private void store(long key, TerrainMesh mesh) {
+        meshes.put(key, mesh);
+        usedBytes += mesh.getBytes();
+
+        Iterator<Map.Entry<Long, TerrainMesh>> eldest = meshes.entrySet().iterator();
+        while (usedBytes > budgetBytes && meshes.size() > 1) {
+            usedBytes -= eldest.next().getValue().getBytes();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Takes every 2^lod-th sample of the block. Grid points past the edge of the tile repeat the edge.
+     */
+    private TerrainMesh decode(long key) {
+        int tileIndex = (int) (key >>> 32);
+        int lod = (int) (key >>> 24) & 0xff;
+        int blockRow = (int) (key >>> 12) & 0xfff;
+        int blockCol = (int) key & 0xfff;
+
+        int samples = database.getSamples();
+        int stride = 1 << lod;
+        int firstRow = blockRow * MESH_CELLS * stride;
+        int firstCol = blockCol * MESH_CELLS * stride;
+        int size = MESH_CELLS + 1;
+
+        float[] heights = new float[size * size];
+        for (int r = 0; r < size; r++) {
+            int row = Math.min(firstRow + r * stride, samples - 1);
+            for (int c = 0; c < size; c++) {
+                heights[r * size + c] = database.sample(tileIndex, row, Math.min(firstCol + c * stride, samples - 1));
+            }
+        }
+
+        int tileLat = tileIndex / 360 - 90;
+        int tileLon = tileIndex % 360 - 180;
+        double cells = samples - 1;
+        return new TerrainMesh(lod, tileLat + 1 - firstRow / cells, tileLon + firstCol / cells, stride / cells, size,
+                heights);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.terrain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+/**
+ * A read-only elevation database, memory-mapped so that only the pages of the tiles actually flown over are read from
+ * storage and the operating system can drop them again under memory pressure.
+ *
+ * The file holds one degree by one degree tiles of elevation samples in meters, in this layout, big-endian:
+ *
+ * <pre>
+ * int    magic, "DTER"
+ * short  version, 1
+ * short  samples per tile side; neighbouring tiles share their edge samples, as in SRTM
+ * int[]  slot of each tile, or -1 where there is no tile, for 180 x 360 tiles indexed by {@link #tileIndex}
+ * short[] samples x samples elevations per slot, rows from north to south, columns from west to east
+ * </pre>
+ *
+ * Reads are absolute and safe from any thread. Files are limited to 2 GB, which holds the whole world at 30 arc seconds.
+ * Areas without a tile are sea.
+ *
+ * @author Matthew Tyler
+ */
+public class TerrainDatabase implements Closeable
+{
+
+    static final int MAGIC = 0x44544552;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int TILE_COUNT = 180 * 360;
+
+    /**
+     * Elevation of samples that are not known, as in SRTM. Read as sea level.
+     */
+    static final short VOID = Short.MIN_VALUE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Samples per tile side.
+     */
+    @Getter
+    private final int samples;
+    private final int tileBytes;
+    private final int dataStart;
+
+    public TerrainDatabase(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException(path + " is not a terrain database");
+            }
+            samples = buffer.getShort(6) & 0xffff;
+            tileBytes = samples * samples * 2;
+            dataStart = HEADER_BYTES + 4 * TILE_COUNT;
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * The index of the tile whose south west corner is at the given whole degrees.
+     *
+     * @param lat from -90 to 89
+     * @param lon from -180 to 179
+     * @return
+     */
+    public static int tileIndex(int lat, int lon) {
+        return (lat + 90) * 360 + (lon + 180);
+    }
+
+    public boolean hasTile(int tileIndex) {
+        return tileIndex >= 0 && tileIndex < TILE_COUNT && buffer.getInt(HEADER_BYTES + 4 * tileIndex) >= 0;
+    }
+
+    /**
+     * Returns the elevation in meters at a position, interpolated between the four samples around it.
+     *
+     * @param lat
+     * @param lon
+     * @return the elevation, 0 at sea
+     */
+    public double elevation(double lat, double lon) {
+        int tileLat = (int) Math.floor(lat);
+        int tileLon = (int) Math.floor(lon);
+        int tile = tileIndex(tileLat, tileLon);
+        if (!hasTile(tile)) {
+            return 0;
+        }
+
+        double row = (tileLat + 1 - lat) * (samples - 1);
+        double col = (lon - tileLon) * (samples - 1);
+        int r = Math.min((int) row, samples - 2);
+        int c = Math.min((int) col, samples - 2);
+        double fr = row - r;
+        double fc = col - c;
+
+        double north = sample(tile, r, c) * (1 - fc) + sample(tile, r, c + 1) * fc;
+        double south = sample(tile, r + 1, c) * (1 - fc) + sample(tile, r + 1, c + 1) * fc;
+        return north * (1 - fr) + south * fr;
+    }
+
+    /**
+     * Returns one sample of a tile that is in the database.
+     *
+     * @param tileIndex
+     * @param row from the north edge
+     * @param col from the west edge
+     * @return the elevation in meters
+     */
+    int sample(int tileIndex, int row, int col) {
+        int slot = buffer.getInt(HEADER_BYTES + 4 * tileIndex);
+        short elevation = buffer.getShort(dataStart + slot * tileBytes + 2 * (row * samples + col));
+        return elevation == VOID ? 0 : elevation;
+    }
+
+    /**
+     * Unmapping is left to the garbage collector; the mapping stays valid until the database is unreachable.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.terrain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a {@link TerrainDatabase} file, from SRTM height files or from elevations made up by the caller.
+ *
+ * <pre>
+ * java -cp defis.jar org.defis.efis.terrain.TerrainDatabaseWriter terrain.dter 241 N47W122.hgt N47W123.hgt ...
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class TerrainDatabaseWriter
+{
+
+    private static final Pattern HGT_NAME = Pattern.compile("([NS])(\\d{2})([EW])(\\d{3})\\.hgt",
+            Pattern.CASE_INSENSITIVE);
+
+    private final int samples;
+    private final Map<Integer, short[]> tiles = new TreeMap<>();
+
+    /**
+     * @param samples per tile side; a multiple of 2^{@link TerrainCache#MAX_LOD}, plus one
+     */
+    public TerrainDatabaseWriter(int samples) {
+        if ((samples - 1) % (1 << TerrainCache.MAX_LOD) != 0) {
+            throw new IllegalArgumentException("Tiles need a multiple of " + (1 << TerrainCache.MAX_LOD)
+                    + " cells per side, not " + (samples - 1));
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * Adds a tile.
+     *
+     * @param lat of its south west corner
+     * @param lon of its south west corner
+     * @param elevations samples x samples elevations in meters, rows from north to south
+     */
+    public void addTile(int lat, int lon, short[] elevations) {
+        if (elevations.length != samples * samples) {
+            throw new IllegalArgumentException("A tile has " + samples * samples + " samples, not " + elevations.length);
+        }
+        tiles.put(TerrainDatabase.tileIndex(lat, lon), elevations);
+    }
+
+    /**
+     * Adds the tile of an SRTM height file, named for its south west corner as in N47W122.hgt, resampled to the samples
+     * of this database.
+     *
+     * @param hgt
+     * @throws IOException
+     */
+    public void addHgt(Path hgt) throws IOException {
+        Matcher name = HGT_NAME.matcher(hgt.getFileName().toString());
+        if (!name.matches()) {
+            throw new IOException(hgt + " is not named like an SRTM tile");
+        }
+        int lat = Integer.parseInt(name.group(2)) * (name.group(1).equalsIgnoreCase("S") ? -1 : 1);
+        int lon = Integer.parseInt(name.group(4)) * (name.group(3).equalsIgnoreCase("W") ? -1 : 1);
+
+        ByteBuffer source = ByteBuffer.wrap(Files.readAllBytes(hgt));
+        int sourceSamples = (int) Math.round(Math.sqrt(source.capacity() / 2));
+        if (sourceSamples * sourceSamples * 2 != source.capacity()) {
+            throw new IOException(hgt + " is not a square grid of samples");
+        }
+
+        short[] elevations = new short[samples * samples];
+        double scale = (sourceSamples - 1) / (double) (samples - 1);
+        for (int row = 0; row < samples; row++) {
+            int sourceRow = (int) Math.round(row * scale);
+            for (int col = 0; col < samples; col++) {
+                int sourceCol = (int) Math.round(col * scale);
+                elevations[row * samples + col] = source.getShort(2 * (sourceRow * sourceSamples + sourceCol));
+            }
+        }
+        addTile(lat, lon, elevations);
+    }
+
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(TerrainDatabase.MAGIC);
+            out.writeShort(TerrainDatabase.VERSION);
+            out.writeShort(samples);
+
+            int slot = 0;
+            for (int tile = 0; tile < TerrainDatabase.TILE_COUNT; tile++) {
+                out.writeInt(tiles.containsKey(tile) ? slot++ : -1);
+            }
+            for (short[] elevations : tiles.values()) {
+                for (short elevation : elevations) {
+                    out.writeShort(elevation);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: TerrainDatabaseWriter <output> <samples per side> <hgt files...>");
+            System.exit(1);
+        }
+
+        TerrainDatabaseWriter writer = new TerrainDatabaseWriter(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            writer.addHgt(Paths.get(args[i]));
+        }
+        writer.write(Paths.get(args[0]));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.terrain;
+
+import lombok.Getter;
+
+/**
+ * A square grid of elevations decoded from one block of a terrain tile at one level of detail. At level n the grid
+ * takes every 2^n-th sample of the tile. Immutable, so it can be shared between threads once published.
+ *
+ * @author Matthew Tyler
+ */
+public final class TerrainMesh
+{
+
+    @Getter
+    private final int lod;
+
+    /**
+     * Position of the north west grid point, in degrees.
+     */
+    private final double north;
+    private final double west;
+
+    /**
+     * Degrees between grid points.
+     */
+    private final double spacing;
+
+    /**
+     * Grid points per side.
+     */
+    private final int size;
+    private final float[] heights;
+
+    TerrainMesh(int lod, double north, double west, double spacing, int size, float[] heights) {
+        this.lod = lod;
+        this.north = north;
+        this.west = west;
+        this.spacing = spacing;
+        this.size = size;
+        this.heights = heights;
+    }
+
+    /**
+     * Returns the elevation in meters at a position inside the mesh, interpolated between the grid points around it.
+     * Positions outside are clamped to the edge.
+     *
+     * @param lat
+     * @param lon
+     * @return
+     */
+    public double height(double lat, double lon) {
+        double row = Math.max(0, Math.min(size - 1, (north - lat) / spacing));
+        double col = Math.max(0, Math.min(size - 1, (lon - west) / spacing));
+        int r = Math.min((int) row, size - 2);
+        int c = Math.min((int) col, size - 2);
+        double fr = row - r;
+        double fc = col - c;
+
+        int nw = r * size + c;
+        double n = heights[nw] * (1 - fc) + heights[nw + 1] * fc;
+        double s = heights[nw + size] * (1 - fc) + heights[nw + size + 1] * fc;
+        return n * (1 - fr) + s * fr;
+    }
+
+    /**
+     * @return the heap the mesh takes, counted against the cache budget
+     */
+    int getBytes() {
+        return 4 * heights.length + 64;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.wire;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.Getter;
+
+import static org.defis.efis.wire.WireFormat.LENGTH_BYTES;
+import static org.defis.efis.wire.WireFormat.MAX_VARINT;
+
+/**
+ * Reads batches of {@link WireFormat} in place from the caller's buffers and hands each value to a sink. Decoding
+ * creates no objects. Not thread safe; one decoder per stream.
+ *
+ * A decoder starts out of step, skipping batches until a keyframe. Call {@link #desync()} when the transport lost a
+ * batch, since the values after it are relative to values this side never saw. A malformed batch also puts the
+ * decoder out of step; values of it handed over before the fault was found are not taken back.
+ *
+ * @author Matthew Tyler
+ */
+public class BatchDecoder
+{
+
+    /**
+     * Receives every decoded batch on the decoding thread.
+     */
+    public interface Sink
+    {
+
+        /**
+         * Starts a batch.
+         *
+         * @param micros time of the batch in microseconds
+         */
+        void time(long micros);
+
+        void value(int channel, double value);
+    }
+
+    private final double[] quanta;
+    private final long[] previous;
+    private long previousTime;
+    private boolean synced;
+
+    /**
+     * Position of the next byte to read in the batch being decoded, and the end of the batch.
+     */
+    private int at;
+    private int end;
+
+    @Getter
+    private long batches;
+
+    /**
+     * Batches skipped waiting for a keyframe.
+     */
+    @Getter
+    private long skipped;
+
+    @Getter
+    private long malformed;
+
+    /**
+     * @param schema the schema of the encoder
+     * @param channels channel ids run from 0 to channels - 1
+     */
+    public BatchDecoder(WireSchema schema, int channels) {
+        quanta = new double[channels];
+        previous = new long[channels];
+        for (int c = 0; c < channels; c++) {
+            quanta[c] = schema.getQuantum(c);
+        }
+    }
+
+    /**
+     * Skips batches until the next keyframe.
+     */
+    public void desync() {
+        synced = false;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * Decodes every whole batch between the buffer's position and limit, and leaves the position at the first byte
+     * not yet decoded: the start of a partial batch, for the caller to compact and read more onto.
+     *
+     * @param in
+     * @param sink
+     * @return the number of batches decoded, skipped ones not included
+     */
+    public int decode(ByteBuffer in, Sink sink) {
+        int position = in.position();
+        int limit = in.limit();
+        int decoded = 0;
+        while (limit - position >= LENGTH_BYTES) {
+            int length = in.getShort(position) & 0xffff;
+            if (limit - position - LENGTH_BYTES < length) {
+                break;
+            }
+            at = position + LENGTH_BYTES;
+            end = at + length;
+            position = end;
+            if (decodeBatch(in, sink)) {
+                decoded++;
+            }
+        }
+        in.position(position);
+        return decoded;
+    }
+
+    private boolean decodeBatch(ByteBuffer in, Sink sink) {
+        if (at == end) {
+            return fault();
+        }
+        boolean keyframe = (in.get(at++) & WireFormat.KEYFRAME) != 0;
+        if (keyframe) {
+            Arrays.fill(previous, 0);
+            synced = true;
+        } else if (!synced) {
+            skipped++;
+            return false;
+        }
+
+        long time = varint(in);
+        if (at < 0) {
+            return fault();
+        }
+        previousTime = keyframe ? time : previousTime + WireFormat.unzigzag(time);
+        sink.time(previousTime);
+
+        while (at < end) {
+            long channel = varint(in);
+            if (at < 0 || channel >= previous.length) {
+                return fault();
+            }
+            int c = (int) channel;
+            if (quanta[c] > 0) {
+                long delta = varint(in);
+                if (at < 0) {
+                    return fault();
+                }
+                previous[c] += WireFormat.unzigzag(delta);
+                sink.value(c, previous[c] * quanta[c]);
+                continue;
+            }
+
+            if (at == end) {
+                return fault();
+            }
+            int zeroBytes = in.get(at++);
+            if (zeroBytes != WireFormat.UNCHANGED) {
+                long xor = varint(in);
+                if (at < 0 || zeroBytes < 0 || zeroBytes > WireFormat.UNCHANGED) {
+                    return fault();
+                }
+                previous[c] ^= xor << (zeroBytes << 3);
+            }
+            sink.value(c, Double.longBitsToDouble(previous[c]));
+        }
+        batches++;
+        return true;
+    }
+
+    private boolean fault() {
+        malformed++;
+        synced = false;
+        return false;
+    }
+
+    /**
+     * Reads a varint at the cursor, or sets the cursor to -1 when it runs past the batch or is too long.
+     */
+    private long varint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0, read = 0; read < MAX_VARINT && at < end; shift += 7, read++) {
+            byte b = in.get(at++);
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        at = -1;
+        return 0;
+    }
+}
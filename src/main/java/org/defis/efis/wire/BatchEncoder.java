@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.wire;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.Getter;
+
+import static org.defis.efis.wire.WireFormat.LENGTH_BYTES;
+import static org.defis.efis.wire.WireFormat.MAX_VARINT;
+
+/**
+ * Writes batches of {@link WireFormat} one after another into the caller's buffers, remembering each channel's
+ * previous value for the next batch. Encoding creates no objects. Not thread safe; one encoder per stream.
+ *
+ * <pre>
+ * encoder.begin(out, micros, keyframe);
+ * encoder.put(AIR_SPEED, airSpeed);
+ * encoder.put(ROLL, roll);
+ * encoder.end();
+ * </pre>
+ *
+ * @author Matthew Tyler
+ */
+public class BatchEncoder
+{
+
+    private final double[] quanta;
+    private final double[] steps;
+
+    /**
+     * Previous value of each channel: in steps of its quantum, or the bits of the double for exact channels.
+     */
+    private final long[] previous;
+    private long previousTime;
+
+    private ByteBuffer out;
+    private int start;
+
+    @Getter
+    private long batches;
+
+    /**
+     * @param schema
+     * @param channels channel ids run from 0 to channels - 1
+     */
+    public BatchEncoder(WireSchema schema, int channels) {
+        quanta = new double[channels];
+        steps = new double[channels];
+        previous = new long[channels];
+        for (int c = 0; c < channels; c++) {
+            quanta[c] = schema.getQuantum(c);
+            steps[c] = quanta[c] > 0 ? 1 / quanta[c] : 0;
+        }
+    }
+
+    /**
+     * The most bytes a batch of a number of entries can take, length included.
+     *
+     * @param entries
+     * @return
+     */
+    public static int maxBatchBytes(int entries) {
+        return LENGTH_BYTES + 1 + MAX_VARINT + entries * (MAX_VARINT + 1 + MAX_VARINT);
+    }
+
+    /**
+     * Starts a batch at the buffer's position.
+     *
+     * @param out with room for the whole batch, see {@link #maxBatchBytes}
+     * @param micros time of the batch in microseconds
+     * @param keyframe whether to start every channel from zero, so the batch can be decoded on its own
+     */
+    public void begin(ByteBuffer out, long micros, boolean keyframe) {
+        if (keyframe) {
+            Arrays.fill(previous, 0);
+        }
+        this.out = out;
+        start = out.position();
+        out.putShort((short) 0).put((byte) (keyframe ? WireFormat.KEYFRAME : 0));
+        WireFormat.putVarint(out, keyframe ? micros : WireFormat.zigzag(micros - previousTime));
+        previousTime = micros;
+    }
+
+    /**
+     * Adds a channel's value to the batch.
+     *
+     * @param channel
+     * @param value finite if the channel is quantized
+     */
+    public void put(int channel, double value) {
+        WireFormat.putVarint(out, channel);
+        if (quanta[channel] > 0) {
+            long step = Math.round(value * steps[channel]);
+            WireFormat.putVarint(out, WireFormat.zigzag(step - previous[channel]));
+            previous[channel] = step;
+            return;
+        }
+
+        long bits = Double.doubleToRawLongBits(value);
+        long xor = bits ^ previous[channel];
+        previous[channel] = bits;
+        if (xor == 0) {
+            out.put((byte) WireFormat.UNCHANGED);
+            return;
+        }
+        int zeroBytes = Long.numberOfTrailingZeros(xor) >>> 3;
+        out.put((byte) zeroBytes);
+        WireFormat.putVarint(out, xor >>> (zeroBytes << 3));
+    }
+
+    /**
+     * Finishes the batch, leaving the buffer's position after it.
+     *
+     * @return the bytes the batch took, length included
+     */
+    public int end() {
+        int length = out.position() - start - LENGTH_BYTES;
+        if (length > 0xffff) {
+            throw new IllegalStateException("Batch too long: " + length + " bytes");
+        }
+        out.putShort(start, (short) length);
+        out = null;
+        batches++;
+        return length + LENGTH_BYTES;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.wire;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary encoding for batches of telemetry samples, for streams and datagrams alike. A batch is the
+ * channels that changed at one instant:
+ *
+ * <pre>
+ * length u16 | flags u8 | time varint | entries
+ * </pre>
+ *
+ * The length counts the bytes after it. The time is in microseconds, relative to the previous batch, or absolute in
+ * a keyframe. An entry is a channel id as a varint, then the value in one of two ways, as the {@link WireSchema} says
+ * for that channel:
+ *
+ * <ul>
+ * <li>quantized: the value in steps of the channel's quantum, less the channel's previous value in steps, as a
+ * zigzag varint. A slowly moving channel takes one or two bytes.</li>
+ * <li>exact: the bits of the double XOR the channel's previous bits. A byte says how many trailing bytes of the XOR
+ * are zero, or 8 when nothing changed, then the rest of the XOR follows as a varint. Bits that did not change are
+ * the leading ones, so close values take few bytes.</li>
+ * </ul>
+ *
+ * Every value depends on the one before it, so both ends keep the previous value of every channel. A keyframe starts
+ * them all from zero and can be decoded on its own; a decoder that missed a batch waits for the next keyframe.
+ * Varints are unsigned LEB128, seven bits a byte, least significant first.
+ *
+ * @author Matthew Tyler
+ */
+public final class WireFormat
+{
+
+    /**
+     * Bytes before a batch's body: the length.
+     */
+    public static final int LENGTH_BYTES = 2;
+
+    public static final int MAX_BATCH = LENGTH_BYTES + 0xffff;
+
+    /**
+     * Flag of a batch that starts every channel from zero and carries absolute time.
+     */
+    public static final int KEYFRAME = 1;
+
+    /**
+     * Trailing zero byte count of an exact value that did not change.
+     */
+    static final int UNCHANGED = 8;
+
+    /**
+     * Longest varint, a 64 bit value.
+     */
+    static final int MAX_VARINT = 10;
+
+    private WireFormat() {
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
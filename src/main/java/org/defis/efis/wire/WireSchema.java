@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2017 DEFIS
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.defis.efis.wire;
+
+import java.util.Arrays;
+
+/**
+ * How each channel's values go on the wire: exact, or quantized to a step such as a hundredth of a degree. Both ends
+ * of a stream need the same schema. Channels not given a quantum are exact.
+ *
+ * @author Matthew Tyler
+ */
+public class WireSchema
+{
+
+    /**
+     * Quantum of each channel id, 0 for exact.
+     */
+    private double[] quanta = new double[0];
+
+    /**
+     * Quantizes a channel's values to multiples of a step, which should be well inside the precision the channel's
+     * instrument shows. Quantized values must be finite.
+     *
+     * @param channel
+     * @param quantum greater than 0, or 0 for exact
+     * @return this schema
+     */
+    public WireSchema quantize(int channel, double quantum) {
+        if (channel < 0 || quantum < 0) {
+            throw new IllegalArgumentException("Bad quantum " + quantum + " for channel " + channel);
+        }
+        if (channel >= quanta.length) {
+            quanta = Arrays.copyOf(quanta, Math.max(channel + 1, quanta.length * 2));
+        }
+        quanta[channel] = quantum;
+        return this;
+    }
+
+    /**
+     * @param channel
+     * @return the channel's quantum, or 0 when its values are exact
+     */
+    public double getQuantum(int channel) {
+        return channel < quanta.length ? quanta[channel] : 0;
+    }
+
+    /**
+     * The channel ids up to the highest one given a quantum.
+     *
+     * @return
+     */
+    int getSize() {
+        return quanta.length;
+    }
+}
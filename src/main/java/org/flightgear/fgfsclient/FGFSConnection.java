@@ -4,13 +4,19 @@
 
 package org.flightgear.fgfsclient;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 
 import java.net.Socket;
 
+import java.nio.charset.StandardCharsets;
+
+import java.util.Arrays;
+
 
 /**
  * A connection to a running instance of FlightGear.
@@ -71,9 +77,9 @@ public class FGFSConnection
 	throws IOException
     {
 	socket = new Socket(host, port);
-	in =
-	    new BufferedReader(new InputStreamReader(socket.getInputStream()));
-	out = new PrintWriter(socket.getOutputStream(), true);
+	in = new BufferedInputStream(socket.getInputStream());
+	requests = socket.getOutputStream();
+	out = new PrintWriter(requests, true);
 	out.println("data\r");
     }
 
@@ -127,7 +133,21 @@ public class FGFSConnection
 	throws IOException
     {
 	out.println("get " + name + '\r');
-	return in.readLine();
+	int length = readLine();
+	return length < 0 ? null : new String(line, 0, length);
+    }
+
+
+    /**
+     * Prepare the request for a property that is read over and over.
+     *
+     * @param name The FlightGear property name to look up.
+     * @return The query, for {@link #getDouble(Query)}.
+     */
+    public static Query query (String name)
+    {
+	return new Query(("get " + name + '\r' + System.lineSeparator())
+			 .getBytes(StandardCharsets.US_ASCII));
     }
 
 
@@ -233,6 +253,44 @@ public class FGFSConnection
     }
 
 
+    /**
+     * Get a property value as a double, without allocating.
+     *
+     * <p>The request is sent as prepared and the reply parsed where
+     * it was read.  Replies with up to fifteen significant digits and
+     * a decimal exponent within 22 are parsed directly, and exactly;
+     * anything else falls back to {@link Double#parseDouble(String)}.</p>
+     *
+     * @param query The prepared property lookup.
+     * @return The property value as a double.
+     * @exception IOException If there is an error communicating with
+     * FlightGear or if the connection is lost.
+     * @exception NumberFormatException If the value is not a number.
+     * @see #query(String)
+     */
+    public synchronized double getDouble (Query query)
+	throws IOException
+    {
+	requests.write(query.request);
+	int length = readLine();
+	if (length < 0)
+	    throw new EOFException("FlightGear closed the connection");
+	return parseDouble(line, length);
+    }
+
+
+    /**
+     * The number of bytes of property values read so far, not counting
+     * line terminators.
+     *
+     * @return The total length of all replies.
+     */
+    public synchronized long getBytesRead ()
+    {
+	return bytesRead;
+    }
+
+
     /**
      * Set a property value from a boolean.
      *
@@ -304,13 +362,156 @@ public class FGFSConnection
 
 
 
+    ////////////////////////////////////////////////////////////////////
+    // Replies.
+    ////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * Read one reply into the line buffer.
+     *
+     * @return The length of the reply without its line terminator,
+     * or -1 at the end of the stream.
+     */
+    private int readLine ()
+	throws IOException
+    {
+	int length = 0;
+	int c;
+	while ((c = in.read()) != '\n') {
+	    if (c < 0) {
+		if (length == 0)
+		    return -1;
+		break;
+	    }
+	    if (length == line.length)
+		line = Arrays.copyOf(line, length * 2);
+	    line[length++] = (byte)c;
+	}
+	if (length > 0 && line[length - 1] == '\r')
+	    length--;
+	bytesRead += length;
+	return length;
+    }
+
+
+    /**
+     * Parse a decimal number the way {@link Double#parseDouble(String)}
+     * does.
+     *
+     * <p>When the significant digits fit in a double exactly and the
+     * power of ten does too, one multiplication or division gives the
+     * correctly rounded result.  Other numbers, and anything that is
+     * not a plain decimal number, are handed to
+     * {@link Double#parseDouble(String)}.</p>
+     */
+    static double parseDouble (byte[] text, int length)
+    {
+	int i = 0;
+	boolean negative = false;
+	if (i < length && (text[i] == '-' || text[i] == '+')) {
+	    negative = text[i] == '-';
+	    i++;
+	}
+
+	long mantissa = 0;
+	int digits = 0;
+	int scale = 0;
+	boolean seen = false;
+	for (; i < length && isDigit(text[i]); i++) {
+	    mantissa = mantissa * 10 + (text[i] - '0');
+	    digits += mantissa == 0 ? 0 : 1;
+	    seen = true;
+	}
+	if (i < length && text[i] == '.') {
+	    for (i++; i < length && isDigit(text[i]); i++) {
+		mantissa = mantissa * 10 + (text[i] - '0');
+		digits += mantissa == 0 ? 0 : 1;
+		scale--;
+		seen = true;
+	    }
+	}
+	if (seen && i < length && (text[i] == 'e' || text[i] == 'E')) {
+	    i++;
+	    boolean negativeExponent = false;
+	    if (i < length && (text[i] == '-' || text[i] == '+')) {
+		negativeExponent = text[i] == '-';
+		i++;
+	    }
+	    int exponent = 0;
+	    boolean exponentSeen = false;
+	    for (; i < length && isDigit(text[i]); i++) {
+		exponent = Math.min(exponent * 10 + (text[i] - '0'), 1000);
+		exponentSeen = true;
+	    }
+	    if (!exponentSeen)
+		seen = false;
+	    scale += negativeExponent ? -exponent : exponent;
+	}
+
+	if (!seen || i != length || digits > 15
+	    || scale < -MAX_EXACT_POWER || scale > MAX_EXACT_POWER)
+	    return Double.parseDouble(new String(text, 0, length,
+						 StandardCharsets.ISO_8859_1));
+
+	double value = scale < 0
+	    ? mantissa / POWERS_OF_TEN[-scale]
+	    : mantissa * POWERS_OF_TEN[scale];
+	return negative ? -value : value;
+    }
+
+
+    private static boolean isDigit (byte c)
+    {
+	return c >= '0' && c <= '9';
+    }
+
+
+
+    ////////////////////////////////////////////////////////////////////
+    // Prepared queries.
+    ////////////////////////////////////////////////////////////////////
+
+
+    /**
+     * A property lookup prepared by {@link #query(String)}, so that
+     * polling it does not build the request every time.
+     */
+    public static final class Query
+    {
+
+	private final byte[] request;
+
+	private Query (byte[] request)
+	{
+	    this.request = request;
+	}
+    }
+
+
+
     ////////////////////////////////////////////////////////////////////
     // Internal state.
     ////////////////////////////////////////////////////////////////////
 
+    /**
+     * The largest power of ten a double holds exactly.
+     */
+    private static final int MAX_EXACT_POWER = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+	POWERS_OF_TEN[0] = 1;
+	for (int i = 1; i <= MAX_EXACT_POWER; i++)
+	    POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
     private Socket socket;
-    private BufferedReader in;
+    private InputStream in;
+    private OutputStream requests;
     private PrintWriter out;
+    private byte[] line = new byte[64];
+    private long bytesRead;
 
 }
 